@@ -100,7 +100,19 @@ enum Variable {
     /** Time zone in which the current statement is executing. Required;
      * defaults to the time zone of the JVM if the connection does not specify a
      * time zone. */
-    TIME_ZONE("timeZone", TimeZone.class);
+    TIME_ZONE("timeZone", TimeZone.class),
+
+    /** Maximum number of rows that a blocking operator may hold in memory
+     * before it spills to disk; 0 means never spill. Optional. */
+    SPILL_THRESHOLD("spillThreshold", Integer.class),
+
+    /** Maximum number of threads with which to execute a query, and the
+     * number of partitions of an exchange. Optional. */
+    PARALLELISM("parallelism", Integer.class),
+
+    /** Whether the interpreter compiles a chain of filters and projects over
+     * a table scan into a single class. Optional. */
+    FUSE_INTERPRETER("fuseInterpreter", Boolean.class);
 
     public final String camelName;
     public final Class clazz;
@@ -25,39 +25,64 @@
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.Queryable;
 import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelProtoDataType;
-import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.ColumnBatch;
+import org.apache.calcite.schema.BatchScannableTable;
+import org.apache.calcite.schema.ProjectableFilterableTable;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.Statistic;
 import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.impl.AbstractTableQueryable;
+import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.Pair;
 
+import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Implementation of table that reads rows from column stores, one per column.
  * Column store formats are chosen based on the type and distribution of the
  * values in the column; see {@link Representation} and
  * {@link RepresentationType}.
+ *
+ * <p>The {@link Filterable} sub-class can also apply filters and projects
+ * while scanning.
+ *
+ * <p>Columns whose representation is {@link DirectPrimitiveArray} or
+ * {@link DirectBitSlicedPrimitiveArray} hold their data outside the Java
+ * heap. The memory is released when the contents are garbage-collected; call
+ * {@link #close()} to let that happen before the table itself is discarded.
  */
-class ArrayTable extends AbstractQueryableTable implements ScannableTable {
+class ArrayTable extends AbstractQueryableTable
+    implements BatchScannableTable {
   private final RelProtoDataType protoRowType;
-  private final Supplier<Content> supplier;
+  final Supplier<Content> supplier;
 
   /** Creates an ArrayTable. */
   ArrayTable(Type elementType, RelProtoDataType protoRowType,
@@ -71,6 +96,27 @@ public RelDataType getRowType(RelDataTypeFactory typeFactory) {
     return protoRowType.apply(typeFactory);
   }
 
+  /** Discards this table's contents, if they have been loaded, so that
+   * their off-heap memory is released when they are garbage-collected. Scans
+   * that are in progress continue to read the contents, which are not
+   * collected until those scans finish. If the table is scanned again, it
+   * reloads its contents. */
+  public void close() {
+    if (supplier instanceof ContentSupplier) {
+      ((ContentSupplier) supplier).release();
+    }
+  }
+
+  /** Appends to this table's contents the rows that have been added to its
+   * source since they were loaded, if the table supports it and its contents
+   * have been loaded. Scans that are in progress continue to read the
+   * previous contents. */
+  public void refresh() {
+    if (supplier instanceof ContentSupplier) {
+      ((ContentSupplier) supplier).refresh();
+    }
+  }
+
   public Statistic getStatistic() {
     final List<ImmutableBitSet> keys = Lists.newArrayList();
     final Content content = supplier.get();
@@ -91,6 +137,16 @@ public Enumerator<Object[]> enumerator() {
     };
   }
 
+  public Enumerable<ColumnBatch> scanBatches(DataContext root,
+      final Class[] columnClasses, final int batchSize) {
+    return new AbstractEnumerable<ColumnBatch>() {
+      public Enumerator<ColumnBatch> enumerator() {
+        final Content content = supplier.get();
+        return content.batchEnumerator(columnClasses, batchSize);
+      }
+    };
+  }
+
   public <T> Queryable<T> asQueryable(final QueryProvider queryProvider,
       SchemaPlus schema, String tableName) {
     return new AbstractTableQueryable<T>(queryProvider, schema, this,
@@ -104,10 +160,195 @@ public Enumerator<T> enumerator() {
   }
 
   @SuppressWarnings("unchecked")
-  private static <T> Pair<Object, T> toPair(Object dataSet) {
+  static <T> Pair<Object, T> toPair(Object dataSet) {
     return (Pair<Object, T>) dataSet;
   }
 
+  /** Allocates a direct buffer in native byte order.
+   *
+   * @param capacity Capacity in bytes; computed as a {@code long} so that
+   *                 overflow is detected rather than wrapping around
+   * @throws IllegalArgumentException if the capacity is more than a buffer
+   *         can hold
+   */
+  private static ByteBuffer allocateDirect(long capacity) {
+    if (capacity > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Column requires " + capacity
+          + " bytes, but an off-heap column can hold at most "
+          + Integer.MAX_VALUE + " bytes");
+    }
+    return ByteBuffer.allocateDirect((int) capacity)
+        .order(ByteOrder.nativeOrder());
+  }
+
+  /** Converts a boolean, character or integral value to a {@code long}. */
+  private static long toLong(Object o) {
+    if (o instanceof Boolean) {
+      return (Boolean) o ? 1 : 0;
+    } else if (o instanceof Character) {
+      return (Character) o;
+    } else {
+      return ((Number) o).longValue();
+    }
+  }
+
+  /** Returns whether every value in a list can be stored in an array of a
+   * given primitive type without loss. Nulls cannot. */
+  private static boolean canStore(Primitive primitive,
+      List<Comparable> values) {
+    for (Comparable value : values) {
+      if (value == null) {
+        return false;
+      }
+      switch (primitive) {
+      case FLOAT:
+      case DOUBLE:
+        continue;
+      }
+      final long v = toLong(value);
+      switch (primitive) {
+      case BOOLEAN:
+        if (v != 0 && v != 1) {
+          return false;
+        }
+        break;
+      case BYTE:
+        if (v != (byte) v) {
+          return false;
+        }
+        break;
+      case CHAR:
+        if (v != (char) v) {
+          return false;
+        }
+        break;
+      case SHORT:
+        if (v != (short) v) {
+          return false;
+        }
+        break;
+      case INT:
+        if (v != (int) v) {
+          return false;
+        }
+        break;
+      }
+    }
+    return true;
+  }
+
+  /** Supplier that loads the contents of a table the first time they are
+   * needed, and can later discard them, or append rows to them. */
+  static class ContentSupplier implements Supplier<Content> {
+    private final Supplier<Content> loader;
+    private final Function<Content, Content> appender;
+    /** Ensures that only one thread at a time appends to the contents. */
+    private final Object refreshLock = new Object();
+    private Content content;
+
+    ContentSupplier(Supplier<Content> loader) {
+      this(loader, null);
+    }
+
+    /** Creates a ContentSupplier.
+     *
+     * @param loader Loads contents
+     * @param appender Given existing contents, returns them with new rows
+     *                 appended, or null if rows cannot be appended
+     */
+    ContentSupplier(Supplier<Content> loader,
+        Function<Content, Content> appender) {
+      this.loader = loader;
+      this.appender = appender;
+    }
+
+    public synchronized Content get() {
+      if (content == null) {
+        content = loader.get();
+      }
+      return content;
+    }
+
+    /** Appends new rows to the contents, if loaded. The previous contents
+     * are not released, because scans may still be reading them.
+     *
+     * <p>The new contents are built without holding the lock on this
+     * supplier, so scans that start meanwhile are not blocked; they read the
+     * previous contents. If the contents are released while the new
+     * contents are being built, the new contents are discarded. */
+    void refresh() {
+      if (appender == null) {
+        return;
+      }
+      synchronized (refreshLock) {
+        final Content base;
+        synchronized (this) {
+          base = content;
+        }
+        if (base == null) {
+          return;
+        }
+        final Content content2 = appender.apply(base);
+        synchronized (this) {
+          if (content == base) {
+            content = content2;
+          }
+        }
+      }
+    }
+
+    /** Discards the contents, if loaded. Their memory, including off-heap
+     * memory, is released when they are garbage-collected, after any scans
+     * that are reading them have finished. The memory is not freed
+     * explicitly, because those scans, or contents that were created by
+     * appending to these and share their columns, may still read it. */
+    synchronized void release() {
+      content = null;
+    }
+  }
+
+  /** Array table that applies filters and projects while scanning.
+   *
+   * <p>It reads only the columns that a scan needs. It applies comparisons
+   * between a column and a literal: it binary-searches the column on which
+   * the table is sorted, if there is one, and for other columns skips blocks
+   * of rows whose minimum and maximum values (see {@link ZoneMap}) show that
+   * no row can match. */
+  static class Filterable extends ArrayTable
+      implements ProjectableFilterableTable {
+    Filterable(Type elementType, RelProtoDataType protoRowType,
+        Supplier<Content> supplier) {
+      super(elementType, protoRowType, supplier);
+    }
+
+    public Enumerable<Object[]> scan(DataContext root, List<RexNode> filters,
+        final int[] projects) {
+      final Content content = supplier.get();
+      final List<ColumnPredicate> predicates = new ArrayList<>();
+      for (Iterator<RexNode> i = filters.iterator(); i.hasNext();) {
+        boolean all = true;
+        for (RexNode e : RelOptUtil.conjunctions(i.next())) {
+          final ColumnPredicate predicate = ColumnPredicate.of(e);
+          if (predicate != null && content.accepts(predicate)) {
+            predicates.add(predicate);
+          } else {
+            all = false;
+          }
+        }
+        if (all) {
+          // We will apply every conjunction of this filter, so the consumer
+          // does not need to.
+          i.remove();
+        }
+      }
+      return new AbstractEnumerable<Object[]>() {
+        public Enumerator<Object[]> enumerator() {
+          return content.filterEnumerator(predicates, projects);
+        }
+      };
+    }
+  }
+
   /** How a column's values are represented. */
   enum RepresentationType {
     /** Constant. Contains only one value.
@@ -193,12 +434,30 @@ enum RepresentationType {
      * @see ByteStringDictionary
      */
     BYTE_STRING_DICTIONARY,
+
+    /** As {@link #PRIMITIVE_ARRAY}, but stored in a {@link ByteBuffer}
+     * outside the Java heap.
+     *
+     * @see DirectPrimitiveArray
+     */
+    DIRECT_PRIMITIVE_ARRAY,
+
+    /** As {@link #BIT_SLICED_PRIMITIVE_ARRAY}, but stored in a
+     * {@link ByteBuffer} outside the Java heap.
+     *
+     * @see DirectBitSlicedPrimitiveArray
+     */
+    DIRECT_BIT_SLICED_PRIMITIVE_ARRAY,
   }
 
   /** Column definition and value set. */
   public static class Column {
     final Representation representation;
     final Object dataSet;
+    /** Number of distinct values, counting null as a value. Equals the
+     * number of rows if and only if the values are unique. After rows have
+     * been appended (see {@link ColumnLoader}), it may be an over-estimate
+     * for a column whose values were not unique. */
     final int cardinality;
 
     Column(Representation representation, Object data, int cardinality) {
@@ -252,6 +511,12 @@ public interface Representation {
      * but re-ordered. */
     Object permute(Object dataSet, int[] sources);
 
+    /** Creates a data set that holds the first {@code size} values of a
+     * given data set followed by the given values, or returns null if this
+     * representation cannot hold one of the values, and the column must be
+     * frozen again. Does not modify the given data set. */
+    Object append(Object dataSet, int size, List<Comparable> values);
+
     /** Returns the number of elements in a data set. (Some representations
      * return the capacity, which may be slightly larger than the actual
      * size.) */
@@ -293,6 +558,15 @@ public Object permute(Object dataSet, int[] sources) {
       return comparables;
     }
 
+    public Object append(Object dataSet, int size, List<Comparable> values) {
+      final Comparable[] comparables =
+          Arrays.copyOf((Comparable[]) dataSet, size + values.size());
+      for (int i = 0; i < values.size(); i++) {
+        comparables[size + i] = values.get(i);
+      }
+      return comparables;
+    }
+
     public Object getObject(Object dataSet, int ordinal) {
       return ((Comparable[]) dataSet)[ordinal];
     }
@@ -314,8 +588,8 @@ public String toString(Object dataSet) {
    * primitive values. */
   public static class PrimitiveArray implements Representation {
     final int ordinal;
-    private final Primitive primitive;
-    private final Primitive p;
+    final Primitive primitive;
+    final Primitive p;
 
     PrimitiveArray(int ordinal, Primitive primitive, Primitive p) {
       this.ordinal = ordinal;
@@ -344,6 +618,45 @@ public Object permute(Object dataSet, int[] sources) {
       return primitive.permute(dataSet, sources);
     }
 
+    public Object append(Object dataSet, int size, List<Comparable> values) {
+      if (!canStore(primitive, values)) {
+        return null;
+      }
+      final Object array =
+          Array.newInstance(primitive.primitiveClass, size + values.size());
+      System.arraycopy(dataSet, 0, array, 0, size);
+      int i = size;
+      for (Comparable value : values) {
+        switch (primitive) {
+        case FLOAT:
+          Array.setFloat(array, i, ((Number) value).floatValue());
+          break;
+        case DOUBLE:
+          Array.setDouble(array, i, ((Number) value).doubleValue());
+          break;
+        case BOOLEAN:
+          Array.setBoolean(array, i, toLong(value) != 0);
+          break;
+        case BYTE:
+          Array.setByte(array, i, (byte) toLong(value));
+          break;
+        case CHAR:
+          Array.setChar(array, i, (char) toLong(value));
+          break;
+        case SHORT:
+          Array.setShort(array, i, (short) toLong(value));
+          break;
+        case INT:
+          Array.setInt(array, i, (int) toLong(value));
+          break;
+        default:
+          Array.setLong(array, i, toLong(value));
+        }
+        ++i;
+      }
+      return array;
+    }
+
     public Object getObject(Object dataSet, int ordinal) {
       return p.arrayItem(dataSet, ordinal);
     }
@@ -361,6 +674,202 @@ public String toString(Object dataSet) {
     }
   }
 
+  /** Representation that stores the values of a column as primitive values
+   * in a {@link ByteBuffer}.
+   *
+   * <p>Like {@link PrimitiveArray}, but the buffer is direct (or
+   * memory-mapped), so the data does not occupy the Java heap. */
+  public static class DirectPrimitiveArray implements Representation {
+    final int ordinal;
+    final Primitive primitive;
+    final Primitive p;
+    private final int width;
+
+    DirectPrimitiveArray(int ordinal, Primitive primitive, Primitive p) {
+      this.ordinal = ordinal;
+      this.primitive = primitive;
+      this.p = p;
+      this.width = width(primitive);
+    }
+
+    public String toString() {
+      return "DirectPrimitiveArray(ordinal=" + ordinal
+          + ", primitive=" + primitive
+          + ", p=" + p
+          + ")";
+    }
+
+    /** Returns the number of bytes used to store a value. */
+    private static int width(Primitive primitive) {
+      switch (primitive) {
+      case BOOLEAN:
+      case BYTE:
+        return 1;
+      case CHAR:
+      case SHORT:
+        return 2;
+      case INT:
+      case FLOAT:
+        return 4;
+      case LONG:
+      case DOUBLE:
+        return 8;
+      default:
+        throw new AssertionError(primitive + " unexpected");
+      }
+    }
+
+    public RepresentationType getType() {
+      return RepresentationType.DIRECT_PRIMITIVE_ARRAY;
+    }
+
+    public Object freeze(ColumnLoader.ValueSet valueSet, int[] sources) {
+      final List<Comparable> list = permuteList(valueSet.values, sources);
+      final ByteBuffer buffer = allocateDirect((long) list.size() * width);
+      int i = 0;
+      for (Comparable value : list) {
+        switch (primitive) {
+        case FLOAT:
+          buffer.putFloat(i, ((Number) value).floatValue());
+          break;
+        case DOUBLE:
+          buffer.putDouble(i, ((Number) value).doubleValue());
+          break;
+        default:
+          putLong(buffer, i, toLong(value));
+        }
+        i += width;
+      }
+      return buffer;
+    }
+
+    /** Writes an integral value at a given byte offset. */
+    private void putLong(ByteBuffer buffer, int offset, long v) {
+      switch (width) {
+      case 1:
+        buffer.put(offset, (byte) v);
+        break;
+      case 2:
+        buffer.putShort(offset, (short) v);
+        break;
+      case 4:
+        buffer.putInt(offset, (int) v);
+        break;
+      default:
+        buffer.putLong(offset, v);
+      }
+    }
+
+    /** Reads an integral value at a given row. */
+    private long getLong(ByteBuffer buffer, int ordinal) {
+      switch (primitive) {
+      case BOOLEAN:
+      case BYTE:
+        return buffer.get(ordinal);
+      case CHAR:
+        return buffer.getChar(ordinal << 1);
+      case SHORT:
+        return buffer.getShort(ordinal << 1);
+      case INT:
+        return buffer.getInt(ordinal << 2);
+      case LONG:
+        return buffer.getLong(ordinal << 3);
+      default:
+        throw new AssertionError(primitive + " unexpected");
+      }
+    }
+
+    public Object permute(Object dataSet, int[] sources) {
+      final ByteBuffer buffer0 = (ByteBuffer) dataSet;
+      final ByteBuffer buffer = allocateDirect(buffer0.limit());
+      for (int i = 0; i < sources.length; i++) {
+        final int source = sources[i] * width;
+        final int target = i * width;
+        for (int j = 0; j < width; j++) {
+          buffer.put(target + j, buffer0.get(source + j));
+        }
+      }
+      return buffer;
+    }
+
+    public Object append(Object dataSet, int size, List<Comparable> values) {
+      if (!canStore(primitive, values)) {
+        return null;
+      }
+      final ByteBuffer buffer0 = ((ByteBuffer) dataSet).duplicate();
+      buffer0.position(0).limit(size * width);
+      final ByteBuffer buffer =
+          allocateDirect((long) (size + values.size()) * width);
+      buffer.put(buffer0);
+      int i = size * width;
+      for (Comparable value : values) {
+        switch (primitive) {
+        case FLOAT:
+          buffer.putFloat(i, ((Number) value).floatValue());
+          break;
+        case DOUBLE:
+          buffer.putDouble(i, ((Number) value).doubleValue());
+          break;
+        default:
+          putLong(buffer, i, toLong(value));
+        }
+        i += width;
+      }
+      return buffer;
+    }
+
+    public Object getObject(Object dataSet, int ordinal) {
+      final ByteBuffer buffer = (ByteBuffer) dataSet;
+      switch (primitive) {
+      case FLOAT:
+        return buffer.getFloat(ordinal << 2);
+      case DOUBLE:
+        return buffer.getDouble(ordinal << 3);
+      }
+      final long x = getLong(buffer, ordinal);
+      switch (p) {
+      case BOOLEAN:
+        return x != 0;
+      case BYTE:
+        return (byte) x;
+      case CHAR:
+        return (char) x;
+      case SHORT:
+        return (short) x;
+      case INT:
+        return (int) x;
+      case LONG:
+        return x;
+      case FLOAT:
+        return (float) x;
+      case DOUBLE:
+        return (double) x;
+      default:
+        throw new AssertionError(p + " unexpected");
+      }
+    }
+
+    public int getInt(Object dataSet, int ordinal) {
+      final ByteBuffer buffer = (ByteBuffer) dataSet;
+      switch (primitive) {
+      case FLOAT:
+        return (int) buffer.getFloat(ordinal << 2);
+      case DOUBLE:
+        return (int) buffer.getDouble(ordinal << 3);
+      default:
+        return (int) getLong(buffer, ordinal);
+      }
+    }
+
+    public int size(Object dataSet) {
+      return ((ByteBuffer) dataSet).limit() / width;
+    }
+
+    public String toString(Object dataSet) {
+      return Column.asList(this, dataSet).toString();
+    }
+  }
+
   /** Representation that stores column values in a dictionary of
    * primitive values, then uses a short code for each row. */
   public static class PrimitiveDictionary implements Representation {
@@ -383,6 +892,10 @@ public Object permute(Object dataSet, int[] sources) {
       throw new UnsupportedOperationException(); // TODO:
     }
 
+    public Object append(Object dataSet, int size, List<Comparable> values) {
+      throw new UnsupportedOperationException(); // TODO:
+    }
+
     public Object getObject(Object dataSet, int ordinal) {
       throw new UnsupportedOperationException(); // TODO:
     }
@@ -453,6 +966,39 @@ public Object permute(Object dataSet, int[] sources) {
       return Pair.of(representation.permute(codes, sources), codeValues);
     }
 
+    /** {@inheritDoc}
+     *
+     * <p>Succeeds only if every value is already in the dictionary, so that
+     * the codes do not change. */
+    public Object append(Object dataSet, int size, List<Comparable> values) {
+      final Pair<Object, Comparable[]> pair = toPair(dataSet);
+      final Comparable[] codeValues = pair.right;
+      // If the column contains nulls, the last code is for null.
+      final int n = codeValues.length > 0
+          && codeValues[codeValues.length - 1] == null
+          ? codeValues.length - 1
+          : codeValues.length;
+      final List<Comparable> codes = new ArrayList<>(values.size());
+      for (Comparable value : values) {
+        final int code;
+        if (value == null) {
+          if (n == codeValues.length) {
+            return null;
+          }
+          code = n;
+        } else {
+          //noinspection unchecked
+          code = Arrays.binarySearch(codeValues, 0, n, value);
+          if (code < 0) {
+            return null;
+          }
+        }
+        codes.add(code);
+      }
+      final Object codes2 = representation.append(pair.left, size, codes);
+      return codes2 == null ? null : Pair.of(codes2, codeValues);
+    }
+
     public Object getObject(Object dataSet, int ordinal) {
       final Pair<Object, Comparable[]> pair = toPair(dataSet);
       int code = representation.getInt(pair.left, ordinal);
@@ -494,6 +1040,10 @@ public Object permute(Object dataSet, int[] sources) {
       throw new UnsupportedOperationException(); // TODO:
     }
 
+    public Object append(Object dataSet, int size, List<Comparable> values) {
+      throw new UnsupportedOperationException(); // TODO:
+    }
+
     public Object getObject(Object dataSet, int ordinal) {
       throw new UnsupportedOperationException(); // TODO:
     }
@@ -532,6 +1082,10 @@ public Object permute(Object dataSet, int[] sources) {
       throw new UnsupportedOperationException(); // TODO:
     }
 
+    public Object append(Object dataSet, int size, List<Comparable> values) {
+      throw new UnsupportedOperationException(); // TODO:
+    }
+
     public Object getObject(Object dataSet, int ordinal) {
       throw new UnsupportedOperationException(); // TODO:
     }
@@ -574,6 +1128,19 @@ public Object permute(Object dataSet, int[] sources) {
       return dataSet;
     }
 
+    public Object append(Object dataSet, int size, List<Comparable> values) {
+      final Pair<Object, Integer> pair = toPair(dataSet);
+      if (size == 0) {
+        return null;
+      }
+      for (Comparable value : values) {
+        if (!Objects.equals(pair.left, value)) {
+          return null;
+        }
+      }
+      return Pair.of(pair.left, size + values.size());
+    }
+
     public Object getObject(Object dataSet, int ordinal) {
       Pair<Object, Integer> pair = toPair(dataSet);
       return pair.left;
@@ -689,11 +1256,52 @@ public Object permute(Object dataSet, int[] sources) {
       return longs;
     }
 
+    /** {@inheritDoc}
+     *
+     * <p>Succeeds only if the representation is unsigned and every value
+     * fits in {@link #bitCount} bits. */
+    public Object append(Object dataSet, int size, List<Comparable> values) {
+      if (signed) {
+        return null;
+      }
+      for (Comparable value : values) {
+        if (value == null) {
+          return null;
+        }
+        final long v = toLong(value);
+        if (v < 0 || bitCount < 63 && v >= 1L << bitCount) {
+          return null;
+        }
+      }
+      final int chunksPerWord = 64 / bitCount;
+      final int count = size + values.size();
+      final long[] longs =
+          new long[(count + (chunksPerWord - 1)) / chunksPerWord];
+      // Chunks after the first size are zero, so we can OR into them.
+      final int wordCount = (size + (chunksPerWord - 1)) / chunksPerWord;
+      for (int i = 0; i < wordCount; i++) {
+        longs[i] = word(dataSet, i);
+      }
+      for (int i = 0; i < values.size(); i++) {
+        orLong(bitCount, chunksPerWord, longs, size + i,
+            toLong(values.get(i)));
+      }
+      return longs;
+    }
+
+    /** Returns the {@code i}th 64-bit word of a data set. */
+    long word(Object dataSet, int i) {
+      return ((long[]) dataSet)[i];
+    }
+
+    /** Returns the number of 64-bit words in a data set. */
+    int wordCount(Object dataSet) {
+      return ((long[]) dataSet).length;
+    }
+
     public Object getObject(Object dataSet, int ordinal) {
-      final long[] longs = (long[]) dataSet;
       final int chunksPerWord = 64 / bitCount;
-      final int word = ordinal / chunksPerWord;
-      final long v = longs[word];
+      final long v = word(dataSet, ordinal / chunksPerWord);
       final int chunk = ordinal % chunksPerWord;
       final int mask = (1 << bitCount) - 1;
       final int signMask = 1 << (bitCount - 1);
@@ -722,10 +1330,8 @@ public Object getObject(Object dataSet, int ordinal) {
     }
 
     public int getInt(Object dataSet, int ordinal) {
-      final long[] longs = (long[]) dataSet;
       final int chunksPerWord = 64 / bitCount;
-      final int word = ordinal / chunksPerWord;
-      final long v = longs[word];
+      final long v = word(dataSet, ordinal / chunksPerWord);
       final int chunk = ordinal % chunksPerWord;
       final int mask = (1 << bitCount) - 1;
       final int signMask = 1 << (bitCount - 1);
@@ -772,9 +1378,8 @@ public static void orLong(
     }
 
     public int size(Object dataSet) {
-      final long[] longs = (long[]) dataSet;
       final int chunksPerWord = 64 / bitCount;
-      return longs.length * chunksPerWord; // may be slightly too high
+      return wordCount(dataSet) * chunksPerWord; // may be slightly too high
     }
 
     public String toString(Object dataSet) {
@@ -782,6 +1387,75 @@ public String toString(Object dataSet) {
     }
   }
 
+  /** Representation that stores numeric values in a bit-sliced array held
+   * in a {@link ByteBuffer}.
+   *
+   * <p>Like {@link BitSlicedPrimitiveArray}, but the buffer is direct (or
+   * memory-mapped), so the data does not occupy the Java heap. */
+  public static class DirectBitSlicedPrimitiveArray
+      extends BitSlicedPrimitiveArray {
+    DirectBitSlicedPrimitiveArray(
+        int ordinal, int bitCount, Primitive primitive, boolean signed) {
+      super(ordinal, bitCount, primitive, signed);
+    }
+
+    @Override public String toString() {
+      return "DirectBitSlicedPrimitiveArray(ordinal=" + ordinal
+          + ", bitCount=" + bitCount
+          + ", primitive=" + primitive
+          + ", signed=" + signed + ")";
+    }
+
+    @Override public RepresentationType getType() {
+      return RepresentationType.DIRECT_BIT_SLICED_PRIMITIVE_ARRAY;
+    }
+
+    @Override public Object freeze(ColumnLoader.ValueSet valueSet,
+        int[] sources) {
+      final long[] longs = (long[]) super.freeze(valueSet, sources);
+      final ByteBuffer buffer = allocateDirect((long) longs.length << 3);
+      buffer.asLongBuffer().put(longs);
+      return buffer;
+    }
+
+    @Override public Object permute(Object dataSet, int[] sources) {
+      final ByteBuffer buffer0 = (ByteBuffer) dataSet;
+      final ByteBuffer buffer = allocateDirect(buffer0.limit());
+      final int chunksPerWord = 64 / bitCount;
+      final long mask = (1L << bitCount) - 1L;
+      for (int i = 0; i < sources.length; i++) {
+        final int source = sources[i];
+        final long value =
+            (word(buffer0, source / chunksPerWord)
+                >> (source % chunksPerWord * bitCount)) & mask;
+        final int offset = (i / chunksPerWord) << 3;
+        buffer.putLong(offset,
+            buffer.getLong(offset)
+                | value << (i % chunksPerWord * bitCount));
+      }
+      return buffer;
+    }
+
+    @Override public Object append(Object dataSet, int size,
+        List<Comparable> values) {
+      final long[] longs = (long[]) super.append(dataSet, size, values);
+      if (longs == null) {
+        return null;
+      }
+      final ByteBuffer buffer = allocateDirect((long) longs.length << 3);
+      buffer.asLongBuffer().put(longs);
+      return buffer;
+    }
+
+    @Override long word(Object dataSet, int i) {
+      return ((ByteBuffer) dataSet).getLong(i << 3);
+    }
+
+    @Override int wordCount(Object dataSet) {
+      return ((ByteBuffer) dataSet).limit() >> 3;
+    }
+  }
+
   private static <E> List<E> permuteList(
       final List<E> list, final int[] sources) {
     if (sources == null) {
@@ -798,17 +1472,300 @@ public int size() {
     };
   }
 
+  /** Kind of value held in a column, or compared to it by a
+   * {@link ColumnPredicate}. */
+  enum ValueKind {
+    NUMBER, STRING, BOOLEAN;
+
+    /** Returns the kind of a value, or null if it is not comparable by
+     * {@link ColumnPredicate}. */
+    static ValueKind of(Object o) {
+      if (o instanceof Number) {
+        return NUMBER;
+      } else if (o instanceof String) {
+        return STRING;
+      } else if (o instanceof Boolean) {
+        return BOOLEAN;
+      } else {
+        return null;
+      }
+    }
+  }
+
+  /** Comparison between a column and a literal value, such as
+   * {@code $3 < 100}.
+   *
+   * <p>Values in a column are compared with the same semantics as generated
+   * code: numbers by value, regardless of their class, strings
+   * lexicographically, and {@code false} before {@code true}. DATE, TIME and
+   * TIMESTAMP literals are compared as numbers, because that is how
+   * {@link ColumnLoader} stores such columns. A null value never
+   * matches. */
+  static class ColumnPredicate {
+    final int ordinal;
+    final SqlKind kind;
+    final ValueKind valueKind;
+    final Comparable value;
+    // If value is a number, whether it is a long, and its value as a double.
+    private final boolean isLong;
+    private final long longValue;
+    private final double doubleValue;
+
+    ColumnPredicate(int ordinal, SqlKind kind, Comparable value) {
+      this.ordinal = ordinal;
+      this.kind = kind;
+      this.value = value;
+      this.valueKind = ValueKind.of(value);
+      if (value instanceof BigDecimal) {
+        final BigDecimal decimal = (BigDecimal) value;
+        boolean isLong;
+        long longValue = 0L;
+        try {
+          longValue = decimal.longValueExact();
+          isLong = true;
+        } catch (ArithmeticException e) {
+          isLong = false;
+        }
+        this.isLong = isLong;
+        this.longValue = longValue;
+        this.doubleValue = decimal.doubleValue();
+      } else {
+        this.isLong = false;
+        this.longValue = 0L;
+        this.doubleValue = 0D;
+      }
+    }
+
+    /** Creates a ColumnPredicate from an expression, or returns null if the
+     * expression is not a comparison between a column and a literal of a
+     * supported type. */
+    static ColumnPredicate of(RexNode e) {
+      switch (e.getKind()) {
+      case EQUALS:
+      case NOT_EQUALS:
+      case LESS_THAN:
+      case LESS_THAN_OR_EQUAL:
+      case GREATER_THAN:
+      case GREATER_THAN_OR_EQUAL:
+        final List<RexNode> operands = ((RexCall) e).getOperands();
+        if (operands.get(0) instanceof RexInputRef
+            && operands.get(1) instanceof RexLiteral) {
+          return of((RexInputRef) operands.get(0), e.getKind(),
+              (RexLiteral) operands.get(1));
+        }
+        if (operands.get(0) instanceof RexLiteral
+            && operands.get(1) instanceof RexInputRef) {
+          return of((RexInputRef) operands.get(1), e.getKind().reverse(),
+              (RexLiteral) operands.get(0));
+        }
+      }
+      return null;
+    }
+
+    private static ColumnPredicate of(RexInputRef ref, SqlKind kind,
+        RexLiteral literal) {
+      final Comparable value;
+      switch (literal.getTypeName()) {
+      case DECIMAL:
+      case DOUBLE:
+        value = literal.getValueAs(BigDecimal.class);
+        break;
+      case DATE:
+      case TIME:
+        final Integer i = literal.getValueAs(Integer.class);
+        value = i == null ? null : BigDecimal.valueOf(i);
+        break;
+      case TIMESTAMP:
+        final Long l = literal.getValueAs(Long.class);
+        value = l == null ? null : BigDecimal.valueOf(l);
+        break;
+      case CHAR:
+        value = literal.getValueAs(String.class);
+        break;
+      case BOOLEAN:
+        value = literal.getValueAs(Boolean.class);
+        break;
+      default:
+        return null;
+      }
+      if (value == null) {
+        return null;
+      }
+      return new ColumnPredicate(ref.getIndex(), kind, value);
+    }
+
+    /** Compares a column value, which is not null and is of the same
+     * {@link ValueKind} as this predicate's value, to this predicate's
+     * value. */
+    @SuppressWarnings("unchecked")
+    int compare(Object o) {
+      if (valueKind != ValueKind.NUMBER) {
+        return ((Comparable) o).compareTo(value);
+      }
+      if (o instanceof Long || o instanceof Integer || o instanceof Short
+          || o instanceof Byte) {
+        final long v = ((Number) o).longValue();
+        if (isLong) {
+          return Long.compare(v, longValue);
+        }
+      } else if (o instanceof Double || o instanceof Float) {
+        return Double.compare(((Number) o).doubleValue(), doubleValue);
+      }
+      final BigDecimal v = o instanceof BigDecimal
+          ? (BigDecimal) o
+          : new BigDecimal(o.toString());
+      return v.compareTo((BigDecimal) value);
+    }
+
+    /** Returns whether a column value matches. */
+    boolean test(Object o) {
+      if (o == null) {
+        return false;
+      }
+      final int c = compare(o);
+      switch (kind) {
+      case EQUALS:
+        return c == 0;
+      case NOT_EQUALS:
+        return c != 0;
+      case LESS_THAN:
+        return c < 0;
+      case LESS_THAN_OR_EQUAL:
+        return c <= 0;
+      case GREATER_THAN:
+        return c > 0;
+      case GREATER_THAN_OR_EQUAL:
+        return c >= 0;
+      default:
+        throw new AssertionError(kind);
+      }
+    }
+
+    /** Returns whether any value in a range may match; false if the range is
+     * empty (that is, {@code min} is null). */
+    boolean mayMatch(Object min, Object max) {
+      if (min == null) {
+        return false;
+      }
+      switch (kind) {
+      case EQUALS:
+        return compare(min) <= 0 && compare(max) >= 0;
+      case NOT_EQUALS:
+        return compare(min) != 0 || compare(max) != 0;
+      case LESS_THAN:
+        return compare(min) < 0;
+      case LESS_THAN_OR_EQUAL:
+        return compare(min) <= 0;
+      case GREATER_THAN:
+        return compare(max) > 0;
+      case GREATER_THAN_OR_EQUAL:
+        return compare(max) >= 0;
+      default:
+        throw new AssertionError(kind);
+      }
+    }
+
+    @Override public String toString() {
+      return "$" + ordinal + " " + kind + " " + value;
+    }
+  }
+
+  /** Minimum and maximum values of each block of
+   * {@link ZoneMap#BLOCK_SIZE} rows in a column.
+   *
+   * <p>A block whose range does not satisfy a {@link ColumnPredicate} can be
+   * skipped without decoding its values. */
+  static class ZoneMap {
+    static final int BLOCK_SIZE = 1024;
+
+    /** Kind of the non-null values in the column, or null if the kinds are
+     * mixed or not comparable, or if all values are null. */
+    final ValueKind valueKind;
+    /** Whether all values are null. */
+    final boolean allNull;
+    /** Minimum non-null value in each block, or null if all are null. */
+    final Object[] mins;
+    /** Maximum non-null value in each block, or null if all are null. */
+    final Object[] maxes;
+
+    private ZoneMap(ValueKind valueKind, boolean allNull, Object[] mins,
+        Object[] maxes) {
+      this.valueKind = valueKind;
+      this.allNull = allNull;
+      this.mins = mins;
+      this.maxes = maxes;
+    }
+
+    /** Computes the zone map of a column. */
+    @SuppressWarnings("unchecked")
+    static ZoneMap of(Column column, int rowCount) {
+      final int blockCount = (rowCount + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      final Object[] mins = new Object[blockCount];
+      final Object[] maxes = new Object[blockCount];
+      ValueKind valueKind = null;
+      boolean allNull = true;
+      boolean comparable = true;
+      for (int b = 0; b < blockCount; b++) {
+        Comparable min = null;
+        Comparable max = null;
+        final int end = Math.min(rowCount, (b + 1) * BLOCK_SIZE);
+        for (int i = b * BLOCK_SIZE; i < end; i++) {
+          final Object o =
+              column.representation.getObject(column.dataSet, i);
+          if (o == null) {
+            continue;
+          }
+          final ValueKind kind = ValueKind.of(o);
+          if (allNull) {
+            valueKind = kind;
+            allNull = false;
+          }
+          if (kind == null || kind != valueKind) {
+            comparable = false;
+            continue;
+          }
+          if (comparable) {
+            final Comparable c = (Comparable) o;
+            if (min == null || compare(c, min) < 0) {
+              min = c;
+            }
+            if (max == null || compare(c, max) > 0) {
+              max = c;
+            }
+          }
+        }
+        mins[b] = min;
+        maxes[b] = max;
+      }
+      return new ZoneMap(comparable ? valueKind : null, allNull, mins, maxes);
+    }
+
+    /** Compares two values of the same {@link ValueKind}. */
+    @SuppressWarnings("unchecked")
+    private static int compare(Comparable c0, Comparable c1) {
+      if (c0 instanceof Number && c0.getClass() != c1.getClass()) {
+        return new BigDecimal(c0.toString())
+            .compareTo(new BigDecimal(c1.toString()));
+      }
+      return c0.compareTo(c1);
+    }
+  }
+
   /** Contents of a table. */
   public static class Content {
-    private final List<Column> columns;
-    private final int size;
-    private final ImmutableList<RelCollation> collations;
+    final List<Column> columns;
+    final int size;
+    final ImmutableList<RelCollation> collations;
+    /** Zone map of each column, computed the first time that a scan filters
+     * on the column. */
+    private final ZoneMap[] zoneMaps;
 
     Content(List<? extends Column> columns, int size,
         Iterable<? extends RelCollation> collations) {
       this.columns = ImmutableList.copyOf(columns);
       this.size = size;
       this.collations = ImmutableList.copyOf(collations);
+      this.zoneMaps = new ZoneMap[this.columns.size()];
     }
 
     @Deprecated // to be removed before 2.0
@@ -832,6 +1789,182 @@ public Enumerator<Object[]> arrayEnumerator() {
       return new ArrayEnumerator(size, columns);
     }
 
+    public Enumerator<ColumnBatch> batchEnumerator(Class[] columnClasses,
+        int batchSize) {
+      return new BatchEnumerator(size, columns, columnClasses, batchSize);
+    }
+
+    /** Returns an enumerator over the rows that match all of the given
+     * predicates, returning the given columns (or all columns, if
+     * {@code projects} is null).
+     *
+     * <p>Predicates on the column on which the table is sorted narrow the
+     * range of rows by binary search. Within that range, blocks whose zone
+     * maps show that a predicate cannot match are skipped. */
+    public Enumerator<Object[]> filterEnumerator(
+        List<ColumnPredicate> predicates, int[] projects) {
+      int start = 0;
+      int end = size;
+      final int sortField = sortField();
+      final List<ColumnPredicate> rowPredicates = new ArrayList<>();
+      boolean searched = false;
+      for (ColumnPredicate predicate : predicates) {
+        if (predicate.ordinal != sortField
+            || predicate.kind == SqlKind.NOT_EQUALS) {
+          rowPredicates.add(predicate);
+          continue;
+        }
+        final Column column = columns.get(sortField);
+        if (!searched) {
+          // Nulls never match, so first narrow the range to the non-null
+          // values; the binary search cannot compare nulls.
+          searched = true;
+          final int[] range = nonNullRange(column);
+          start = range[0];
+          end = range[1];
+          if (start >= end) {
+            break;
+          }
+        }
+        switch (predicate.kind) {
+        case EQUALS:
+          start = Math.max(start, search(column, predicate, start, end, false));
+          end = Math.min(end, search(column, predicate, start, end, true));
+          break;
+        case LESS_THAN:
+          end = Math.min(end, search(column, predicate, start, end, false));
+          break;
+        case LESS_THAN_OR_EQUAL:
+          end = Math.min(end, search(column, predicate, start, end, true));
+          break;
+        case GREATER_THAN:
+          start = Math.max(start, search(column, predicate, start, end, true));
+          break;
+        case GREATER_THAN_OR_EQUAL:
+          start = Math.max(start, search(column, predicate, start, end, false));
+          break;
+        }
+        if (start >= end) {
+          break;
+        }
+      }
+      final ZoneMap[] zoneMaps = new ZoneMap[rowPredicates.size()];
+      for (int i = 0; i < zoneMaps.length; i++) {
+        zoneMaps[i] = zoneMap(rowPredicates.get(i).ordinal);
+      }
+      final List<Column> projectedColumns;
+      if (projects == null) {
+        projectedColumns = columns;
+      } else {
+        projectedColumns = new ArrayList<>();
+        for (int project : projects) {
+          projectedColumns.add(columns.get(project));
+        }
+      }
+      return new FilterEnumerator(start, Math.max(start, end), columns,
+          rowPredicates, zoneMaps, projectedColumns);
+    }
+
+    /** Returns whether {@link #filterEnumerator} can apply a predicate; that
+     * is, whether its value is of the same kind as the column's values. */
+    boolean accepts(ColumnPredicate predicate) {
+      if (predicate.ordinal >= columns.size()) {
+        return false;
+      }
+      if (predicate.ordinal == sortField()
+          && predicate.kind != SqlKind.NOT_EQUALS) {
+        // The predicate will be applied by binary search, which does not
+        // need a zone map. A sorted column's values are all of one kind, so
+        // look at one of them.
+        final Column column = columns.get(predicate.ordinal);
+        final int[] range = nonNullRange(column);
+        return range[0] >= range[1]
+            || ValueKind.of(
+                column.representation.getObject(column.dataSet, range[0]))
+            == predicate.valueKind;
+      }
+      final ZoneMap zoneMap = zoneMap(predicate.ordinal);
+      return zoneMap.allNull || zoneMap.valueKind == predicate.valueKind;
+    }
+
+    /** Returns the column on which the table is sorted ascending, or -1. */
+    int sortField() {
+      if (collations.isEmpty()
+          || collations.get(0).getFieldCollations().isEmpty()) {
+        return -1;
+      }
+      final RelFieldCollation fieldCollation =
+          collations.get(0).getFieldCollations().get(0);
+      return fieldCollation.direction == RelFieldCollation.Direction.ASCENDING
+          ? fieldCollation.getFieldIndex()
+          : -1;
+    }
+
+    /** Returns the range of rows of the sorted column, as {start, end},
+     * whose values are not null. Nulls may sort first or last, so skips null
+     * values at either end. */
+    private int[] nonNullRange(Column column) {
+      int start = 0;
+      int end = size;
+      if (start < end && isNull(column, start)) {
+        start = searchNull(column, start, end, true);
+      }
+      if (start < end && isNull(column, end - 1)) {
+        end = searchNull(column, start, end, false);
+      }
+      return new int[] {start, end};
+    }
+
+    private static boolean isNull(Column column, int i) {
+      return column.representation.getObject(column.dataSet, i) == null;
+    }
+
+    /** Returns the first row in a range that is not null ({@code nullsFirst}
+     * true, and the range starts with nulls), or that is null
+     * ({@code nullsFirst} false, and the range ends with nulls). */
+    private static int searchNull(Column column, int start, int end,
+        boolean nullsFirst) {
+      int lo = start;
+      int hi = end;
+      while (lo < hi) {
+        final int mid = (lo + hi) >>> 1;
+        if (isNull(column, mid) == nullsFirst) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    /** Returns the first row in a range of a sorted column whose value is
+     * greater than or equal to ({@code upper} false), or greater than
+     * ({@code upper} true), the predicate's value. The range contains no
+     * null values; see {@link #nonNullRange}. */
+    private static int search(Column column, ColumnPredicate predicate,
+        int start, int end, boolean upper) {
+      int lo = start;
+      int hi = end;
+      while (lo < hi) {
+        final int mid = (lo + hi) >>> 1;
+        final int c = predicate.compare(
+            column.representation.getObject(column.dataSet, mid));
+        if (c < 0 || upper && c == 0) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    private synchronized ZoneMap zoneMap(int ordinal) {
+      if (zoneMaps[ordinal] == null) {
+        zoneMaps[ordinal] = ZoneMap.of(columns.get(ordinal), size);
+      }
+      return zoneMaps[ordinal];
+    }
+
     /** Enumerator over a table with a single column; each element
      * returned is an object. */
     private static class ObjectEnumerator implements Enumerator<Object> {
@@ -894,6 +2027,160 @@ public void reset() {
       public void close() {
       }
     }
+
+    /** Enumerator over the rows in a range that match a list of predicates;
+     * each element returned is an array of the projected columns. */
+    private static class FilterEnumerator implements Enumerator<Object[]> {
+      final int start;
+      final int end;
+      final List<Column> columns;
+      final List<ColumnPredicate> predicates;
+      final ZoneMap[] zoneMaps;
+      final List<Column> projectedColumns;
+      int i;
+
+      FilterEnumerator(int start, int end, List<Column> columns,
+          List<ColumnPredicate> predicates, ZoneMap[] zoneMaps,
+          List<Column> projectedColumns) {
+        this.start = start;
+        this.end = end;
+        this.columns = columns;
+        this.predicates = predicates;
+        this.zoneMaps = zoneMaps;
+        this.projectedColumns = projectedColumns;
+        reset();
+      }
+
+      public Object[] current() {
+        final Object[] objects = new Object[projectedColumns.size()];
+        for (int j = 0; j < objects.length; j++) {
+          final Column column = projectedColumns.get(j);
+          objects[j] = column.representation.getObject(column.dataSet, i);
+        }
+        return objects;
+      }
+
+      public boolean moveNext() {
+        for (;;) {
+          if (++i >= end) {
+            i = end;
+            return false;
+          }
+          if (i % ZoneMap.BLOCK_SIZE == 0 || i == start) {
+            final int block = i / ZoneMap.BLOCK_SIZE;
+            if (!blockMayMatch(block)) {
+              // Skip to the last row of the block.
+              i = (block + 1) * ZoneMap.BLOCK_SIZE - 1;
+              continue;
+            }
+          }
+          if (rowMatches()) {
+            return true;
+          }
+        }
+      }
+
+      private boolean blockMayMatch(int block) {
+        for (int j = 0; j < zoneMaps.length; j++) {
+          if (!predicates.get(j).mayMatch(zoneMaps[j].mins[block],
+              zoneMaps[j].maxes[block])) {
+            return false;
+          }
+        }
+        return true;
+      }
+
+      private boolean rowMatches() {
+        for (ColumnPredicate predicate : predicates) {
+          final Column column = columns.get(predicate.ordinal);
+          if (!predicate.test(
+              column.representation.getObject(column.dataSet, i))) {
+            return false;
+          }
+        }
+        return true;
+      }
+
+      public void reset() {
+        i = start - 1;
+      }
+
+      public void close() {
+      }
+    }
+
+    /** Enumerator over a table that returns batches of rows; each column of
+     * a batch is an array. Copies a range of each column's data set, using
+     * {@link System#arraycopy} if the column is already stored as an array of
+     * the required type. */
+    private static class BatchEnumerator implements Enumerator<ColumnBatch> {
+      final int rowCount;
+      final List<Column> columns;
+      final Class[] columnClasses;
+      final int batchSize;
+      int start;
+      ColumnBatch current;
+
+      BatchEnumerator(int rowCount, List<Column> columns,
+          Class[] columnClasses, int batchSize) {
+        this.rowCount = rowCount;
+        this.columns = columns;
+        this.columnClasses = columnClasses;
+        this.batchSize = batchSize;
+        reset();
+      }
+
+      public ColumnBatch current() {
+        return current;
+      }
+
+      public boolean moveNext() {
+        start += batchSize;
+        if (start >= rowCount) {
+          current = null;
+          return false;
+        }
+        final int n = Math.min(batchSize, rowCount - start);
+        final Object[] arrays = new Object[columns.size()];
+        for (int j = 0; j < arrays.length; j++) {
+          final Column column = columns.get(j);
+          final Object array = ColumnBatch.allocate(columnClasses[j], n);
+          if (isCopyable(column, array)) {
+            System.arraycopy(column.dataSet, start, array, 0, n);
+          } else {
+            for (int i = 0; i < n; i++) {
+              Array.set(array, i,
+                  column.representation.getObject(column.dataSet, start + i));
+            }
+          }
+          arrays[j] = array;
+        }
+        current = new ColumnBatch(arrays, null, n);
+        return true;
+      }
+
+      private static boolean isCopyable(Column column, Object array) {
+        switch (column.representation.getType()) {
+        case OBJECT_ARRAY:
+        case PRIMITIVE_ARRAY:
+          final Class source = column.dataSet.getClass().getComponentType();
+          final Class target = array.getClass().getComponentType();
+          return target.isPrimitive()
+              ? target == source
+              : !source.isPrimitive();
+        default:
+          return false;
+        }
+      }
+
+      public void reset() {
+        start = -batchSize;
+        current = null;
+      }
+
+      public void close() {
+      }
+    }
   }
 }
 
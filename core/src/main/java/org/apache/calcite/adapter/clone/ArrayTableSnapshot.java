@@ -0,0 +1,633 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.clone;
+
+import org.apache.calcite.avatica.util.ByteString;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.util.Pair;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the contents of an {@link ArrayTable} as a binary,
+ * columnar file.
+ *
+ * <p>When a snapshot is read, blocks of primitive values (including the codes
+ * of dictionary-encoded columns) are memory-mapped, not copied, and become
+ * {@link ArrayTable.DirectPrimitiveArray} and
+ * {@link ArrayTable.DirectBitSlicedPrimitiveArray} columns. So the time to
+ * read a snapshot depends on the number of objects (such as strings and
+ * dictionary entries) that it contains, but not on the number of rows of
+ * primitive values.
+ *
+ * <p>The file consists of a header (magic number, version, fingerprint of
+ * the row type, row count and collations), then each column's cardinality,
+ * representation and data.
+ * Numbers are big-endian, and blocks of primitive values start at a multiple
+ * of 8 bytes.
+ */
+class ArrayTableSnapshot {
+  private static final int MAGIC = 0x43414c43; // "CALC"
+  private static final int VERSION = 2;
+
+  // Tags for values in object columns and dictionaries.
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INTEGER = 2;
+  private static final byte LONG = 3;
+  private static final byte SHORT = 4;
+  private static final byte BYTE = 5;
+  private static final byte BOOLEAN = 6;
+  private static final byte CHARACTER = 7;
+  private static final byte FLOAT = 8;
+  private static final byte DOUBLE = 9;
+  private static final byte BIG_DECIMAL = 10;
+  private static final byte BYTE_STRING = 11;
+
+  private ArrayTableSnapshot() {}
+
+  /** Returns a string that identifies a row type: the number of fields, and
+   * the name, type and nullability of each. A snapshot whose fingerprint
+   * differs from that of the table's current row type is stale. */
+  static String fingerprint(RelDataType rowType) {
+    final StringBuilder b = new StringBuilder();
+    b.append(rowType.getFieldCount());
+    for (RelDataTypeField field : rowType.getFieldList()) {
+      b.append(';').append(field.getName())
+          .append(':').append(field.getType().getFullTypeString());
+    }
+    return b.toString();
+  }
+
+  /** Writes the contents of a table to a file.
+   *
+   * <p>Writes to a temporary file, then renames it, so that a reader never
+   * sees a partial snapshot.
+   *
+   * @param content Contents of the table
+   * @param fingerprint Fingerprint of the table's row type; see
+   *                    {@link #fingerprint(RelDataType)}
+   * @param file File to write
+   * @throws UnsupportedOperationException if a column's representation, or
+   *   one of its values, cannot be written
+   */
+  static void write(ArrayTable.Content content, String fingerprint,
+      File file) throws IOException {
+    final File tmpFile = new File(file.getPath() + ".tmp");
+    boolean success = false;
+    try {
+      try (Writer writer = new Writer(new FileOutputStream(tmpFile))) {
+        writer.writeContent(content, fingerprint);
+      }
+      Files.move(tmpFile.toPath(), file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+      success = true;
+    } finally {
+      if (!success) {
+        //noinspection ResultOfMethodCallIgnored
+        tmpFile.delete();
+      }
+    }
+  }
+
+  /** Reads the contents of a table from a file, or returns null if the file
+   * was written by a different version, or for a different row type, and
+   * needs to be re-written. */
+  static ArrayTable.Content read(File file, String fingerprint)
+      throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+         Reader reader =
+             new Reader(new FileInputStream(file), raf.getChannel())) {
+      return reader.readContent(fingerprint);
+    }
+  }
+
+  /** Writes a snapshot, keeping track of the number of bytes written. */
+  private static class Writer extends FilterOutputStream {
+    private final DataOutputStream data;
+    private long position;
+
+    Writer(OutputStream out) {
+      super(new BufferedOutputStream(out));
+      this.data = new DataOutputStream(this);
+    }
+
+    @Override public void write(int b) throws IOException {
+      super.out.write(b);
+      ++position;
+    }
+
+    @Override public void write(byte[] b, int off, int len)
+        throws IOException {
+      super.out.write(b, off, len);
+      position += len;
+    }
+
+    void writeContent(ArrayTable.Content content, String fingerprint)
+        throws IOException {
+      data.writeInt(MAGIC);
+      data.writeInt(VERSION);
+      final byte[] bytes = fingerprint.getBytes(StandardCharsets.UTF_8);
+      data.writeInt(bytes.length);
+      data.write(bytes);
+      data.writeInt(content.size);
+      data.writeInt(content.collations.size());
+      for (RelCollation collation : content.collations) {
+        final List<RelFieldCollation> fieldCollations =
+            collation.getFieldCollations();
+        data.writeInt(fieldCollations.size());
+        for (RelFieldCollation fieldCollation : fieldCollations) {
+          data.writeInt(fieldCollation.getFieldIndex());
+          data.writeUTF(fieldCollation.getDirection().name());
+          data.writeUTF(fieldCollation.nullDirection.name());
+        }
+      }
+      data.writeInt(content.columns.size());
+      for (ArrayTable.Column column : content.columns) {
+        data.writeInt(column.cardinality);
+        writeColumn(column.representation, column.dataSet);
+      }
+      data.flush();
+    }
+
+    private void writeColumn(ArrayTable.Representation representation,
+        Object dataSet) throws IOException {
+      final ArrayTable.RepresentationType type = representation.getType();
+      switch (type) {
+      case CONSTANT: {
+        final Pair<Object, Integer> pair = ArrayTable.toPair(dataSet);
+        data.writeByte(type.ordinal());
+        data.writeInt(((ArrayTable.Constant) representation).ordinal);
+        writeValue(pair.left);
+        data.writeInt(pair.right);
+        return;
+      }
+      case OBJECT_ARRAY: {
+        final Comparable[] values = (Comparable[]) dataSet;
+        data.writeByte(type.ordinal());
+        data.writeInt(((ArrayTable.ObjectArray) representation).ordinal);
+        writeValues(values);
+        return;
+      }
+      case OBJECT_DICTIONARY: {
+        final ArrayTable.ObjectDictionary dictionary =
+            (ArrayTable.ObjectDictionary) representation;
+        final Pair<Object, Comparable[]> pair = ArrayTable.toPair(dataSet);
+        data.writeByte(type.ordinal());
+        data.writeInt(dictionary.ordinal);
+        writeColumn(dictionary.representation, pair.left);
+        writeValues(pair.right);
+        return;
+      }
+      case PRIMITIVE_ARRAY: {
+        final ArrayTable.PrimitiveArray array =
+            (ArrayTable.PrimitiveArray) representation;
+        writePrimitiveHeader(array.ordinal, array.primitive, array.p);
+        writePrimitives(array.primitive, dataSet);
+        return;
+      }
+      case DIRECT_PRIMITIVE_ARRAY: {
+        final ArrayTable.DirectPrimitiveArray array =
+            (ArrayTable.DirectPrimitiveArray) representation;
+        writePrimitiveHeader(array.ordinal, array.primitive, array.p);
+        writePrimitives(array.primitive, (ByteBuffer) dataSet);
+        return;
+      }
+      case BIT_SLICED_PRIMITIVE_ARRAY:
+      case DIRECT_BIT_SLICED_PRIMITIVE_ARRAY: {
+        final ArrayTable.BitSlicedPrimitiveArray array =
+            (ArrayTable.BitSlicedPrimitiveArray) representation;
+        final int wordCount = array.wordCount(dataSet);
+        data.writeByte(
+            ArrayTable.RepresentationType.DIRECT_BIT_SLICED_PRIMITIVE_ARRAY
+                .ordinal());
+        data.writeInt(array.ordinal);
+        data.writeByte(array.bitCount);
+        data.writeByte(array.primitive.ordinal());
+        data.writeBoolean(array.signed);
+        data.writeInt(wordCount << 3);
+        align();
+        for (int i = 0; i < wordCount; i++) {
+          data.writeLong(array.word(dataSet, i));
+        }
+        return;
+      }
+      default:
+        throw new UnsupportedOperationException("cannot write " + type);
+      }
+    }
+
+    /** Writes the header of a column of primitive values; both on-heap and
+     * off-heap arrays are read back as
+     * {@link ArrayTable.DirectPrimitiveArray}. */
+    private void writePrimitiveHeader(int ordinal, Primitive primitive,
+        Primitive p) throws IOException {
+      data.writeByte(
+          ArrayTable.RepresentationType.DIRECT_PRIMITIVE_ARRAY.ordinal());
+      data.writeInt(ordinal);
+      data.writeByte(primitive.ordinal());
+      data.writeByte(p.ordinal());
+    }
+
+    /** Writes an array of primitive values. */
+    private void writePrimitives(Primitive primitive, Object array)
+        throws IOException {
+      switch (primitive) {
+      case BOOLEAN:
+        final boolean[] booleans = (boolean[]) array;
+        data.writeInt(booleans.length);
+        align();
+        for (boolean v : booleans) {
+          data.writeBoolean(v);
+        }
+        break;
+      case BYTE:
+        final byte[] bytes = (byte[]) array;
+        data.writeInt(bytes.length);
+        align();
+        data.write(bytes);
+        break;
+      case CHAR:
+        final char[] chars = (char[]) array;
+        data.writeInt(chars.length << 1);
+        align();
+        for (char v : chars) {
+          data.writeChar(v);
+        }
+        break;
+      case SHORT:
+        final short[] shorts = (short[]) array;
+        data.writeInt(shorts.length << 1);
+        align();
+        for (short v : shorts) {
+          data.writeShort(v);
+        }
+        break;
+      case INT:
+        final int[] ints = (int[]) array;
+        data.writeInt(ints.length << 2);
+        align();
+        for (int v : ints) {
+          data.writeInt(v);
+        }
+        break;
+      case LONG:
+        final long[] longs = (long[]) array;
+        data.writeInt(longs.length << 3);
+        align();
+        for (long v : longs) {
+          data.writeLong(v);
+        }
+        break;
+      case FLOAT:
+        final float[] floats = (float[]) array;
+        data.writeInt(floats.length << 2);
+        align();
+        for (float v : floats) {
+          data.writeFloat(v);
+        }
+        break;
+      case DOUBLE:
+        final double[] doubles = (double[]) array;
+        data.writeInt(doubles.length << 3);
+        align();
+        for (double v : doubles) {
+          data.writeDouble(v);
+        }
+        break;
+      default:
+        throw new AssertionError(primitive + " unexpected");
+      }
+    }
+
+    /** Writes the primitive values in a buffer, in big-endian order. */
+    private void writePrimitives(Primitive primitive, ByteBuffer buffer)
+        throws IOException {
+      final int length = buffer.limit();
+      data.writeInt(length);
+      align();
+      int i = 0;
+      switch (primitive) {
+      case BOOLEAN:
+      case BYTE:
+        for (; i < length; i++) {
+          data.writeByte(buffer.get(i));
+        }
+        break;
+      case CHAR:
+      case SHORT:
+        for (; i < length; i += 2) {
+          data.writeShort(buffer.getShort(i));
+        }
+        break;
+      case INT:
+      case FLOAT:
+        for (; i < length; i += 4) {
+          data.writeInt(buffer.getInt(i));
+        }
+        break;
+      case LONG:
+      case DOUBLE:
+        for (; i < length; i += 8) {
+          data.writeLong(buffer.getLong(i));
+        }
+        break;
+      default:
+        throw new AssertionError(primitive + " unexpected");
+      }
+    }
+
+    /** Pads with zeros to a multiple of 8 bytes. */
+    private void align() throws IOException {
+      while ((position & 7) != 0) {
+        data.writeByte(0);
+      }
+    }
+
+    private void writeValues(Comparable[] values) throws IOException {
+      data.writeInt(values.length);
+      for (Comparable value : values) {
+        writeValue(value);
+      }
+    }
+
+    private void writeValue(Object value) throws IOException {
+      if (value == null) {
+        data.writeByte(NULL);
+      } else if (value instanceof String) {
+        data.writeByte(STRING);
+        writeBytes(((String) value).getBytes(StandardCharsets.UTF_8));
+      } else if (value instanceof Integer) {
+        data.writeByte(INTEGER);
+        data.writeInt((Integer) value);
+      } else if (value instanceof Long) {
+        data.writeByte(LONG);
+        data.writeLong((Long) value);
+      } else if (value instanceof Short) {
+        data.writeByte(SHORT);
+        data.writeShort((Short) value);
+      } else if (value instanceof Byte) {
+        data.writeByte(BYTE);
+        data.writeByte((Byte) value);
+      } else if (value instanceof Boolean) {
+        data.writeByte(BOOLEAN);
+        data.writeBoolean((Boolean) value);
+      } else if (value instanceof Character) {
+        data.writeByte(CHARACTER);
+        data.writeChar((Character) value);
+      } else if (value instanceof Float) {
+        data.writeByte(FLOAT);
+        data.writeFloat((Float) value);
+      } else if (value instanceof Double) {
+        data.writeByte(DOUBLE);
+        data.writeDouble((Double) value);
+      } else if (value instanceof BigDecimal) {
+        data.writeByte(BIG_DECIMAL);
+        writeBytes(value.toString().getBytes(StandardCharsets.UTF_8));
+      } else if (value instanceof ByteString) {
+        data.writeByte(BYTE_STRING);
+        writeBytes(((ByteString) value).getBytes());
+      } else {
+        throw new UnsupportedOperationException("cannot write value of "
+            + value.getClass());
+      }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+      data.writeInt(bytes.length);
+      data.write(bytes);
+    }
+  }
+
+  /** Reads a snapshot, keeping track of the number of bytes read so that it
+   * can map blocks of primitive values. */
+  private static class Reader extends FilterInputStream {
+    private final DataInputStream data;
+    private final FileChannel channel;
+    private long position;
+
+    Reader(InputStream in, FileChannel channel) {
+      super(new BufferedInputStream(in));
+      this.data = new DataInputStream(this);
+      this.channel = channel;
+    }
+
+    @Override public int read() throws IOException {
+      final int b = super.in.read();
+      if (b >= 0) {
+        ++position;
+      }
+      return b;
+    }
+
+    @Override public int read(byte[] b, int off, int len) throws IOException {
+      final int n = super.in.read(b, off, len);
+      if (n > 0) {
+        position += n;
+      }
+      return n;
+    }
+
+    @Override public long skip(long n) throws IOException {
+      final long skipped = super.in.skip(n);
+      position += skipped;
+      return skipped;
+    }
+
+    @Override public boolean markSupported() {
+      return false;
+    }
+
+    ArrayTable.Content readContent(String fingerprint) throws IOException {
+      if (data.readInt() != MAGIC) {
+        throw new IOException("not a snapshot");
+      }
+      if (data.readInt() != VERSION) {
+        return null;
+      }
+      final byte[] bytes = new byte[data.readInt()];
+      data.readFully(bytes);
+      if (!fingerprint.equals(new String(bytes, StandardCharsets.UTF_8))) {
+        return null;
+      }
+      final int size = data.readInt();
+      final int collationCount = data.readInt();
+      final List<RelCollation> collations = new ArrayList<>();
+      for (int i = 0; i < collationCount; i++) {
+        final int fieldCount = data.readInt();
+        final List<RelFieldCollation> fieldCollations = new ArrayList<>();
+        for (int j = 0; j < fieldCount; j++) {
+          final int fieldIndex = data.readInt();
+          final RelFieldCollation.Direction direction =
+              RelFieldCollation.Direction.valueOf(data.readUTF());
+          final RelFieldCollation.NullDirection nullDirection =
+              RelFieldCollation.NullDirection.valueOf(data.readUTF());
+          fieldCollations.add(
+              new RelFieldCollation(fieldIndex, direction, nullDirection));
+        }
+        collations.add(RelCollations.of(fieldCollations));
+      }
+      final int columnCount = data.readInt();
+      final List<ArrayTable.Column> columns = new ArrayList<>();
+      for (int i = 0; i < columnCount; i++) {
+        final int cardinality = data.readInt();
+        final Pair<ArrayTable.Representation, Object> pair = readColumn();
+        columns.add(
+            new ArrayTable.Column(pair.left, pair.right, cardinality));
+      }
+      return new ArrayTable.Content(columns, size, collations);
+    }
+
+    private Pair<ArrayTable.Representation, Object> readColumn()
+        throws IOException {
+      final ArrayTable.RepresentationType type =
+          ArrayTable.RepresentationType.values()[data.readByte()];
+      final int ordinal = data.readInt();
+      switch (type) {
+      case CONSTANT: {
+        final Object value = readValue();
+        final int size = data.readInt();
+        return Pair.<ArrayTable.Representation, Object>of(
+            new ArrayTable.Constant(ordinal), Pair.of(value, size));
+      }
+      case OBJECT_ARRAY:
+        return Pair.<ArrayTable.Representation, Object>of(
+            new ArrayTable.ObjectArray(ordinal), readValues());
+      case OBJECT_DICTIONARY: {
+        final Pair<ArrayTable.Representation, Object> codes = readColumn();
+        final Comparable[] values = readValues();
+        return Pair.<ArrayTable.Representation, Object>of(
+            new ArrayTable.ObjectDictionary(ordinal, codes.left),
+            Pair.of(codes.right, values));
+      }
+      case DIRECT_PRIMITIVE_ARRAY: {
+        final Primitive primitive = Primitive.values()[data.readByte()];
+        final Primitive p = Primitive.values()[data.readByte()];
+        return Pair.<ArrayTable.Representation, Object>of(
+            new ArrayTable.DirectPrimitiveArray(ordinal, primitive, p),
+            map());
+      }
+      case DIRECT_BIT_SLICED_PRIMITIVE_ARRAY: {
+        final int bitCount = data.readByte();
+        final Primitive primitive = Primitive.values()[data.readByte()];
+        final boolean signed = data.readBoolean();
+        return Pair.<ArrayTable.Representation, Object>of(
+            new ArrayTable.DirectBitSlicedPrimitiveArray(ordinal, bitCount,
+                primitive, signed),
+            map());
+      }
+      default:
+        throw new IOException("unexpected representation " + type);
+      }
+    }
+
+    /** Maps a block of primitive values, and skips over it. */
+    private ByteBuffer map() throws IOException {
+      final int length = data.readInt();
+      skipFully((8 - (position & 7)) & 7);
+      final ByteBuffer buffer =
+          channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+      skipFully(length);
+      return buffer.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    private void skipFully(long n) throws IOException {
+      while (n > 0) {
+        final long skipped = skip(n);
+        if (skipped <= 0) {
+          throw new EOFException();
+        }
+        n -= skipped;
+      }
+    }
+
+    private Comparable[] readValues() throws IOException {
+      final Comparable[] values = new Comparable[data.readInt()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = readValue();
+      }
+      return values;
+    }
+
+    private Comparable readValue() throws IOException {
+      final byte tag = data.readByte();
+      switch (tag) {
+      case NULL:
+        return null;
+      case STRING:
+        return new String(readBytes(), StandardCharsets.UTF_8);
+      case INTEGER:
+        return data.readInt();
+      case LONG:
+        return data.readLong();
+      case SHORT:
+        return data.readShort();
+      case BYTE:
+        return data.readByte();
+      case BOOLEAN:
+        return data.readBoolean();
+      case CHARACTER:
+        return data.readChar();
+      case FLOAT:
+        return data.readFloat();
+      case DOUBLE:
+        return data.readDouble();
+      case BIG_DECIMAL:
+        return new BigDecimal(new String(readBytes(), StandardCharsets.UTF_8));
+      case BYTE_STRING:
+        return new ByteString(readBytes());
+      default:
+        throw new IOException("unexpected value tag " + tag);
+      }
+    }
+
+    private byte[] readBytes() throws IOException {
+      final byte[] bytes = new byte[data.readInt()];
+      data.readFully(bytes);
+      return bytes;
+    }
+  }
+}
+
+// End ArrayTableSnapshot.java
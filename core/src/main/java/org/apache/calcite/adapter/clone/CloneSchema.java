@@ -16,16 +16,25 @@
  */
 package org.apache.calcite.adapter.clone;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.adapter.jdbc.JdbcSchema;
 import org.apache.calcite.avatica.ColumnMetaData;
 import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.CalciteSchema;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.Queryable;
+import org.apache.calcite.model.ModelHandler;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rel.type.RelProtoDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.FilterableTable;
+import org.apache.calcite.schema.ProjectableFilterableTable;
 import org.apache.calcite.schema.QueryableTable;
 import org.apache.calcite.schema.Schema;
 import org.apache.calcite.schema.SchemaFactory;
@@ -33,12 +42,23 @@
 import org.apache.calcite.schema.Schemas;
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.SqlTypeFamily;
 
+import com.google.common.base.Function;
 import com.google.common.base.Supplier;
-import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Type;
+import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -47,13 +67,37 @@
 
 /**
  * Schema that contains in-memory copies of tables from a JDBC schema.
+ *
+ * <p>If the schema stores its tables off-heap, their memory is released when
+ * their contents are garbage-collected; call {@link #close()} to discard the
+ * contents when they are no longer needed.
+ *
+ * <p>If the schema has a snapshot directory, the contents of each table are
+ * written to a file in that directory after they are first loaded, and are
+ * read (mostly by memory-mapping) from that file, rather than from the
+ * source, on subsequent loads, including in later JVMs. Snapshots are not
+ * refreshed when the source changes, except by {@link #refresh()}; delete
+ * the files to reload the data.
+ *
+ * <p>A table whose source is append-only can have an append key, a column
+ * whose values never decrease as rows are added. {@link #refresh()} then appends
+ * new rows to the table, and rewrites its snapshot, rather than reloading
+ * it.
  */
 public class CloneSchema extends AbstractSchema {
   // TODO: implement 'driver' property
   // TODO: implement 'source' property
   // TODO: test Factory
 
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(CloneSchema.class);
+
   private final SchemaPlus sourceSchema;
+  private final boolean filterable;
+  private final boolean offHeap;
+  private final File snapshotDirectory;
+  private final ImmutableMap<String, String> appendKeys;
+  private Map<String, Table> tableMap;
 
   /**
    * Creates a CloneSchema.
@@ -61,11 +105,127 @@ public class CloneSchema extends AbstractSchema {
    * @param sourceSchema JDBC data source
    */
   public CloneSchema(SchemaPlus sourceSchema) {
+    this(sourceSchema, false);
+  }
+
+  /**
+   * Creates a CloneSchema whose tables optionally apply filters and projects
+   * while scanning.
+   *
+   * @param sourceSchema JDBC data source
+   * @param filterable Whether tables implement
+   *                   {@link org.apache.calcite.schema.ProjectableFilterableTable}
+   */
+  public CloneSchema(SchemaPlus sourceSchema, boolean filterable) {
+    this(sourceSchema, filterable, false);
+  }
+
+  /**
+   * Creates a CloneSchema whose tables optionally apply filters and projects
+   * while scanning, and optionally store their data off-heap.
+   *
+   * @param sourceSchema JDBC data source
+   * @param filterable Whether tables implement
+   *                   {@link org.apache.calcite.schema.ProjectableFilterableTable}
+   * @param offHeap Whether tables store primitive values in direct buffers
+   *                outside the Java heap
+   */
+  public CloneSchema(SchemaPlus sourceSchema, boolean filterable,
+      boolean offHeap) {
+    this(sourceSchema, filterable, offHeap, null);
+  }
+
+  /**
+   * Creates a CloneSchema that optionally saves snapshots of its tables.
+   *
+   * @param sourceSchema JDBC data source
+   * @param filterable Whether tables implement
+   *                   {@link org.apache.calcite.schema.ProjectableFilterableTable}
+   * @param offHeap Whether tables store primitive values in direct buffers
+   *                outside the Java heap
+   * @param snapshotDirectory Directory in which to write and read snapshots
+   *                          of tables, or null
+   */
+  public CloneSchema(SchemaPlus sourceSchema, boolean filterable,
+      boolean offHeap, File snapshotDirectory) {
+    this(sourceSchema, filterable, offHeap, snapshotDirectory,
+        ImmutableMap.<String, String>of());
+  }
+
+  /**
+   * Creates a CloneSchema whose tables optionally have append keys.
+   *
+   * @param sourceSchema JDBC data source
+   * @param filterable Whether tables implement
+   *                   {@link org.apache.calcite.schema.ProjectableFilterableTable}
+   * @param offHeap Whether tables store primitive values in direct buffers
+   *                outside the Java heap
+   * @param snapshotDirectory Directory in which to write and read snapshots
+   *                          of tables, or null
+   * @param appendKeys Map from table name to the name of its append key
+   *                   column; see {@link #refresh()}
+   */
+  public CloneSchema(SchemaPlus sourceSchema, boolean filterable,
+      boolean offHeap, File snapshotDirectory,
+      Map<String, String> appendKeys) {
     super();
     this.sourceSchema = sourceSchema;
+    this.filterable = filterable;
+    this.offHeap = offHeap;
+    this.snapshotDirectory = snapshotDirectory;
+    this.appendKeys = ImmutableMap.copyOf(appendKeys);
+  }
+
+  /** Discards the contents of the tables of this schema, so that their
+   * off-heap memory is released when they are garbage-collected. Scans that
+   * are in progress continue to read the contents until they finish. A table
+   * that is scanned again reloads its contents. */
+  public synchronized void close() {
+    if (tableMap != null) {
+      for (Table table : tableMap.values()) {
+        if (table instanceof ArrayTable) {
+          ((ArrayTable) table).close();
+        }
+      }
+    }
+  }
+
+  /** Appends to each table that has an append key the rows that have been
+   * added to its source since it was loaded. Tables whose contents have not
+   * been loaded yet are not affected; they will read all rows when they are
+   * loaded.
+   *
+   * <p>The source is read for rows whose append key is not less than the
+   * greatest key of the rows already loaded. If the source is a JDBC schema,
+   * or a filterable table, it is asked for only those rows; otherwise it is
+   * read in full, and the other rows are skipped. Of the rows whose key
+   * equals the greatest key, those that are equal to rows already loaded are
+   * skipped, and the others are appended. So that no rows are missed, the
+   * key of a new row must not be less than the keys of existing rows, and
+   * must not be null; a row whose key is null is not appended.
+   *
+   * <p>Scans that are in progress, or that start while a table is being
+   * refreshed, read the previous contents. */
+  public void refresh() {
+    final Map<String, Table> tableMap = getTableMap();
+    for (String name : appendKeys.keySet()) {
+      final Table table = tableMap.get(name);
+      if (table instanceof ArrayTable) {
+        ((ArrayTable) table).refresh();
+      }
+    }
   }
 
-  @Override protected Map<String, Table> getTableMap() {
+  @Override protected synchronized Map<String, Table> getTableMap() {
+    // Create the tables once, so that close() can find the contents they
+    // have loaded.
+    if (tableMap == null) {
+      tableMap = createTableMap();
+    }
+    return tableMap;
+  }
+
+  private Map<String, Table> createTableMap() {
     final Map<String, Table> map = new LinkedHashMap<>();
     for (String name : sourceSchema.getTableNames()) {
       final Table table = sourceSchema.getTable(name);
@@ -84,8 +244,103 @@ private Table createCloneTable(QueryProvider queryProvider,
         sourceTable.asQueryable(queryProvider, sourceSchema, name);
     final JavaTypeFactory typeFactory =
         ((CalciteConnection) queryProvider).getTypeFactory();
-    return createCloneTable(typeFactory, Schemas.proto(sourceTable),
-        ImmutableList.<RelCollation>of(), null, queryable);
+    final File snapshotFile = snapshotDirectory == null
+        ? null
+        : new File(snapshotDirectory, snapshotFileName(name));
+    final RelProtoDataType protoRowType = Schemas.proto(sourceTable);
+    final int appendKey;
+    final Function<Comparable, Enumerable<Object>> appendSource;
+    final String appendKeyName = appendKeys.get(name);
+    if (appendKeyName == null) {
+      appendKey = -1;
+      appendSource = null;
+    } else {
+      final RelDataType rowType = protoRowType.apply(typeFactory);
+      final RelDataTypeField field =
+          rowType.getField(appendKeyName, true, false);
+      if (field == null) {
+        throw new IllegalArgumentException("append key column '"
+            + appendKeyName + "' not found in table '" + name + "'");
+      }
+      appendKey = field.getIndex();
+      appendSource =
+          appendSource(typeFactory, sourceTable, name, rowType, field);
+    }
+    return createCloneTable(typeFactory, protoRowType,
+        ImmutableList.<RelCollation>of(), null, queryable, filterable,
+        offHeap, snapshotFile, appendKey, appendSource);
+  }
+
+  /** Returns a function that, given the greatest append key of the rows that
+   * have been loaded, returns the rows of a source table whose append key is
+   * not less, by pushing the condition down to the source; or returns null if
+   * the source cannot apply the condition, and must be read in full.
+   *
+   * <p>A JDBC source applies the condition in SQL, if the key is numeric or
+   * a string. A {@link FilterableTable} or
+   * {@link ProjectableFilterableTable} source is given the condition as a
+   * filter, if the key is numeric and the table has more than one column.
+   * Such a source may ignore the filter; the loader applies it again. */
+  private Function<Comparable, Enumerable<Object>> appendSource(
+      final JavaTypeFactory typeFactory, final QueryableTable sourceTable,
+      final String name, RelDataType rowType, final RelDataTypeField field) {
+    final SqlTypeFamily family =
+        field.getType().getSqlTypeName().getFamily();
+    final Schema schema = CalciteSchema.from(sourceSchema).schema;
+    if (schema instanceof JdbcSchema) {
+      if (family != SqlTypeFamily.NUMERIC
+          && family != SqlTypeFamily.CHARACTER) {
+        return null;
+      }
+      final JdbcSchema jdbcSchema = (JdbcSchema) schema;
+      return new Function<Comparable, Enumerable<Object>>() {
+        public Enumerable<Object> apply(Comparable maxKey) {
+          //noinspection unchecked
+          return (Enumerable) jdbcSchema.scanNotLessThan(typeFactory, name,
+              field.getName(), maxKey);
+        }
+      };
+    }
+    if (family != SqlTypeFamily.NUMERIC
+        || rowType.getFieldCount() == 1
+        || !(sourceTable instanceof FilterableTable
+            || sourceTable instanceof ProjectableFilterableTable)) {
+      return null;
+    }
+    SchemaPlus rootSchema = sourceSchema;
+    while (rootSchema.getParentSchema() != null) {
+      rootSchema = rootSchema.getParentSchema();
+    }
+    final DataContext root =
+        Schemas.createDataContext(MATERIALIZATION_CONNECTION, rootSchema);
+    final RexBuilder rexBuilder = new RexBuilder(typeFactory);
+    return new Function<Comparable, Enumerable<Object>>() {
+      public Enumerable<Object> apply(Comparable maxKey) {
+        final List<RexNode> filters = new ArrayList<>();
+        filters.add(
+            rexBuilder.makeCall(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL,
+                rexBuilder.makeInputRef(field.getType(), field.getIndex()),
+                rexBuilder.makeLiteral(maxKey,
+                    typeFactory.createTypeWithNullability(field.getType(),
+                        false),
+                    false)));
+        //noinspection unchecked
+        return sourceTable instanceof ProjectableFilterableTable
+            ? (Enumerable) ((ProjectableFilterableTable) sourceTable)
+                .scan(root, filters, null)
+            : (Enumerable) ((FilterableTable) sourceTable)
+                .scan(root, filters);
+      }
+    };
+  }
+
+  /** Returns the name of the file that holds the snapshot of a table. */
+  private static String snapshotFileName(String tableName) {
+    try {
+      return URLEncoder.encode(tableName, "UTF-8") + ".snapshot";
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
   }
 
   @Deprecated // to be removed before 2.0
@@ -100,6 +355,50 @@ public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
   public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
       final RelProtoDataType protoRowType, final List<RelCollation> collations,
       final List<ColumnMetaData.Rep> repList, final Enumerable<T> source) {
+    return createCloneTable(typeFactory, protoRowType, collations, repList,
+        source, false);
+  }
+
+  /** Creates a table that holds an in-memory copy of a source.
+   *
+   * <p>If {@code filterable}, the table implements
+   * {@link org.apache.calcite.schema.ProjectableFilterableTable}, and scans
+   * decode only the columns that are needed and skip rows that cannot match
+   * comparisons with literals. The planner will then prefer a
+   * {@link org.apache.calcite.interpreter.Bindables.BindableTableScan} to an
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableTableScan} for
+   * filtered scans of the table. */
+  public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
+      final RelProtoDataType protoRowType, final List<RelCollation> collations,
+      final List<ColumnMetaData.Rep> repList, final Enumerable<T> source,
+      boolean filterable) {
+    return createCloneTable(typeFactory, protoRowType, collations, repList,
+        source, filterable, false);
+  }
+
+  /** Creates a table that holds an in-memory copy of a source, optionally
+   * filterable (see
+   * {@link #createCloneTable(JavaTypeFactory, RelProtoDataType, List, List, Enumerable, boolean)})
+   * and optionally off-heap.
+   *
+   * <p>If {@code offHeap}, columns of primitive values, and the codes of
+   * dictionary-encoded columns, are stored in direct buffers, which do not
+   * occupy the Java heap; other values, such as strings, remain on the heap.
+   * The memory is released when the table's contents are garbage-collected;
+   * if the table belongs to a schema, {@link #close()} discards them. */
+  public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
+      final RelProtoDataType protoRowType, final List<RelCollation> collations,
+      final List<ColumnMetaData.Rep> repList, final Enumerable<T> source,
+      boolean filterable, final boolean offHeap) {
+    return createCloneTable(typeFactory, protoRowType, collations, repList,
+        source, filterable, offHeap, null, -1, null);
+  }
+
+  private static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
+      final RelProtoDataType protoRowType, final List<RelCollation> collations,
+      final List<ColumnMetaData.Rep> repList, final Enumerable<T> source,
+      boolean filterable, boolean offHeap, File snapshotFile,
+      int appendKey, Function<Comparable, Enumerable<T>> appendSource) {
     final Type elementType;
     if (source instanceof QueryableTable) {
       elementType = ((QueryableTable) source).getElementType();
@@ -112,24 +411,121 @@ public static <T> Table createCloneTable(final JavaTypeFactory typeFactory,
     } else {
       elementType = Object[].class;
     }
-    return new ArrayTable(
-        elementType,
-        protoRowType,
-        Suppliers.memoize(
-            new Supplier<ArrayTable.Content>() {
-              public ArrayTable.Content get() {
-                final ColumnLoader loader =
-                    new ColumnLoader<>(typeFactory, source, protoRowType,
-                        repList);
-                final List<RelCollation> collation2 =
-                    collations.isEmpty()
-                        && loader.sortField >= 0
-                        ? RelCollations.createSingleton(loader.sortField)
-                        : collations;
-                return new ArrayTable.Content(loader.representationValues,
-                    loader.size(), collation2);
-              }
-            }));
+    final TableLoader<T> loader =
+        new TableLoader<>(typeFactory, protoRowType, collations, repList,
+            source, offHeap, snapshotFile, appendKey, appendSource);
+    final Supplier<ArrayTable.Content> supplier =
+        new ArrayTable.ContentSupplier(loader, appendKey < 0 ? null : loader);
+    return filterable
+        ? new ArrayTable.Filterable(elementType, protoRowType, supplier)
+        : new ArrayTable(elementType, protoRowType, supplier);
+  }
+
+  /** Loads the contents of a table from its source, or appends rows that
+   * have been added to the source to existing contents.
+   *
+   * <p>If there is a snapshot file, reads the contents from it if it exists,
+   * and otherwise writes the contents to it after loading them.
+   *
+   * @param <T> Element type of source table */
+  private static class TableLoader<T> implements Supplier<ArrayTable.Content>,
+      Function<ArrayTable.Content, ArrayTable.Content> {
+    private final JavaTypeFactory typeFactory;
+    private final RelProtoDataType protoRowType;
+    private final List<RelCollation> collations;
+    private final List<ColumnMetaData.Rep> repList;
+    private final Enumerable<T> source;
+    private final boolean offHeap;
+    private final File snapshotFile;
+    private final int appendKey;
+    private final Function<Comparable, Enumerable<T>> appendSource;
+
+    TableLoader(JavaTypeFactory typeFactory, RelProtoDataType protoRowType,
+        List<RelCollation> collations, List<ColumnMetaData.Rep> repList,
+        Enumerable<T> source, boolean offHeap, File snapshotFile,
+        int appendKey, Function<Comparable, Enumerable<T>> appendSource) {
+      this.typeFactory = typeFactory;
+      this.protoRowType = protoRowType;
+      this.collations = collations;
+      this.repList = repList;
+      this.source = source;
+      this.offHeap = offHeap;
+      this.snapshotFile = snapshotFile;
+      this.appendKey = appendKey;
+      this.appendSource = appendSource;
+    }
+
+    /** Returns the contents of the table; from the snapshot file, if there
+     * is one and it was written for the current row type, otherwise by
+     * reading the source (and then writing a new snapshot). */
+    public ArrayTable.Content get() {
+      if (snapshotFile != null && snapshotFile.exists()) {
+        final ArrayTable.Content content;
+        try {
+          content = ArrayTableSnapshot.read(snapshotFile, fingerprint());
+        } catch (IOException e) {
+          throw new RuntimeException("Error while reading snapshot "
+              + snapshotFile, e);
+        }
+        if (content != null) {
+          return content;
+        }
+        // The snapshot is stale. Reload, and overwrite it.
+      }
+      return load(null);
+    }
+
+    private String fingerprint() {
+      return ArrayTableSnapshot.fingerprint(protoRowType.apply(typeFactory));
+    }
+
+    /** Appends to existing contents. */
+    public ArrayTable.Content apply(ArrayTable.Content base) {
+      return load(base);
+    }
+
+    private ArrayTable.Content load(ArrayTable.Content base) {
+      Enumerable<T> source = this.source;
+      if (base != null && appendSource != null) {
+        // Read only the new rows, if the source can find them
+        final Comparable maxKey = ColumnLoader.maxKey(base, appendKey);
+        if (maxKey != null) {
+          source = appendSource.apply(maxKey);
+        }
+      }
+      final ColumnLoader loader =
+          new ColumnLoader<>(typeFactory, source, protoRowType, repList,
+              offHeap, base, appendKey);
+      if (base != null && loader.size() == base.size) {
+        // No rows were appended
+        return base;
+      }
+      final List<RelCollation> collation2 =
+          collations.isEmpty()
+              && loader.sortField >= 0
+              ? RelCollations.createSingleton(loader.sortField)
+              : collations;
+      final ArrayTable.Content content =
+          new ArrayTable.Content(loader.representationValues,
+              loader.size(), collation2);
+      if (snapshotFile != null) {
+        try {
+          final File directory = snapshotFile.getAbsoluteFile().getParentFile();
+          if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+          }
+          ArrayTableSnapshot.write(content, fingerprint(), snapshotFile);
+        } catch (UnsupportedOperationException e) {
+          // The table has values that a snapshot cannot hold. Keep it in
+          // memory only.
+        } catch (IOException e) {
+          // The contents are good; only the snapshot is missing, so the next
+          // process will have to load from the source again.
+          LOGGER.warn("Error while writing snapshot " + snapshotFile, e);
+        }
+      }
+      return content;
+    }
   }
 
   /** Schema factory that creates a
@@ -149,11 +545,32 @@ public ArrayTable.Content get() {
    *         jdbcDriver: 'com.mysql.jdbc.Driver',
    *         jdbcUrl: 'jdbc:mysql://localhost/foodmart',
    *         jdbcUser: 'foodmart',
-   *         jdbcPassword: 'foodmart'
+   *         jdbcPassword: 'foodmart',
+   *         filterable: true,
+   *         offHeap: true,
+   *         snapshotDirectory: '/var/cache/foodmart',
+   *         appendKeys: {
+   *           sales_fact_1997: 'sale_id'
+   *         }
    *       }
    *     }
    *   ]
    * }</pre></blockquote>
+   *
+   * <p>If the optional {@code filterable} operand is true, the tables apply
+   * filters and projects while scanning; see
+   * {@link CloneSchema#createCloneTable(JavaTypeFactory, RelProtoDataType, List, List, Enumerable, boolean)}.
+   *
+   * <p>If the optional {@code offHeap} operand is true, the tables store
+   * primitive values outside the Java heap; see
+   * {@link CloneSchema#createCloneTable(JavaTypeFactory, RelProtoDataType, List, List, Enumerable, boolean, boolean)}.
+   *
+   * <p>If the optional {@code snapshotDirectory} operand is set, the tables
+   * save snapshots of their contents in that directory, and read them on
+   * startup; a relative path is relative to the model file.
+   *
+   * <p>The optional {@code appendKeys} operand maps table names to the
+   * names of their append key columns; see {@link CloneSchema#refresh()}.
    */
   public static class Factory implements SchemaFactory {
     public Schema create(
@@ -163,7 +580,38 @@ public Schema create(
       SchemaPlus schema =
           parentSchema.add(name,
               JdbcSchema.create(parentSchema, name + "$source", operand));
-      return new CloneSchema(schema);
+      return new CloneSchema(schema, isTrue(operand, "filterable"),
+          isTrue(operand, "offHeap"), snapshotDirectory(operand),
+          appendKeys(operand));
+    }
+
+    private static Map<String, String> appendKeys(
+        Map<String, Object> operand) {
+      @SuppressWarnings("unchecked")
+      final Map<String, String> appendKeys =
+          (Map<String, String>) operand.get("appendKeys");
+      return appendKeys == null
+          ? ImmutableMap.<String, String>of()
+          : appendKeys;
+    }
+
+    private static File snapshotDirectory(Map<String, Object> operand) {
+      final String directory = (String) operand.get("snapshotDirectory");
+      if (directory == null) {
+        return null;
+      }
+      final File baseDirectory = (File) operand.get(
+          ModelHandler.ExtraOperand.BASE_DIRECTORY.camelName);
+      File file = new File(directory);
+      if (!file.isAbsolute() && baseDirectory != null) {
+        file = new File(baseDirectory, directory);
+      }
+      return file;
+    }
+
+    private static boolean isTrue(Map<String, Object> operand, String name) {
+      final Object value = operand.get(name);
+      return value != null && Boolean.parseBoolean(value.toString());
     }
   }
 }
@@ -20,6 +20,7 @@
 import org.apache.calcite.avatica.ColumnMetaData;
 import org.apache.calcite.avatica.util.DateTimeUtils;
 import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.linq4j.tree.Primitive;
 import org.apache.calcite.rel.type.RelDataType;
@@ -27,19 +28,22 @@
 import org.apache.calcite.rel.type.RelProtoDataType;
 
 import com.google.common.base.Function;
-import com.google.common.collect.Lists;
 
 import java.lang.reflect.Type;
 import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
-import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Column loader.
@@ -78,10 +82,19 @@ public Integer apply(Date a0) {
         }
       };
 
-  public final List<T> list = new ArrayList<>();
+  /** Number of rows that are read from the source, and analyzed as a batch,
+   * at a time. */
+  static final int CHUNK_SIZE = 8192;
+
+  /** Pool on which columns are analyzed and encoded. Its threads are
+   * daemons, so they do not prevent the JVM from exiting. */
+  private static final ForkJoinPool POOL = new ForkJoinPool();
+
   public final List<ArrayTable.Column> representationValues = new ArrayList<>();
   private final JavaTypeFactory typeFactory;
+  private final boolean offHeap;
   public final int sortField;
+  private int size;
 
   /** Creates a column loader, and performs the load.
    *
@@ -93,16 +106,71 @@ public Integer apply(Date a0) {
       Enumerable<T> sourceTable,
       RelProtoDataType protoRowType,
       List<ColumnMetaData.Rep> repList) {
+    this(typeFactory, sourceTable, protoRowType, repList, false);
+  }
+
+  /** Creates a column loader, and performs the load.
+   *
+   * @param typeFactory Type factory
+   * @param sourceTable Source data
+   * @param protoRowType Logical row type
+   * @param repList Physical row types, or null if not known
+   * @param offHeap Whether to store primitive values, and dictionary codes,
+   *                in direct buffers outside the Java heap */
+  ColumnLoader(JavaTypeFactory typeFactory,
+      Enumerable<T> sourceTable,
+      RelProtoDataType protoRowType,
+      List<ColumnMetaData.Rep> repList,
+      boolean offHeap) {
+    this(typeFactory, sourceTable, protoRowType, repList, offHeap, null, -1);
+  }
+
+  /** Creates a column loader that optionally appends to the contents of an
+   * existing table, and performs the load.
+   *
+   * <p>If {@code base} is not null, the result contains the rows of
+   * {@code base} followed by the rows of the source that are not in
+   * {@code base}, assuming that rows are only ever added to the source, and
+   * that the value of the {@code appendKey} column of an added row is not
+   * less than that of any existing row. Rows whose key is less than the
+   * greatest key in {@code base} (see {@link #maxKey}) are skipped; the
+   * source may, but need not, have already filtered them out. A row whose
+   * key equals the greatest key is skipped if it equals one of the rows in
+   * {@code base} that have that key, each of which can match only one row of
+   * the source. Rows whose key is null cannot be ordered, and are never
+   * appended.
+   *
+   * <p>The new values are appended to the existing columns, without
+   * re-encoding them, except for columns whose representation cannot hold
+   * the new values. If the table is sorted, and the new rows would break its
+   * sort order, the whole table is re-encoded.
+   *
+   * @param typeFactory Type factory
+   * @param sourceTable Source data
+   * @param protoRowType Logical row type
+   * @param repList Physical row types, or null if not known
+   * @param offHeap Whether to store primitive values, and dictionary codes,
+   *                in direct buffers outside the Java heap
+   * @param base Existing contents, or null
+   * @param appendKey Ordinal of a column whose values never decrease as rows are
+   *                  added to the source, or -1 */
+  ColumnLoader(JavaTypeFactory typeFactory,
+      Enumerable<T> sourceTable,
+      RelProtoDataType protoRowType,
+      List<ColumnMetaData.Rep> repList,
+      boolean offHeap,
+      ArrayTable.Content base,
+      int appendKey) {
     this.typeFactory = typeFactory;
+    this.offHeap = offHeap;
     final RelDataType rowType = protoRowType.apply(typeFactory);
     if (repList == null) {
       repList =
           Collections.nCopies(rowType.getFieldCount(),
               ColumnMetaData.Rep.OBJECT);
     }
-    sourceTable.into(list);
     final int[] sorts = {-1};
-    load(rowType, repList, sorts);
+    load(rowType, repList, sourceTable, base, appendKey, sorts);
     this.sortField = sorts[0];
   }
 
@@ -169,120 +237,508 @@ static boolean isIdentity(int[] sources) {
   }
 
   public int size() {
-    return list.size();
+    return size;
   }
 
   private void load(final RelDataType elementType,
-      List<ColumnMetaData.Rep> repList, int[] sort) {
-    final List<Type> types =
-        new AbstractList<Type>() {
-          final List<RelDataTypeField> fields =
-              elementType.getFieldList();
-          public Type get(int index) {
-            return typeFactory.getJavaClass(
-                fields.get(index).getType());
+      List<ColumnMetaData.Rep> repList, Enumerable<T> sourceTable,
+      ArrayTable.Content base, int appendKey, int[] sort) {
+    final List<RelDataTypeField> fields = elementType.getFieldList();
+    final List<ValueSet> valueSets = new ArrayList<>();
+    final List<Function<Object, Object>> converters = new ArrayList<>();
+    for (Ord<RelDataTypeField> field : Ord.zip(fields)) {
+      final Type type = typeFactory.getJavaClass(field.e.getType());
+      final Class clazz = type instanceof Class
+          ? (Class) type
+          : Object.class;
+      valueSets.add(new ValueSet(clazz, offHeap));
+      converters.add(converter(repList.get(field.i), field.e.getType()));
+    }
+    final Comparable maxKey = base != null && appendKey >= 0
+        ? maxKey(base, appendKey)
+        : null;
+    // Rows of base whose key equals the greatest key. A row of the source
+    // with that key is new unless it equals one of them.
+    final List<List<Object>> maxKeyRows = maxKey != null
+        ? rowsWithKey(base, appendKey, maxKey)
+        : null;
+
+    // Read the source in chunks. While one chunk is being analyzed, one task
+    // per column, read the next.
+    final boolean scalar = fields.size() == 1;
+    Object[] chunk = new Object[CHUNK_SIZE];
+    Object[] nextChunk = new Object[CHUNK_SIZE];
+    ForkJoinTask<?> pending = null;
+    int n = 0;
+    try (Enumerator<T> enumerator = sourceTable.enumerator()) {
+      for (;;) {
+        final boolean more = enumerator.moveNext();
+        if (more) {
+          final Object row = enumerator.current();
+          if (base != null && appendKey >= 0) {
+            final Comparable key =
+                (Comparable) convert(converters.get(appendKey),
+                    scalar ? row : ((Object[]) row)[appendKey]);
+            if (key == null) {
+              // Row cannot be ordered
+              continue;
+            }
+            if (maxKey != null) {
+              //noinspection unchecked
+              final int c = key.compareTo(maxKey);
+              if (c < 0 || c == 0
+                  && maxKeyRows.remove(convertRow(row, scalar, converters))) {
+                // Row was loaded previously
+                continue;
+              }
+            }
           }
-
-          public int size() {
-            return fields.size();
+          chunk[n++] = row;
+          if (n < CHUNK_SIZE) {
+            continue;
           }
-        };
-    int[] sources = null;
-    for (final Ord<Type> pair : Ord.zip(types)) {
-      @SuppressWarnings("unchecked")
-      final List<?> sliceList =
-          types.size() == 1
-              ? list
-              : new AbstractList<Object>() {
-                final int slice = pair.i;
-
-                public Object get(int index) {
-                  return ((Object[]) list.get(index))[slice];
-                }
-
-                public int size() {
-                  return list.size();
-                }
-              };
-      final List<?> list2 =
-          wrap(
-              repList.get(pair.i),
-              sliceList,
-              elementType.getFieldList().get(pair.i).getType());
-      final Class clazz = pair.e instanceof Class
-          ? (Class) pair.e
-          : Object.class;
-      ValueSet valueSet = new ValueSet(clazz);
-      for (Object o : list2) {
-        valueSet.add((Comparable) o);
-      }
-      if (sort != null
-          && sort[0] < 0
-          && valueSet.map.keySet().size() == list.size()) {
-        // We have discovered a the first unique key in the table.
-        sort[0] = pair.i;
-        final Comparable[] values =
-            valueSet.values.toArray(new Comparable[list.size()]);
-        final Kev[] kevs = new Kev[list.size()];
-        for (int i = 0; i < kevs.length; i++) {
-          kevs[i] = new Kev(i, values[i]);
         }
-        Arrays.sort(kevs);
-        sources = new int[list.size()];
-        for (int i = 0; i < sources.length; i++) {
-          sources[i] = kevs[i].source;
+        if (pending != null) {
+          pending.join();
+          pending = null;
+        }
+        if (n > 0) {
+          final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+          for (int i = 0; i < fields.size(); i++) {
+            tasks.add(
+                new ChunkColumnTask(chunk, n, scalar ? -1 : i,
+                    converters.get(i), valueSets.get(i)));
+          }
+          pending = POOL.submit(new AllTask(tasks));
+          size += n;
+          n = 0;
+          final Object[] t = chunk;
+          chunk = nextChunk;
+          nextChunk = t;
+        }
+        if (!more) {
+          break;
         }
+      }
+    } finally {
+      if (pending != null) {
+        pending.join();
+      }
+    }
+
+    if (base != null) {
+      if (append(base, valueSets, sort)) {
+        return;
+      }
+      // The new rows break the sort order. Add the existing rows before the
+      // new rows, and re-encode every column.
+      final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+      for (Ord<ArrayTable.Column> column : Ord.zip(base.columns)) {
+        tasks.add(new BaseColumnTask(column.e, base.size, valueSets, column.i));
+      }
+      POOL.invoke(new AllTask(tasks));
+      size += base.size;
+    }
 
-        if (isIdentity(sources)) {
-          // Table was already sorted. Clear the permutation.
-          // We've already set sort[0], so we won't check for another
-          // sorted column.
-          sources = null;
-        } else {
-          // Re-sort all previous columns.
-          for (int i = 0; i < pair.i; i++) {
-            representationValues.set(
-                i, representationValues.get(i).permute(sources));
+    // The first column whose values are unique is the sort key.
+    int[] sources = null;
+    if (sort != null) {
+      for (Ord<ValueSet> valueSet : Ord.zip(valueSets)) {
+        if (valueSet.e.map.size() == size) {
+          sort[0] = valueSet.i;
+          final Comparable[] values =
+              valueSet.e.values.toArray(new Comparable[size]);
+          final Kev[] kevs = new Kev[size];
+          for (int i = 0; i < kevs.length; i++) {
+            kevs[i] = new Kev(i, values[i]);
+          }
+          Arrays.sort(kevs);
+          sources = new int[size];
+          for (int i = 0; i < sources.length; i++) {
+            sources[i] = kevs[i].source;
           }
+          if (isIdentity(sources)) {
+            // Table was already sorted. Clear the permutation.
+            sources = null;
+          }
+          break;
         }
       }
-      representationValues.add(valueSet.freeze(pair.i, sources));
     }
+
+    // Encode the columns in parallel, permuting them if the table is not
+    // already sorted.
+    final ArrayTable.Column[] columns = new ArrayTable.Column[fields.size()];
+    final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+    for (int i = 0; i < columns.length; i++) {
+      tasks.add(new FreezeTask(valueSets, i, sources, columns));
+    }
+    POOL.invoke(new AllTask(tasks));
+    representationValues.addAll(Arrays.asList(columns));
+  }
+
+  /** Returns the greatest value of a column of a table, or null if the table
+   * is empty or the column holds only nulls. */
+  static Comparable maxKey(ArrayTable.Content content, int ordinal) {
+    final ArrayTable.Column column = content.columns.get(ordinal);
+    if (content.sortField() == ordinal && content.size > 0) {
+      // The table is sorted on this column, so the last value is the
+      // greatest, unless it is null.
+      final Comparable last =
+          (Comparable) column.representation.getObject(column.dataSet,
+              content.size - 1);
+      if (last != null) {
+        return last;
+      }
+    }
+    Comparable max = null;
+    for (int i = 0; i < content.size; i++) {
+      final Comparable value =
+          (Comparable) column.representation.getObject(column.dataSet, i);
+      //noinspection unchecked
+      if (value != null && (max == null || max.compareTo(value) < 0)) {
+        max = value;
+      }
+    }
+    return max;
   }
 
-  /** Adapt for some types that we represent differently internally than their
-   * JDBC types. {@link java.sql.Timestamp} values that are not null are
-   * converted to {@code long}, but nullable timestamps are acquired using
+  /** Returns the rows of a table whose value of a given column equals a
+   * given key. */
+  private static List<List<Object>> rowsWithKey(ArrayTable.Content content,
+      int ordinal, Comparable key) {
+    final ArrayTable.Column keyColumn = content.columns.get(ordinal);
+    final boolean sorted = content.sortField() == ordinal;
+    final List<List<Object>> rows = new ArrayList<>();
+    for (int i = content.size - 1; i >= 0; i--) {
+      final Comparable value =
+          (Comparable) keyColumn.representation.getObject(keyColumn.dataSet,
+              i);
+      if (value == null) {
+        continue;
+      }
+      //noinspection unchecked
+      final int c = value.compareTo(key);
+      if (c == 0) {
+        final Object[] row = new Object[content.columns.size()];
+        for (int j = 0; j < row.length; j++) {
+          final ArrayTable.Column column = content.columns.get(j);
+          row[j] = column.representation.getObject(column.dataSet, i);
+        }
+        rows.add(Arrays.asList(row));
+      } else if (sorted && c < 0) {
+        // The table is sorted on this column; no earlier row has the key.
+        break;
+      }
+    }
+    return rows;
+  }
+
+  /** Returns the values of a row of the source, converted as they would be
+   * stored in a column. */
+  private static List<Object> convertRow(Object row, boolean scalar,
+      List<Function<Object, Object>> converters) {
+    if (scalar) {
+      return Collections.singletonList(convert(converters.get(0), row));
+    }
+    final Object[] values = ((Object[]) row).clone();
+    for (int i = 0; i < values.length; i++) {
+      values[i] = convert(converters.get(i), values[i]);
+    }
+    return Arrays.asList(values);
+  }
+
+  /** Appends new rows to the columns of an existing table, if doing so
+   * keeps the table sorted. Columns whose representation can hold the new
+   * values are extended; other columns are re-encoded.
+   *
+   * @param base Existing contents
+   * @param valueSets Values of the new rows, one per column
+   * @param sort Receives the ordinal of the sort column, or -1
+   * @return Whether the rows were appended */
+  private boolean append(ArrayTable.Content base, List<ValueSet> valueSets,
+      int[] sort) {
+    final int sortField = base.sortField();
+    if (!base.collations.isEmpty()) {
+      if (base.collations.size() > 1
+          || base.collations.get(0).getFieldCollations().size() != 1
+          || sortField < 0
+          || !isAfter(base, sortField, valueSets.get(sortField).values)) {
+        return false;
+      }
+    }
+    if (sort != null) {
+      sort[0] = sortField;
+    }
+    if (size == 0) {
+      representationValues.addAll(base.columns);
+      size = base.size;
+      return true;
+    }
+    final ArrayTable.Column[] columns =
+        new ArrayTable.Column[base.columns.size()];
+    final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+    for (int i = 0; i < columns.length; i++) {
+      tasks.add(new AppendTask(base, valueSets, i, i == sortField, columns));
+    }
+    POOL.invoke(new AllTask(tasks));
+    representationValues.addAll(Arrays.asList(columns));
+    size += base.size;
+    return true;
+  }
+
+  /** Returns whether a list of values is strictly ascending, has no nulls,
+   * and starts after the last value of the sort column of a table. */
+  private static boolean isAfter(ArrayTable.Content base, int sortField,
+      List<Comparable> values) {
+    Comparable previous = maxKey(base, sortField);
+    for (Comparable value : values) {
+      //noinspection unchecked
+      if (value == null
+          || previous != null && previous.compareTo(value) >= 0) {
+        return false;
+      }
+      previous = value;
+    }
+    return true;
+  }
+
+  private static Object convert(Function<Object, Object> converter,
+      Object o) {
+    return converter == null ? o : converter.apply(o);
+  }
+
+  /** Returns a function that adapts for some types that we represent
+   * differently internally than their JDBC types, or null if values do not
+   * need to be converted. {@link java.sql.Timestamp} values that are not null
+   * are converted to {@code long}, but nullable timestamps are acquired using
    * {@link java.sql.ResultSet#getObject(int)} and therefore the Timestamp
    * value needs to be converted to a {@link Long}. Similarly
    * {@link java.sql.Date} and {@link java.sql.Time} values to
    * {@link Integer}. */
-  private static List wrap(ColumnMetaData.Rep rep, List list,
+  @SuppressWarnings("unchecked")
+  private static Function<Object, Object> converter(ColumnMetaData.Rep rep,
       RelDataType type) {
     switch (type.getSqlTypeName()) {
     case TIMESTAMP:
       switch (rep) {
       case OBJECT:
       case JAVA_SQL_TIMESTAMP:
-        return Lists.transform(list, TIMESTAMP_TO_LONG);
+        return (Function) TIMESTAMP_TO_LONG;
       }
       break;
     case TIME:
       switch (rep) {
       case OBJECT:
       case JAVA_SQL_TIME:
-        return Lists.transform(list, TIME_TO_INT);
+        return (Function) TIME_TO_INT;
       }
       break;
     case DATE:
       switch (rep) {
       case OBJECT:
       case JAVA_SQL_DATE:
-        return Lists.transform(list, DATE_TO_INT);
+        return (Function) DATE_TO_INT;
       }
       break;
     }
-    return list;
+    return null;
+  }
+
+  /** Task that runs several tasks in parallel. */
+  private static class AllTask extends RecursiveAction {
+    private final List<ForkJoinTask<?>> tasks;
+
+    AllTask(List<ForkJoinTask<?>> tasks) {
+      this.tasks = tasks;
+    }
+
+    protected void compute() {
+      invokeAll(tasks);
+    }
+  }
+
+  /** Task that adds the values of one column of a chunk of rows to the
+   * column's value set. */
+  private static class ChunkColumnTask extends RecursiveAction {
+    private final Object[] rows;
+    private final int rowCount;
+    private final int ordinal;
+    private final Function<Object, Object> converter;
+    private final ValueSet valueSet;
+
+    /** Creates a ChunkColumnTask.
+     *
+     * @param rows Rows
+     * @param rowCount Number of valid rows
+     * @param ordinal Ordinal of column within each row, or -1 if each row
+     *                is a scalar value
+     * @param converter Value converter, or null
+     * @param valueSet Value set to add values to
+     */
+    ChunkColumnTask(Object[] rows, int rowCount, int ordinal,
+        Function<Object, Object> converter, ValueSet valueSet) {
+      this.rows = rows;
+      this.rowCount = rowCount;
+      this.ordinal = ordinal;
+      this.converter = converter;
+      this.valueSet = valueSet;
+    }
+
+    protected void compute() {
+      for (int i = 0; i < rowCount; i++) {
+        final Object row = rows[i];
+        final Object o = ordinal < 0 ? row : ((Object[]) row)[ordinal];
+        valueSet.add((Comparable) convert(converter, o));
+      }
+    }
+  }
+
+  /** Task that replaces a value set with one that holds the values of a
+   * column of an existing table followed by the values of the original value
+   * set. */
+  private static class BaseColumnTask extends RecursiveAction {
+    private final ArrayTable.Column column;
+    private final int rowCount;
+    private final List<ValueSet> valueSets;
+    private final int ordinal;
+
+    BaseColumnTask(ArrayTable.Column column, int rowCount,
+        List<ValueSet> valueSets, int ordinal) {
+      this.column = column;
+      this.rowCount = rowCount;
+      this.valueSets = valueSets;
+      this.ordinal = ordinal;
+    }
+
+    protected void compute() {
+      valueSets.set(ordinal,
+          merge(column, rowCount, valueSets.get(ordinal)));
+    }
+  }
+
+  /** Returns a value set that holds the values of a column of an existing
+   * table followed by the values of a value set. */
+  private static ValueSet merge(ArrayTable.Column column, int rowCount,
+      ValueSet valueSet) {
+    final ValueSet merged = new ValueSet(valueSet.clazz, valueSet.offHeap);
+    for (int i = 0; i < rowCount; i++) {
+      merged.add(
+          (Comparable) column.representation.getObject(column.dataSet, i));
+    }
+    for (Comparable value : valueSet.values) {
+      merged.add(value);
+    }
+    return merged;
+  }
+
+  /** Task that appends the values of a value set to a column of an existing
+   * table; or, if the column's representation cannot hold them, encodes the
+   * column again. */
+  private static class AppendTask extends RecursiveAction {
+    private final ArrayTable.Content base;
+    private final List<ValueSet> valueSets;
+    private final int ordinal;
+    private final boolean disjoint;
+    private final ArrayTable.Column[] columns;
+
+    /** Creates an AppendTask.
+     *
+     * @param base Existing contents
+     * @param valueSets Values of the new rows, one per column
+     * @param ordinal Ordinal of the column
+     * @param disjoint Whether the new values are known to be distinct from
+     *                 each other and from the existing values
+     * @param columns Array in which to store the new column
+     */
+    AppendTask(ArrayTable.Content base, List<ValueSet> valueSets, int ordinal,
+        boolean disjoint, ArrayTable.Column[] columns) {
+      this.base = base;
+      this.valueSets = valueSets;
+      this.ordinal = ordinal;
+      this.disjoint = disjoint;
+      this.columns = columns;
+    }
+
+    protected void compute() {
+      final ArrayTable.Column column = base.columns.get(ordinal);
+      final ValueSet valueSet = valueSets.get(ordinal);
+      final Object data =
+          column.representation.append(column.dataSet, base.size,
+              valueSet.values);
+      if (data == null) {
+        columns[ordinal] =
+            merge(column, base.size, valueSet).freeze(ordinal, null);
+      } else {
+        columns[ordinal] =
+            new ArrayTable.Column(column.representation, data,
+                cardinality(column, data, valueSet));
+      }
+      // Allow the value set to be garbage-collected.
+      valueSets.set(ordinal, null);
+    }
+
+    /** Returns the number of distinct values in a column after values have
+     * been appended to it.
+     *
+     * <p>The result is exact if the column was unique, so that the column is
+     * unique after the append if and only if the new values are distinct
+     * from each other and from the existing values. Otherwise it may be an
+     * over-estimate, but is less than the number of rows. */
+    private int cardinality(ArrayTable.Column column, Object data,
+        ValueSet valueSet) {
+      final int added = valueSet.map.size() + (valueSet.containsNull ? 1 : 0);
+      if (disjoint) {
+        return column.cardinality + added;
+      }
+      switch (column.representation.getType()) {
+      case CONSTANT:
+      case OBJECT_DICTIONARY:
+        // These representations accept only values that they already hold
+        return column.cardinality;
+      }
+      if (column.cardinality < base.size) {
+        return Math.min(column.cardinality + added,
+            base.size + valueSet.values.size() - 1);
+      }
+      // The column was unique. Count the new values that are distinct from
+      // the existing values.
+      final Set<Object> set = new HashSet<>(
+          ArrayTable.Column.asList(column.representation, data)
+              .subList(0, base.size));
+      int cardinality = column.cardinality;
+      for (Comparable value : valueSet.map.keySet()) {
+        if (!set.contains(value)) {
+          ++cardinality;
+        }
+      }
+      if (valueSet.containsNull && !set.contains(null)) {
+        ++cardinality;
+      }
+      return cardinality;
+    }
+  }
+
+  /** Task that converts a value set into a column. */
+  private static class FreezeTask extends RecursiveAction {
+    private final List<ValueSet> valueSets;
+    private final int ordinal;
+    private final int[] sources;
+    private final ArrayTable.Column[] columns;
+
+    FreezeTask(List<ValueSet> valueSets, int ordinal, int[] sources,
+        ArrayTable.Column[] columns) {
+      this.valueSets = valueSets;
+      this.ordinal = ordinal;
+      this.sources = sources;
+      this.columns = columns;
+    }
+
+    protected void compute() {
+      columns[ordinal] = valueSets.get(ordinal).freeze(ordinal, sources);
+      // Allow the value set to be garbage-collected.
+      valueSets.set(ordinal, null);
+    }
   }
 
   /**
@@ -291,6 +747,7 @@ private static List wrap(ColumnMetaData.Rep rep, List list,
    */
   static class ValueSet {
     final Class clazz;
+    final boolean offHeap;
     final Map<Comparable, Comparable> map = new HashMap<>();
     final List<Comparable> values = new ArrayList<>();
     Comparable min;
@@ -298,7 +755,12 @@ static class ValueSet {
     boolean containsNull;
 
     ValueSet(Class clazz) {
+      this(clazz, false);
+    }
+
+    ValueSet(Class clazz, boolean offHeap) {
       this.clazz = clazz;
+      this.offHeap = offHeap;
     }
 
     void add(Comparable e) {
@@ -340,7 +802,7 @@ ArrayTable.Representation chooseRep(int ordinal) {
         switch (p) {
         case FLOAT:
         case DOUBLE:
-          return new ArrayTable.PrimitiveArray(ordinal, p, p);
+          return primitiveArray(ordinal, p, p);
         case OTHER:
         case VOID:
           throw new AssertionError("wtf?!");
@@ -426,21 +888,27 @@ private ArrayTable.Representation chooseFixedRep(
       if (signed) {
         switch (bitCount) {
         case 8:
-          return new ArrayTable.PrimitiveArray(
-              ordinal, Primitive.BYTE, p);
+          return primitiveArray(ordinal, Primitive.BYTE, p);
         case 16:
-          return new ArrayTable.PrimitiveArray(
-              ordinal, Primitive.SHORT, p);
+          return primitiveArray(ordinal, Primitive.SHORT, p);
         case 32:
-          return new ArrayTable.PrimitiveArray(
-              ordinal, Primitive.INT, p);
+          return primitiveArray(ordinal, Primitive.INT, p);
         case 64:
-          return new ArrayTable.PrimitiveArray(
-              ordinal, Primitive.LONG, p);
+          return primitiveArray(ordinal, Primitive.LONG, p);
         }
       }
-      return new ArrayTable.BitSlicedPrimitiveArray(
-          ordinal, bitCount, p, signed);
+      return offHeap
+          ? new ArrayTable.DirectBitSlicedPrimitiveArray(
+              ordinal, bitCount, p, signed)
+          : new ArrayTable.BitSlicedPrimitiveArray(
+              ordinal, bitCount, p, signed);
+    }
+
+    private ArrayTable.Representation primitiveArray(int ordinal,
+        Primitive primitive, Primitive p) {
+      return offHeap
+          ? new ArrayTable.DirectPrimitiveArray(ordinal, primitive, p)
+          : new ArrayTable.PrimitiveArray(ordinal, primitive, p);
     }
 
     /** Two's complement absolute on int value. */
@@ -264,6 +264,34 @@ static Expression enforce(final Type storageType,
     }
     return e;
   }
+
+  /** Returns the physical type of a relational expression in
+   * {@link VectorConvention}. It is an array format that is never optimized
+   * to a scalar, so that field {@code i} is column {@code i} of each
+   * {@link org.apache.calcite.runtime.ColumnBatch}. */
+  static PhysType columnarPhysType(JavaTypeFactory typeFactory,
+      RelDataType rowType) {
+    return PhysTypeImpl.of(typeFactory, rowType, JavaRowFormat.ARRAY, false);
+  }
+
+  /** Returns the component class of the array that holds a given field
+   * in a {@link org.apache.calcite.runtime.ColumnBatch}: the field's class if
+   * it is primitive, otherwise {@code Object}. */
+  static Class columnClass(PhysType physType, int field) {
+    final Class clazz = physType.fieldClass(field);
+    return clazz.isPrimitive() ? clazz : Object.class;
+  }
+
+  /** Returns an expression for the array of column classes of a physical
+   * type, as passed to
+   * {@link org.apache.calcite.schema.BatchScannableTable#scanBatches}. */
+  static Expression columnClasses(PhysType physType) {
+    final List<Expression> list = new ArrayList<>();
+    for (int i = 0; i < physType.getRowType().getFieldCount(); i++) {
+      list.add(Expressions.constant(columnClass(physType, i), Class.class));
+    }
+    return Expressions.newArrayInit(Class.class, list);
+  }
 }
 
 // End EnumUtils.java
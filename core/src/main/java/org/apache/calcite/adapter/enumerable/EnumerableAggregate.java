@@ -20,6 +20,8 @@
 import org.apache.calcite.adapter.enumerable.impl.AggResultContextImpl;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.HashAggregator;
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.linq4j.function.Function0;
 import org.apache.calcite.linq4j.function.Function1;
@@ -27,7 +29,9 @@
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.MemberDeclaration;
 import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.linq4j.tree.Primitive;
 import org.apache.calcite.linq4j.tree.Types;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelTraitSet;
@@ -50,8 +54,11 @@
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -292,36 +299,9 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
 
       stateOffset += stateSize;
 
-      AggAddContext addContext =
-          new AggAddContextImpl(builder2, accumulator) {
-            public List<RexNode> rexArguments() {
-              List<RelDataTypeField> inputTypes =
-                  inputPhysType.getRowType().getFieldList();
-              List<RexNode> args = new ArrayList<>();
-              for (int index : agg.call.getArgList()) {
-                args.add(RexInputRef.of(index, inputTypes));
-              }
-              return args;
-            }
-
-            public RexNode rexFilterArgument() {
-              return agg.call.filterArg < 0
-                  ? null
-                  : RexInputRef.of(agg.call.filterArg,
-                      inputPhysType.getRowType());
-            }
-
-            public RexToLixTranslator rowTranslator() {
-              return RexToLixTranslator.forAggregation(typeFactory,
-                  currentBlock(),
-                  new RexToLixTranslator.InputGetterImpl(
-                      Collections.singletonList(
-                          Pair.of((Expression) inParameter, inputPhysType))))
-                  .setNullable(currentNullables());
-            }
-          };
-
-      agg.implementor.implementAdd(agg.context, addContext);
+      agg.implementor.implementAdd(agg.context,
+          createAddContext(builder2, accumulator, agg, inputPhysType,
+              inParameter, typeFactory));
     }
     builder2.add(acc_);
     final Expression accumulatorAdder =
@@ -436,19 +416,231 @@ public RexToLixTranslator rowTranslator() {
                   resultBlock.toBlock(),
                   key_,
                   acc_));
-      builder.add(
-          Expressions.return_(null,
-              Expressions.call(childExp,
-                  BuiltInMethod.GROUP_BY2.method,
-                  Expressions.list(keySelector_,
-                      accumulatorInitializer,
-                      accumulatorAdder,
-                      resultSelector_)
-                      .appendIfNotNull(keyPhysType.comparer()))));
+      final Expression spillThreshold =
+          Expressions.call(BuiltInMethod.SPILL_THRESHOLD.method,
+              implementor.getRootExpression());
+      if (!canUseHashAggregator(aggStateTypes, keyPhysType)) {
+        builder.add(
+            Expressions.return_(null,
+                Expressions.call(BuiltInMethod.GROUP_BY_SPILLING.method,
+                    childExp,
+                    keySelector_,
+                    accumulatorInitializer,
+                    accumulatorAdder,
+                    resultSelector_,
+                    Util.first(keyPhysType.comparer(),
+                        Expressions.constant(null)),
+                    spillThreshold)));
+      } else {
+        // Every accumulator field is primitive. Unless the aggregate may
+        // need to spill, keep accumulators in primitive arrays, one element
+        // per group.
+        final Expression spillThreshold_ =
+            builder.append("spillThreshold", spillThreshold);
+        final Expression spillingGroupBy =
+            Expressions.call(BuiltInMethod.GROUP_BY_SPILLING.method,
+                childExp,
+                keySelector_,
+                accumulatorInitializer,
+                accumulatorAdder,
+                resultSelector_,
+                Expressions.constant(null),
+                spillThreshold_);
+        final Expression hashAggregate =
+            Expressions.call(
+                hashAggregator(typeFactory, aggs, aggStateTypes,
+                    inputPhysType, keyPhysType, physType),
+                BuiltInMethod.HASH_AGGREGATOR_AGGREGATE.method,
+                childExp,
+                keySelector_);
+        builder.add(
+            Expressions.return_(null,
+                Expressions.convert_(
+                    Expressions.condition(
+                        Expressions.greaterThan(spillThreshold_,
+                            Expressions.constant(0)),
+                        spillingGroupBy,
+                        hashAggregate),
+                    Enumerable.class)));
+      }
     }
     return implementor.result(physType, builder.toBlock());
   }
 
+  /** Returns whether a {@link HashAggregator} can be used; that is, whether
+   * every accumulator field is of a primitive type, and keys can be
+   * compared using {@link Object#equals}. */
+  private static boolean canUseHashAggregator(List<Type> aggStateTypes,
+      PhysType keyPhysType) {
+    if (keyPhysType.comparer() != null) {
+      return false;
+    }
+    for (Type type : aggStateTypes) {
+      if (!(type instanceof Class) || !((Class) type).isPrimitive()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Generates a sub-class of {@link HashAggregator} whose accumulators are
+   * arrays, one per accumulator field.
+   *
+   * <blockquote><pre>
+   * new HashAggregator() {
+   *   public int[] a0s0 = new int[0];
+   *   public boolean[] a0s1 = new boolean[0];
+   *
+   *   public void grow(int capacity) {
+   *     a0s0 = Arrays.copyOf(a0s0, capacity);
+   *     a0s1 = Arrays.copyOf(a0s1, capacity);
+   *   }
+   *
+   *   public void reset(int slot) {
+   *     a0s1[slot] = false;
+   *   }
+   *
+   *   public void add(int slot, Object row) {
+   *     final Employee in = (Employee) row;
+   *     a0s0[slot] = a0s0[slot] + in.salary;
+   *     a0s1[slot] = true;
+   *   }
+   *
+   *   public Object result(Object key0, int slot) {
+   *     final Integer key = (Integer) key0;
+   *     return new Object[] {key, a0s1[slot] ? a0s0[slot] : null};
+   *   }
+   * }</pre></blockquote>
+   *
+   * <p>The code in {@code reset}, {@code add} and {@code result} is generated
+   * by each aggregate function's {@link AggImplementor}, exactly as for
+   * {@link BuiltInMethod#GROUP_BY}, except that each accumulator expression
+   * is an array element rather than a field of an accumulator record. */
+  private Expression hashAggregator(JavaTypeFactory typeFactory,
+      List<AggImpState> aggs, List<Type> aggStateTypes,
+      PhysType inputPhysType, PhysType keyPhysType, PhysType physType) {
+    final ParameterExpression capacity_ =
+        Expressions.parameter(int.class, "capacity");
+    final ParameterExpression slot_ = Expressions.parameter(int.class, "slot");
+    final ParameterExpression row_ = Expressions.parameter(Object.class, "row");
+    final ParameterExpression in_ =
+        Expressions.parameter(inputPhysType.getJavaRowType(), "in");
+    final ParameterExpression key0_ =
+        Expressions.parameter(Object.class, "key0");
+    final ParameterExpression key_ =
+        Expressions.parameter(keyPhysType.getJavaRowType(), "key");
+
+    final List<MemberDeclaration> members = new ArrayList<>();
+    final BlockBuilder growBlock = new BlockBuilder();
+    final BlockBuilder resetBlock = new BlockBuilder();
+    final BlockBuilder addBlock = new BlockBuilder();
+    addBlock.add(
+        Expressions.declare(Modifier.FINAL, in_,
+            fromObject(row_, in_.getType())));
+    final BlockBuilder resultBlock = new BlockBuilder();
+    resultBlock.add(
+        Expressions.declare(Modifier.FINAL, key_,
+            fromObject(key0_, key_.getType())));
+    final List<Expression> results = Expressions.list();
+    for (int j = 0; j < getGroupCount(); j++) {
+      results.add(keyPhysType.fieldReference(key_, j));
+    }
+
+    int stateOffset = 0;
+    for (AggImpState agg : aggs) {
+      final int stateSize = agg.state.size();
+      final List<Expression> accumulator = new ArrayList<>(stateSize);
+      for (int j = 0; j < stateSize; j++) {
+        final Class type = (Class) aggStateTypes.get(stateOffset + j);
+        final ParameterExpression array_ =
+            Expressions.parameter(Array.newInstance(type, 0).getClass(),
+                "a" + agg.aggIdx + "s" + j);
+        members.add(
+            Expressions.fieldDecl(Modifier.PUBLIC, array_,
+                Expressions.newArrayBounds(type, 1, Expressions.constant(0))));
+        growBlock.add(
+            Expressions.statement(
+                Expressions.assign(array_,
+                    Expressions.call(Arrays.class, "copyOf", array_,
+                        capacity_))));
+        accumulator.add(Expressions.arrayIndex(array_, slot_));
+      }
+      stateOffset += stateSize;
+
+      agg.implementor.implementReset(agg.context,
+          new AggResultContextImpl(resetBlock, agg.call, accumulator, null,
+              null));
+      agg.implementor.implementAdd(agg.context,
+          createAddContext(addBlock, accumulator, agg, inputPhysType, in_,
+              typeFactory));
+      results.add(
+          agg.implementor.implementResult(agg.context,
+              new AggResultContextImpl(resultBlock, agg.call, accumulator,
+                  key_, keyPhysType)));
+    }
+    resultBlock.add(Expressions.return_(null, physType.record(results)));
+
+    members.add(
+        Expressions.methodDecl(Modifier.PUBLIC, void.class, "grow",
+            ImmutableList.of(capacity_), growBlock.toBlock()));
+    members.add(
+        Expressions.methodDecl(Modifier.PUBLIC, void.class, "reset",
+            ImmutableList.of(slot_), resetBlock.toBlock()));
+    members.add(
+        Expressions.methodDecl(Modifier.PUBLIC, void.class, "add",
+            ImmutableList.of(slot_, row_), addBlock.toBlock()));
+    members.add(
+        Expressions.methodDecl(Modifier.PUBLIC, Object.class, "result",
+            ImmutableList.of(key0_, slot_), resultBlock.toBlock()));
+    return Expressions.new_(HashAggregator.class,
+        ImmutableList.<Expression>of(), members);
+  }
+
+  /** Converts an expression of type {@link Object} to a given type, which
+   * may be primitive. */
+  private static Expression fromObject(Expression expression, Type type) {
+    if (Primitive.is(type)) {
+      return Expressions.unbox(
+          Expressions.convert_(expression, Primitive.box(type)));
+    }
+    return Expressions.convert_(expression, type);
+  }
+
+  /** Creates a context for generating the code that adds a row to the
+   * accumulators of an aggregate function. */
+  private AggAddContext createAddContext(BlockBuilder block,
+      List<Expression> accumulator, final AggImpState agg,
+      final PhysType inputPhysType, final ParameterExpression inParameter,
+      final JavaTypeFactory typeFactory) {
+    return new AggAddContextImpl(block, accumulator) {
+      public List<RexNode> rexArguments() {
+        List<RelDataTypeField> inputTypes =
+            inputPhysType.getRowType().getFieldList();
+        List<RexNode> args = new ArrayList<>();
+        for (int index : agg.call.getArgList()) {
+          args.add(RexInputRef.of(index, inputTypes));
+        }
+        return args;
+      }
+
+      public RexNode rexFilterArgument() {
+        return agg.call.filterArg < 0
+            ? null
+            : RexInputRef.of(agg.call.filterArg,
+                inputPhysType.getRowType());
+      }
+
+      public RexToLixTranslator rowTranslator() {
+        return RexToLixTranslator.forAggregation(typeFactory,
+            currentBlock(),
+            new RexToLixTranslator.InputGetterImpl(
+                Collections.singletonList(
+                    Pair.of((Expression) inParameter, inputPhysType))))
+            .setNullable(currentNullables());
+      }
+    };
+  }
+
   /** An implementation of {@link AggContext}. */
   private class AggContextImpl implements AggContext {
     private final AggImpState agg;
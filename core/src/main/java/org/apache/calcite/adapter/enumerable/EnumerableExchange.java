@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelDistributionTraitDef;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Exchange;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Exchange} in
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}.
+ *
+ * <p>Within a single JVM, the instances of the distribution are worker
+ * threads, as many as the {@code parallelism} connection property. A producer
+ * thread reads the input and routes each row, through a bounded queue, to the
+ * worker of its partition; the consumer receives rows from all workers, in no
+ * particular order. See
+ * {@link org.apache.calcite.linq4j.ParallelEnumerables#exchange}.
+ *
+ * <p>On its own, an exchange only moves rows between threads. The work is
+ * done by the operators above it: {@link EnumerableParallelizer} moves a
+ * pipeline of calcs, filters, projects and a partial aggregate that consumes
+ * an exchange into an {@link EnumerableGather}, which runs the pipeline in
+ * each worker on the rows of its partition, and removes any exchange that has
+ * no such pipeline.
+ *
+ * <p>{@code SINGLETON} and {@code BROADCAST_DISTRIBUTED} distributions have
+ * only one instance as far as the consumer is concerned, and so do not
+ * repartition; nor does any distribution if {@code parallelism} is 1. */
+public class EnumerableExchange extends Exchange implements EnumerableRel {
+  /** Maximum number of rows in each of the queues between the producer and a
+   * worker. */
+  static final int QUEUE_CAPACITY = 1024;
+
+  /** Creates an EnumerableExchange.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public EnumerableExchange(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RelDistribution distribution) {
+    super(cluster, traitSet, input, distribution);
+    assert getConvention() instanceof EnumerableConvention;
+    assert getConvention() == input.getConvention();
+  }
+
+  /** Creates an EnumerableExchange. */
+  public static EnumerableExchange create(RelNode input,
+      RelDistribution distribution) {
+    final RelOptCluster cluster = input.getCluster();
+    distribution = RelDistributionTraitDef.INSTANCE.canonize(distribution);
+    RelTraitSet traitSet =
+        input.getTraitSet().replace(EnumerableConvention.INSTANCE)
+            .replace(distribution);
+    switch (distribution.getType()) {
+    case SINGLETON:
+    case BROADCAST_DISTRIBUTED:
+      break;
+    default:
+      // Rows from different partitions are interleaved, so the input's
+      // collation is lost
+      traitSet = traitSet.replace(RelCollations.EMPTY);
+    }
+    return new EnumerableExchange(cluster, traitSet, input, distribution);
+  }
+
+  @Override public EnumerableExchange copy(RelTraitSet traitSet,
+      RelNode newInput, RelDistribution newDistribution) {
+    return new EnumerableExchange(getCluster(), traitSet, newInput,
+        newDistribution);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final EnumerableRel child = (EnumerableRel) getInput();
+    final Result result = implementor.visitChild(this, 0, child, pref);
+    final PhysType physType =
+        PhysTypeImpl.of(
+            implementor.getTypeFactory(),
+            getRowType(),
+            result.format);
+    final Expression childExp =
+        builder.append("child", result.block);
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.EXCHANGE.method,
+                childExp,
+                builder.append("partitioner",
+                    partitioner(implementor, result.physType, distribution,
+                        RelCollations.EMPTY)),
+                Expressions.constant(QUEUE_CAPACITY))));
+    return implementor.result(physType, builder.toBlock());
+  }
+
+  /** Generates an expression that creates a
+   * {@link org.apache.calcite.linq4j.ParallelEnumerables.Partitioner} for a
+   * distribution.
+   *
+   * <p>If the distribution is by range, its keys are compared in the
+   * direction that they have in {@code collation}, if they are a prefix of
+   * it, otherwise ascending. */
+  static Expression partitioner(EnumerableRelImplementor implementor,
+      PhysType physType, RelDistribution distribution,
+      RelCollation collation) {
+    final Expression partitionCount =
+        Expressions.call(BuiltInMethod.PARALLELISM.method,
+            implementor.getRootExpression());
+    switch (distribution.getType()) {
+    case HASH_DISTRIBUTED:
+      return Expressions.call(BuiltInMethod.HASH_PARTITIONER.method,
+          physType.generateAccessor(distribution.getKeys()),
+          partitionCount);
+    case RANGE_DISTRIBUTED:
+      final Pair<Expression, Expression> pair =
+          physType.generateCollationKey(
+              rangeCollations(distribution, collation));
+      return Expressions.call(BuiltInMethod.RANGE_PARTITIONER.method,
+          pair.left,
+          Util.first(pair.right, Expressions.constant(null)),
+          partitionCount);
+    case RANDOM_DISTRIBUTED:
+    case ROUND_ROBIN_DISTRIBUTED:
+      return Expressions.call(BuiltInMethod.ROUND_ROBIN_PARTITIONER.method,
+          partitionCount);
+    default:
+      // SINGLETON and BROADCAST_DISTRIBUTED have a single instance
+      return Expressions.call(BuiltInMethod.ROUND_ROBIN_PARTITIONER.method,
+          Expressions.constant(1));
+    }
+  }
+
+  /** Returns whether the keys of a range distribution are a prefix of a
+   * collation; if so, the partitions, sorted by the collation, are in
+   * order. */
+  static boolean isRangePrefix(RelDistribution distribution,
+      RelCollation collation) {
+    final List<RelFieldCollation> fieldCollations =
+        collation.getFieldCollations();
+    final List<Integer> keys = distribution.getKeys();
+    if (distribution.getType() != RelDistribution.Type.RANGE_DISTRIBUTED
+        || keys.isEmpty()
+        || keys.size() > fieldCollations.size()) {
+      return false;
+    }
+    for (int i = 0; i < keys.size(); i++) {
+      if (fieldCollations.get(i).getFieldIndex() != keys.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<RelFieldCollation> rangeCollations(
+      RelDistribution distribution, RelCollation collation) {
+    if (isRangePrefix(distribution, collation)) {
+      return collation.getFieldCollations()
+          .subList(0, distribution.getKeys().size());
+    }
+    final List<RelFieldCollation> fieldCollations = new ArrayList<>();
+    for (int key : distribution.getKeys()) {
+      fieldCollations.add(new RelFieldCollation(key));
+    }
+    return fieldCollations;
+  }
+}
+
+// End EnumerableExchange.java
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Blocks;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.AbstractRelNode;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.SingleRel;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.util.BuiltInMethod;
+
+import com.google.common.collect.ImmutableList;
+
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+/** Relational expression that executes its input in parallel, using
+ * morsel-driven parallelism, and gathers the results.
+ *
+ * <p>The input is a pipeline: a chain of {@link EnumerableCalc},
+ * {@link EnumerableFilter} and {@link EnumerableProject}, optionally topped by
+ * an {@link EnumerableAggregate}, whose bottom-most relational expression is
+ * the <em>source</em>, typically a table scan. The generated code reads the
+ * source on the consuming thread, and runs the rest of the pipeline on each
+ * batch of rows ("morsel") on a pool of threads. See
+ * {@link org.apache.calcite.linq4j.ParallelEnumerables#gather}.
+ *
+ * <p>If the source is an {@link EnumerableExchange}, the rest of the pipeline
+ * instead runs in each worker thread of the exchange, on the rows of its
+ * partition; the aggregate may then be directly on top of the exchange. See
+ * {@link org.apache.calcite.linq4j.ParallelEnumerables#exchange}.
+ *
+ * <p>Rows are returned in the same order as if the input were executed
+ * serially, unless the source is an exchange, which does not preserve order.
+ * If the input contains an aggregate, it produces one partial result per
+ * morsel or partition, and there must be another aggregate above this one to
+ * combine them.
+ *
+ * @see EnumerableParallelizer
+ */
+public class EnumerableGather extends SingleRel implements EnumerableRel {
+  /** Maximum number of morsels to process at a time. */
+  public final int parallelism;
+
+  /** Number of rows in each morsel. */
+  public final int morselSize;
+
+  /** Creates an EnumerableGather.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public EnumerableGather(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, int parallelism, int morselSize) {
+    super(cluster, traitSet, input);
+    this.parallelism = parallelism;
+    this.morselSize = morselSize;
+    assert getConvention() instanceof EnumerableConvention;
+    assert isPipeline(input);
+  }
+
+  /** Creates an EnumerableGather. */
+  public static EnumerableGather create(RelNode input, int parallelism,
+      int morselSize) {
+    return new EnumerableGather(input.getCluster(), input.getTraitSet(), input,
+        parallelism, morselSize);
+  }
+
+  @Override public EnumerableGather copy(RelTraitSet traitSet,
+      List<RelNode> inputs) {
+    return new EnumerableGather(getCluster(), traitSet, sole(inputs),
+        parallelism, morselSize);
+  }
+
+  @Override public RelWriter explainTerms(RelWriter pw) {
+    return super.explainTerms(pw)
+        .item("parallelism", parallelism)
+        .item("morselSize", morselSize);
+  }
+
+  /** Returns whether a relational expression can be evaluated as a pipeline
+   * on each morsel of its source; that is, whether it is a
+   * {@link EnumerableCalc}, {@link EnumerableFilter} or
+   * {@link EnumerableProject}, or an {@link EnumerableAggregate} on top of
+   * any number of those, or an {@link EnumerableAggregate} on top of a
+   * partitioning exchange. */
+  static boolean isPipeline(RelNode rel) {
+    if (rel instanceof EnumerableAggregate) {
+      rel = rel.getInput(0);
+      if (isPartitioningExchange(rel)) {
+        return true;
+      }
+    }
+    return isPipelineStage(rel);
+  }
+
+  /** Returns whether a relational expression is a stage of a pipeline that
+   * handles each row independently. */
+  static boolean isPipelineStage(RelNode rel) {
+    return rel instanceof EnumerableCalc
+        || rel instanceof EnumerableFilter
+        || rel instanceof EnumerableProject;
+  }
+
+  /** Returns whether a relational expression is an
+   * {@link EnumerableExchange} that divides its input into partitions, each
+   * handled by a worker thread. */
+  static boolean isPartitioningExchange(RelNode rel) {
+    if (!(rel instanceof EnumerableExchange)) {
+      return false;
+    }
+    switch (((EnumerableExchange) rel).getDistribution().getType()) {
+    case SINGLETON:
+    case BROADCAST_DISTRIBUTED:
+      return false;
+    default:
+      return true;
+    }
+  }
+
+  /** Returns the source of a pipeline; the input of its bottom-most stage. */
+  static RelNode source(RelNode rel) {
+    if (rel instanceof EnumerableAggregate) {
+      rel = rel.getInput(0);
+    }
+    while (isPipelineStage(rel)) {
+      rel = rel.getInput(0);
+    }
+    return rel;
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    // Copy the pipeline, replacing its source with a leaf that reads from a
+    // variable, "morsel". Implement the copy as the body of a function. When
+    // the leaf is implemented, it implements the real source, so that the
+    // source has the physical type its consumer expects.
+    //
+    // If the source is an exchange, the leaf implements the exchange's input,
+    // and each partition of the exchange is a "morsel".
+    final RelNode source = source(getInput());
+    final EnumerableExchange exchange = isPartitioningExchange(source)
+        ? (EnumerableExchange) source
+        : null;
+    final ParameterExpression morsel_ =
+        Expressions.parameter(Modifier.FINAL, Enumerable.class, "morsel");
+    final MorselRel morselRel =
+        new MorselRel(getCluster(),
+            (EnumerableRel) (exchange != null ? exchange.getInput() : source),
+            morsel_);
+    final EnumerableRel pipeline = (EnumerableRel) replaceSource(getInput(),
+        morselRel);
+    final Result pipelineResult = pipeline.implement(implementor, pref);
+    final Result sourceResult = morselRel.sourceResult;
+    assert sourceResult != null;
+
+    final BlockBuilder builder = new BlockBuilder();
+    final Expression source_ = builder.append("source", sourceResult.block);
+    final BlockBuilder pipelineBuilder = new BlockBuilder();
+    pipelineBuilder.add(
+        Expressions.return_(null,
+            pipelineBuilder.append("pipeline", pipelineResult.block)));
+    final Expression pipeline_ =
+        builder.append("pipeline",
+            Expressions.lambda(Function1.class, pipelineBuilder.toBlock(),
+                morsel_));
+    if (exchange != null) {
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(BuiltInMethod.EXCHANGE_PIPELINE.method,
+                  source_,
+                  builder.append("partitioner",
+                      EnumerableExchange.partitioner(implementor,
+                          sourceResult.physType, exchange.getDistribution(),
+                          RelCollations.EMPTY)),
+                  Expressions.constant(EnumerableExchange.QUEUE_CAPACITY),
+                  pipeline_)));
+    } else {
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(BuiltInMethod.GATHER.method,
+                  source_,
+                  pipeline_,
+                  Expressions.constant(parallelism),
+                  Expressions.constant(morselSize))));
+    }
+    return implementor.result(pipelineResult.physType, builder.toBlock());
+  }
+
+  /** Copies a pipeline, replacing its source. */
+  static RelNode replaceSource(RelNode rel, RelNode newSource) {
+    if (rel == source(rel)) {
+      return newSource;
+    }
+    return rel.copy(rel.getTraitSet(),
+        ImmutableList.of(replaceSource(rel.getInput(0), newSource)));
+  }
+
+  /** Leaf that stands in for the source of a pipeline, and whose rows are
+   * those of a morsel. */
+  private static class MorselRel extends AbstractRelNode
+      implements EnumerableRel {
+    private final EnumerableRel source;
+    private final ParameterExpression morsel;
+    Result sourceResult;
+
+    MorselRel(RelOptCluster cluster, EnumerableRel source,
+        ParameterExpression morsel) {
+      super(cluster, source.getTraitSet());
+      this.source = source;
+      this.morsel = morsel;
+    }
+
+    @Override protected RelDataType deriveRowType() {
+      return source.getRowType();
+    }
+
+    public Result implement(EnumerableRelImplementor implementor,
+        Prefer pref) {
+      sourceResult = source.implement(implementor, pref);
+      return implementor.result(sourceResult.physType,
+          Blocks.toBlock(morsel));
+    }
+  }
+}
+
+// End EnumerableGather.java
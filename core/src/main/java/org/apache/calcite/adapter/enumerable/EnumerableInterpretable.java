@@ -41,8 +41,16 @@
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.runtime.Typed;
 import org.apache.calcite.runtime.Utilities;
+import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.compiler.CompilerFactoryFactory;
 import org.codehaus.commons.compiler.IClassBodyEvaluator;
@@ -52,6 +60,8 @@
 import java.io.StringReader;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Relational expression that converts an enumerable input to interpretable
@@ -62,6 +72,24 @@
  */
 public class EnumerableInterpretable extends ConverterImpl
     implements InterpretableRel {
+  /** Caches of compiled {@link Bindable} classes, keyed by cache
+   * specification. Each cache is keyed by generated source code and field
+   * count.
+   *
+   * <p>Connections whose
+   * {@link org.apache.calcite.config.CalciteConnectionProperty#BINDABLE_CACHE}
+   * is the same share a cache; a compiled class is independent of the
+   * connection and statement, because its parameters are read from the
+   * {@link DataContext} when it is bound. */
+  private static final LoadingCache<String,
+      Cache<Pair<String, Integer>, Class>> BINDABLE_CACHES =
+      CacheBuilder.newBuilder().build(
+          new CacheLoader<String, Cache<Pair<String, Integer>, Class>>() {
+            public Cache<Pair<String, Integer>, Class> load(String spec) {
+              return CacheBuilder.from(spec).recordStats().build();
+            }
+          });
+
   protected EnumerableInterpretable(RelOptCluster cluster, RelNode input) {
     super(cluster, ConventionTraitDef.INSTANCE,
         cluster.traitSetOf(InterpretableConvention.INSTANCE), input);
@@ -85,6 +113,24 @@ public Node implement(final InterpreterImplementor implementor) {
   public static Bindable toBindable(Map<String, Object> parameters,
       CalcitePrepare.SparkHandler spark, EnumerableRel rel,
       EnumerableRel.Prefer prefer) {
+    return toBindable(parameters, spark, rel, prefer, null);
+  }
+
+  /** Generates and compiles code for a relational expression.
+   *
+   * @param parameters Parameters, populated with values that the generated
+   *                   code reads from the {@link DataContext} when bound
+   * @param spark      Spark handler, or null
+   * @param rel        Relational expression
+   * @param prefer     Preferred row format
+   * @param cacheSpec  Specification of a cache of compiled code, in the syntax
+   *                   of {@link com.google.common.cache.CacheBuilderSpec};
+   *                   if null, the code is always compiled
+   * @return Bindable
+   */
+  public static Bindable toBindable(Map<String, Object> parameters,
+      CalcitePrepare.SparkHandler spark, EnumerableRel rel,
+      EnumerableRel.Prefer prefer, String cacheSpec) {
     EnumerableRelImplementor relImplementor =
         new EnumerableRelImplementor(rel.getCluster().getRexBuilder(),
             parameters);
@@ -102,7 +148,8 @@ public static Bindable toBindable(Map<String, Object> parameters,
       if (spark != null && spark.enabled()) {
         return spark.compile(expr, s);
       } else {
-        return getBindable(expr, s, rel.getRowType().getFieldCount());
+        return getBindable(expr, s, rel.getRowType().getFieldCount(),
+            cacheSpec);
       }
     } catch (Exception e) {
       throw Helper.INSTANCE.wrap("Error while compiling generated Java code:\n"
@@ -116,8 +163,59 @@ static ArrayBindable getArrayBindable(ClassDeclaration expr, String s,
     return box(bindable);
   }
 
+  static Bindable getBindable(final ClassDeclaration expr, final String s,
+      final int fieldCount, String cacheSpec)
+      throws CompileException, IOException {
+    if (cacheSpec == null) {
+      return getBindable(expr, s, fieldCount);
+    }
+    final Cache<Pair<String, Integer>, Class> cache =
+        BINDABLE_CACHES.getUnchecked(cacheSpec);
+    final Class clazz;
+    try {
+      clazz = cache.get(Pair.of(s, fieldCount),
+          new Callable<Class>() {
+            public Class call() throws Exception {
+              return compile(expr, s, fieldCount);
+            }
+          });
+    } catch (UncheckedExecutionException | ExecutionException e) {
+      Util.throwIfUnchecked(e.getCause());
+      if (e.getCause() instanceof CompileException) {
+        throw (CompileException) e.getCause();
+      }
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    // Each statement gets its own instance, because the bind method stores
+    // the DataContext in a field.
+    return newInstance(clazz);
+  }
+
+  /** Returns statistics of the caches of compiled {@link Bindable} classes,
+   * summed over all cache specifications.
+   *
+   * <p>{@link CacheStats#hitCount()} is the number of statements that re-used
+   * a compiled class, and {@link CacheStats#missCount()} is the number that
+   * had to compile. */
+  public static CacheStats getBindableCacheStats() {
+    CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+    for (Cache<Pair<String, Integer>, Class> cache
+        : BINDABLE_CACHES.asMap().values()) {
+      stats = stats.plus(cache.stats());
+    }
+    return stats;
+  }
+
   static Bindable getBindable(ClassDeclaration expr, String s, int fieldCount)
       throws CompileException, IOException {
+    return newInstance(compile(expr, s, fieldCount));
+  }
+
+  private static Class compile(ClassDeclaration expr, String s, int fieldCount)
+      throws CompileException, IOException {
     ICompilerFactory compilerFactory;
     try {
       compilerFactory = CompilerFactoryFactory.getDefaultCompilerFactory();
@@ -137,7 +235,16 @@ static Bindable getBindable(ClassDeclaration expr, String s, int fieldCount)
       // Add line numbers to the generated janino class
       cbe.setDebuggingInformation(true, true, true);
     }
-    return (Bindable) cbe.createInstance(new StringReader(s));
+    cbe.cook(new StringReader(s));
+    return cbe.getClazz();
+  }
+
+  private static Bindable newInstance(Class clazz) {
+    try {
+      return (Bindable) clazz.newInstance();
+    } catch (InstantiationException | IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   /** Converts a bindable over scalar values into an array bindable, with each
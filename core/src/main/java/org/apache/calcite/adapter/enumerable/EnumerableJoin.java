@@ -16,9 +16,12 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.ParameterExpression;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelOptCost;
 import org.apache.calcite.plan.RelOptPlanner;
@@ -31,6 +34,7 @@
 import org.apache.calcite.rel.core.JoinInfo;
 import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableIntList;
@@ -198,28 +202,113 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     final PhysType keyPhysType =
         leftResult.physType.project(
             leftKeys, JavaRowFormat.LIST);
+    final Expression spillThreshold =
+        Expressions.call(BuiltInMethod.SPILL_THRESHOLD.method,
+            implementor.getRootExpression());
+    if (!hasLongKey()) {
+      return implementor.result(
+          physType,
+          builder.append(
+              Expressions.call(
+                  BuiltInMethod.JOIN_SPILLING.method,
+                  Expressions.list(
+                      leftExpression,
+                      rightExpression,
+                      leftResult.physType.generateAccessor(leftKeys),
+                      rightResult.physType.generateAccessor(rightKeys),
+                      EnumUtils.joinSelector(joinType,
+                          physType,
+                          ImmutableList.of(
+                              leftResult.physType, rightResult.physType)))
+                      .append(
+                          Util.first(keyPhysType.comparer(),
+                              Expressions.constant(null)))
+                      .append(
+                          Expressions.constant(
+                              joinType.generatesNullsOnLeft()))
+                      .append(
+                          Expressions.constant(
+                              joinType.generatesNullsOnRight()))
+                      .append(spillThreshold))).toBlock());
+    }
+
+    // The key is a single integer that is never null. Unless the join may
+    // need to spill, use a hash table of primitive long keys.
+    final Expression spillThreshold_ =
+        builder.append("spillThreshold", spillThreshold);
+    final Expression resultSelector =
+        builder.append("resultSelector",
+            EnumUtils.joinSelector(joinType,
+                physType,
+                ImmutableList.of(leftResult.physType, rightResult.physType)));
+    final Expression spillingJoin =
+        Expressions.call(
+            BuiltInMethod.JOIN_SPILLING.method,
+            leftExpression,
+            rightExpression,
+            leftResult.physType.generateAccessor(leftKeys),
+            rightResult.physType.generateAccessor(rightKeys),
+            resultSelector,
+            Expressions.constant(null),
+            Expressions.constant(joinType.generatesNullsOnLeft()),
+            Expressions.constant(joinType.generatesNullsOnRight()),
+            spillThreshold_);
+    final Expression longKeyJoin =
+        Expressions.call(
+            BuiltInMethod.LONG_KEY_JOIN.method,
+            leftExpression,
+            rightExpression,
+            longKeySelector(leftResult.physType, leftKeys.get(0)),
+            longKeySelector(rightResult.physType, rightKeys.get(0)),
+            resultSelector,
+            Expressions.constant(joinType.generatesNullsOnLeft()),
+            Expressions.constant(joinType.generatesNullsOnRight()));
     return implementor.result(
         physType,
         builder.append(
-            Expressions.call(
-                leftExpression,
-                BuiltInMethod.JOIN.method,
-                Expressions.list(
-                    rightExpression,
-                    leftResult.physType.generateAccessor(leftKeys),
-                    rightResult.physType.generateAccessor(rightKeys),
-                    EnumUtils.joinSelector(joinType,
-                        physType,
-                        ImmutableList.of(
-                            leftResult.physType, rightResult.physType)))
-                    .append(
-                        Util.first(keyPhysType.comparer(),
-                            Expressions.constant(null)))
-                    .append(
-                        Expressions.constant(joinType.generatesNullsOnLeft()))
-                    .append(
-                        Expressions.constant(
-                            joinType.generatesNullsOnRight())))).toBlock());
+            Expressions.convert_(
+                Expressions.condition(
+                    Expressions.greaterThan(spillThreshold_,
+                        Expressions.constant(0)),
+                    spillingJoin,
+                    longKeyJoin),
+                Enumerable.class)).toBlock());
+  }
+
+  /** Returns whether this join has a single key, of an integer type, that is
+   * never null on either side. Such a join can use
+   * {@link org.apache.calcite.linq4j.EnumerableDefaults#longKeyJoin}. */
+  private boolean hasLongKey() {
+    return leftKeys.size() == 1
+        && isLongKey(left.getRowType(), leftKeys.get(0))
+        && isLongKey(right.getRowType(), rightKeys.get(0));
+  }
+
+  private static boolean isLongKey(RelDataType rowType, int field) {
+    final RelDataType type = rowType.getFieldList().get(field).getType();
+    if (type.isNullable()) {
+      return false;
+    }
+    switch (type.getSqlTypeName()) {
+    case TINYINT:
+    case SMALLINT:
+    case INTEGER:
+    case BIGINT:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  /** Generates a function that returns the value of a field as a
+   * {@code long}. */
+  private static Expression longKeySelector(PhysType physType, int field) {
+    final ParameterExpression v1 =
+        Expressions.parameter(physType.getJavaRowType(), "v1");
+    return Expressions.lambda(LongFunction1.class,
+        RexToLixTranslator.convert(physType.fieldReference(v1, field),
+            long.class),
+        v1);
   }
 
 }
@@ -40,6 +40,10 @@ class EnumerableLimitRule extends RelOptRule {
     if (sort.offset == null && sort.fetch == null) {
       return;
     }
+    if (sort instanceof EnumerableLimitSort) {
+      // Already applies its own offset and fetch.
+      return;
+    }
     final RelTraitSet traitSet =
         sort.getTraitSet().replace(EnumerableConvention.INSTANCE);
     RelNode input = sort.getInput();
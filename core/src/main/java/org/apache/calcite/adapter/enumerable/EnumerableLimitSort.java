@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.Pair;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Sort} in
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}
+ * that has a fetch (and optionally an offset).
+ *
+ * <p>Rather than sorting all of its input and then discarding all but the
+ * first rows, as an {@link EnumerableLimit} on top of an
+ * {@link EnumerableSort} would, it keeps the first {@code offset + fetch} rows
+ * in a bounded heap. It therefore requires O(offset + fetch) memory and
+ * O(n log (offset + fetch)) time. */
+public class EnumerableLimitSort extends Sort implements EnumerableRel {
+  /**
+   * Creates an EnumerableLimitSort.
+   *
+   * <p>Use {@link #create} unless you know what you're doing.
+   */
+  public EnumerableLimitSort(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RelCollation collation, RexNode offset, RexNode fetch) {
+    super(cluster, traitSet, input, collation, offset, fetch);
+    assert getConvention() instanceof EnumerableConvention;
+    assert getConvention() == input.getConvention();
+    assert fetch != null;
+  }
+
+  /** Creates an EnumerableLimitSort. */
+  public static EnumerableLimitSort create(RelNode child,
+      RelCollation collation, RexNode offset, RexNode fetch) {
+    final RelOptCluster cluster = child.getCluster();
+    final RelTraitSet traitSet =
+        cluster.traitSetOf(EnumerableConvention.INSTANCE)
+            .replace(collation);
+    return new EnumerableLimitSort(cluster, traitSet, child, collation, offset,
+        fetch);
+  }
+
+  @Override public EnumerableLimitSort copy(
+      RelTraitSet traitSet,
+      RelNode newInput,
+      RelCollation newCollation,
+      RexNode offset,
+      RexNode fetch) {
+    return new EnumerableLimitSort(getCluster(), traitSet, newInput,
+        newCollation, offset, fetch);
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    // Each input row is compared with the top of a heap whose size is at most
+    // offset + fetch, so the cost is n log (offset + fetch), not n log n.
+    // Unlike a plain limit, it must read every input row before it can emit
+    // any, so it is never cheaper than an EnumerableLimit on an input that is
+    // already sorted.
+    final double inputRowCount = mq.getRowCount(getInput());
+    final double limit =
+        Math.min(inputRowCount,
+            (offset == null ? 0 : RexLiteral.intValue(offset))
+                + (double) RexLiteral.intValue(fetch));
+    final double bytesPerRow = getRowType().getFieldCount() * 4;
+    final double cpu = (limit < Math.E ? 1 : Math.log(limit))
+        * inputRowCount * bytesPerRow;
+    return planner.getCostFactory().makeCost(inputRowCount, cpu, 0);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final EnumerableRel child = (EnumerableRel) getInput();
+    final Result result = implementor.visitChild(this, 0, child, pref);
+    final PhysType physType =
+        PhysTypeImpl.of(
+            implementor.getTypeFactory(),
+            getRowType(),
+            result.format);
+    Expression childExp =
+        builder.append("child", result.block);
+
+    PhysType inputPhysType = result.physType;
+    final Pair<Expression, Expression> pair =
+        inputPhysType.generateCollationKey(
+            collation.getFieldCollations());
+
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.ORDER_BY_WITH_FETCH_AND_OFFSET.method,
+                childExp,
+                builder.append("keySelector", pair.left),
+                pair.right == null
+                    ? Expressions.constant(null)
+                    : builder.append("comparator", pair.right),
+                Expressions.constant(
+                    offset == null ? 0 : RexLiteral.intValue(offset)),
+                Expressions.constant(RexLiteral.intValue(fetch)))));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End EnumerableLimitSort.java
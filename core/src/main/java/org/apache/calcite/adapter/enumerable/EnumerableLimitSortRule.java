@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+
+/**
+ * Rule to convert an {@link org.apache.calcite.rel.core.Sort} that has a sort
+ * key and a {@code fetch} to an {@link EnumerableLimitSort}.
+ *
+ * <p>The alternative, produced by {@link EnumerableLimitRule}, is an
+ * {@link EnumerableLimit} on top of an {@link EnumerableSort}; the planner
+ * chooses between them based on cost.
+ */
+class EnumerableLimitSortRule extends ConverterRule {
+  EnumerableLimitSortRule() {
+    super(Sort.class, Convention.NONE, EnumerableConvention.INSTANCE,
+        "EnumerableLimitSortRule");
+  }
+
+  public RelNode convert(RelNode rel) {
+    final Sort sort = (Sort) rel;
+    if (sort.fetch == null
+        || sort.getCollation().getFieldCollations().isEmpty()
+        || !isLiteral(sort.offset)
+        || !isLiteral(sort.fetch)) {
+      return null;
+    }
+    final RelNode input = sort.getInput();
+    return EnumerableLimitSort.create(
+        convert(
+            input,
+            input.getTraitSet().replace(EnumerableConvention.INSTANCE)),
+        sort.getCollation(),
+        sort.offset,
+        sort.fetch);
+  }
+
+  private static boolean isLiteral(RexNode node) {
+    return node == null || node instanceof RexLiteral;
+  }
+}
+
+// End EnumerableLimitSortRule.java
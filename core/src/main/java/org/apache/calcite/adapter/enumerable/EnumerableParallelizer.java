@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.sql.SqlAggFunction;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.ImmutableIntList;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites a plan in enumerable convention so that parts of it run in
+ * parallel.
+ *
+ * <p>A <em>pipeline</em> is a chain of {@link EnumerableCalc},
+ * {@link EnumerableFilter} and {@link EnumerableProject} whose bottom-most
+ * input, its <em>source</em>, is a phase transition (see
+ * {@link RelMetadataQuery#isPhaseTransition}), typically a table scan.
+ * Each pipeline is wrapped in an {@link EnumerableGather}, which runs it on
+ * morsels of its source in parallel.
+ *
+ * <p>An {@link EnumerableAggregate} on top of a pipeline is split into a
+ * partial aggregate, which becomes part of the pipeline and runs once per
+ * morsel, and a final aggregate above the {@code EnumerableGather}, which
+ * combines the partial results. This is possible if every aggregate function
+ * is {@code COUNT}, {@code SUM}, {@code $SUM0}, {@code MIN} or {@code MAX}
+ * and is not {@code DISTINCT}.
+ *
+ * <p>The degree of parallelism of each pipeline is no more than the
+ * {@code parallelism} connection property. If {@link RelMetadataQuery#splitCount}
+ * says that the source has more than one split, it is the number of splits.
+ * Otherwise, if the source is a table whose statistics give its row count,
+ * it is the number of morsels in the table; a pipeline whose source fits in
+ * one morsel is left alone. If the row count is not known, it is the
+ * {@code parallelism} property; a small source then costs only the overhead
+ * of a few tasks. A pipeline that contains non-deterministic expressions is
+ * left alone.
+ *
+ * <p>A pipeline, or an aggregate, whose source is an
+ * {@link EnumerableExchange} that repartitions its input, runs in the worker
+ * threads of the exchange, one instance per partition. An exchange that has
+ * no such pipeline on top of it would only copy rows between threads, so it
+ * is removed.
+ *
+ * @see org.apache.calcite.config.CalciteConnectionProperty#PARALLELISM
+ */
+public class EnumerableParallelizer {
+  private final RelMetadataQuery mq;
+  private final int parallelism;
+  private final int morselSize;
+
+  private EnumerableParallelizer(RelMetadataQuery mq, int parallelism,
+      int morselSize) {
+    this.mq = mq;
+    this.parallelism = parallelism;
+    this.morselSize = morselSize;
+  }
+
+  /** Rewrites a plan to run pipelines in parallel; returns the plan unchanged
+   * if {@code parallelism} is less than 2. */
+  public static RelNode parallelize(RelNode rel, int parallelism,
+      int morselSize) {
+    if (parallelism < 2 || morselSize < 1) {
+      return rel;
+    }
+    final RelMetadataQuery mq = RelMetadataQuery.instance();
+    return new EnumerableParallelizer(mq, parallelism, morselSize).visit(rel);
+  }
+
+  private RelNode visit(RelNode rel) {
+    if (rel instanceof EnumerableAggregate) {
+      final RelNode split = splitAggregate((EnumerableAggregate) rel);
+      if (split != null) {
+        return split;
+      }
+    } else if (EnumerableGather.isPipelineStage(rel)) {
+      final int dop = degreeOfParallelism(rel);
+      if (dop > 1) {
+        return EnumerableGather.create(visitSource(rel), dop, morselSize);
+      }
+    } else if (EnumerableGather.isPartitioningExchange(rel)) {
+      return visit(rel.getInput(0));
+    }
+    return visitInputs(rel);
+  }
+
+  /** Visits the inputs of the source of a pipeline. The source of most
+   * pipelines is a leaf, but an exchange has an input. */
+  private RelNode visitSource(RelNode pipeline) {
+    final RelNode source = EnumerableGather.source(pipeline);
+    final RelNode newSource = visitInputs(source);
+    if (newSource == source) {
+      return pipeline;
+    }
+    return EnumerableGather.replaceSource(pipeline, newSource);
+  }
+
+  private RelNode visitInputs(RelNode rel) {
+    final List<RelNode> inputs = rel.getInputs();
+    if (inputs.isEmpty()) {
+      return rel;
+    }
+    final List<RelNode> newInputs = new ArrayList<>();
+    boolean changed = false;
+    for (RelNode input : inputs) {
+      final RelNode newInput = visit(input);
+      newInputs.add(newInput);
+      changed |= newInput != input;
+    }
+    return changed ? rel.copy(rel.getTraitSet(), newInputs) : rel;
+  }
+
+  /** Returns the degree of parallelism for a pipeline, or 0 if it cannot run
+   * in parallel. */
+  private int degreeOfParallelism(RelNode rel) {
+    RelNode r = rel;
+    while (EnumerableGather.isPipelineStage(r)) {
+      for (RexNode e : expressions(r)) {
+        if (!RexUtil.isDeterministic(e)) {
+          return 0;
+        }
+      }
+      r = r.getInput(0);
+    }
+    if (EnumerableGather.isPartitioningExchange(r)) {
+      // There is one instance of the pipeline per partition, and as many
+      // partitions as the "parallelism" property
+      return parallelism;
+    }
+    if (!r.getInputs().isEmpty() || !mq.isPhaseTransition(r)) {
+      return 0;
+    }
+    final Integer splitCount = mq.splitCount(r);
+    if (splitCount != null && splitCount > 1) {
+      return Math.min(parallelism, splitCount);
+    }
+    if (!isRowCountKnown(r)) {
+      // The estimate would be a default (say 100 rows) that says nothing
+      // about the size of the source.
+      return parallelism;
+    }
+    final Double rowCount = mq.getRowCount(r);
+    if (rowCount == null) {
+      return parallelism;
+    }
+    return (int) Math.min(parallelism, Math.ceil(rowCount / morselSize));
+  }
+
+  /** Returns whether the row count of a source is known, rather than being a
+   * default estimate. It is unknown for a scan of a table whose statistics do
+   * not give its row count. */
+  private static boolean isRowCountKnown(RelNode source) {
+    final RelOptTable relOptTable = source.getTable();
+    if (relOptTable == null) {
+      return true;
+    }
+    final Table table = relOptTable.unwrap(Table.class);
+    return table == null || table.getStatistic().getRowCount() != null;
+  }
+
+  private static List<RexNode> expressions(RelNode rel) {
+    if (rel instanceof EnumerableCalc) {
+      return ((EnumerableCalc) rel).getProgram().getExprList();
+    } else if (rel instanceof EnumerableFilter) {
+      return ImmutableList.of(((EnumerableFilter) rel).getCondition());
+    } else {
+      return ((EnumerableProject) rel).getProjects();
+    }
+  }
+
+  /** Splits an aggregate on top of a pipeline into a partial aggregate, which
+   * is executed in parallel, and a final aggregate; returns null if that is
+   * not possible. */
+  private RelNode splitAggregate(EnumerableAggregate aggregate) {
+    if (aggregate.getGroupType() != Aggregate.Group.SIMPLE
+        || !EnumerableGather.isPipeline(aggregate)) {
+      return null;
+    }
+    final int groupCount = aggregate.getGroupCount();
+    final List<AggregateCall> finalCalls = new ArrayList<>();
+    for (AggregateCall call : aggregate.getAggCallList()) {
+      final SqlAggFunction merge = mergeFunction(call);
+      if (merge == null) {
+        return null;
+      }
+      finalCalls.add(
+          AggregateCall.create(merge, false,
+              ImmutableIntList.of(groupCount + finalCalls.size()), -1,
+              call.type, call.name));
+    }
+    final int dop = degreeOfParallelism(aggregate.getInput());
+    if (dop <= 1) {
+      return null;
+    }
+    final EnumerableGather gather =
+        EnumerableGather.create(visitSource(aggregate), dop, morselSize);
+    try {
+      return new EnumerableAggregate(aggregate.getCluster(),
+          aggregate.getTraitSet(), gather, false,
+          ImmutableBitSet.range(groupCount), null, finalCalls);
+    } catch (InvalidRelException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /** Returns the function that combines partial results of an aggregate
+   * call, or null if partial results cannot be combined. */
+  private static SqlAggFunction mergeFunction(AggregateCall call) {
+    if (call.isDistinct()) {
+      return null;
+    }
+    switch (call.getAggregation().getKind()) {
+    case COUNT:
+    case SUM0:
+      return SqlStdOperatorTable.SUM0;
+    case SUM:
+      return SqlStdOperatorTable.SUM;
+    case MIN:
+      return SqlStdOperatorTable.MIN;
+    case MAX:
+      return SqlStdOperatorTable.MAX;
+    default:
+      return null;
+    }
+  }
+}
+
+// End EnumerableParallelizer.java
@@ -64,6 +64,15 @@ private EnumerableRules() {
   public static final EnumerableLimitRule ENUMERABLE_LIMIT_RULE =
       new EnumerableLimitRule();
 
+  public static final EnumerableLimitSortRule ENUMERABLE_LIMIT_SORT_RULE =
+      new EnumerableLimitSortRule();
+
+  public static final EnumerableExchangeRule ENUMERABLE_EXCHANGE_RULE =
+      new EnumerableExchangeRule();
+
+  public static final EnumerableSortExchangeRule ENUMERABLE_SORT_EXCHANGE_RULE =
+      new EnumerableSortExchangeRule();
+
   public static final EnumerableUnionRule ENUMERABLE_UNION_RULE =
       new EnumerableUnionRule();
 
@@ -27,6 +27,7 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
 
 /** Implementation of {@link org.apache.calcite.rel.core.Sort} in
  * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}. */
@@ -83,12 +84,14 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
 
     builder.add(
         Expressions.return_(null,
-            Expressions.call(childExp,
-                BuiltInMethod.ORDER_BY.method,
-                Expressions.list(
-                    builder.append("keySelector", pair.left))
-                    .appendIfNotNull(
-                        builder.appendIfNotNull("comparator", pair.right)))));
+            Expressions.call(BuiltInMethod.ORDER_BY_SPILLING.method,
+                childExp,
+                builder.append("keySelector", pair.left),
+                Util.first(
+                    builder.appendIfNotNull("comparator", pair.right),
+                    Expressions.constant(null)),
+                Expressions.call(BuiltInMethod.SPILL_THRESHOLD.method,
+                    implementor.getRootExpression()))));
     return implementor.result(physType, builder.toBlock());
   }
 }
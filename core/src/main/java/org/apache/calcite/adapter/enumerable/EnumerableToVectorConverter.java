@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterImpl;
+import org.apache.calcite.util.BuiltInMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Relational expression that converts the rows produced by a relational
+ * expression in {@link EnumerableConvention enumerable calling convention}
+ * into batches in {@link VectorConvention vectorized calling convention}.
+ */
+public class EnumerableToVectorConverter extends ConverterImpl
+    implements VectorRel {
+  protected EnumerableToVectorConverter(RelOptCluster cluster,
+      RelTraitSet traits, RelNode input) {
+    super(cluster, ConventionTraitDef.INSTANCE, traits, input);
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    return new EnumerableToVectorConverter(getCluster(), traitSet,
+        sole(inputs));
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    // Generate:
+    //   ColumnBatch.toBatches(
+    //       <<child>>.select(o -> new Object[] {o.a, o.b}),
+    //       new Class[] {int.class, Object.class},
+    //       1024)
+    final BlockBuilder builder = new BlockBuilder();
+    final EnumerableRel child = (EnumerableRel) getInput();
+    final Result result =
+        implementor.visitChild(this, 0, child, Prefer.ARRAY);
+    final PhysType physType =
+        EnumUtils.columnarPhysType(implementor.getTypeFactory(),
+            getRowType());
+    Expression rows = builder.append("inputEnumerable", result.block, false);
+    if (result.physType.getFormat() != JavaRowFormat.ARRAY) {
+      final ParameterExpression o_ =
+          Expressions.parameter(result.physType.getJavaRowType(), "o");
+      final List<Expression> fields = new ArrayList<>();
+      for (int i = 0; i < getRowType().getFieldCount(); i++) {
+        fields.add(result.physType.fieldReference(o_, i));
+      }
+      rows =
+          Expressions.call(rows, BuiltInMethod.SELECT.method,
+              Expressions.lambda(Function1.class, physType.record(fields),
+                  o_));
+    }
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.COLUMN_BATCH_TO_BATCHES.method,
+                rows, EnumUtils.columnClasses(physType),
+                Expressions.constant(VectorConvention.BATCH_SIZE))));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End EnumerableToVectorConverter.java
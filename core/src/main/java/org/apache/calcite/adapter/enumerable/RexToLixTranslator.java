@@ -53,12 +53,14 @@
 
 import com.google.common.collect.ImmutableMap;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -1272,6 +1274,45 @@ public Expression field(BlockBuilder list, int index, Type storageType) {
     }
   }
 
+  /** Implementation of {@link InputGetter} that reads fields from the
+   * columns of a {@link org.apache.calcite.runtime.ColumnBatch} at a given
+   * position, typically the variable of a loop over the batch.
+   *
+   * <p>The first time it references a column, declares a variable in
+   * {@code prologue} that holds the column's array, so that the loop reads
+   * directly from a local (usually primitive) array. */
+  public static class ColumnInputGetter implements InputGetter {
+    private final Expression columns;
+    private final PhysType physType;
+    private final Expression position;
+    private final BlockBuilder prologue;
+    private final Map<Integer, Expression> arrays = new HashMap<>();
+
+    public ColumnInputGetter(Expression columns, PhysType physType,
+        Expression position, BlockBuilder prologue) {
+      this.columns = columns;
+      this.physType = physType;
+      this.position = position;
+      this.prologue = prologue;
+    }
+
+    public Expression field(BlockBuilder list, int index, Type storageType) {
+      Expression array = arrays.get(index);
+      if (array == null) {
+        final Class arrayClass =
+            Array.newInstance(EnumUtils.columnClass(physType, index), 0)
+                .getClass();
+        final Expression column =
+            Expressions.arrayIndex(columns, Expressions.constant(index));
+        array = prologue.append("column" + index,
+            Expressions.convert_(column, arrayClass), false);
+        arrays.put(index, array);
+      }
+      return convert(Expressions.arrayIndex(array, position),
+          storageType != null ? storageType : physType.fieldClass(index));
+    }
+  }
+
   /** Thrown in the unusual (but not erroneous) situation where the expression
    * we are translating is the null literal but we have already checked that
    * it is not null. It is easier to throw (and caller will always handle)
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.runtime.BatchAggregator;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.primitives.Ints;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Aggregate} in
+ * {@link VectorConvention vectorized calling convention}.
+ *
+ * <p>It is a hash aggregate; see {@link BatchAggregator}. The aggregate
+ * functions must be {@code COUNT}, {@code SUM}, {@code $SUM0}, {@code MIN}
+ * or {@code MAX}, not {@code DISTINCT} and without {@code FILTER}, and there
+ * must be a single grouping set. */
+public class VectorAggregate extends Aggregate implements VectorRel {
+  /** Creates a VectorAggregate.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public VectorAggregate(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, ImmutableBitSet groupSet,
+      List<ImmutableBitSet> groupSets, List<AggregateCall> aggCalls)
+      throws InvalidRelException {
+    super(cluster, traitSet, input, false, groupSet, groupSets, aggCalls);
+    assert getConvention() instanceof VectorConvention;
+    if (getGroupType() != Group.SIMPLE) {
+      throw new InvalidRelException("grouping sets not supported");
+    }
+    for (AggregateCall aggCall : aggCalls) {
+      if (function(aggCall) == null) {
+        throw new InvalidRelException(
+            "aggregate call " + aggCall + " not supported");
+      }
+    }
+  }
+
+  /** Creates a VectorAggregate. */
+  public static VectorAggregate create(RelNode input,
+      ImmutableBitSet groupSet, List<ImmutableBitSet> groupSets,
+      List<AggregateCall> aggCalls) throws InvalidRelException {
+    final RelOptCluster cluster = input.getCluster();
+    final RelTraitSet traitSet =
+        cluster.traitSetOf(VectorConvention.INSTANCE);
+    return new VectorAggregate(cluster, traitSet, input, groupSet, groupSets,
+        aggCalls);
+  }
+
+  @Override public VectorAggregate copy(RelTraitSet traitSet, RelNode input,
+      boolean indicator, ImmutableBitSet groupSet,
+      List<ImmutableBitSet> groupSets, List<AggregateCall> aggCalls) {
+    assert !indicator;
+    try {
+      return new VectorAggregate(getCluster(), traitSet, input, groupSet,
+          groupSets, aggCalls);
+    } catch (InvalidRelException e) {
+      // Semantic error not possible. Must be a bug. Convert to
+      // internal error.
+      throw new AssertionError(e);
+    }
+  }
+
+  /** Returns the name of the function that {@link BatchAggregator} uses to
+   * evaluate an aggregate call, or null if it cannot. */
+  static String function(AggregateCall aggCall) {
+    if (aggCall.isDistinct()
+        || aggCall.filterArg >= 0
+        || aggCall.getArgList().size() > 1) {
+      return null;
+    }
+    switch (aggCall.getAggregation().getKind()) {
+    case COUNT:
+      return "COUNT";
+    case SUM:
+      return aggCall.getArgList().isEmpty() ? null : "SUM";
+    case SUM0:
+      return aggCall.getArgList().isEmpty() ? null : "SUM0";
+    case MIN:
+      return aggCall.getArgList().isEmpty() ? null : "MIN";
+    case MAX:
+      return aggCall.getArgList().isEmpty() ? null : "MAX";
+    default:
+      return null;
+    }
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    return super.computeSelfCost(planner, mq)
+        .multiplyBy(VectorConvention.COST_MULTIPLIER);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final Result result =
+        implementor.visitChild(this, 0, (VectorRel) getInput(), pref);
+    final PhysType physType =
+        EnumUtils.columnarPhysType(implementor.getTypeFactory(),
+            getRowType());
+    final Expression input = builder.append("input", result.block, false);
+
+    // return BatchAggregator.aggregate(input, new int[] {0},
+    //     new String[] {"COUNT", "SUM"}, new int[] {-1, 2},
+    //     new Class[] {int.class, long.class, Integer.class}, 1024);
+    final List<String> functions = new ArrayList<>();
+    final List<Integer> args = new ArrayList<>();
+    for (AggregateCall aggCall : aggCalls) {
+      functions.add(function(aggCall));
+      args.add(aggCall.getArgList().isEmpty() ? -1 : aggCall.getArgList().get(0));
+    }
+    final List<Expression> resultClasses = new ArrayList<>();
+    for (int i = 0; i < physType.getRowType().getFieldCount(); i++) {
+      resultClasses.add(
+          Expressions.constant(physType.fieldClass(i), Class.class));
+    }
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.BATCH_AGGREGATE.method,
+                input,
+                Expressions.constant(groupSet.toArray()),
+                Expressions.constant(functions.toArray(new String[0])),
+                Expressions.constant(Ints.toArray(args)),
+                Expressions.newArrayInit(Class.class, resultClasses),
+                Expressions.constant(VectorConvention.BATCH_SIZE))));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End VectorAggregate.java
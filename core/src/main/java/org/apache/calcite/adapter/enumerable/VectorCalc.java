@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptPredicateList;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollationTraitDef;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelDistributionTraitDef;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Calc;
+import org.apache.calcite.rel.metadata.RelMdCollation;
+import org.apache.calcite.rel.metadata.RelMdDistribution;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLocalRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexOver;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexSimplify;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.runtime.ColumnBatch;
+import org.apache.calcite.util.BuiltInMethod;
+
+import com.google.common.base.Supplier;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Calc} in
+ * {@link VectorConvention vectorized calling convention}.
+ *
+ * <p>Generated code evaluates the program in a loop over the live rows of
+ * each batch. If the program only filters (every project is a reference to
+ * an input field), the output batch shares the input's columns and has a new
+ * selection vector; otherwise the loop writes the surviving rows' values
+ * into new, dense column arrays. */
+public class VectorCalc extends Calc implements VectorRel {
+  /**
+   * Creates a VectorCalc.
+   *
+   * <p>Use {@link #create} unless you know what you're doing.
+   */
+  public VectorCalc(RelOptCluster cluster,
+      RelTraitSet traitSet,
+      RelNode input,
+      RexProgram program) {
+    super(cluster, traitSet, input, program);
+    assert getConvention() instanceof VectorConvention;
+    assert canImplement(program);
+  }
+
+  /** Creates a VectorCalc. */
+  public static VectorCalc create(final RelNode input,
+      final RexProgram program) {
+    final RelOptCluster cluster = input.getCluster();
+    final RelMetadataQuery mq = cluster.getMetadataQuery();
+    final RelTraitSet traitSet = cluster.traitSet()
+        .replace(VectorConvention.INSTANCE)
+        .replaceIfs(RelCollationTraitDef.INSTANCE,
+            new Supplier<List<RelCollation>>() {
+              public List<RelCollation> get() {
+                return RelMdCollation.calc(mq, input, program);
+              }
+            })
+        .replaceIf(RelDistributionTraitDef.INSTANCE,
+            new Supplier<RelDistribution>() {
+              public RelDistribution get() {
+                return RelMdDistribution.calc(mq, input, program);
+              }
+            });
+    return new VectorCalc(cluster, traitSet, input, program);
+  }
+
+  /** Returns whether a program can be evaluated one batch at a time; that
+   * is, it contains no aggregate, windowed aggregate or correlating
+   * variable. */
+  public static boolean canImplement(RexProgram program) {
+    if (program.containsAggs() || RexOver.containsOver(program)) {
+      return false;
+    }
+    for (RexNode expr : program.getExprList()) {
+      if (RexUtil.containsCorrelation(expr)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override public VectorCalc copy(RelTraitSet traitSet, RelNode child,
+      RexProgram program) {
+    // we do not need to copy program; it is immutable
+    return new VectorCalc(getCluster(), traitSet, child, program);
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    return super.computeSelfCost(planner, mq)
+        .multiplyBy(VectorConvention.COST_MULTIPLIER);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+    final BlockBuilder builder = new BlockBuilder();
+    final VectorRel child = (VectorRel) getInput();
+
+    final Result result = implementor.visitChild(this, 0, child, pref);
+
+    final PhysType physType =
+        EnumUtils.columnarPhysType(typeFactory, getRowType());
+
+    final Expression inputEnumerable =
+        builder.append("inputEnumerable", result.block, false);
+
+    final RexBuilder rexBuilder = getCluster().getRexBuilder();
+    final RelMetadataQuery mq = RelMetadataQuery.instance();
+    final RelOptPredicateList predicates = mq.getPulledUpPredicates(child);
+    final RexSimplify simplify =
+        new RexSimplify(rexBuilder, predicates, false, RexUtil.EXECUTOR);
+    final RexProgram program = this.program.normalize(rexBuilder, simplify);
+
+    // return inputEnumerable.select(
+    //     new Function1<ColumnBatch, ColumnBatch>() {
+    //       public ColumnBatch apply(ColumnBatch batch) {
+    //         final Object[] columns = batch.columns;
+    //         final int[] selection = batch.selection;
+    //         final int count = batch.count;
+    //         final int[] output0 = new int[count];
+    //         final int[] column2 = (int[]) columns[2];
+    //         int n = 0;
+    //         for (int k = 0; k < count; k++) {
+    //           final int i = selection == null ? k : selection[k];
+    //           if (column2[i] > 10) {
+    //             output0[n] = column2[i] * 2;
+    //             ++n;
+    //           }
+    //         }
+    //         return new ColumnBatch(new Object[] {output0}, null, n);
+    //       }
+    //     });
+    final ParameterExpression batch_ =
+        Expressions.parameter(ColumnBatch.class, "batch");
+    final BlockBuilder builder2 = new BlockBuilder(false);
+    final Expression columns_ =
+        builder2.append("columns",
+            Expressions.field(batch_, BuiltInMethod.COLUMN_BATCH_COLUMNS.field),
+            false);
+    final Expression selection_ =
+        builder2.append("selection",
+            Expressions.field(batch_,
+                BuiltInMethod.COLUMN_BATCH_SELECTION.field),
+            false);
+    final Expression count_ =
+        builder2.append("count",
+            Expressions.field(batch_, BuiltInMethod.COLUMN_BATCH_COUNT.field),
+            false);
+
+    final List<Integer> refs = passThroughFields(program, result.physType,
+        physType);
+    if (refs != null && program.getCondition() == null) {
+      // Pure projection; re-arrange the columns.
+      builder2.add(
+          Expressions.return_(null,
+              Expressions.new_(ColumnBatch.class,
+                  columnRefs(columns_, refs), selection_, count_)));
+    } else {
+      final ParameterExpression k_ =
+          Expressions.parameter(int.class, "k");
+      final ParameterExpression i_ =
+          Expressions.parameter(Modifier.FINAL, int.class, "i");
+      final ParameterExpression n_ =
+          Expressions.parameter(int.class, "n");
+      final RexToLixTranslator.InputGetter inputGetter =
+          new RexToLixTranslator.ColumnInputGetter(columns_, result.physType,
+              i_, builder2);
+      final BlockBuilder builder3 = new BlockBuilder();
+      builder3.add(
+          Expressions.declare(Modifier.FINAL, i_,
+              Expressions.condition(
+                  Expressions.equal(selection_, Expressions.constant(null)),
+                  k_,
+                  Expressions.arrayIndex(selection_, k_))));
+      final Expression condition;
+      final BlockBuilder builder4;
+      if (program.getCondition() == null) {
+        condition = null;
+        builder4 = builder3;
+      } else {
+        condition =
+            RexToLixTranslator.translateCondition(program, typeFactory,
+                builder3, inputGetter, implementor.allCorrelateVariables);
+        builder4 = new BlockBuilder(true, builder3);
+      }
+      final Expression resultColumns;
+      final Expression resultSelection;
+      if (refs != null) {
+        // Filter only; build a selection vector.
+        resultColumns = columnRefs(columns_, refs);
+        resultSelection =
+            builder2.append("newSelection",
+                Expressions.newArrayBounds(int.class, 1, count_), false);
+        builder4.add(
+            Expressions.statement(
+                Expressions.assign(
+                    Expressions.arrayIndex(resultSelection,
+                        Expressions.postIncrementAssign(n_)),
+                    i_)));
+      } else {
+        final List<Expression> outputs = new ArrayList<>();
+        for (int j = 0; j < physType.getRowType().getFieldCount(); j++) {
+          outputs.add(
+              builder2.append("output" + j,
+                  Expressions.newArrayBounds(
+                      EnumUtils.columnClass(physType, j), 1, count_),
+                  false));
+        }
+        final List<Expression> expressions =
+            RexToLixTranslator.translateProjects(program, typeFactory,
+                builder4, null, implementor.getRootExpression(),
+                inputGetter, implementor.allCorrelateVariables);
+        for (Ord<Expression> output : Ord.zip(outputs)) {
+          final Class columnClass = EnumUtils.columnClass(physType, output.i);
+          builder4.add(
+              Expressions.statement(
+                  Expressions.assign(Expressions.arrayIndex(output.e, n_),
+                      RexToLixTranslator.convert(expressions.get(output.i),
+                          columnClass))));
+        }
+        builder4.add(
+            Expressions.statement(Expressions.preIncrementAssign(n_)));
+        resultColumns = Expressions.newArrayInit(Object.class, outputs);
+        resultSelection = Expressions.constant(null);
+      }
+      if (condition != null) {
+        builder3.add(Expressions.ifThen(condition, builder4.toBlock()));
+      }
+      builder2.add(Expressions.declare(0, n_, Expressions.constant(0)));
+      builder2.add(
+          Expressions.for_(
+              Expressions.declare(0, k_, Expressions.constant(0)),
+              Expressions.lessThan(k_, count_),
+              Expressions.preIncrementAssign(k_),
+              builder3.toBlock()));
+      builder2.add(
+          Expressions.return_(null,
+              Expressions.new_(ColumnBatch.class, resultColumns,
+                  resultSelection, n_)));
+    }
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(inputEnumerable, BuiltInMethod.SELECT.method,
+                Expressions.lambda(Function1.class, builder2.toBlock(),
+                    batch_))));
+    return implementor.result(physType, builder.toBlock());
+  }
+
+  /** Returns the input fields that the program projects, if every project
+   * is a reference to an input field held in an array of the same type, or
+   * null otherwise. */
+  private static List<Integer> passThroughFields(RexProgram program,
+      PhysType inputPhysType, PhysType physType) {
+    final List<Integer> refs = new ArrayList<>();
+    for (RexLocalRef ref : program.getProjectList()) {
+      final RexNode e = program.expandLocalRef(ref);
+      if (!(e instanceof RexInputRef)) {
+        return null;
+      }
+      final int index = ((RexInputRef) e).getIndex();
+      if (EnumUtils.columnClass(inputPhysType, index)
+          != EnumUtils.columnClass(physType, refs.size())) {
+        return null;
+      }
+      refs.add(index);
+    }
+    return refs;
+  }
+
+  private static Expression columnRefs(Expression columns,
+      List<Integer> refs) {
+    final List<Expression> list = new ArrayList<>();
+    for (int ref : refs) {
+      list.add(Expressions.arrayIndex(columns, Expressions.constant(ref)));
+    }
+    return Expressions.newArrayInit(Object.class, list);
+  }
+}
+
+// End VectorCalc.java
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.CorrelationId;
+import org.apache.calcite.rel.core.EquiJoin;
+import org.apache.calcite.rel.core.JoinInfo;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableIntList;
+
+import com.google.common.collect.ImmutableSet;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Join} in
+ * {@link VectorConvention vectorized calling convention}.
+ *
+ * <p>It is an inner hash join whose condition consists only of equalities
+ * between a column of the left input and a column of the same type of the
+ * right input. The right input is the build side. See
+ * {@link org.apache.calcite.runtime.BatchHashJoin}. */
+public class VectorHashJoin extends EquiJoin implements VectorRel {
+  /** Creates a VectorHashJoin.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public VectorHashJoin(RelOptCluster cluster, RelTraitSet traits,
+      RelNode left, RelNode right, RexNode condition,
+      ImmutableIntList leftKeys, ImmutableIntList rightKeys)
+      throws InvalidRelException {
+    super(cluster, traits, left, right, condition, leftKeys, rightKeys,
+        ImmutableSet.<CorrelationId>of(), JoinRelType.INNER);
+    assert getConvention() instanceof VectorConvention;
+    if (leftKeys.isEmpty()) {
+      throw new InvalidRelException("cartesian product not supported");
+    }
+  }
+
+  /** Creates a VectorHashJoin. */
+  public static VectorHashJoin create(RelNode left, RelNode right,
+      RexNode condition, ImmutableIntList leftKeys,
+      ImmutableIntList rightKeys) throws InvalidRelException {
+    final RelOptCluster cluster = left.getCluster();
+    final RelTraitSet traitSet =
+        cluster.traitSetOf(VectorConvention.INSTANCE);
+    return new VectorHashJoin(cluster, traitSet, left, right, condition,
+        leftKeys, rightKeys);
+  }
+
+  @Override public VectorHashJoin copy(RelTraitSet traitSet,
+      RexNode condition, RelNode left, RelNode right, JoinRelType joinType,
+      boolean semiJoinDone) {
+    assert joinType == JoinRelType.INNER;
+    final JoinInfo joinInfo = JoinInfo.of(left, right, condition);
+    assert joinInfo.isEqui();
+    try {
+      return new VectorHashJoin(getCluster(), traitSet, left, right,
+          condition, joinInfo.leftKeys, joinInfo.rightKeys);
+    } catch (InvalidRelException e) {
+      // Semantic error not possible. Must be a bug. Convert to
+      // internal error.
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    // Same as EnumerableJoin: the build side is read into memory, so it is
+    // cheaper if the smaller input is on the right
+    final double rowCount = mq.getRowCount(this)
+        + left.estimateRowCount(mq)
+        + 2d * right.estimateRowCount(mq);
+    return planner.getCostFactory().makeCost(rowCount, 0, 0)
+        .multiplyBy(VectorConvention.COST_MULTIPLIER);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final Result leftResult =
+        implementor.visitChild(this, 0, (VectorRel) left, pref);
+    final Expression leftExpression =
+        builder.append("left", leftResult.block, false);
+    final Result rightResult =
+        implementor.visitChild(this, 1, (VectorRel) right, pref);
+    final Expression rightExpression =
+        builder.append("right", rightResult.block, false);
+    final PhysType physType =
+        EnumUtils.columnarPhysType(implementor.getTypeFactory(),
+            getRowType());
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.BATCH_HASH_JOIN.method,
+                leftExpression,
+                rightExpression,
+                Expressions.constant(leftKeys.toIntArray()),
+                Expressions.constant(rightKeys.toIntArray()),
+                EnumUtils.columnClasses(rightResult.physType),
+                Expressions.constant(VectorConvention.BATCH_SIZE))));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End VectorHashJoin.java
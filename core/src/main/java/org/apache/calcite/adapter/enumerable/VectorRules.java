@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.core.JoinInfo;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.core.RelFactories;
+import org.apache.calcite.rel.logical.LogicalAggregate;
+import org.apache.calcite.rel.logical.LogicalCalc;
+import org.apache.calcite.rel.logical.LogicalFilter;
+import org.apache.calcite.rel.logical.LogicalJoin;
+import org.apache.calcite.rel.logical.LogicalProject;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexProgramBuilder;
+import org.apache.calcite.schema.BatchScannableTable;
+import org.apache.calcite.sql.type.SqlTypeUtil;
+import org.apache.calcite.tools.RelBuilderFactory;
+import org.apache.calcite.util.mapping.IntPair;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rules for the {@link VectorConvention vectorized calling convention}.
+ *
+ * <p>The rules convert scans of a {@link BatchScannableTable} and the
+ * filters, projects, calcs, aggregates and inner equi-joins above them; other
+ * relational expressions consume their output as rows via
+ * {@link VectorToEnumerableConverter}.
+ * They are only registered if the connection's
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#VECTORIZE}
+ * property is true.
+ */
+public class VectorRules {
+  private VectorRules() {}
+
+  public static final RelOptRule VECTOR_TABLE_SCAN_RULE =
+      new VectorTableScanRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule VECTOR_FILTER_RULE =
+      new VectorFilterRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule VECTOR_PROJECT_RULE =
+      new VectorProjectRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule VECTOR_CALC_RULE =
+      new VectorCalcRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule VECTOR_AGGREGATE_RULE =
+      new VectorAggregateRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule VECTOR_HASH_JOIN_RULE =
+      new VectorHashJoinRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule VECTOR_TO_ENUMERABLE_RULE =
+      new VectorToEnumerableConverterRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule ENUMERABLE_TO_VECTOR_RULE =
+      new EnumerableToVectorConverterRule(RelFactories.LOGICAL_BUILDER);
+
+  /** All rules that convert logical relational expressions to vectorized
+   * ones, and convert between vectorized and enumerable conventions. */
+  public static final ImmutableList<RelOptRule> RULES =
+      ImmutableList.of(
+          VECTOR_TABLE_SCAN_RULE,
+          VECTOR_FILTER_RULE,
+          VECTOR_PROJECT_RULE,
+          VECTOR_CALC_RULE,
+          VECTOR_AGGREGATE_RULE,
+          VECTOR_HASH_JOIN_RULE,
+          VECTOR_TO_ENUMERABLE_RULE,
+          ENUMERABLE_TO_VECTOR_RULE);
+
+  /** Rule that converts an {@link EnumerableTableScan} of a
+   * {@link BatchScannableTable} to a {@link VectorTableScan}.
+   *
+   * <p>It matches an enumerable rather than a logical scan because
+   * {@link org.apache.calcite.prepare.RelOptTableImpl#toRel} converts a scan of
+   * a {@link org.apache.calcite.schema.QueryableTable} directly to
+   * enumerable convention. */
+  public static class VectorTableScanRule extends ConverterRule {
+    /**
+     * Creates a VectorTableScanRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public VectorTableScanRule(RelBuilderFactory relBuilderFactory) {
+      super(EnumerableTableScan.class, Predicates.<RelNode>alwaysTrue(),
+          EnumerableConvention.INSTANCE, VectorConvention.INSTANCE,
+          relBuilderFactory, "VectorTableScanRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final EnumerableTableScan scan = (EnumerableTableScan) rel;
+      final RelOptTable table = scan.getTable();
+      if (table.unwrap(BatchScannableTable.class) == null
+          || VectorTableScan.tableExpression(table) == null) {
+        return null;
+      }
+      return VectorTableScan.create(scan.getCluster(), table);
+    }
+  }
+
+  /** Rule that converts a {@link LogicalFilter} to a {@link VectorCalc}. */
+  public static class VectorFilterRule extends ConverterRule {
+    /**
+     * Creates a VectorFilterRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public VectorFilterRule(RelBuilderFactory relBuilderFactory) {
+      super(LogicalFilter.class, RelOptUtil.FILTER_PREDICATE, Convention.NONE,
+          VectorConvention.INSTANCE, relBuilderFactory, "VectorFilterRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalFilter filter = (LogicalFilter) rel;
+      final RelNode input = filter.getInput();
+      final RexProgramBuilder programBuilder =
+          new RexProgramBuilder(input.getRowType(),
+              filter.getCluster().getRexBuilder());
+      programBuilder.addIdentity();
+      programBuilder.addCondition(filter.getCondition());
+      return create(input, programBuilder.getProgram());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalProject} to a {@link VectorCalc}. */
+  public static class VectorProjectRule extends ConverterRule {
+    /**
+     * Creates a VectorProjectRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public VectorProjectRule(RelBuilderFactory relBuilderFactory) {
+      super(LogicalProject.class, RelOptUtil.PROJECT_PREDICATE,
+          Convention.NONE, VectorConvention.INSTANCE, relBuilderFactory,
+          "VectorProjectRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalProject project = (LogicalProject) rel;
+      final RelNode input = project.getInput();
+      final RexProgram program =
+          RexProgram.create(input.getRowType(), project.getProjects(), null,
+              project.getRowType(), project.getCluster().getRexBuilder());
+      return create(input, program);
+    }
+  }
+
+  /** Rule that converts a {@link LogicalCalc} to a {@link VectorCalc}. */
+  public static class VectorCalcRule extends ConverterRule {
+    /**
+     * Creates a VectorCalcRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public VectorCalcRule(RelBuilderFactory relBuilderFactory) {
+      super(LogicalCalc.class, Predicates.<RelNode>alwaysTrue(),
+          Convention.NONE, VectorConvention.INSTANCE, relBuilderFactory,
+          "VectorCalcRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalCalc calc = (LogicalCalc) rel;
+      return create(calc.getInput(), calc.getProgram());
+    }
+  }
+
+  /** Creates a {@link VectorCalc} whose input is converted to vectorized
+   * convention, or returns null if the program cannot be vectorized. */
+  private static RelNode create(RelNode input, RexProgram program) {
+    if (!VectorCalc.canImplement(program)) {
+      return null;
+    }
+    return VectorCalc.create(
+        RelOptRule.convert(input,
+            input.getTraitSet().replace(VectorConvention.INSTANCE)),
+        program);
+  }
+
+  /** Rule that converts a {@link LogicalAggregate} to a
+   * {@link VectorAggregate}. */
+  public static class VectorAggregateRule extends ConverterRule {
+    /**
+     * Creates a VectorAggregateRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public VectorAggregateRule(RelBuilderFactory relBuilderFactory) {
+      super(LogicalAggregate.class, Predicates.<RelNode>alwaysTrue(),
+          Convention.NONE, VectorConvention.INSTANCE, relBuilderFactory,
+          "VectorAggregateRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalAggregate agg = (LogicalAggregate) rel;
+      if (agg.indicator) {
+        return null;
+      }
+      final RelNode input = agg.getInput();
+      try {
+        return VectorAggregate.create(
+            convert(input,
+                input.getTraitSet().replace(VectorConvention.INSTANCE)),
+            agg.getGroupSet(), agg.getGroupSets(), agg.getAggCallList());
+      } catch (InvalidRelException e) {
+        EnumerableRules.LOGGER.debug(e.toString());
+        return null;
+      }
+    }
+  }
+
+  /** Rule that converts an inner {@link LogicalJoin} whose condition is
+   * equalities between columns of the same type to a
+   * {@link VectorHashJoin}. */
+  public static class VectorHashJoinRule extends ConverterRule {
+    /**
+     * Creates a VectorHashJoinRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public VectorHashJoinRule(RelBuilderFactory relBuilderFactory) {
+      super(LogicalJoin.class, Predicates.<RelNode>alwaysTrue(),
+          Convention.NONE, VectorConvention.INSTANCE, relBuilderFactory,
+          "VectorHashJoinRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      final LogicalJoin join = (LogicalJoin) rel;
+      if (join.getJoinType() != JoinRelType.INNER
+          || !join.getVariablesSet().isEmpty()) {
+        return null;
+      }
+      final JoinInfo info = join.analyzeCondition();
+      if (!info.isEqui() || info.leftKeys.isEmpty()) {
+        return null;
+      }
+      final RelDataTypeFactory typeFactory = join.getCluster().getTypeFactory();
+      final List<RelDataTypeField> leftFields =
+          join.getLeft().getRowType().getFieldList();
+      final List<RelDataTypeField> rightFields =
+          join.getRight().getRowType().getFieldList();
+      for (IntPair pair : info.pairs()) {
+        // Keys are compared using equals, so an INTEGER never matches a
+        // BIGINT
+        if (!SqlTypeUtil.equalSansNullability(typeFactory,
+            leftFields.get(pair.source).getType(),
+            rightFields.get(pair.target).getType())) {
+          return null;
+        }
+      }
+      final List<RelNode> inputs = new ArrayList<>();
+      for (RelNode input : join.getInputs()) {
+        inputs.add(
+            convert(input,
+                input.getTraitSet().replace(VectorConvention.INSTANCE)));
+      }
+      try {
+        return VectorHashJoin.create(inputs.get(0), inputs.get(1),
+            join.getCondition(), info.leftKeys, info.rightKeys);
+      } catch (InvalidRelException e) {
+        EnumerableRules.LOGGER.debug(e.toString());
+        return null;
+      }
+    }
+  }
+
+  /** Rule that converts any vectorized relational expression to enumerable
+   * convention. */
+  public static class VectorToEnumerableConverterRule extends ConverterRule {
+    /**
+     * Creates a VectorToEnumerableConverterRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public VectorToEnumerableConverterRule(
+        RelBuilderFactory relBuilderFactory) {
+      super(RelNode.class, Predicates.<RelNode>alwaysTrue(),
+          VectorConvention.INSTANCE, EnumerableConvention.INSTANCE,
+          relBuilderFactory, "VectorToEnumerableConverterRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      return new VectorToEnumerableConverter(rel.getCluster(),
+          rel.getTraitSet().replace(EnumerableConvention.INSTANCE), rel);
+    }
+  }
+
+  /** Rule that converts any enumerable relational expression to vectorized
+   * convention. */
+  public static class EnumerableToVectorConverterRule extends ConverterRule {
+    /**
+     * Creates an EnumerableToVectorConverterRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public EnumerableToVectorConverterRule(
+        RelBuilderFactory relBuilderFactory) {
+      super(RelNode.class, Predicates.<RelNode>alwaysTrue(),
+          EnumerableConvention.INSTANCE, VectorConvention.INSTANCE,
+          relBuilderFactory, "EnumerableToVectorConverterRule");
+    }
+
+    public RelNode convert(RelNode rel) {
+      return new EnumerableToVectorConverter(rel.getCluster(),
+          rel.getTraitSet().replace(VectorConvention.INSTANCE), rel);
+    }
+  }
+}
+
+// End VectorRules.java
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.linq4j.tree.Blocks;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.prepare.CalciteCatalogReader;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollationTraitDef;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.schema.BatchScannableTable;
+import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.Util;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/** Implementation of {@link org.apache.calcite.rel.core.TableScan} in
+ * {@link VectorConvention vectorized calling convention}.
+ *
+ * <p>The table must implement {@link BatchScannableTable}. */
+public class VectorTableScan extends TableScan implements VectorRel {
+  /** Creates a VectorTableScan.
+   *
+   * <p>Use {@link #create} unless you know what you are doing. */
+  public VectorTableScan(RelOptCluster cluster, RelTraitSet traitSet,
+      RelOptTable table) {
+    super(cluster, traitSet, table);
+    assert getConvention() instanceof VectorConvention;
+  }
+
+  /** Creates a VectorTableScan. */
+  public static VectorTableScan create(RelOptCluster cluster,
+      RelOptTable relOptTable) {
+    final Table table = relOptTable.unwrap(Table.class);
+    final RelTraitSet traitSet =
+        cluster.traitSetOf(VectorConvention.INSTANCE)
+            .replaceIfs(RelCollationTraitDef.INSTANCE,
+                new Supplier<List<RelCollation>>() {
+                  public List<RelCollation> get() {
+                    if (table != null) {
+                      return table.getStatistic().getCollations();
+                    }
+                    return ImmutableList.of();
+                  }
+                });
+    return new VectorTableScan(cluster, traitSet, relOptTable);
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    return new VectorTableScan(getCluster(), traitSet, table);
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    return super.computeSelfCost(planner, mq)
+        .multiplyBy(VectorConvention.COST_MULTIPLIER);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final PhysType physType =
+        EnumUtils.columnarPhysType(implementor.getTypeFactory(),
+            getRowType());
+    final Expression expression =
+        Expressions.call(tableExpression(table),
+            BuiltInMethod.BATCH_SCANNABLE_TABLE_SCAN.method,
+            implementor.getRootExpression(),
+            EnumUtils.columnClasses(physType),
+            Expressions.constant(VectorConvention.BATCH_SIZE));
+    return implementor.result(physType, Blocks.toBlock(expression));
+  }
+
+  /** Returns an expression that evaluates to a table, as a
+   * {@link BatchScannableTable}, or null if the table is not in a schema that
+   * generated code can reach.
+   *
+   * <p>{@link RelOptTable#getExpression} is no use: for a
+   * {@link org.apache.calcite.schema.ScannableTable} it returns the
+   * enumerable of rows, not the table. */
+  static Expression tableExpression(RelOptTable relOptTable) {
+    if (!(relOptTable.getRelOptSchema() instanceof CalciteCatalogReader)) {
+      return null;
+    }
+    final CalciteSchema schema = relOptTable.unwrap(CalciteSchema.class);
+    if (schema == null) {
+      return null;
+    }
+    return Expressions.convert_(
+        Expressions.call(Schemas.expression(schema.plus()),
+            BuiltInMethod.SCHEMA_GET_TABLE.method,
+            Expressions.constant(Util.last(relOptTable.getQualifiedName()))),
+        BatchScannableTable.class);
+  }
+}
+
+// End VectorTableScan.java
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterImpl;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.util.BuiltInMethod;
+
+import java.util.List;
+
+/**
+ * Relational expression that converts the batches produced by a relational
+ * expression in {@link VectorConvention vectorized calling convention} to
+ * rows in {@link EnumerableConvention enumerable calling convention}.
+ */
+public class VectorToEnumerableConverter extends ConverterImpl
+    implements EnumerableRel {
+  /** Cost of producing a row, relative to the cost of a typical operator
+   * producing a row. The converter creates one object per row, but does no
+   * other work. */
+  private static final double COST_MULTIPLIER = 0.25d;
+
+  protected VectorToEnumerableConverter(RelOptCluster cluster,
+      RelTraitSet traits, RelNode input) {
+    super(cluster, ConventionTraitDef.INSTANCE, traits, input);
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    return new VectorToEnumerableConverter(getCluster(), traitSet,
+        sole(inputs));
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    return super.computeSelfCost(planner, mq).multiplyBy(COST_MULTIPLIER);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    // Generate:
+    //   ColumnBatch.toRows(<<child>>)
+    final BlockBuilder builder = new BlockBuilder();
+    final VectorRel child = (VectorRel) getInput();
+    final Result result = implementor.visitChild(this, 0, child, pref);
+    final PhysType physType =
+        PhysTypeImpl.of(implementor.getTypeFactory(), getRowType(),
+            JavaRowFormat.ARRAY);
+    final Expression inputEnumerable =
+        builder.append("inputEnumerable", result.block, false);
+    Expression expression =
+        Expressions.call(BuiltInMethod.COLUMN_BATCH_TO_ROWS.method,
+            inputEnumerable);
+    if (physType.getFormat() == JavaRowFormat.SCALAR) {
+      expression = Expressions.call(BuiltInMethod.SLICE0.method, expression);
+    }
+    builder.add(Expressions.return_(null, expression));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End VectorToEnumerableConverter.java
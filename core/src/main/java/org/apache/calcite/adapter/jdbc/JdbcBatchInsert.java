@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.adapter.enumerable.EnumerableRel;
+import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
+import org.apache.calcite.adapter.enumerable.JavaRowFormat;
+import org.apache.calcite.adapter.enumerable.PhysType;
+import org.apache.calcite.adapter.enumerable.PhysTypeImpl;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.ConstantExpression;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.prepare.Prepare;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.TableModify;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.runtime.BatchInsertEnumerable;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.util.BuiltInMethod;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Relational expression that inserts rows, computed in
+ * {@link EnumerableConvention enumerable calling convention}, into a table
+ * in a JDBC data source.
+ *
+ * <p>It is used when the rows come from somewhere that the JDBC data source
+ * cannot read, such as another database. (If they come from the same data
+ * source, {@link JdbcRules.JdbcTableModify} pushes the whole
+ * {@code INSERT ... SELECT} down, and is cheaper.) Rows are streamed from the
+ * input and sent using batches of prepared INSERT statements; see
+ * {@link BatchInsertEnumerable}.
+ */
+public class JdbcBatchInsert extends TableModify implements EnumerableRel {
+  private final JdbcTable jdbcTable;
+
+  public JdbcBatchInsert(RelOptCluster cluster, RelTraitSet traitSet,
+      RelOptTable table, Prepare.CatalogReader catalogReader, RelNode input,
+      boolean flattened) {
+    super(cluster, traitSet, table, catalogReader, input, Operation.INSERT,
+        null, null, flattened);
+    assert getConvention() instanceof EnumerableConvention;
+    this.jdbcTable = Preconditions.checkNotNull(table.unwrap(JdbcTable.class));
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    return new JdbcBatchInsert(getCluster(), traitSet, getTable(),
+        getCatalogReader(), sole(inputs), isFlattened());
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    // Cheaper than EnumerableTableModify, which cannot write to a JDBC
+    // table, but more expensive than JdbcTableModify.
+    return super.computeSelfCost(planner, mq).multiplyBy(.5);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    // Generate:
+    //   BatchInsertEnumerable.of(schema.getDataSource(), "INSERT ...",
+    //       "INSERT ...", new int[] {...}, rows, schema.getBatchOptions())
+    final BlockBuilder builder = new BlockBuilder();
+    final Result result =
+        implementor.visitChild(this, 0, (EnumerableRel) getInput(),
+            Prefer.ARRAY);
+    final Expression child_ = builder.append("child", result.block);
+    final PhysType arrayPhysType =
+        PhysTypeImpl.of(implementor.getTypeFactory(),
+            getInput().getRowType(), JavaRowFormat.ARRAY);
+    final Expression rows_ =
+        builder.append("rows",
+            result.physType.convertTo(child_, arrayPhysType));
+
+    final List<String> columnNames = new ArrayList<>();
+    final List<ConstantExpression> types = new ArrayList<>();
+    for (RelDataTypeField field : table.getRowType().getFieldList()) {
+      columnNames.add(field.getName());
+      types.add(
+          Expressions.constant(
+              field.getType().getSqlTypeName().getJdbcOrdinal()));
+    }
+    final JdbcSchema jdbcSchema = jdbcTable.jdbcSchema;
+    final String sql =
+        jdbcTable.generateInsertSql(columnNames, 1).getSql();
+    final int rowsPerStatement = jdbcSchema.getBatchOptions().rowsPerStatement;
+    final String multiRowSql =
+        rowsPerStatement > 1 && jdbcSchema.dialect.supportsMultiRowInsert()
+            ? jdbcTable.generateInsertSql(columnNames, rowsPerStatement)
+                .getSql()
+            : null;
+    Hook.QUERY_PLAN.run(multiRowSql != null ? multiRowSql : sql);
+
+    final Expression schema_ =
+        builder.append("jdbcSchema",
+            Schemas.unwrap(jdbcSchema.convention.expression,
+                JdbcSchema.class));
+    final Expression enumerable =
+        builder.append("enumerable",
+            Expressions.call(BuiltInMethod.BATCH_INSERT_ENUMERABLE_OF.method,
+                Expressions.call(schema_,
+                    BuiltInMethod.JDBC_SCHEMA_DATA_SOURCE.method),
+                Expressions.constant(sql),
+                Expressions.constant(multiRowSql, String.class),
+                Expressions.newArrayInit(int.class, 1, types),
+                rows_,
+                Expressions.call(schema_,
+                    BuiltInMethod.JDBC_SCHEMA_BATCH_OPTIONS.method)));
+    builder.add(Expressions.return_(null, enumerable));
+    final PhysType physType =
+        PhysTypeImpl.of(implementor.getTypeFactory(), getRowType(),
+            pref == Prefer.ARRAY ? JavaRowFormat.ARRAY : JavaRowFormat.SCALAR);
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End JdbcBatchInsert.java
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.core.TableModify;
+import org.apache.calcite.rel.logical.LogicalTableModify;
+import org.apache.calcite.tools.RelBuilderFactory;
+
+import com.google.common.base.Predicate;
+
+/**
+ * Rule that converts an INSERT into a table of a given JDBC schema to a
+ * {@link JdbcBatchInsert}, whose input is in
+ * {@link EnumerableConvention enumerable calling convention}.
+ */
+public class JdbcBatchInsertRule extends ConverterRule {
+  /** Creates a JdbcBatchInsertRule. */
+  public JdbcBatchInsertRule(final JdbcConvention out,
+      RelBuilderFactory relBuilderFactory) {
+    super(LogicalTableModify.class,
+        new Predicate<LogicalTableModify>() {
+          public boolean apply(LogicalTableModify modify) {
+            final JdbcTable jdbcTable =
+                modify.getTable().unwrap(JdbcTable.class);
+            return modify.getOperation() == TableModify.Operation.INSERT
+                && jdbcTable != null
+                && jdbcTable.jdbcSchema.convention == out;
+          }
+        },
+        Convention.NONE, EnumerableConvention.INSTANCE, relBuilderFactory,
+        "JdbcBatchInsertRule:" + out);
+  }
+
+  @Override public RelNode convert(RelNode rel) {
+    final LogicalTableModify modify = (LogicalTableModify) rel;
+    final RelTraitSet traitSet =
+        modify.getTraitSet().replace(EnumerableConvention.INSTANCE);
+    return new JdbcBatchInsert(modify.getCluster(), traitSet,
+        modify.getTable(), modify.getCatalogReader(),
+        convert(modify.getInput(),
+            modify.getInput().getTraitSet()
+                .replace(EnumerableConvention.INSTANCE)),
+        modify.isFlattened());
+  }
+}
+
+// End JdbcBatchInsertRule.java
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.jdbc;
+
+import org.apache.calcite.schema.Schema;
+import org.apache.calcite.util.Util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * File that holds a snapshot of the metadata of a {@link JdbcSchema}: its
+ * tables and, for those tables whose columns have been read, their columns.
+ *
+ * <p>The file is JSON. A schema that is given a metadata file reads its
+ * tables from the file, if the file exists, rather than from the JDBC data
+ * source, so that a new JVM does not need to read the catalog again.
+ */
+class JdbcMetadataFile {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /** Incremented when the format changes; files in a different format are
+   * ignored. */
+  private static final int VERSION = 1;
+
+  private JdbcMetadataFile() {}
+
+  /** Reads a metadata file, returning null if it does not exist, cannot be
+   * read, or describes a different catalog or schema. */
+  static Contents read(File file, String catalog, String schema) {
+    if (!file.exists()) {
+      return null;
+    }
+    try {
+      final Map map = MAPPER.readValue(file, Map.class);
+      if (!Objects.equal(map.get("version"), VERSION)
+          || !Objects.equal(map.get("catalog"), catalog)
+          || !Objects.equal(map.get("schema"), schema)) {
+        return null;
+      }
+      final ImmutableList.Builder<TableDef> tables = ImmutableList.builder();
+      for (Object o : (List) map.get("tables")) {
+        final Map t = (Map) o;
+        ImmutableList<ColumnDef> columns = null;
+        if (t.get("columns") != null) {
+          final ImmutableList.Builder<ColumnDef> b = ImmutableList.builder();
+          for (Object o2 : (List) t.get("columns")) {
+            final List c = (List) o2;
+            b.add(
+                new ColumnDef((String) c.get(0),
+                    ((Number) c.get(1)).intValue(), (String) c.get(2),
+                    ((Number) c.get(3)).intValue(),
+                    ((Number) c.get(4)).intValue(), (Boolean) c.get(5)));
+          }
+          columns = b.build();
+        }
+        tables.add(
+            new TableDef((String) t.get("catalog"), (String) t.get("schema"),
+                (String) t.get("name"),
+                Util.enumVal(Schema.TableType.OTHER, (String) t.get("type")),
+                columns));
+      }
+      return new Contents(((Number) map.get("loadTime")).longValue(),
+          tables.build());
+    } catch (IOException | RuntimeException e) {
+      // The file is corrupt or in an old format; the caller will read from
+      // the data source, and overwrite the file.
+      return null;
+    }
+  }
+
+  /** Writes a metadata file. Writes to a temporary file, then renames it, so
+   * that a reader never sees a partially written file. */
+  static void write(File file, String catalog, String schema,
+      Contents contents) throws IOException {
+    final Map<String, Object> map = new LinkedHashMap<>();
+    map.put("version", VERSION);
+    map.put("catalog", catalog);
+    map.put("schema", schema);
+    map.put("loadTime", contents.loadTime);
+    final List<Object> tables = new ArrayList<>();
+    for (TableDef table : contents.tables) {
+      final Map<String, Object> t = new LinkedHashMap<>();
+      t.put("catalog", table.catalog);
+      t.put("schema", table.schema);
+      t.put("name", table.name);
+      t.put("type", table.tableType.name());
+      if (table.columns != null) {
+        final List<Object> columns = new ArrayList<>();
+        for (ColumnDef c : table.columns) {
+          columns.add(
+              ImmutableList.of(c.name, c.dataType, Util.first(c.typeString, ""),
+                  c.precision, c.scale, c.nullable));
+        }
+        t.put("columns", columns);
+      }
+      tables.add(t);
+    }
+    map.put("tables", tables);
+    final File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      throw new IOException("Cannot create directory " + parent);
+    }
+    // Each write uses its own temporary file, so that schemas that share a
+    // metadata file do not interfere with each other's writes.
+    final File tmp = File.createTempFile(file.getName(), ".tmp", parent);
+    try {
+      MAPPER.writeValue(tmp, map);
+      Files.move(tmp.toPath(), file.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      //noinspection ResultOfMethodCallIgnored
+      tmp.delete();
+    }
+  }
+
+  /** Contents of a metadata file. */
+  static class Contents {
+    /** Time, in milliseconds since the epoch, that the list of tables was
+     * read from the data source. */
+    final long loadTime;
+    final ImmutableList<TableDef> tables;
+
+    Contents(long loadTime, ImmutableList<TableDef> tables) {
+      this.loadTime = loadTime;
+      this.tables = tables;
+    }
+  }
+
+  /** Definition of a table. */
+  static class TableDef {
+    final String catalog;
+    final String schema;
+    final String name;
+    final Schema.TableType tableType;
+    /** Columns, or null if they have not been read. */
+    final ImmutableList<ColumnDef> columns;
+
+    TableDef(String catalog, String schema, String name,
+        Schema.TableType tableType, ImmutableList<ColumnDef> columns) {
+      this.catalog = catalog;
+      this.schema = schema;
+      this.name = name;
+      this.tableType = tableType;
+      this.columns = columns;
+    }
+  }
+
+  /** Definition of a column, as returned by
+   * {@link java.sql.DatabaseMetaData#getColumns}. */
+  static class ColumnDef {
+    final String name;
+    /** Type, per {@link java.sql.Types}. */
+    final int dataType;
+    /** Type name, as the data source spells it; may be empty. */
+    final String typeString;
+    final int precision;
+    final int scale;
+    final boolean nullable;
+
+    ColumnDef(String name, int dataType, String typeString, int precision,
+        int scale, boolean nullable) {
+      this.name = name;
+      this.dataType = dataType;
+      this.typeString = typeString;
+      this.precision = precision;
+      this.scale = scale;
+      this.nullable = nullable;
+    }
+  }
+}
+
+// End JdbcMetadataFile.java
@@ -96,6 +96,7 @@ private JdbcRules() {
   public static List<RelOptRule> rules(JdbcConvention out) {
     return ImmutableList.<RelOptRule>of(
         new JdbcToEnumerableConverterRule(out, RelFactories.LOGICAL_BUILDER),
+        new JdbcBatchInsertRule(out, RelFactories.LOGICAL_BUILDER),
         new JdbcJoinRule(out),
         new JdbcCalcRule(out),
         new JdbcProjectRule(out),
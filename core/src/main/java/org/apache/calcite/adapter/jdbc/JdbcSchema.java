@@ -16,14 +16,19 @@
  */
 package org.apache.calcite.adapter.jdbc;
 
+import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.avatica.AvaticaUtils;
 import org.apache.calcite.avatica.SqlType;
+import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelDataTypeImpl;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
 import org.apache.calcite.rel.type.RelProtoDataType;
+import org.apache.calcite.runtime.BatchInsertEnumerable;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.runtime.ResultSetEnumerable;
 import org.apache.calcite.schema.Function;
 import org.apache.calcite.schema.Schema;
 import org.apache.calcite.schema.SchemaFactory;
@@ -39,20 +44,34 @@
 import org.apache.calcite.util.Util;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.sql.DataSource;
 
 /**
@@ -61,15 +80,62 @@
  * <p>The tables in the JDBC data source appear to be tables in this schema;
  * queries against this schema are executed against those tables, pushing down
  * as much as possible of the query logic to SQL.</p>
+ *
+ * <p>Metadata is read lazily. The list of tables is read when first needed,
+ * and the columns of each table when that table is first used in a query.
+ * Once the list of tables has been read, readers never wait for it to be
+ * re-read; see {@link MetadataOptions} for how and when that happens.</p>
  */
 public class JdbcSchema implements Schema {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(JdbcSchema.class);
+
+  /** Executor that re-reads the metadata of schemas, and writes metadata
+   * files. Its threads are daemon threads. */
+  private static final ExecutorService METADATA_EXECUTOR =
+      Executors.newCachedThreadPool(
+          new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+              final Thread thread =
+                  new Thread(r,
+                      "calcite-jdbc-metadata-" + count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+
   final DataSource dataSource;
   final String catalog;
   final String schema;
   public final SqlDialect dialect;
   final JdbcConvention convention;
-  private ImmutableMap<String, JdbcTable> tableMap;
+  /** Tables, and when they were read; null until first needed. Replaced,
+   * never modified, so that readers do not need to lock. */
+  private volatile TableMap tableMap;
+  /** Held while reading the list of tables. */
+  private final Object loadLock = new Object();
+  /** Whether a background re-read of the list of tables is in progress. */
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+  /** Whether a write of the metadata file has been requested but has not
+   * started. */
+  private final AtomicBoolean savePending = new AtomicBoolean();
+  /** Held while writing the metadata file, so that an earlier write cannot
+   * overwrite a later one. */
+  private final Object saveLock = new Object();
+  /** Columns of the tables that have been used since the list of tables was
+   * last read, keyed by table name. */
+  private final ConcurrentMap<String, List<JdbcMetadataFile.ColumnDef>>
+      columnMap = new ConcurrentHashMap<>();
   private final boolean snapshot;
+  /** Schema that this schema is a snapshot of, and that reads tables on its
+   * behalf; null if this schema is not a snapshot, or if it was created after
+   * its source had read its tables. */
+  private final JdbcSchema source;
+  private final ResultSetEnumerable.FetchOptions fetchOptions;
+  private final BatchInsertEnumerable.BatchOptions batchOptions;
+  private final MetadataOptions metadataOptions;
 
   /**
    * Creates a JDBC schema.
@@ -82,12 +148,74 @@ public class JdbcSchema implements Schema {
    */
   public JdbcSchema(DataSource dataSource, SqlDialect dialect,
       JdbcConvention convention, String catalog, String schema) {
-    this(dataSource, dialect, convention, catalog, schema, null);
+    this(dataSource, dialect, convention, catalog, schema,
+        ResultSetEnumerable.FetchOptions.DEFAULT);
+  }
+
+  /**
+   * Creates a JDBC schema that fetches rows in a particular way.
+   *
+   * @param dataSource Data source
+   * @param dialect SQL dialect
+   * @param convention Calling convention
+   * @param catalog Catalog name, or null
+   * @param schema Schema name pattern
+   * @param fetchOptions How to fetch rows from the data source
+   */
+  public JdbcSchema(DataSource dataSource, SqlDialect dialect,
+      JdbcConvention convention, String catalog, String schema,
+      ResultSetEnumerable.FetchOptions fetchOptions) {
+    this(dataSource, dialect, convention, catalog, schema, fetchOptions,
+        BatchInsertEnumerable.BatchOptions.DEFAULT);
+  }
+
+  /**
+   * Creates a JDBC schema that fetches and writes rows in a particular way.
+   *
+   * @param dataSource Data source
+   * @param dialect SQL dialect
+   * @param convention Calling convention
+   * @param catalog Catalog name, or null
+   * @param schema Schema name pattern
+   * @param fetchOptions How to fetch rows from the data source
+   * @param batchOptions How to insert rows into the data source
+   */
+  public JdbcSchema(DataSource dataSource, SqlDialect dialect,
+      JdbcConvention convention, String catalog, String schema,
+      ResultSetEnumerable.FetchOptions fetchOptions,
+      BatchInsertEnumerable.BatchOptions batchOptions) {
+    this(dataSource, dialect, convention, catalog, schema, fetchOptions,
+        batchOptions, MetadataOptions.DEFAULT);
+  }
+
+  /**
+   * Creates a JDBC schema that fetches and writes rows, and reads metadata,
+   * in a particular way.
+   *
+   * @param dataSource Data source
+   * @param dialect SQL dialect
+   * @param convention Calling convention
+   * @param catalog Catalog name, or null
+   * @param schema Schema name pattern
+   * @param fetchOptions How to fetch rows from the data source
+   * @param batchOptions How to insert rows into the data source
+   * @param metadataOptions How to read and cache metadata
+   */
+  public JdbcSchema(DataSource dataSource, SqlDialect dialect,
+      JdbcConvention convention, String catalog, String schema,
+      ResultSetEnumerable.FetchOptions fetchOptions,
+      BatchInsertEnumerable.BatchOptions batchOptions,
+      MetadataOptions metadataOptions) {
+    this(dataSource, dialect, convention, catalog, schema, null, null,
+        fetchOptions, batchOptions, metadataOptions);
   }
 
   private JdbcSchema(DataSource dataSource, SqlDialect dialect,
       JdbcConvention convention, String catalog, String schema,
-      ImmutableMap<String, JdbcTable> tableMap) {
+      TableMap tableMap, JdbcSchema source,
+      ResultSetEnumerable.FetchOptions fetchOptions,
+      BatchInsertEnumerable.BatchOptions batchOptions,
+      MetadataOptions metadataOptions) {
     super();
     this.dataSource = Preconditions.checkNotNull(dataSource);
     this.dialect = Preconditions.checkNotNull(dialect);
@@ -96,6 +224,10 @@ private JdbcSchema(DataSource dataSource, SqlDialect dialect,
     this.schema = schema;
     this.tableMap = tableMap;
     this.snapshot = tableMap != null;
+    this.source = source;
+    this.fetchOptions = Preconditions.checkNotNull(fetchOptions);
+    this.batchOptions = Preconditions.checkNotNull(batchOptions);
+    this.metadataOptions = Preconditions.checkNotNull(metadataOptions);
   }
 
   public static JdbcSchema create(
@@ -114,12 +246,52 @@ public static JdbcSchema create(
       SqlDialectFactory dialectFactory,
       String catalog,
       String schema) {
+    return create(parentSchema, name, dataSource, dialectFactory, catalog,
+        schema, ResultSetEnumerable.FetchOptions.DEFAULT);
+  }
+
+  public static JdbcSchema create(
+      SchemaPlus parentSchema,
+      String name,
+      DataSource dataSource,
+      SqlDialectFactory dialectFactory,
+      String catalog,
+      String schema,
+      ResultSetEnumerable.FetchOptions fetchOptions) {
+    return create(parentSchema, name, dataSource, dialectFactory, catalog,
+        schema, fetchOptions, BatchInsertEnumerable.BatchOptions.DEFAULT);
+  }
+
+  public static JdbcSchema create(
+      SchemaPlus parentSchema,
+      String name,
+      DataSource dataSource,
+      SqlDialectFactory dialectFactory,
+      String catalog,
+      String schema,
+      ResultSetEnumerable.FetchOptions fetchOptions,
+      BatchInsertEnumerable.BatchOptions batchOptions) {
+    return create(parentSchema, name, dataSource, dialectFactory, catalog,
+        schema, fetchOptions, batchOptions, MetadataOptions.DEFAULT);
+  }
+
+  public static JdbcSchema create(
+      SchemaPlus parentSchema,
+      String name,
+      DataSource dataSource,
+      SqlDialectFactory dialectFactory,
+      String catalog,
+      String schema,
+      ResultSetEnumerable.FetchOptions fetchOptions,
+      BatchInsertEnumerable.BatchOptions batchOptions,
+      MetadataOptions metadataOptions) {
     final Expression expression =
         Schemas.subSchemaExpression(parentSchema, name, JdbcSchema.class);
     final SqlDialect dialect = createDialect(dialectFactory, dataSource);
     final JdbcConvention convention =
         JdbcConvention.of(dialect, expression, name);
-    return new JdbcSchema(dataSource, dialect, convention, catalog, schema);
+    return new JdbcSchema(dataSource, dialect, convention, catalog, schema,
+        fetchOptions, batchOptions, metadataOptions);
   }
 
   /**
@@ -153,15 +325,70 @@ public static JdbcSchema create(
     String jdbcCatalog = (String) operand.get("jdbcCatalog");
     String jdbcSchema = (String) operand.get("jdbcSchema");
     String sqlDialectFactory = (String) operand.get("sqlDialectFactory");
-
+    final ResultSetEnumerable.FetchOptions fetchOptions =
+        new ResultSetEnumerable.FetchOptions(
+            intOperand(operand, "jdbcFetchSize", 0),
+            booleanOperand(operand, "jdbcStreaming", false),
+            intOperand(operand, "jdbcPrefetchRows", 0));
+    final BatchInsertEnumerable.BatchOptions batchOptions =
+        new BatchInsertEnumerable.BatchOptions(
+            intOperand(operand, "jdbcBatchSize",
+                BatchInsertEnumerable.BatchOptions.DEFAULT.batchSize),
+            intOperand(operand, "jdbcCommitInterval", 0),
+            intOperand(operand, "jdbcRowsPerInsert", 1));
+    final String metadataFile = (String) operand.get("jdbcMetadataFile");
+    final MetadataOptions metadataOptions =
+        new MetadataOptions(longOperand(operand, "jdbcMetadataTtl", 0L),
+            metadataFile == null ? null : new File(metadataFile));
+
+    final SqlDialectFactory factory;
     if (sqlDialectFactory == null || sqlDialectFactory.isEmpty()) {
-      return JdbcSchema.create(
-          parentSchema, name, dataSource, jdbcCatalog, jdbcSchema);
+      factory = new SqlDialectFactoryImpl();
     } else {
-      SqlDialectFactory factory = AvaticaUtils.instantiatePlugin(
+      factory = AvaticaUtils.instantiatePlugin(
           SqlDialectFactory.class, sqlDialectFactory);
-      return JdbcSchema.create(
-          parentSchema, name, dataSource, factory, jdbcCatalog, jdbcSchema);
+    }
+    return JdbcSchema.create(parentSchema, name, dataSource, factory,
+        jdbcCatalog, jdbcSchema, fetchOptions, batchOptions, metadataOptions);
+  }
+
+  /** Reads an integer value from an operand map. The value may be a number
+   * or, if the model was given inline in a connect string, a string. */
+  private static int intOperand(Map<String, Object> operand, String name,
+      int defaultValue) {
+    final Object o = operand.get(name);
+    if (o == null) {
+      return defaultValue;
+    } else if (o instanceof Number) {
+      return ((Number) o).intValue();
+    } else {
+      return Integer.parseInt(o.toString());
+    }
+  }
+
+  /** Reads a long value from an operand map. */
+  private static long longOperand(Map<String, Object> operand, String name,
+      long defaultValue) {
+    final Object o = operand.get(name);
+    if (o == null) {
+      return defaultValue;
+    } else if (o instanceof Number) {
+      return ((Number) o).longValue();
+    } else {
+      return Long.parseLong(o.toString());
+    }
+  }
+
+  /** Reads a boolean value from an operand map. */
+  private static boolean booleanOperand(Map<String, Object> operand,
+      String name, boolean defaultValue) {
+    final Object o = operand.get(name);
+    if (o == null) {
+      return defaultValue;
+    } else if (o instanceof Boolean) {
+      return (Boolean) o;
+    } else {
+      return Boolean.parseBoolean(o.toString());
     }
   }
 
@@ -199,8 +426,18 @@ public boolean isMutable() {
   }
 
   public Schema snapshot(SchemaVersion version) {
+    // Without a time-to-live, the snapshot keeps the current list, or reads
+    // its own if we have not read one, as it always did. With a time-to-live,
+    // if we have not read the list, the snapshot asks us for tables, so that
+    // there is only one copy of the metadata.
+    final TableMap map = tableMap;
+    if (map != null || metadataOptions.ttlMillis <= 0) {
+      return new JdbcSchema(dataSource, dialect, convention, catalog, schema,
+          map, null, fetchOptions, batchOptions, metadataOptions);
+    }
     return new JdbcSchema(dataSource, dialect, convention, catalog, schema,
-        tableMap);
+        null, source != null ? source : this, fetchOptions, batchOptions,
+        metadataOptions);
   }
 
   // Used by generated code.
@@ -208,6 +445,20 @@ public DataSource getDataSource() {
     return dataSource;
   }
 
+  // Used by generated code.
+  public ResultSetEnumerable.FetchOptions getFetchOptions() {
+    return fetchOptions;
+  }
+
+  // Used by generated code.
+  public BatchInsertEnumerable.BatchOptions getBatchOptions() {
+    return batchOptions;
+  }
+
+  public MetadataOptions getMetadataOptions() {
+    return metadataOptions;
+  }
+
   public Expression getExpression(SchemaPlus parentSchema, String name) {
     return Schemas.subSchemaExpression(parentSchema, name, JdbcSchema.class);
   }
@@ -225,7 +476,9 @@ public final Set<String> getFunctionNames() {
     return getFunctions().keySet();
   }
 
-  private ImmutableMap<String, JdbcTable> computeTables() {
+  /** Reads the list of tables from the data source. */
+  private TableMap computeTables() {
+    final long loadTime = System.currentTimeMillis();
     Connection connection = null;
     ResultSet resultSet = null;
     try {
@@ -265,7 +518,7 @@ private ImmutableMap<String, JdbcTable> computeTables() {
             new JdbcTable(this, catalogName, schemaName, tableName, tableType);
         builder.put(tableName, table);
       }
-      return builder.build();
+      return new TableMap(builder.build(), loadTime);
     } catch (SQLException e) {
       throw new RuntimeException(
           "Exception while reading tables", e);
@@ -274,41 +527,167 @@ private ImmutableMap<String, JdbcTable> computeTables() {
     }
   }
 
+  /** Creates a map of tables from the contents of a metadata file, and
+   * remembers the columns that the file contains. */
+  private TableMap toTableMap(JdbcMetadataFile.Contents contents) {
+    final ImmutableMap.Builder<String, JdbcTable> builder =
+        ImmutableMap.builder();
+    for (JdbcMetadataFile.TableDef t : contents.tables) {
+      builder.put(t.name,
+          new JdbcTable(this, t.catalog, t.schema, t.name, t.tableType));
+      if (t.columns != null) {
+        columnMap.put(t.name, t.columns);
+      }
+    }
+    return new TableMap(builder.build(), contents.loadTime);
+  }
+
   public Table getTable(String name) {
-    return getTableMap(false).get(name);
+    return getTableMap().tables.get(name);
+  }
+
+  /** Returns the current map of tables, reading it if this is the first
+   * call. Does not wait if the map is merely stale; starts a background
+   * re-read and returns the current map. */
+  private TableMap getTableMap() {
+    final TableMap map = tableMap;
+    if (map == null) {
+      return source != null ? source.getTableMap() : load(null);
+    }
+    if (!snapshot && metadataOptions.ttlMillis > 0
+        && System.currentTimeMillis() - map.loadTime
+            > metadataOptions.ttlMillis) {
+      refreshInBackground();
+    }
+    return map;
   }
 
-  private synchronized ImmutableMap<String, JdbcTable> getTableMap(
-      boolean force) {
-    if (force || tableMap == null) {
-      tableMap = computeTables();
+  /** Reads the list of tables, unless another thread has replaced
+   * {@code previous} while we were waiting for the lock. The first load
+   * reads from the metadata file, if there is one. */
+  private TableMap load(TableMap previous) {
+    synchronized (loadLock) {
+      if (tableMap != previous) {
+        return tableMap;
+      }
+      if (previous == null && metadataOptions.file != null) {
+        final JdbcMetadataFile.Contents contents =
+            JdbcMetadataFile.read(metadataOptions.file, catalog, schema);
+        if (contents != null) {
+          return tableMap = toTableMap(contents);
+        }
+      }
+      Hook.JDBC_METADATA_LOAD.run(this);
+      final TableMap map = computeTables();
+      columnMap.clear();
+      tableMap = map;
+      requestSave();
+      return map;
+    }
+  }
+
+  /** Starts re-reading the list of tables in a background thread, unless a
+   * re-read is already in progress. Until it finishes, readers continue to
+   * see the old list. */
+  private void refreshInBackground() {
+    if (!refreshing.compareAndSet(false, true)) {
+      return;
+    }
+    METADATA_EXECUTOR.execute(
+        new Runnable() {
+          public void run() {
+            try {
+              load(tableMap);
+            } catch (RuntimeException e) {
+              LOGGER.warn("Error while refreshing tables of JDBC schema", e);
+            } finally {
+              refreshing.set(false);
+            }
+          }
+        });
+  }
+
+  /** Schedules a write of the metadata file, if there is one. Writes are
+   * coalesced, so that reading the columns of many tables in quick
+   * succession writes the file only a few times. */
+  private void requestSave() {
+    if (metadataOptions.file == null
+        || !savePending.compareAndSet(false, true)) {
+      return;
+    }
+    METADATA_EXECUTOR.execute(
+        new Runnable() {
+          public void run() {
+            savePending.set(false);
+            save();
+          }
+        });
+  }
+
+  private void save() {
+    synchronized (saveLock) {
+      save0();
+    }
+  }
+
+  private void save0() {
+    final TableMap map = tableMap;
+    if (map == null) {
+      return;
+    }
+    final ImmutableList.Builder<JdbcMetadataFile.TableDef> tables =
+        ImmutableList.builder();
+    for (JdbcTable table : map.tables.values()) {
+      final List<JdbcMetadataFile.ColumnDef> columns =
+          columnMap.get(table.jdbcTableName);
+      tables.add(
+          new JdbcMetadataFile.TableDef(table.jdbcCatalogName,
+              table.jdbcSchemaName, table.jdbcTableName,
+              table.getJdbcTableType(),
+              columns == null ? null : ImmutableList.copyOf(columns)));
+    }
+    try {
+      JdbcMetadataFile.write(metadataOptions.file, catalog, schema,
+          new JdbcMetadataFile.Contents(map.loadTime, tables.build()));
+      Hook.JDBC_METADATA_SAVE.run(metadataOptions.file);
+    } catch (IOException e) {
+      LOGGER.warn("Error while writing JDBC metadata file "
+          + metadataOptions.file, e);
     }
-    return tableMap;
   }
 
   RelProtoDataType getRelDataType(String catalogName, String schemaName,
       String tableName) throws SQLException {
-    Connection connection = null;
-    try {
-      connection = dataSource.getConnection();
-      DatabaseMetaData metaData = connection.getMetaData();
-      return getRelDataType(metaData, catalogName, schemaName, tableName);
-    } finally {
-      close(connection, null, null);
+    List<JdbcMetadataFile.ColumnDef> columns = columnMap.get(tableName);
+    if (columns == null) {
+      Connection connection = null;
+      try {
+        connection = dataSource.getConnection();
+        DatabaseMetaData metaData = connection.getMetaData();
+        columns = getColumns(metaData, catalogName, schemaName, tableName);
+      } finally {
+        close(connection, null, null);
+      }
+      columnMap.put(tableName, columns);
+      requestSave();
     }
+    return getRelDataType(columns);
   }
 
   RelProtoDataType getRelDataType(DatabaseMetaData metaData, String catalogName,
       String schemaName, String tableName) throws SQLException {
+    return getRelDataType(
+        getColumns(metaData, catalogName, schemaName, tableName));
+  }
+
+  /** Reads the definitions of the columns of a table. */
+  private List<JdbcMetadataFile.ColumnDef> getColumns(
+      DatabaseMetaData metaData, String catalogName, String schemaName,
+      String tableName) throws SQLException {
     final ResultSet resultSet =
         metaData.getColumns(catalogName, schemaName, tableName, null);
-
-    // Temporary type factory, just for the duration of this method. Allowable
-    // because we're creating a proto-type, not a type; before being used, the
-    // proto-type will be copied into a real type factory.
-    final RelDataTypeFactory typeFactory =
-        new SqlTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
-    final RelDataTypeFactory.Builder fieldInfo = typeFactory.builder();
+    final ImmutableList.Builder<JdbcMetadataFile.ColumnDef> columns =
+        ImmutableList.builder();
     while (resultSet.next()) {
       final String columnName = resultSet.getString(4);
       final int dataType = resultSet.getInt(5);
@@ -326,12 +705,29 @@ RelProtoDataType getRelDataType(DatabaseMetaData metaData, String catalogName,
         scale = resultSet.getInt(9); // SCALE
         break;
       }
-      RelDataType sqlType =
-          sqlType(typeFactory, dataType, precision, scale, typeString);
       boolean nullable = resultSet.getInt(11) != DatabaseMetaData.columnNoNulls;
-      fieldInfo.add(columnName, sqlType).nullable(nullable);
+      columns.add(
+          new JdbcMetadataFile.ColumnDef(columnName, dataType, typeString,
+              precision, scale, nullable));
     }
     resultSet.close();
+    return columns.build();
+  }
+
+  private RelProtoDataType getRelDataType(
+      List<JdbcMetadataFile.ColumnDef> columns) {
+    // Temporary type factory, just for the duration of this method. Allowable
+    // because we're creating a proto-type, not a type; before being used, the
+    // proto-type will be copied into a real type factory.
+    final RelDataTypeFactory typeFactory =
+        new SqlTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataTypeFactory.Builder fieldInfo = typeFactory.builder();
+    for (JdbcMetadataFile.ColumnDef column : columns) {
+      RelDataType sqlType =
+          sqlType(typeFactory, column.dataType, column.precision,
+              column.scale, column.typeString);
+      fieldInfo.add(column.name, sqlType).nullable(column.nullable);
+    }
     return RelDataTypeImpl.proto(fieldInfo.build());
   }
 
@@ -403,10 +799,39 @@ private RelDataType parseTypeString(RelDataTypeFactory typeFactory,
     }
   }
 
+  /** Returns the rows of a table whose value of a given column is not less
+   * than a given value, by executing a query that has that condition on the
+   * JDBC data source.
+   *
+   * <p>{@link org.apache.calcite.adapter.clone.CloneSchema#refresh()} uses
+   * this to read only the rows that may have been added to a table since it
+   * loaded the table.
+   *
+   * @throws IllegalArgumentException if there is no such table
+   */
+  public Enumerable<Object[]> scanNotLessThan(JavaTypeFactory typeFactory,
+      String tableName, String columnName, Object value) {
+    final Table table = getTable(tableName);
+    if (!(table instanceof JdbcTable)) {
+      throw new IllegalArgumentException("table '" + tableName
+          + "' not found");
+    }
+    return ((JdbcTable) table).scanNotLessThan(typeFactory, columnName,
+        value);
+  }
+
   public Set<String> getTableNames() {
-    // This method is called during a cache refresh. We can take it as a signal
-    // that we need to re-build our own cache.
-    return getTableMap(!snapshot).keySet();
+    // This method is called during a cache refresh. Unless the list of tables
+    // has a time-to-live, we take it as a signal that we need to re-build our
+    // own cache.
+    final TableMap map = tableMap;
+    if (map == null && source != null) {
+      return source.getTableNames();
+    }
+    if (map != null && !snapshot && metadataOptions.ttlMillis <= 0) {
+      return load(map).tables.keySet();
+    }
+    return getTableMap().tables.keySet();
   }
 
   public Schema getSubSchema(String name) {
@@ -443,6 +868,43 @@ private static void close(
     }
   }
 
+  /** Tables of a JDBC schema, and the time that they were read. */
+  private static class TableMap {
+    final ImmutableMap<String, JdbcTable> tables;
+    /** Time, in milliseconds since the epoch, that the tables were read from
+     * the data source. */
+    final long loadTime;
+
+    TableMap(ImmutableMap<String, JdbcTable> tables, long loadTime) {
+      this.tables = tables;
+      this.loadTime = loadTime;
+    }
+  }
+
+  /** Options that control how a {@link JdbcSchema} reads and caches the
+   * metadata of its tables. */
+  public static class MetadataOptions {
+    /** Default options: re-read the list of tables whenever the enclosing
+     * schema refreshes its cache, and do not use a metadata file. */
+    public static final MetadataOptions DEFAULT = new MetadataOptions(0, null);
+
+    /** If positive, the list of tables is re-read, in a background thread,
+     * when it is older than this many milliseconds. If 0, the list of tables
+     * is re-read whenever the enclosing schema refreshes its cache. */
+    public final long ttlMillis;
+
+    /** File in which to store the list of tables and the columns of the
+     * tables that have been used, or null. If the file exists when the schema
+     * first needs its tables, it reads them from the file rather than from
+     * the data source. */
+    public final File file;
+
+    public MetadataOptions(long ttlMillis, File file) {
+      this.ttlMillis = ttlMillis;
+      this.file = file;
+    }
+  }
+
   /** Schema factory that creates a
    * {@link org.apache.calcite.adapter.jdbc.JdbcSchema}.
    *
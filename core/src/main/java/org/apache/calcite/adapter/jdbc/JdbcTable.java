@@ -45,9 +45,13 @@
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.TranslatableTable;
 import org.apache.calcite.schema.impl.AbstractTableQueryable;
+import org.apache.calcite.sql.SqlDynamicParam;
 import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlInsert;
+import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.SqlNodeList;
 import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.parser.SqlParserPos;
 import org.apache.calcite.sql.pretty.SqlPrettyWriter;
 import org.apache.calcite.sql.util.SqlString;
@@ -58,6 +62,7 @@
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -76,11 +81,11 @@
  */
 class JdbcTable extends AbstractQueryableTable
     implements TranslatableTable, ScannableTable, ModifiableTable {
-  private RelProtoDataType protoRowType;
-  private final JdbcSchema jdbcSchema;
-  private final String jdbcCatalogName;
-  private final String jdbcSchemaName;
-  private final String jdbcTableName;
+  private volatile RelProtoDataType protoRowType;
+  final JdbcSchema jdbcSchema;
+  final String jdbcCatalogName;
+  final String jdbcSchemaName;
+  final String jdbcTableName;
   private final Schema.TableType jdbcTableType;
 
   JdbcTable(JdbcSchema jdbcSchema, String jdbcCatalogName,
@@ -135,18 +140,48 @@ public Pair<ColumnMetaData.Rep, Integer> apply(RelDataTypeField f) {
   }
 
   SqlString generateSql() {
+    return generateSql(null);
+  }
+
+  /** Generates a SELECT statement that returns all columns of the rows of
+   * this table that match a condition, or all rows if the condition is
+   * null. */
+  private SqlString generateSql(SqlNode where) {
     final SqlNodeList selectList =
         new SqlNodeList(
             Collections.singletonList(SqlIdentifier.star(SqlParserPos.ZERO)),
             SqlParserPos.ZERO);
     SqlSelect node =
         new SqlSelect(SqlParserPos.ZERO, SqlNodeList.EMPTY, selectList,
-            tableName(), null, null, null, null, null, null, null);
+            tableName(), where, null, null, null, null, null, null);
     final SqlPrettyWriter writer = new SqlPrettyWriter(jdbcSchema.dialect);
     node.unparse(writer, 0, 0);
     return writer.toSqlString();
   }
 
+  /** Generates an INSERT statement into this table whose VALUES clause has
+   * {@code rowCount} rows of dynamic parameters. */
+  SqlString generateInsertSql(List<String> columnNames, int rowCount) {
+    final SqlParserPos pos = SqlParserPos.ZERO;
+    final SqlNodeList columnList = new SqlNodeList(pos);
+    for (String columnName : columnNames) {
+      columnList.add(new SqlIdentifier(columnName, pos));
+    }
+    final List<SqlNode> rows = new ArrayList<>();
+    int parameter = 0;
+    for (int r = 0; r < rowCount; r++) {
+      final List<SqlNode> values = new ArrayList<>();
+      for (int c = 0; c < columnNames.size(); c++) {
+        values.add(new SqlDynamicParam(parameter++, pos));
+      }
+      rows.add(SqlStdOperatorTable.ROW.createCall(pos, values));
+    }
+    final SqlInsert insert =
+        new SqlInsert(pos, SqlNodeList.EMPTY, tableName(),
+            SqlStdOperatorTable.VALUES.createCall(pos, rows), columnList);
+    return insert.toSqlString(jdbcSchema.dialect);
+  }
+
   SqlIdentifier tableName() {
     final List<String> strings = new ArrayList<>();
     if (jdbcSchema.catalog != null) {
@@ -177,6 +212,29 @@ public Enumerable<Object[]> scan(DataContext root) {
         JdbcUtils.ObjectArrayRowBuilder.factory(fieldClasses(typeFactory)));
   }
 
+  /** Returns the rows of this table whose value of a given column is not
+   * less than a given value. The condition is applied by the JDBC data
+   * source. See {@link JdbcSchema#scanNotLessThan}. */
+  Enumerable<Object[]> scanNotLessThan(JavaTypeFactory typeFactory,
+      String columnName, final Object value) {
+    getRowType(typeFactory); // populates protoRowType
+    final SqlParserPos pos = SqlParserPos.ZERO;
+    final SqlString sql =
+        generateSql(
+            SqlStdOperatorTable.GREATER_THAN_OR_EQUAL.createCall(pos,
+                new SqlIdentifier(columnName, pos),
+                new SqlDynamicParam(0, pos)));
+    return ResultSetEnumerable.of(jdbcSchema.getDataSource(), sql.getSql(),
+        JdbcUtils.ObjectArrayRowBuilder.factory(fieldClasses(typeFactory)),
+        new ResultSetEnumerable.PreparedStatementEnricher() {
+          public void enrich(PreparedStatement statement)
+              throws SQLException {
+            statement.setObject(1, value);
+          }
+        },
+        jdbcSchema.getFetchOptions());
+  }
+
   @Override public Collection getModifiableCollection() {
     return null;
   }
@@ -23,6 +23,7 @@
 import org.apache.calcite.adapter.enumerable.PhysTypeImpl;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.ConstantExpression;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
 import org.apache.calcite.linq4j.tree.ParameterExpression;
@@ -39,10 +40,12 @@
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.runtime.ResultSetEnumerable;
 import org.apache.calcite.runtime.SqlFunctions;
 import org.apache.calcite.schema.Schemas;
 import org.apache.calcite.sql.SqlDialect;
 import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.sql.util.SqlString;
 import org.apache.calcite.util.BuiltInMethod;
 
 import java.lang.reflect.Method;
@@ -79,7 +82,8 @@ protected JdbcToEnumerableConverter(
 
   public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     // Generate:
-    //   ResultSetEnumerable.of(schema.getDataSource(), "select ...")
+    //   ResultSetEnumerable.of(schema.getDataSource(), "select ...",
+    //       rowBuilderFactory, enricher, schema.getFetchOptions())
     final BlockBuilder builder0 = new BlockBuilder(false);
     final JdbcRel child = (JdbcRel) getInput();
     final PhysType physType =
@@ -88,7 +92,8 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
             pref.prefer(JavaRowFormat.CUSTOM));
     final JdbcConvention jdbcConvention =
         (JdbcConvention) child.getConvention();
-    String sql = generateSql(jdbcConvention.dialect);
+    final SqlString sqlString = generateSql(jdbcConvention.dialect);
+    final String sql = sqlString.getSql();
     if (CalcitePrepareImpl.DEBUG) {
       System.out.println("[" + sql + "]");
     }
@@ -151,17 +156,37 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
                                                 RuntimeException.class,
                                                 e_)))))))),
                 resultSet_));
+    final Expression schema_ =
+        builder0.append("jdbcSchema",
+            Schemas.unwrap(jdbcConvention.expression, JdbcSchema.class));
+    final Expression dataSource_ =
+        Expressions.call(schema_, BuiltInMethod.JDBC_SCHEMA_DATA_SOURCE.method);
+    final Expression fetchOptions_ =
+        Expressions.call(schema_,
+            BuiltInMethod.JDBC_SCHEMA_FETCH_OPTIONS.method);
+    final Expression preparedStatementEnricher_;
+    if (sqlString.getDynamicParameters().isEmpty()) {
+      preparedStatementEnricher_ =
+          Expressions.constant(null,
+              ResultSetEnumerable.PreparedStatementEnricher.class);
+    } else {
+      // The query has dynamic parameters. Execute it as a prepared
+      // statement, binding values from the data context, rather than
+      // inlining the values into the SQL string; the data source can then
+      // re-use the prepared statement across executions.
+      preparedStatementEnricher_ =
+          builder0.append("preparedStatementEnricher",
+              Expressions.call(BuiltInMethod.CREATE_ENRICHER.method,
+                  Expressions.newArrayInit(Integer.class, 1,
+                      dynamicParameterIndexes(sqlString)),
+                  implementor.getRootExpression()));
+    }
     final Expression enumerable =
-        builder0.append(
-            "enumerable",
+        builder0.append("enumerable",
             Expressions.call(
-                BuiltInMethod.RESULT_SET_ENUMERABLE_OF.method,
-                Expressions.call(
-                    Schemas.unwrap(jdbcConvention.expression,
-                        JdbcSchema.class),
-                    BuiltInMethod.JDBC_SCHEMA_DATA_SOURCE.method),
-                sql_,
-                rowBuilderFactory_));
+                BuiltInMethod.RESULT_SET_ENUMERABLE_OF_PREPARED.method,
+                dataSource_, sql_, rowBuilderFactory_,
+                preparedStatementEnricher_, fetchOptions_));
     builder0.add(
         Expressions.return_(null, enumerable));
     return implementor.result(physType, builder0.toBlock());
@@ -292,13 +317,22 @@ private String jdbcGetMethod(Primitive primitive) {
         : "get" + SqlFunctions.initcap(primitive.primitiveName);
   }
 
-  private String generateSql(SqlDialect dialect) {
+  private List<ConstantExpression> dynamicParameterIndexes(
+      SqlString sqlString) {
+    final List<ConstantExpression> list = new ArrayList<>();
+    for (Integer index : sqlString.getDynamicParameters()) {
+      list.add(Expressions.constant(index));
+    }
+    return list;
+  }
+
+  private SqlString generateSql(SqlDialect dialect) {
     final JdbcImplementor jdbcImplementor =
         new JdbcImplementor(dialect,
             (JavaTypeFactory) getCluster().getTypeFactory());
     final JdbcImplementor.Result result =
         jdbcImplementor.visitChild(0, getInput());
-    return result.asStatement().toSqlString(dialect).getSql();
+    return result.asStatement().toSqlString(dialect);
   }
 }
 
@@ -220,6 +220,9 @@ static class DataSourcePool {
                 dataSource.setUsername(key.get(1));
                 dataSource.setPassword(key.get(2));
                 dataSource.setDriverClassName(key.get(3));
+                // Cache prepared statements per pooled connection, so that
+                // a query with dynamic parameters is prepared only once.
+                dataSource.setPoolPreparedStatements(true);
                 return dataSource;
               }
             });
@@ -68,6 +68,24 @@ public interface CalciteConnectionConfig extends ConnectionConfig {
   <T> T typeSystem(Class<T> typeSystemClass, T defaultTypeSystem);
   /** @see CalciteConnectionProperty#CONFORMANCE */
   SqlConformance conformance();
+  /** @see CalciteConnectionProperty#SPILL_THRESHOLD */
+  int spillThreshold();
+  /** @see CalciteConnectionProperty#BINDABLE_CACHE */
+  String bindableCache();
+  /** @see CalciteConnectionProperty#PLAN_CACHE */
+  String planCache();
+  /** @see CalciteConnectionProperty#PARALLELISM */
+  int parallelism();
+  /** @see CalciteConnectionProperty#MORSEL_SIZE */
+  int morselSize();
+  /** @see CalciteConnectionProperty#VECTORIZE */
+  boolean vectorize();
+  /** @see CalciteConnectionProperty#FUSE_INTERPRETER */
+  boolean fuseInterpreter();
+  /** @see CalciteConnectionProperty#PLANNER_TIME_BUDGET */
+  long plannerTimeBudget();
+  /** @see CalciteConnectionProperty#PLANNER_RULE_BUDGET */
+  int plannerRuleBudget();
 }
 
 // End CalciteConnectionConfig.java
@@ -170,6 +170,47 @@ public SqlConformance conformance() {
     return CalciteConnectionProperty.CONFORMANCE.wrap(properties)
         .getEnum(SqlConformanceEnum.class);
   }
+
+  public int spillThreshold() {
+    return CalciteConnectionProperty.SPILL_THRESHOLD.wrap(properties).getInt();
+  }
+
+  public String bindableCache() {
+    return CalciteConnectionProperty.BINDABLE_CACHE.wrap(properties)
+        .getString();
+  }
+
+  public String planCache() {
+    return CalciteConnectionProperty.PLAN_CACHE.wrap(properties).getString();
+  }
+
+  public int parallelism() {
+    return CalciteConnectionProperty.PARALLELISM.wrap(properties).getInt();
+  }
+
+  public int morselSize() {
+    return CalciteConnectionProperty.MORSEL_SIZE.wrap(properties).getInt();
+  }
+
+  public boolean vectorize() {
+    return CalciteConnectionProperty.VECTORIZE.wrap(properties)
+        .getBoolean();
+  }
+
+  public boolean fuseInterpreter() {
+    return CalciteConnectionProperty.FUSE_INTERPRETER.wrap(properties)
+        .getBoolean();
+  }
+
+  public long plannerTimeBudget() {
+    return CalciteConnectionProperty.PLANNER_TIME_BUDGET.wrap(properties)
+        .getLong();
+  }
+
+  public int plannerRuleBudget() {
+    return CalciteConnectionProperty.PLANNER_RULE_BUDGET.wrap(properties)
+        .getInt();
+  }
 }
 
 // End CalciteConnectionConfigImpl.java
@@ -136,7 +136,72 @@ public enum CalciteConnectionProperty implements ConnectionProperty {
   TYPE_SYSTEM("typeSystem", Type.PLUGIN, null, false),
 
   /** SQL conformance level. */
-  CONFORMANCE("conformance", Type.ENUM, SqlConformanceEnum.DEFAULT, false);
+  CONFORMANCE("conformance", Type.ENUM, SqlConformanceEnum.DEFAULT, false),
+
+  /** Maximum number of rows that a sort, aggregate or join may hold in memory
+   * before it writes rows to temporary files. If 0 (the default), operators
+   * never spill, and hold all rows in memory. */
+  SPILL_THRESHOLD("spillThreshold", Type.NUMBER, 0, false),
+
+  /** Specification of the cache of compiled code, for example
+   * "maximumSize=100,expireAfterAccess=10m", in the syntax of Guava's
+   * {@code CacheBuilderSpec}. Statements whose generated code is the same as
+   * that of a previous statement re-use the compiled class rather than
+   * compiling it again. If not specified, code is compiled for every
+   * statement. */
+  BINDABLE_CACHE("bindableCache", Type.STRING, null, false),
+
+  /** Specification of the cache of prepared statements, for example
+   * "maximumSize=100", in the syntax of Guava's {@code CacheBuilderSpec}.
+   * If a connection prepares the same SQL with the same default schema and
+   * maximum row count as a previous statement, it re-uses the plan rather than
+   * parsing, validating and optimizing again. The cache is cleared when the
+   * connection's root schema is modified. If not specified, each statement
+   * is prepared from scratch. */
+  PLAN_CACHE("planCache", Type.STRING, null, false),
+
+  /** Maximum number of threads with which to execute a query. If greater
+   * than 1, pipelines of calculations, filters and aggregates over a table
+   * scan are split into morsels of {@link #MORSEL_SIZE} rows, which are
+   * processed in parallel, and each exchange repartitions rows across this
+   * many threads. If 1 (the default), queries execute on a single
+   * thread. */
+  PARALLELISM("parallelism", Type.NUMBER, 1, false),
+
+  /** Number of rows in each batch ("morsel") that is processed by a parallel
+   * task, if {@link #PARALLELISM} is greater than 1. Default 16384. */
+  MORSEL_SIZE("morselSize", Type.NUMBER, 16384, false),
+
+  /** Whether to execute scans of tables that support batch scans, and the
+   * filters and projects above them, a batch of rows at a time using
+   * primitive column arrays. Default false.
+   *
+   * @see org.apache.calcite.adapter.enumerable.VectorConvention */
+  VECTORIZE("vectorize", Type.BOOLEAN, false, false),
+
+  /** Whether the interpreter executes a chain of filters and projects over a
+   * scan of a {@link org.apache.calcite.schema.ScannableTable} using a
+   * single generated class, rather than passing a row object between a node
+   * for each relational expression. Default false.
+   *
+   * @see org.apache.calcite.interpreter.FusedScanNode */
+  FUSE_INTERPRETER("fuseInterpreter", Type.BOOLEAN, false, false),
+
+  /** Maximum time, in milliseconds, that the Volcano planner may spend
+   * optimizing a query. When the time has elapsed, the planner returns the
+   * cheapest complete plan that it has found so far (continuing until it has
+   * found one). If 0 (the default), there is no limit.
+   *
+   * @see org.apache.calcite.plan.volcano.VolcanoPlanner#setTimeBudget */
+  PLANNER_TIME_BUDGET("plannerTimeBudget", Type.NUMBER, 0, false),
+
+  /** Maximum number of rule calls that the Volcano planner may make while
+   * optimizing a query. When they have been made, the planner returns the
+   * cheapest complete plan that it has found so far (continuing until it has
+   * found one). If 0 (the default), there is no limit.
+   *
+   * @see org.apache.calcite.plan.volcano.VolcanoPlanner#setRuleCallBudget */
+  PLANNER_RULE_BUDGET("plannerRuleBudget", Type.NUMBER, 0, false);
 
   private final String camelName;
   private final Type type;
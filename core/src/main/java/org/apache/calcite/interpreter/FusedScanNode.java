@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.interpreter;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexProgramBuilder;
+import org.apache.calcite.schema.FilterableTable;
+import org.apache.calcite.schema.ProjectableFilterableTable;
+import org.apache.calcite.schema.ScannableTable;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * Interpreter node that implements a chain of
+ * {@link org.apache.calcite.rel.core.Filter} and
+ * {@link org.apache.calcite.rel.core.Project} over a
+ * {@link org.apache.calcite.rel.core.TableScan} of a {@link ScannableTable}.
+ *
+ * <p>The filters and projects are merged into one program, which is compiled
+ * to a single class. Each row of the scan is passed to that class without
+ * being wrapped in a {@link Row}, and the projected values are written to a
+ * buffer that is re-used for every row; only rows that pass the filters are
+ * copied. Like {@link TableScanNode}, the node produces its rows lazily,
+ * rather than writing them to a sink.
+ *
+ * @see org.apache.calcite.config.CalciteConnectionProperty#FUSE_INTERPRETER
+ */
+public class FusedScanNode implements Node {
+  private FusedScanNode(Interpreter interpreter, RelNode rel,
+      Enumerable<Row> enumerable) {
+    interpreter.enumerable(rel, enumerable);
+  }
+
+  public void run() throws InterruptedException {
+    // nothing to do
+  }
+
+  /** Creates a FusedScanNode if a relational expression is a chain of one
+   * or more filters and projects over a scan of a {@link ScannableTable},
+   * otherwise returns null. */
+  static FusedScanNode create(final Interpreter interpreter, RelNode rel) {
+    // Walk down the chain, top first.
+    final List<RelNode> rels = Lists.newArrayList();
+    RelNode r = rel;
+    while (r instanceof Filter || r instanceof Project) {
+      rels.add(r);
+      r = interpreter.getInput(r, 0);
+    }
+    if (rels.isEmpty() || !(r instanceof TableScan)) {
+      return null;
+    }
+    final TableScan scan = (TableScan) r;
+    final ScannableTable scannableTable = scannableTable(scan);
+    if (scannableTable == null) {
+      return null;
+    }
+
+    // Merge the programs of the chain, bottom first.
+    final RexBuilder rexBuilder = rel.getCluster().getRexBuilder();
+    RexProgram program = null;
+    for (RelNode rel2 : Lists.reverse(rels)) {
+      final RexProgram program2 = program(rel2, rexBuilder);
+      program = program == null
+          ? program2
+          : RexProgramBuilder.mergePrograms(program2, program, rexBuilder);
+    }
+    assert program != null;
+
+    final ProgramScalar scalar = interpreter.compile(program);
+    final int fieldCount = program.getOutputRowType().getFieldCount();
+    final Enumerable<Object[]> source =
+        scannableTable.scan(interpreter.getDataContext());
+    final Enumerable<Row> enumerable =
+        new AbstractEnumerable<Row>() {
+          public Enumerator<Row> enumerator() {
+            return new FusedEnumerator(source.enumerator(), scalar,
+                interpreter.createContext(), fieldCount);
+          }
+        };
+    return new FusedScanNode(interpreter, rel, enumerable);
+  }
+
+  /** Returns the table that a scan reads, if it is a {@link ScannableTable}
+   * that would be scanned in full, otherwise null.
+   *
+   * <p>Tables that can filter or project are left to {@link TableScanNode},
+   * which negotiates with them. */
+  private static ScannableTable scannableTable(TableScan scan) {
+    final RelOptTable table = scan.getTable();
+    if (table.unwrap(FilterableTable.class) != null
+        || table.unwrap(ProjectableFilterableTable.class) != null) {
+      return null;
+    }
+    if (scan instanceof Bindables.BindableTableScan) {
+      final Bindables.BindableTableScan bindableScan =
+          (Bindables.BindableTableScan) scan;
+      if (!bindableScan.filters.isEmpty()
+          || !bindableScan.projects.equals(TableScan.identity(table))) {
+        return null;
+      }
+    }
+    return table.unwrap(ScannableTable.class);
+  }
+
+  /** Returns a program equivalent to a filter or project. */
+  private static RexProgram program(RelNode rel, RexBuilder rexBuilder) {
+    if (rel instanceof Filter) {
+      final Filter filter = (Filter) rel;
+      final RexProgramBuilder programBuilder =
+          new RexProgramBuilder(filter.getInput().getRowType(), rexBuilder);
+      programBuilder.addIdentity();
+      programBuilder.addCondition(filter.getCondition());
+      return programBuilder.getProgram();
+    } else {
+      final Project project = (Project) rel;
+      return RexProgram.create(project.getInput().getRowType(),
+          project.getProjects(), null, project.getRowType(), rexBuilder);
+    }
+  }
+
+  /** Enumerator that applies a compiled program to each row of a scan. */
+  private static class FusedEnumerator implements Enumerator<Row> {
+    private final Enumerator<Object[]> input;
+    private final ProgramScalar scalar;
+    private final Context context;
+    private final Object[] values;
+    private Row current;
+
+    FusedEnumerator(Enumerator<Object[]> input, ProgramScalar scalar,
+        Context context, int fieldCount) {
+      this.input = input;
+      this.scalar = scalar;
+      this.context = context;
+      this.values = new Object[fieldCount];
+    }
+
+    public Row current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      while (input.moveNext()) {
+        context.values = input.current();
+        if (scalar.execute(context, values)) {
+          current = Row.asCopy(values);
+          return true;
+        }
+      }
+      current = null;
+      return false;
+    }
+
+    public void reset() {
+      input.reset();
+      current = null;
+    }
+
+    public void close() {
+      input.close();
+    }
+  }
+}
+
+// End FusedScanNode.java
@@ -33,23 +33,20 @@
 import org.apache.calcite.rel.rules.ProjectTableScanRule;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
-import org.apache.calcite.rex.RexCall;
-import org.apache.calcite.rex.RexInputRef;
-import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
-import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.rex.RexProgram;
 import org.apache.calcite.util.ReflectUtil;
 import org.apache.calcite.util.ReflectiveVisitDispatcher;
 import org.apache.calcite.util.ReflectiveVisitor;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
-import java.math.BigDecimal;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
@@ -67,10 +64,15 @@ public class Interpreter extends AbstractEnumerable<Object[]>
   private final RelNode rootRel;
   private final Map<RelNode, List<RelNode>> relInputs = Maps.newHashMap();
   protected final ScalarCompiler scalarCompiler;
+  /** Whether to implement a chain of filters and projects over a scan as a
+   * single {@link FusedScanNode}. */
+  final boolean fuse;
 
   /** Creates an Interpreter. */
   public Interpreter(DataContext dataContext, RelNode rootRel) {
     this.dataContext = Preconditions.checkNotNull(dataContext);
+    this.fuse = Boolean.TRUE.equals(
+        DataContext.Variable.FUSE_INTERPRETER.<Boolean>get(dataContext));
     this.scalarCompiler =
         new JaninoRexCompiler(rootRel.getCluster().getRexBuilder());
     final RelNode rel = optimize(rootRel);
@@ -132,6 +134,24 @@ public Scalar compile(List<RexNode> nodes, RelDataType inputRowType) {
     return scalarCompiler.compile(nodes, inputRowType);
   }
 
+  /** Compiles a program, its condition and its projects, to an executable
+   * form. */
+  public ProgramScalar compile(RexProgram program) {
+    return scalarCompiler.compile(program);
+  }
+
+  /** Returns the nodes of the data flow graph, leaves first. */
+  @VisibleForTesting
+  public List<Node> nodes() {
+    final List<Node> list = new ArrayList<>();
+    for (NodeInfo nodeInfo : nodes.values()) {
+      if (nodeInfo.node != null) {
+        list.add(nodeInfo.node);
+      }
+    }
+    return list;
+  }
+
   RelDataType combinedRowType(List<RelNode> inputs) {
     final RelDataTypeFactory.Builder builder =
         dataContext.getTypeFactory().builder();
@@ -141,114 +161,6 @@ RelDataType combinedRowType(List<RelNode> inputs) {
     return builder.build();
   }
 
-  /** Not used. */
-  private class FooCompiler implements ScalarCompiler {
-    public Scalar compile(List<RexNode> nodes, RelDataType inputRowType) {
-      final RexNode node = nodes.get(0);
-      if (node instanceof RexCall) {
-        final RexCall call = (RexCall) node;
-        final Scalar argScalar = compile(call.getOperands(), inputRowType);
-        return new Scalar() {
-          final Object[] args = new Object[call.getOperands().size()];
-
-          public void execute(final Context context, Object[] results) {
-            results[0] = execute(context);
-          }
-
-          public Object execute(Context context) {
-            Comparable o0;
-            Comparable o1;
-            switch (call.getKind()) {
-            case LESS_THAN:
-            case LESS_THAN_OR_EQUAL:
-            case GREATER_THAN:
-            case GREATER_THAN_OR_EQUAL:
-            case EQUALS:
-            case NOT_EQUALS:
-              argScalar.execute(context, args);
-              o0 = (Comparable) args[0];
-              if (o0 == null) {
-                return null;
-              }
-              o1 = (Comparable) args[1];
-              if (o1 == null) {
-                return null;
-              }
-              if (o0 instanceof BigDecimal) {
-                if (o1 instanceof Double || o1 instanceof Float) {
-                  o1 = new BigDecimal(((Number) o1).doubleValue());
-                } else {
-                  o1 = new BigDecimal(((Number) o1).longValue());
-                }
-              }
-              if (o1 instanceof BigDecimal) {
-                if (o0 instanceof Double || o0 instanceof Float) {
-                  o0 = new BigDecimal(((Number) o0).doubleValue());
-                } else {
-                  o0 = new BigDecimal(((Number) o0).longValue());
-                }
-              }
-              final int c = o0.compareTo(o1);
-              switch (call.getKind()) {
-              case LESS_THAN:
-                return c < 0;
-              case LESS_THAN_OR_EQUAL:
-                return c <= 0;
-              case GREATER_THAN:
-                return c > 0;
-              case GREATER_THAN_OR_EQUAL:
-                return c >= 0;
-              case EQUALS:
-                return c == 0;
-              case NOT_EQUALS:
-                return c != 0;
-              default:
-                throw new AssertionError("unknown expression " + call);
-              }
-            default:
-              if (call.getOperator() == SqlStdOperatorTable.UPPER) {
-                argScalar.execute(context, args);
-                String s0 = (String) args[0];
-                if (s0 == null) {
-                  return null;
-                }
-                return s0.toUpperCase(Locale.ROOT);
-              }
-              if (call.getOperator() == SqlStdOperatorTable.SUBSTRING) {
-                argScalar.execute(context, args);
-                String s0 = (String) args[0];
-                Number i1 = (Number) args[1];
-                Number i2 = (Number) args[2];
-                if (s0 == null || i1 == null || i2 == null) {
-                  return null;
-                }
-                return s0.substring(i1.intValue() - 1,
-                    i1.intValue() - 1 + i2.intValue());
-              }
-              throw new AssertionError("unknown expression " + call);
-            }
-          }
-        };
-      }
-      return new Scalar() {
-        public void execute(Context context, Object[] results) {
-          results[0] = execute(context);
-        }
-
-        public Object execute(Context context) {
-          switch (node.getKind()) {
-          case LITERAL:
-            return ((RexLiteral) node).getValueAs(Comparable.class);
-          case INPUT_REF:
-            return context.values[((RexInputRef) node).getIndex()];
-          default:
-            throw new RuntimeException("unknown expression type " + node);
-          }
-        }
-      };
-    }
-  }
-
   public Source source(RelNode rel, int ordinal) {
     final RelNode input = getInput(rel, ordinal);
     final NodeInfo nodeInfo = nodes.get(input);
@@ -266,7 +178,7 @@ public Source source(RelNode rel, int ordinal) {
       "Got a sink " + sink + " to which there is no match source type!");
   }
 
-  private RelNode getInput(RelNode rel, int ordinal) {
+  RelNode getInput(RelNode rel, int ordinal) {
     final List<RelNode> inputs = relInputs.get(rel);
     if (inputs != null) {
       return inputs.get(ordinal);
@@ -464,29 +376,34 @@ public RelNode visitRoot(RelNode p) {
         }
       }
 
-      // rewrite children first (from left to right)
-      final List<RelNode> inputs = interpreter.relInputs.get(p);
-      if (inputs != null) {
-        for (int i = 0; i < inputs.size(); i++) {
-          RelNode input = inputs.get(i);
-          visit(input, i, p);
+      // If a node implements p together with its inputs, the inputs do not
+      // need nodes of their own.
+      node = fuse(p);
+      if (node == null) {
+        // rewrite children first (from left to right)
+        final List<RelNode> inputs = interpreter.relInputs.get(p);
+        if (inputs != null) {
+          for (int i = 0; i < inputs.size(); i++) {
+            RelNode input = inputs.get(i);
+            visit(input, i, p);
+          }
+        } else {
+          p.childrenAccept(this);
         }
-      } else {
-        p.childrenAccept(this);
-      }
 
-      node = null;
-      boolean found = dispatcher.invokeVisitor(this, p, VISIT_METHOD_NAME);
-      if (!found) {
-        if (p instanceof InterpretableRel) {
-          InterpretableRel interpretableRel = (InterpretableRel) p;
-          node = interpretableRel.implement(
-              new InterpretableRel.InterpreterImplementor(interpreter, null,
-                  null));
-        } else {
-          // Probably need to add a visit(XxxRel) method to CoreCompiler.
-          throw new AssertionError("interpreter: no implementation for "
-              + p.getClass());
+        node = null;
+        boolean found = dispatcher.invokeVisitor(this, p, VISIT_METHOD_NAME);
+        if (!found) {
+          if (p instanceof InterpretableRel) {
+            InterpretableRel interpretableRel = (InterpretableRel) p;
+            node = interpretableRel.implement(
+                new InterpretableRel.InterpreterImplementor(interpreter, null,
+                    null));
+          } else {
+            // Probably need to add a visit(XxxRel) method to CoreCompiler.
+            throw new AssertionError("interpreter: no implementation for "
+                + p.getClass());
+          }
         }
       }
       final NodeInfo nodeInfo = interpreter.nodes.get(p);
@@ -501,12 +418,25 @@ public RelNode visitRoot(RelNode p) {
      * rewrite. */
     public void rewrite(RelNode r) {
     }
+
+    /** Creates a node that implements a relational expression and some or
+     * all of its inputs, or returns null.
+     *
+     * <p>Called before the inputs are visited. If it returns a node, the
+     * inputs are not visited, and get no nodes of their own. */
+    protected Node fuse(RelNode p) {
+      return null;
+    }
   }
 
   /** Converts a list of expressions to a scalar that can compute their
    * values. */
   interface ScalarCompiler {
     Scalar compile(List<RexNode> nodes, RelDataType inputRowType);
+
+    /** Converts a program to a scalar that evaluates its condition and
+     * computes its projects. */
+    ProgramScalar compile(RexProgram program);
   }
 }
 
@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.interpreter;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.enumerable.JavaRowFormat;
 import org.apache.calcite.adapter.enumerable.PhysType;
 import org.apache.calcite.adapter.enumerable.PhysTypeImpl;
@@ -59,6 +60,14 @@
  * to a class using Janino.
  */
 public class JaninoRexCompiler implements Interpreter.ScalarCompiler {
+  private static final Function1<String, RexToLixTranslator.InputGetter>
+      CORRELATES =
+      new Function1<String, RexToLixTranslator.InputGetter>() {
+        public RexToLixTranslator.InputGetter apply(String a0) {
+          throw new UnsupportedOperationException();
+        }
+      };
+
   private final RexBuilder rexBuilder;
 
   public JaninoRexCompiler(RexBuilder rexBuilder) {
@@ -83,24 +92,12 @@ public Scalar compile(List<RexNode> nodes, RelDataType inputRowType) {
 
     // public void execute(Context, Object[] outputValues)
     final RexToLixTranslator.InputGetter inputGetter =
-        new RexToLixTranslator.InputGetterImpl(
-            ImmutableList.of(
-                Pair.<Expression, PhysType>of(
-                    Expressions.field(context_,
-                        BuiltInMethod.CONTEXT_VALUES.field),
-                    PhysTypeImpl.of(javaTypeFactory, inputRowType,
-                        JavaRowFormat.ARRAY, false))));
-    final Function1<String, RexToLixTranslator.InputGetter> correlates =
-        new Function1<String, RexToLixTranslator.InputGetter>() {
-          public RexToLixTranslator.InputGetter apply(String a0) {
-            throw new UnsupportedOperationException();
-          }
-        };
+        inputGetter(context_, javaTypeFactory, inputRowType);
     final Expression root =
         Expressions.field(context_, BuiltInMethod.CONTEXT_ROOT.field);
     final List<Expression> list =
         RexToLixTranslator.translateProjects(program, javaTypeFactory, builder,
-            null, root, inputGetter, correlates);
+            null, root, inputGetter, CORRELATES);
     for (int i = 0; i < list.size(); i++) {
       builder.add(
           Expressions.statement(
@@ -112,6 +109,83 @@ public RexToLixTranslator.InputGetter apply(String a0) {
     return baz(context_, outputValues_, builder.toBlock());
   }
 
+  /** Compiles a program, its condition and all of its projects, to a single
+   * class. */
+  public ProgramScalar compile(RexProgram program) {
+    final BlockBuilder builder = new BlockBuilder();
+    final ParameterExpression context_ =
+        Expressions.parameter(Context.class, "context");
+    final ParameterExpression outputValues_ =
+        Expressions.parameter(Object[].class, "outputValues");
+    final JavaTypeFactoryImpl javaTypeFactory =
+        new JavaTypeFactoryImpl(rexBuilder.getTypeFactory().getTypeSystem());
+
+    // public boolean execute(Context, Object[] outputValues)
+    final RexToLixTranslator.InputGetter inputGetter =
+        inputGetter(context_, javaTypeFactory, program.getInputRowType());
+
+    // The translated condition refers to the data context as "root".
+    final ParameterExpression root_ = DataContext.ROOT;
+    builder.add(
+        Expressions.declare(Modifier.FINAL, root_,
+            Expressions.field(context_, BuiltInMethod.CONTEXT_ROOT.field)));
+    if (program.getCondition() != null) {
+      final Expression condition =
+          RexToLixTranslator.translateCondition(program, javaTypeFactory,
+              builder, inputGetter, CORRELATES);
+      builder.add(
+          Expressions.ifThen(Expressions.not(condition),
+              Expressions.return_(null, Expressions.constant(false))));
+    }
+    final List<Expression> list =
+        RexToLixTranslator.translateProjects(program, javaTypeFactory, builder,
+            null, root_, inputGetter, CORRELATES);
+    for (int i = 0; i < list.size(); i++) {
+      builder.add(
+          Expressions.statement(
+              Expressions.assign(
+                  Expressions.arrayIndex(outputValues_,
+                      Expressions.constant(i)),
+                  list.get(i))));
+    }
+    builder.add(Expressions.return_(null, Expressions.constant(true)));
+
+    final List<MemberDeclaration> declarations =
+        ImmutableList.<MemberDeclaration>of(
+            Expressions.methodDecl(Modifier.PUBLIC, boolean.class,
+                BuiltInMethod.PROGRAM_SCALAR_EXECUTE.method.getName(),
+                ImmutableList.of(context_, outputValues_),
+                builder.toBlock()));
+    final ClassDeclaration classDeclaration =
+        Expressions.classDecl(Modifier.PUBLIC, "Buzz", null,
+            ImmutableList.<Type>of(ProgramScalar.class), declarations);
+    String s = Expressions.toString(declarations, "\n", false);
+    if (CalcitePrepareImpl.DEBUG) {
+      Util.debugCode(System.out, s);
+    }
+    try {
+      return getInstance(classDeclaration, s, ProgramScalar.class);
+    } catch (CompileException e) {
+      throw new RuntimeException(e);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Returns an input getter that reads the fields of a row from
+   * {@link Context#values}. */
+  private static RexToLixTranslator.InputGetter inputGetter(
+      ParameterExpression context_, JavaTypeFactoryImpl javaTypeFactory,
+      RelDataType inputRowType) {
+    return new RexToLixTranslator.InputGetterImpl(
+        ImmutableList.of(
+            Pair.<Expression, PhysType>of(
+                Expressions.field(context_,
+                    BuiltInMethod.CONTEXT_VALUES.field),
+                PhysTypeImpl.of(javaTypeFactory, inputRowType,
+                    JavaRowFormat.ARRAY, false))));
+  }
+
   /** Given a method that implements {@link Scalar#execute(Context, Object[])},
    * adds a bridge method that implements {@link Scalar#execute(Context)}, and
    * compiles. */
@@ -161,6 +235,13 @@ static Scalar baz(ParameterExpression context_,
 
   static Scalar getScalar(ClassDeclaration expr, String s)
       throws CompileException, IOException {
+    return getInstance(expr, s, Scalar.class);
+  }
+
+  /** Compiles a class that implements a given interface, and returns an
+   * instance of it. */
+  static <T> T getInstance(ClassDeclaration expr, String s,
+      Class<T> interfaceClass) throws CompileException, IOException {
     ICompilerFactory compilerFactory;
     try {
       compilerFactory = CompilerFactoryFactory.getDefaultCompilerFactory();
@@ -170,13 +251,13 @@ static Scalar getScalar(ClassDeclaration expr, String s)
     }
     IClassBodyEvaluator cbe = compilerFactory.newClassBodyEvaluator();
     cbe.setClassName(expr.name);
-    cbe.setImplementedInterfaces(new Class[]{Scalar.class});
+    cbe.setImplementedInterfaces(new Class[]{interfaceClass});
     cbe.setParentClassLoader(JaninoRexCompiler.class.getClassLoader());
     if (CalcitePrepareImpl.DEBUG) {
       // Add line numbers to the generated janino class
       cbe.setDebuggingInformation(true, true, true);
     }
-    return (Scalar) cbe.createInstance(new StringReader(s));
+    return interfaceClass.cast(cbe.createInstance(new StringReader(s)));
   }
 }
 
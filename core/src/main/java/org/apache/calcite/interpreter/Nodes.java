@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.interpreter;
 
+import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Aggregate;
 import org.apache.calcite.rel.core.Filter;
 import org.apache.calcite.rel.core.Join;
@@ -84,6 +85,10 @@ public void visit(Join join) {
     public void visit(Window window) {
       node = new WindowNode(interpreter, window);
     }
+
+    @Override protected Node fuse(RelNode p) {
+      return interpreter.fuse ? FusedScanNode.create(interpreter, p) : null;
+    }
   }
 }
 
@@ -0,0 +1,30 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.interpreter;
+
+/**
+ * Compiled {@link org.apache.calcite.rex.RexProgram}: a condition and a list
+ * of projected expressions.
+ */
+public interface ProgramScalar {
+  /** Evaluates the condition on the row in {@code context.values}; if it is
+   * true, writes the projected values into {@code results} and returns true,
+   * otherwise returns false. */
+  boolean execute(Context context, Object[] results);
+}
+
+// End ProgramScalar.java
@@ -64,6 +64,8 @@
 import org.apache.calcite.util.Holder;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
@@ -95,6 +97,17 @@
   final Function0<CalcitePrepare> prepareFactory;
   final CalciteServer server = new CalciteServerImpl();
 
+  /** Cache of prepared statements, keyed by SQL, default schema path,
+   * maximum row count and {@link CalciteSchema#getModCount()}; null if
+   * {@link org.apache.calcite.config.CalciteConnectionProperty#PLAN_CACHE}
+   * is not set. */
+  private final Cache<List<Object>, CalcitePrepare.CalciteSignature<?>>
+      planCache;
+  /** Value of {@link CalciteSchema#getModCount()} when {@link #planCache}
+   * was last invalidated. Statements on this connection may be prepared
+   * concurrently. */
+  private volatile long planCacheModCount;
+
   // must be package-protected
   static final Trojan TROJAN = createTrojan();
 
@@ -132,6 +145,12 @@ protected CalciteConnectionImpl(Driver driver, AvaticaFactory factory,
     this.properties.put(InternalProperty.UNQUOTED_CASING, cfg.unquotedCasing());
     this.properties.put(InternalProperty.QUOTED_CASING, cfg.quotedCasing());
     this.properties.put(InternalProperty.QUOTING, cfg.quoting());
+    final String planCacheSpec = cfg.planCache();
+    this.planCache = planCacheSpec == null
+        ? null
+        : CacheBuilder.from(planCacheSpec)
+            .<List<Object>, CalcitePrepare.CalciteSignature<?>>build();
+    this.planCacheModCount = this.rootSchema.getModCount();
   }
 
   CalciteMetaImpl meta() {
@@ -215,6 +234,42 @@ private CalcitePreparedStatement prepareStatement_(
   <T> CalcitePrepare.CalciteSignature<T> parseQuery(
       CalcitePrepare.Query<T> query,
       CalcitePrepare.Context prepareContext, long maxRowCount) {
+    if (planCache == null || query.sql == null) {
+      return parseQuery_(query, prepareContext, maxRowCount);
+    }
+    final long modCount = rootSchema.getModCount();
+    if (modCount != planCacheModCount) {
+      // Plans for an earlier version of the schema can no longer be found,
+      // because the key contains the mod count; free them.
+      planCacheModCount = modCount;
+      planCache.invalidateAll();
+    }
+    final List<Object> key =
+        ImmutableList.<Object>of(query.sql,
+            prepareContext.getDefaultSchemaPath(), maxRowCount, modCount);
+    @SuppressWarnings("unchecked")
+    final CalcitePrepare.CalciteSignature<T> cached =
+        (CalcitePrepare.CalciteSignature<T>) planCache.getIfPresent(key);
+    if (cached != null) {
+      return cached.copy();
+    }
+    final CalcitePrepare.CalciteSignature<T> signature =
+        parseQuery_(query, prepareContext, maxRowCount);
+    if (signature.statementType == null) {
+      // DDL was executed while preparing. It must run again if the statement
+      // is prepared again, and it may have changed the schema.
+      planCache.invalidateAll();
+    } else if (rootSchema.getModCount() == modCount) {
+      // If the schema changed while we were preparing, the plan may have
+      // been built against the old schema; do not cache it.
+      planCache.put(key, signature);
+    }
+    return signature;
+  }
+
+  private <T> CalcitePrepare.CalciteSignature<T> parseQuery_(
+      CalcitePrepare.Query<T> query,
+      CalcitePrepare.Context prepareContext, long maxRowCount) {
     CalcitePrepare.Dummy.push(prepareContext);
     try {
       final CalcitePrepare prepare = prepareFactory.apply();
@@ -410,6 +465,12 @@ static class DataContextImpl implements DataContext {
           .put(Variable.CURRENT_TIMESTAMP.camelName, time + currentOffset)
           .put(Variable.LOCAL_TIMESTAMP.camelName, time + localOffset)
           .put(Variable.TIME_ZONE.camelName, timeZone)
+          .put(Variable.SPILL_THRESHOLD.camelName,
+              connection.config().spillThreshold())
+          .put(Variable.PARALLELISM.camelName,
+              connection.config().parallelism())
+          .put(Variable.FUSE_INTERPRETER.camelName,
+              connection.config().fuseInterpreter())
           .put(Variable.STDIN.camelName, streamHolder.get()[0])
           .put(Variable.STDOUT.camelName, streamHolder.get()[1])
           .put(Variable.STDERR.camelName, streamHolder.get()[2]);
@@ -38,6 +38,7 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.runtime.ArrayBindable;
 import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.runtime.Utilities;
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlNode;
@@ -365,6 +366,27 @@ public Enumerable<T> enumerable(DataContext dataContext) {
     public List<RelCollation> getCollationList() {
       return collationList;
     }
+
+    /** Returns a copy of this signature that can be executed at the same time
+     * as this one.
+     *
+     * <p>Generated code (a sub-class of {@link Utilities}) stores the
+     * {@link DataContext} in a field when it is bound, so the copy has its own
+     * instance of the generated class. */
+    public CalciteSignature<T> copy() {
+      Bindable<T> bindable = this.bindable;
+      if (bindable instanceof Utilities) {
+        try {
+          //noinspection unchecked
+          bindable = bindable.getClass().newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+          throw new RuntimeException(e);
+        }
+      }
+      return new CalciteSignature<>(sql, parameters, internalParameters,
+          rowType, columns, cursorFactory, rootSchema, collationList,
+          maxRowCount, bindable, statementType);
+    }
   }
 
   /** A union type of the three possible ways of expressing a query: as a SQL
@@ -66,6 +66,10 @@ public abstract class CalciteSchema {
   protected final NameMap<FunctionEntry> nullaryFunctionMap;
   protected final NameMap<CalciteSchema> subSchemaMap;
   private List<? extends List<String>> path;
+  /** Number of times that this schema and its descendants have been
+   * modified. Maintained only in the root schema. Volatile because
+   * connections read it while preparing statements on several threads. */
+  private volatile long modCount;
 
   protected CalciteSchema(CalciteSchema parent, Schema schema,
       String name, NameMap<CalciteSchema> subSchemaMap,
@@ -168,6 +172,7 @@ public TableEntry add(String tableName, Table table,
     final TableEntryImpl entry =
         new TableEntryImpl(this, tableName, table, sqls);
     tableMap.put(tableName, entry);
+    modified();
     return entry;
   }
 
@@ -179,6 +184,7 @@ private FunctionEntry add(String name, Function function) {
     if (function.getParameters().isEmpty()) {
       nullaryFunctionMap.put(name, entry);
     }
+    modified();
     return entry;
   }
 
@@ -188,9 +194,27 @@ private LatticeEntry add(String name, Lattice lattice) {
     }
     final LatticeEntryImpl entry = new LatticeEntryImpl(this, name, lattice);
     latticeMap.put(name, entry);
+    modified();
     return entry;
   }
 
+  /** Records that this schema has been modified, for the purposes of
+   * {@link #getModCount()}. */
+  protected void modified() {
+    ++root().modCount;
+  }
+
+  /** Returns the number of times that the tree of schemas that this schema
+   * belongs to has been modified by adding tables, functions, lattices or
+   * sub-schemas, or by changing a path.
+   *
+   * <p>Applications can use it to detect that information derived from the
+   * schema, such as a prepared statement, may be out of date. It does not
+   * detect changes made within the underlying {@link Schema} objects. */
+  public long getModCount() {
+    return root().modCount;
+  }
+
   public CalciteSchema root() {
     for (CalciteSchema schema = this;;) {
       if (schema.parent == null) {
@@ -604,6 +628,7 @@ public <T> T unwrap(Class<T> clazz) {
 
     public void setPath(ImmutableList<ImmutableList<String>> path) {
       CalciteSchema.this.path = path;
+      modified();
     }
 
     public void add(String name, Table table) {
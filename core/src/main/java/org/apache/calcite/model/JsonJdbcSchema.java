@@ -69,6 +69,65 @@ public class JsonJdbcSchema extends JsonSchema {
    */
   public String jdbcSchema;
 
+  /** Number of rows to fetch from the JDBC data source in each round trip.
+   *
+   * <p>Optional. If not specified, uses the driver's default.
+   */
+  public Integer jdbcFetchSize;
+
+  /** Whether to read results through a forward-only, read-only cursor with
+   * auto-commit off, so that drivers that support it stream rows rather
+   * than reading the whole result into memory.
+   *
+   * <p>Optional. Default false.
+   */
+  public Boolean jdbcStreaming;
+
+  /** Maximum number of rows to read ahead, on a background thread, while
+   * the query processes earlier rows.
+   *
+   * <p>Optional. Default 0, meaning rows are read only when needed.
+   */
+  public Integer jdbcPrefetchRows;
+
+  /** Number of INSERT statements to send to the JDBC data source in each
+   * batch, when rows from another source are inserted into one of its
+   * tables.
+   *
+   * <p>Optional. Default 1,000.
+   */
+  public Integer jdbcBatchSize;
+
+  /** Number of inserted rows after which to commit.
+   *
+   * <p>Optional. Default 0, meaning commit once, after all rows have been
+   * inserted.
+   */
+  public Integer jdbcCommitInterval;
+
+  /** Number of rows in the VALUES clause of each INSERT statement. Used only
+   * if the SQL dialect supports multi-row VALUES.
+   *
+   * <p>Optional. Default 1.
+   */
+  public Integer jdbcRowsPerInsert;
+
+  /** Time, in milliseconds, after which the list of tables is re-read, in the
+   * background.
+   *
+   * <p>Optional. Default 0, meaning re-read whenever the schema's cache is
+   * refreshed.
+   */
+  public Long jdbcMetadataTtl;
+
+  /** Name of a file in which to store the list of tables and their columns,
+   * so that they do not need to be read from the database when the JVM
+   * restarts.
+   *
+   * <p>Optional. Default null, meaning do not store metadata.
+   */
+  public String jdbcMetadataFile;
+
   @Override public void accept(ModelHandler handler) {
     handler.visit(this);
   }
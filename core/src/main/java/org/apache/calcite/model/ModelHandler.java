@@ -21,6 +21,8 @@
 import org.apache.calcite.jdbc.CalciteConnection;
 import org.apache.calcite.jdbc.CalciteSchema;
 import org.apache.calcite.materialize.Lattice;
+import org.apache.calcite.runtime.BatchInsertEnumerable;
+import org.apache.calcite.runtime.ResultSetEnumerable;
 import org.apache.calcite.schema.AggregateFunction;
 import org.apache.calcite.schema.ScalarFunction;
 import org.apache.calcite.schema.Schema;
@@ -38,6 +40,7 @@
 import org.apache.calcite.schema.impl.TableMacroImpl;
 import org.apache.calcite.schema.impl.ViewTable;
 import org.apache.calcite.sql.SqlDialectFactory;
+import org.apache.calcite.sql.SqlDialectFactoryImpl;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
 
@@ -321,18 +324,34 @@ public void visit(JsonJdbcSchema jsonSchema) {
             jsonSchema.jdbcDriver,
             jsonSchema.jdbcUser,
             jsonSchema.jdbcPassword);
-    final JdbcSchema schema;
+    final SqlDialectFactory factory;
     if (jsonSchema.sqlDialectFactory == null || jsonSchema.sqlDialectFactory.isEmpty()) {
-      schema =
-          JdbcSchema.create(parentSchema, jsonSchema.name, dataSource,
-              jsonSchema.jdbcCatalog, jsonSchema.jdbcSchema);
+      factory = new SqlDialectFactoryImpl();
     } else {
-      SqlDialectFactory factory = AvaticaUtils.instantiatePlugin(
+      factory = AvaticaUtils.instantiatePlugin(
           SqlDialectFactory.class, jsonSchema.sqlDialectFactory);
-      schema =
-          JdbcSchema.create(parentSchema, jsonSchema.name, dataSource,
-              factory, jsonSchema.jdbcCatalog, jsonSchema.jdbcSchema);
     }
+    final ResultSetEnumerable.FetchOptions fetchOptions =
+        new ResultSetEnumerable.FetchOptions(
+            Util.first(jsonSchema.jdbcFetchSize, 0),
+            Util.first(jsonSchema.jdbcStreaming, false),
+            Util.first(jsonSchema.jdbcPrefetchRows, 0));
+    final BatchInsertEnumerable.BatchOptions batchOptions =
+        new BatchInsertEnumerable.BatchOptions(
+            Util.first(jsonSchema.jdbcBatchSize,
+                BatchInsertEnumerable.BatchOptions.DEFAULT.batchSize),
+            Util.first(jsonSchema.jdbcCommitInterval, 0),
+            Util.first(jsonSchema.jdbcRowsPerInsert, 1));
+    final JdbcSchema.MetadataOptions metadataOptions =
+        new JdbcSchema.MetadataOptions(
+            Util.first(jsonSchema.jdbcMetadataTtl, 0L),
+            jsonSchema.jdbcMetadataFile == null
+                ? null
+                : new File(jsonSchema.jdbcMetadataFile));
+    final JdbcSchema schema =
+        JdbcSchema.create(parentSchema, jsonSchema.name, dataSource,
+            factory, jsonSchema.jdbcCatalog, jsonSchema.jdbcSchema,
+            fetchOptions, batchOptions, metadataOptions);
     final SchemaPlus schemaPlus = parentSchema.add(jsonSchema.name, schema);
     populateSchema(jsonSchema, schemaPlus);
   }
@@ -21,6 +21,7 @@
 import org.apache.calcite.rel.metadata.DefaultRelMetadataProvider;
 import org.apache.calcite.rel.metadata.MetadataFactory;
 import org.apache.calcite.rel.metadata.MetadataFactoryImpl;
+import org.apache.calcite.rel.metadata.RelMetadataCache;
 import org.apache.calcite.rel.metadata.RelMetadataProvider;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
@@ -50,6 +51,7 @@ public class RelOptCluster {
   private MetadataFactory metadataFactory;
   private final RelTraitSet emptyTraitSet;
   private RelMetadataQuery mq;
+  private RelMetadataCache.Statistics metadataStatistics;
 
   //~ Constructors -----------------------------------------------------------
 
@@ -151,10 +153,28 @@ public MetadataFactory getMetadataFactory() {
   public RelMetadataQuery getMetadataQuery() {
     if (mq == null) {
       mq = RelMetadataQuery.instance();
+      mq.getCache().setStatistics(metadataStatistics);
     }
     return mq;
   }
 
+  /** Returns the object that records hits, misses and times of metadata
+   * requests, or null if statistics are not being recorded. */
+  public RelMetadataCache.Statistics getMetadataStatistics() {
+    return metadataStatistics;
+  }
+
+  /** Sets the object that records hits, misses and times of metadata
+   * requests made via {@link #getMetadataQuery()}; null to stop recording.
+   * It applies to the current and all future metadata queries. */
+  public void setMetadataStatistics(
+      RelMetadataCache.Statistics metadataStatistics) {
+    this.metadataStatistics = metadataStatistics;
+    if (mq != null) {
+      mq.getCache().setStatistics(metadataStatistics);
+    }
+  }
+
   /**
    * Should be called whenever the current {@link RelMetadataQuery} becomes
    * invalid. Typically invoked from {@link RelOptRuleCall#transformTo}.
@@ -311,6 +311,7 @@ void mergeWith(
     assert otherSet.equivalentSet == null;
     LOGGER.trace("Merge set#{} into set#{}", otherSet.id, id);
     otherSet.equivalentSet = this;
+    planner.invalidateMetadata(otherSet);
 
     // remove from table
     boolean existed = planner.allSets.remove(otherSet);
@@ -332,6 +333,8 @@ void mergeWith(
       }
     }
 
+    planner.invalidateMetadata(this);
+
     // Has another set merged with this?
     assert equivalentSet == null;
 
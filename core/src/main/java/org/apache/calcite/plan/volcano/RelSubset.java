@@ -337,6 +337,7 @@ void propagateCostImprovements0(VolcanoPlanner planner, RelMetadataQuery mq,
 
         bestCost = cost;
         best = rel;
+        planner.invalidateMetadata(set);
 
         // Lower cost means lower importance. Other nodes will change
         // too, but we'll get to them later.
@@ -21,7 +21,6 @@
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelNodes;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
-import org.apache.calcite.util.ChunkList;
 import org.apache.calcite.util.Util;
 import org.apache.calcite.util.trace.CalciteTrace;
 
@@ -46,7 +45,9 @@
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Priority queue of relexps whose rules have not been called, and rule-matches
@@ -109,6 +110,9 @@ class RuleQueue {
    */
   private final Map<VolcanoPlannerPhase, Set<String>> phaseRuleMapping;
 
+  /** Ordinal of the next rule-match to be added. */
+  private int nextMatchOrdinal;
+
   //~ Constructors -----------------------------------------------------------
 
   RuleQueue(VolcanoPlanner planner) {
@@ -281,15 +285,28 @@ private int countChildren(RelSubset subset) {
   void updateImportance(RelSubset subset, Double importance) {
     subsetImportances.put(subset, importance);
 
+    // A match's position in a queue depends on its cached importance, so
+    // take it out of every queue before clearing the cached importance. It
+    // goes back when it is next needed.
+    List<VolcanoRuleMatch> matches = null;
     for (PhaseMatchList matchList : matchListMap.values()) {
       Multimap<RelSubset, VolcanoRuleMatch> relMatchMap =
           matchList.matchMap;
       if (relMatchMap.containsKey(subset)) {
         for (VolcanoRuleMatch match : relMatchMap.get(subset)) {
-          match.clearCachedImportance();
+          matchList.invalidate(match);
+          if (matches == null) {
+            matches = new ArrayList<>();
+          }
+          matches.add(match);
         }
       }
     }
+    if (matches != null) {
+      for (VolcanoRuleMatch match : matches) {
+        match.clearCachedImportance();
+      }
+    }
   }
 
   /**
@@ -331,6 +348,7 @@ void updateImportance(RelSubset subset, Double importance) {
    */
   void addMatch(VolcanoRuleMatch match) {
     final String matchName = match.toString();
+    match.ordinal = nextMatchOrdinal++;
     for (PhaseMatchList matchList : matchListMap.values()) {
       if (!matchList.names.add(matchName)) {
         // Identical match has already been added.
@@ -348,7 +366,7 @@ void addMatch(VolcanoRuleMatch match) {
 
       LOGGER.trace("{} Rule-match queued: {}", matchList.phase.toString(), matchName);
 
-      matchList.list.add(match);
+      matchList.pending.add(match);
 
       matchList.matchMap.put(
           planner.getSubset(match.rels[0]), match);
@@ -445,19 +463,17 @@ VolcanoRuleMatch popMatch(VolcanoPlannerPhase phase) {
           + " after phase complete");
     }
 
-    final List<VolcanoRuleMatch> matchList = phaseMatchList.list;
     VolcanoRuleMatch match;
     for (;;) {
-      if (matchList.isEmpty()) {
+      phaseMatchList.computePending();
+      match = phaseMatchList.queue.pollFirst();
+      if (match == null) {
         return null;
       }
       if (LOGGER.isTraceEnabled()) {
-        Collections.sort(matchList, MATCH_COMPARATOR);
-        match = matchList.remove(0);
-
         StringBuilder b = new StringBuilder();
         b.append("Sorted rule queue:");
-        for (VolcanoRuleMatch match2 : matchList) {
+        for (VolcanoRuleMatch match2 : phaseMatchList.queue) {
           final double importance = match2.computeImportance();
           b.append("\n");
           b.append(match2);
@@ -466,21 +482,6 @@ VolcanoRuleMatch popMatch(VolcanoPlannerPhase phase) {
         }
 
         LOGGER.trace(b.toString());
-      } else {
-        // If we're not tracing, it's not worth the effort of sorting the
-        // list to find the minimum.
-        match = null;
-        int bestPos = -1;
-        int i = -1;
-        for (VolcanoRuleMatch match2 : matchList) {
-          ++i;
-          if (match == null
-              || MATCH_COMPARATOR.compare(match2, match) < 0) {
-            bestPos = i;
-            match = match2;
-          }
-        }
-        match = matchList.remove(bestPos);
       }
 
       if (skipMatch(match)) {
@@ -630,7 +631,7 @@ public int compare(
    * Compares {@link VolcanoRuleMatch} objects according to their importance.
    * Matches which are more important collate earlier. Ties are adjudicated by
    * comparing the {@link RelNode#getId id}s of the relational expressions
-   * matched.
+   * matched, and then by the order in which the matches were added.
    */
   private static class RuleMatchImportanceComparator
       implements Comparator<VolcanoRuleMatch> {
@@ -647,7 +648,11 @@ public int compare(VolcanoRuleMatch match1,
       if (c != 0) {
         return -c;
       }
-      return -RelNodes.compareRels(match1.rels, match2.rels);
+      c = RelNodes.compareRels(match1.rels, match2.rels);
+      if (c != 0) {
+        return -c;
+      }
+      return Integer.compare(match1.ordinal, match2.ordinal);
     }
   }
 
@@ -663,19 +668,26 @@ private static class PhaseMatchList {
     final VolcanoPlannerPhase phase;
 
     /**
-     * Current list of VolcanoRuleMatches for this phase. New rule-matches
-     * are appended to the end of this list. When removing a rule-match, the
-     * list is sorted and the highest importance rule-match removed. It is
-     * important for performance that this list remain mostly sorted.
-     *
-     * <p>Use a hunkList because {@link java.util.ArrayList} does not implement
-     * remove(0) efficiently.</p>
+     * Rule-matches for this phase whose importance is known, sorted so that
+     * the most important comes first. A rule-match's position depends on its
+     * cached importance, so it must be removed (see
+     * {@link #invalidate(VolcanoRuleMatch)}) before that importance is
+     * cleared.
      */
-    final List<VolcanoRuleMatch> list = new ChunkList<>();
+    final NavigableSet<VolcanoRuleMatch> queue =
+        new TreeSet<>(MATCH_COMPARATOR);
 
     /**
-     * A set of rule-match names contained in {@link #list}. Allows fast
-     * detection of duplicate rule-matches.
+     * Rule-matches for this phase that have been added, or whose importance
+     * has been cleared, since the last pop. Their importance is computed, and
+     * they are moved into {@link #queue}, just before the next pop. Thus, as
+     * in a linear scan, each importance is computed as late as possible.
+     */
+    final Set<VolcanoRuleMatch> pending = new HashSet<>();
+
+    /**
+     * A set of rule-match names contained in {@link #queue} and
+     * {@link #pending}. Allows fast detection of duplicate rule-matches.
      */
     final Set<String> names = new HashSet<>();
 
@@ -693,8 +705,27 @@ private static class PhaseMatchList {
       this.phase = phase;
     }
 
+    /** Moves a rule-match from {@link #queue} to {@link #pending}, if it is
+     * in the queue. */
+    void invalidate(VolcanoRuleMatch match) {
+      if (!pending.contains(match) && queue.remove(match)) {
+        pending.add(match);
+      }
+    }
+
+    /** Computes the importance of pending rule-matches and adds them to
+     * {@link #queue}. */
+    void computePending() {
+      for (VolcanoRuleMatch match : pending) {
+        match.getImportance();
+        queue.add(match);
+      }
+      pending.clear();
+    }
+
     void clear() {
-      list.clear();
+      queue.clear();
+      pending.clear();
       names.clear();
       matchMap.clear();
     }
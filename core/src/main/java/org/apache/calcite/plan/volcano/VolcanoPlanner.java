@@ -45,6 +45,7 @@
 import org.apache.calcite.rel.convert.Converter;
 import org.apache.calcite.rel.convert.ConverterRule;
 import org.apache.calcite.rel.metadata.JaninoRelMetadataProvider;
+import org.apache.calcite.rel.metadata.RelMetadataCache;
 import org.apache.calcite.rel.metadata.RelMetadataProvider;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.rules.AggregateJoinTransposeRule;
@@ -84,6 +85,7 @@
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Deque;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
@@ -131,6 +133,25 @@ public class VolcanoPlanner extends AbstractRelOptPlanner {
    */
   protected boolean impatient = false;
 
+  /**
+   * Maximum time, in milliseconds, that {@link #findBestExp()} may spend
+   * before returning the best plan found so far. If 0, the planner uses
+   * {@link CalciteConnectionConfig#plannerTimeBudget()} of its context, if
+   * any, and otherwise has no limit.
+   */
+  private long timeBudget;
+
+  /**
+   * Maximum number of rule calls that {@link #findBestExp()} may make before
+   * returning the best plan found so far. If 0, the planner uses
+   * {@link CalciteConnectionConfig#plannerRuleBudget()} of its context, if
+   * any, and otherwise has no limit.
+   */
+  private int ruleCallBudget;
+
+  /** Statistics of the most recent call to {@link #findBestExp()}. */
+  private VolcanoPlannerStatistics statistics;
+
   /**
    * Operands that apply to a given class of {@link RelNode}.
    *
@@ -321,6 +342,28 @@ public RelNode getRoot() {
     return root;
   }
 
+  /** Sets the maximum time, in milliseconds, that {@link #findBestExp()} may
+   * spend. When it has elapsed, and a complete plan has been found, the
+   * planner returns the cheapest plan found so far. If 0, the limit comes
+   * from the context's {@link CalciteConnectionConfig}, if any. */
+  public void setTimeBudget(long timeBudget) {
+    this.timeBudget = timeBudget;
+  }
+
+  /** Sets the maximum number of rule calls that {@link #findBestExp()} may
+   * make. When they have been made, and a complete plan has been found, the
+   * planner returns the cheapest plan found so far. If 0, the limit comes
+   * from the context's {@link CalciteConnectionConfig}, if any. */
+  public void setRuleCallBudget(int ruleCallBudget) {
+    this.ruleCallBudget = ruleCallBudget;
+  }
+
+  /** Returns statistics of the most recent call to {@link #findBestExp()},
+   * or null if it has not been called. */
+  public VolcanoPlannerStatistics getStatistics() {
+    return statistics;
+  }
+
   public ImmutableList<RelOptMaterialization> getMaterializations() {
     return ImmutableList.copyOf(materializations);
   }
@@ -584,14 +627,44 @@ public RelOptPlanner chooseDelegate() {
    * found, the artificially raised importance values are cleared (see
    * {@link #clearImportanceBoost()}).
    *
+   * <p>If the planner has a time or rule-call budget (see
+   * {@link #setTimeBudget(long)} and {@link #setRuleCallBudget(int)}), it
+   * also stops, skipping any remaining phases, when the budget is used up,
+   * provided that it has found an implementable plan. If it has not, it
+   * continues until it finds one.
+   *
+   * <p>When it has finished, the planner records
+   * {@link VolcanoPlannerStatistics statistics} and passes them to
+   * {@link Hook#PLANNER_STATISTICS}.
+   *
    * @return the most efficient RelNode tree found for implementing the given
    * query
    */
   public RelNode findBestExp() {
+    final long start = System.nanoTime();
+    final CalciteConnectionConfig config =
+        context.unwrap(CalciteConnectionConfig.class);
+    final long timeBudget =
+        this.timeBudget > 0 || config == null
+            ? this.timeBudget
+            : config.plannerTimeBudget();
+    final int ruleCallBudget =
+        this.ruleCallBudget > 0 || config == null
+            ? this.ruleCallBudget
+            : config.plannerRuleBudget();
+    final Map<VolcanoPlannerPhase, Integer> ruleCallCountByPhase =
+        new EnumMap<>(VolcanoPlannerPhase.class);
+    final Map<VolcanoPlannerPhase, Long> nanosByPhase =
+        new EnumMap<>(VolcanoPlannerPhase.class);
+    int ruleCallCount = 0;
+    boolean budgetExhausted = false;
+
     ensureRootConverters();
     registerMaterializations();
     int cumulativeTicks = 0;
     for (VolcanoPlannerPhase phase : VolcanoPlannerPhase.values()) {
+      final long phaseStart = System.nanoTime();
+      final int phaseRuleCallCount = ruleCallCount;
       setInitialImportance();
 
       RelOptCost targetCost = costFactory.makeHugeCost();
@@ -638,6 +711,17 @@ public RelNode findBestExp() {
           injectImportanceBoost();
         }
 
+        if (!root.bestCost.isInfinite()
+            && (ruleCallBudget > 0 && ruleCallCount >= ruleCallBudget
+                || timeBudget > 0
+                    && System.nanoTime() - start > timeBudget * 1000000L)) {
+          // We have used up our budget, and we have a plan. Take it.
+          LOGGER.debug("Planner budget exhausted after {} rule calls; "
+              + "COST = {}", ruleCallCount, root.bestCost);
+          budgetExhausted = true;
+          break;
+        }
+
         LOGGER.debug("PLANNER = {}; TICK = {}/{}; PHASE = {}; COST = {}",
             this, cumulativeTicks, tick, phase.toString(), root.bestCost);
 
@@ -648,6 +732,7 @@ public RelNode findBestExp() {
 
         assert match.getRule().matches(match);
         match.onMatch();
+        ++ruleCallCount;
 
         // The root may have been merged with another
         // subset. Find the new root subset.
@@ -655,6 +740,11 @@ public RelNode findBestExp() {
       }
 
       ruleQueue.phaseCompleted(phase);
+      ruleCallCountByPhase.put(phase, ruleCallCount - phaseRuleCallCount);
+      nanosByPhase.put(phase, System.nanoTime() - phaseStart);
+      if (budgetExhausted) {
+        break;
+      }
     }
     if (LOGGER.isTraceEnabled()) {
       StringWriter sw = new StringWriter();
@@ -670,6 +760,17 @@ public RelNode findBestExp() {
 
       LOGGER.debug("Provenance:\n{}", provenance(cheapest));
     }
+    int subsetCount = 0;
+    for (RelSet set : allSets) {
+      subsetCount += set.subsets.size();
+    }
+    statistics =
+        new VolcanoPlannerStatistics(ruleCallCount, nextSetId, subsetCount,
+            mapRel2Subset.size(), budgetExhausted, System.nanoTime() - start,
+            ruleCallCountByPhase, nanosByPhase,
+            root.getCluster().getMetadataStatistics());
+    LOGGER.debug("Planner statistics: {}", statistics);
+    Hook.PLANNER_STATISTICS.run(statistics);
     return cheapest;
   }
 
@@ -1643,6 +1744,7 @@ private RelSubset registerImpl(
   private RelSubset addRelToSet(RelNode rel, RelSet set) {
     RelSubset subset = set.add(rel);
     mapRel2Subset.put(rel, subset);
+    invalidateMetadata(set);
 
     // While a tree of RelNodes is being registered, sometimes nodes' costs
     // improve and the subset doesn't hear about it. You can end up with
@@ -1656,6 +1758,50 @@ private RelSubset addRelToSet(RelNode rel, RelSet set) {
     return subset;
   }
 
+  /**
+   * Discards cached metadata that may have changed because a set has
+   * changed; for example, because a relational expression has been added to
+   * the set, or because the best expression of one of its subsets has
+   * changed.
+   *
+   * <p>Discards the metadata of the set's subsets, and of the relational
+   * expressions that use those subsets as inputs, and so on, up through the
+   * ancestors of the set. Metadata of other relational expressions remains
+   * in the cache, so that it can be re-used by later rule calls.
+   *
+   * <p>Every ancestor is invalidated, even one that has nothing cached:
+   * metadata cached on an expression further up may have been derived from
+   * the set without going through it, for example via the best expression
+   * of a subset, or by a handler that calls another handler directly. Each
+   * set is visited at most once.
+   */
+  void invalidateMetadata(RelSet set) {
+    final RelMetadataCache cache =
+        set.rel.getCluster().getMetadataQuery().getCache();
+    if (cache.isEmpty()) {
+      return;
+    }
+    final Set<RelSet> visited = new HashSet<>();
+    final Deque<RelSet> queue = new ArrayDeque<>();
+    queue.add(set);
+    while (!queue.isEmpty()) {
+      final RelSet s = queue.remove();
+      if (!visited.add(s)) {
+        continue;
+      }
+      for (RelSubset subset : s.subsets) {
+        cache.invalidate(subset);
+      }
+      for (RelNode parent : s.getParentRels()) {
+        cache.invalidate(parent);
+        final RelSubset parentSubset = getSubset(parent);
+        if (parentSubset != null) {
+          queue.add(equivRoot(parentSubset.set));
+        }
+      }
+    }
+  }
+
   private RelSubset registerSubset(
       RelSet set,
       RelSubset subset) {
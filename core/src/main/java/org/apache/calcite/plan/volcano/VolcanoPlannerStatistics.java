@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan.volcano;
+
+import org.apache.calcite.rel.metadata.RelMetadataCache;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+/**
+ * Statistics about one invocation of {@link VolcanoPlanner#findBestExp()}.
+ *
+ * <p>When it has finished, the planner passes its statistics to
+ * {@link org.apache.calcite.runtime.Hook#PLANNER_STATISTICS}, and makes them
+ * available via {@link VolcanoPlanner#getStatistics()}.
+ */
+public class VolcanoPlannerStatistics {
+  /** Number of rule calls. */
+  public final int ruleCallCount;
+  /** Number of sets created, including sets that were later merged into
+   * other sets. */
+  public final int setCount;
+  /** Number of subsets in the sets that remain. */
+  public final int subsetCount;
+  /** Number of registered relational expressions. */
+  public final int relCount;
+  /** Whether the planner stopped early because it ran out of time or of rule
+   * calls, and returned the best plan that it had found so far. */
+  public final boolean budgetExhausted;
+  /** Elapsed time, in nanoseconds. */
+  public final long nanos;
+  /** Number of rule calls in each phase. */
+  public final ImmutableMap<VolcanoPlannerPhase, Integer> ruleCallCountByPhase;
+  /** Elapsed time, in nanoseconds, of each phase. */
+  public final ImmutableMap<VolcanoPlannerPhase, Long> nanosByPhase;
+  /** Statistics of metadata requests, or null if the cluster was not
+   * recording them. Cumulative, so may include requests made before and
+   * after planning. */
+  public final RelMetadataCache.Statistics metadataStatistics;
+
+  VolcanoPlannerStatistics(int ruleCallCount, int setCount, int subsetCount,
+      int relCount, boolean budgetExhausted, long nanos,
+      Map<VolcanoPlannerPhase, Integer> ruleCallCountByPhase,
+      Map<VolcanoPlannerPhase, Long> nanosByPhase,
+      RelMetadataCache.Statistics metadataStatistics) {
+    this.ruleCallCount = ruleCallCount;
+    this.setCount = setCount;
+    this.subsetCount = subsetCount;
+    this.relCount = relCount;
+    this.budgetExhausted = budgetExhausted;
+    this.nanos = nanos;
+    this.ruleCallCountByPhase = ImmutableMap.copyOf(ruleCallCountByPhase);
+    this.nanosByPhase = ImmutableMap.copyOf(nanosByPhase);
+    this.metadataStatistics = metadataStatistics;
+  }
+
+  @Override public String toString() {
+    final StringBuilder b = new StringBuilder();
+    b.append("ruleCalls=").append(ruleCallCount)
+        .append(", sets=").append(setCount)
+        .append(", subsets=").append(subsetCount)
+        .append(", rels=").append(relCount)
+        .append(", millis=").append(nanos / 1000000L)
+        .append(", budgetExhausted=").append(budgetExhausted);
+    for (Map.Entry<VolcanoPlannerPhase, Integer> entry
+        : ruleCallCountByPhase.entrySet()) {
+      b.append("\n")
+          .append(entry.getKey())
+          .append(": ruleCalls=").append(entry.getValue())
+          .append(", millis=")
+          .append(nanosByPhase.get(entry.getKey()) / 1000000L);
+    }
+    if (metadataStatistics != null) {
+      b.append("\n").append(metadataStatistics);
+    }
+    return b.toString();
+  }
+}
+
+// End VolcanoPlannerStatistics.java
@@ -36,6 +36,8 @@ class VolcanoRuleMatch extends VolcanoRuleCall {
   private RelSubset targetSubset;
   private String digest;
   private double cachedImportance = Double.NaN;
+  /** Order in which this match was added to the rule queue. */
+  int ordinal;
 
   //~ Constructors -----------------------------------------------------------
 
@@ -25,6 +25,7 @@
 import org.apache.calcite.adapter.enumerable.EnumerableRel;
 import org.apache.calcite.adapter.enumerable.EnumerableRules;
 import org.apache.calcite.adapter.enumerable.RexToLixTranslator;
+import org.apache.calcite.adapter.enumerable.VectorRules;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.avatica.AvaticaParameter;
 import org.apache.calcite.avatica.ColumnMetaData;
@@ -206,6 +207,9 @@ public class CalcitePrepareImpl implements CalcitePrepare {
           EnumerableRules.ENUMERABLE_AGGREGATE_RULE,
           EnumerableRules.ENUMERABLE_SORT_RULE,
           EnumerableRules.ENUMERABLE_LIMIT_RULE,
+          EnumerableRules.ENUMERABLE_LIMIT_SORT_RULE,
+          EnumerableRules.ENUMERABLE_EXCHANGE_RULE,
+          EnumerableRules.ENUMERABLE_SORT_EXCHANGE_RULE,
           EnumerableRules.ENUMERABLE_COLLECT_RULE,
           EnumerableRules.ENUMERABLE_UNCOLLECT_RULE,
           EnumerableRules.ENUMERABLE_UNION_RULE,
@@ -556,6 +560,11 @@ protected RelOptPlanner createPlanner(
         planner.addRule(rule);
       }
       planner.addRule(EnumerableInterpreterRule.INSTANCE);
+      if (prepareContext.config().vectorize()) {
+        for (RelOptRule rule : VectorRules.RULES) {
+          planner.addRule(rule);
+        }
+      }
     }
 
     if (enableBindable && ENABLE_ENUMERABLE) {
@@ -1259,7 +1268,8 @@ protected SqlValidator createSqlValidator(CatalogReader catalogReader) {
         try {
           CatalogReader.THREAD_LOCAL.set(catalogReader);
           bindable = EnumerableInterpretable.toBindable(internalParameters,
-              context.spark(), enumerable, prefer);
+              context.spark(), enumerable, prefer,
+              context.config().bindableCache());
         } finally {
           CatalogReader.THREAD_LOCAL.remove();
         }
@@ -96,6 +96,7 @@ private RelDistributionImpl(Type type, ImmutableIntList keys) {
           || Ordering.natural().isOrdered(keys)
           : "key columns of hash distribution must be in order";
       assert type == Type.HASH_DISTRIBUTED
+          || type == Type.RANGE_DISTRIBUTED
           || type == Type.RANDOM_DISTRIBUTED
           || keys.isEmpty();
     }
@@ -283,7 +283,12 @@ public static Mappings.TargetMapping getMapping(int inputFieldCount,
       if (!(exp.e instanceof RexInputRef)) {
         return null;
       }
-      mapping.set(((RexInputRef) exp.e).getIndex(), exp.i);
+      final int source = ((RexInputRef) exp.e).getIndex();
+      if (mapping.getTargetOpt(source) != -1) {
+        // The mapping cannot represent a field that is projected twice.
+        return null;
+      }
+      mapping.set(source, exp.i);
     }
     return mapping;
   }
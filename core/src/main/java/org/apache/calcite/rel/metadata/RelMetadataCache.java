@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.rel.RelNode;
+
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.lang.reflect.Method;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache of metadata values, and of metadata requests that are in progress,
+ * used by a {@link RelMetadataQuery}.
+ *
+ * <p>It is a {@link Map} whose keys are lists that start with the metadata
+ * method (or {@link MetadataDef}) and the relational expression, followed by
+ * any arguments. (This is the form of key that
+ * {@link JaninoRelMetadataProvider} generates.)
+ *
+ * <p>Unlike a plain {@code HashMap}, it indexes entries by relational
+ * expression. A planner can therefore keep the cache for the whole of a
+ * planning session, and call {@link #invalidate(RelNode)} for just those
+ * relational expressions whose metadata may have changed, rather than
+ * throwing the whole cache away.
+ *
+ * <p>If {@link Statistics statistics} are enabled, the cache counts hits and
+ * misses, and measures the time spent computing each kind of metadata.
+ */
+public class RelMetadataCache extends AbstractMap<List, Object> {
+  private final Map<List, Object> map = new HashMap<>();
+
+  /** Keys of entries, indexed by the relational expression that they
+   * describe. May contain keys that have since been removed. */
+  private final Map<RelNode, List<List>> keysByRel = new HashMap<>();
+
+  private Statistics statistics;
+
+  /** Creates an empty RelMetadataCache. */
+  public RelMetadataCache() {
+  }
+
+  /** Returns the statistics that this cache is recording, or null. */
+  public Statistics getStatistics() {
+    return statistics;
+  }
+
+  /** Sets the object that records hits, misses and times; null to stop
+   * recording. The same statistics may be shared by several caches. */
+  public void setStatistics(Statistics statistics) {
+    this.statistics = statistics;
+  }
+
+  /** Removes all entries that describe a given relational expression,
+   * except requests that are in progress.
+   *
+   * @return Whether any entries were removed */
+  public boolean invalidate(RelNode rel) {
+    final List<List> keys = keysByRel.remove(rel);
+    if (keys == null) {
+      return false;
+    }
+    boolean removed = false;
+    List<List> activeKeys = null;
+    for (List key : keys) {
+      final Object v = map.remove(key);
+      if (v == NullSentinel.ACTIVE) {
+        map.put(key, v);
+        if (activeKeys == null) {
+          activeKeys = new ArrayList<>(1);
+          keysByRel.put(rel, activeKeys);
+        }
+        activeKeys.add(key);
+      } else if (v != null) {
+        removed = true;
+      }
+    }
+    return removed;
+  }
+
+  @Override public Object get(Object key) {
+    final Object v = map.get(key);
+    if (statistics != null) {
+      statistics.onGet((List) key, v);
+    }
+    return v;
+  }
+
+  @Override public boolean containsKey(Object key) {
+    return map.containsKey(key);
+  }
+
+  @Override public Object put(List key, Object value) {
+    final Object previous = map.put(key, value);
+    if (previous == null) {
+      final RelNode rel = rel(key);
+      if (rel != null) {
+        List<List> keys = keysByRel.get(rel);
+        if (keys == null) {
+          keys = new ArrayList<>(4);
+          keysByRel.put(rel, keys);
+        }
+        keys.add(key);
+      }
+    }
+    if (statistics != null) {
+      if (value == NullSentinel.ACTIVE) {
+        statistics.onStart(key);
+      } else if (previous == NullSentinel.ACTIVE) {
+        statistics.onEnd();
+      }
+    }
+    return previous;
+  }
+
+  @Override public Object remove(Object key) {
+    final Object previous = map.remove(key);
+    if (statistics != null && previous == NullSentinel.ACTIVE) {
+      statistics.onEnd();
+    }
+    return previous;
+  }
+
+  @Override public void clear() {
+    map.clear();
+    keysByRel.clear();
+  }
+
+  @Override public int size() {
+    return map.size();
+  }
+
+  @Override public Set<Entry<List, Object>> entrySet() {
+    return map.entrySet();
+  }
+
+  /** Returns the relational expression that a key describes, or null. */
+  private static RelNode rel(List key) {
+    if (key.size() > 1 && key.get(1) instanceof RelNode) {
+      return (RelNode) key.get(1);
+    }
+    if (!key.isEmpty() && key.get(0) instanceof RelNode) {
+      return (RelNode) key.get(0);
+    }
+    return null;
+  }
+
+  /** Counts hits and misses, and measures the time spent computing, each
+   * kind of metadata.
+   *
+   * <p>Time is measured between a request starting (when the key is marked
+   * {@link NullSentinel#ACTIVE active}) and its value being stored or the
+   * request failing. Because requests nest, it records both the total time
+   * and the time spent in the request itself, excluding the requests it
+   * made. Not thread-safe. */
+  public static class Statistics {
+    private final Map<Object, Counter> counters = new HashMap<>();
+    /** Requests in progress; each element is {start, nanos in children}. */
+    private final List<long[]> stack = new ArrayList<>();
+    private final List<Counter> counterStack = new ArrayList<>();
+
+    void onGet(List key, Object v) {
+      if (key.isEmpty()) {
+        return;
+      }
+      final Counter counter = counter(key.get(0));
+      if (v == null) {
+        ++counter.misses;
+      } else if (v != NullSentinel.ACTIVE) {
+        ++counter.hits;
+      }
+    }
+
+    /** Called when a request is marked active, that is, starts. */
+    void onStart(List key) {
+      counterStack.add(counter(key.get(0)));
+      stack.add(new long[] {System.nanoTime(), 0L});
+    }
+
+    /** Called when an active request stores its value, or fails. */
+    void onEnd() {
+      if (stack.isEmpty()) {
+        return;
+      }
+      final long[] frame = stack.remove(stack.size() - 1);
+      final Counter counter = counterStack.remove(counterStack.size() - 1);
+      final long nanos = System.nanoTime() - frame[0];
+      counter.nanos += nanos;
+      counter.selfNanos += nanos - frame[1];
+      if (!stack.isEmpty()) {
+        stack.get(stack.size() - 1)[1] += nanos;
+      }
+    }
+
+    private Counter counter(Object kind) {
+      Counter counter = counters.get(kind);
+      if (counter == null) {
+        counter = new Counter(name(kind));
+        counters.put(kind, counter);
+      }
+      return counter;
+    }
+
+    private static String name(Object kind) {
+      final Method method;
+      if (kind instanceof MetadataDef) {
+        method = ((MetadataDef<?>) kind).methods.get(0);
+      } else if (kind instanceof Method) {
+        method = (Method) kind;
+      } else {
+        return String.valueOf(kind);
+      }
+      return method.getDeclaringClass().getSimpleName() + "."
+          + method.getName();
+    }
+
+    /** Returns the counters, sorted by name, such as
+     * "RowCount.getRowCount". */
+    public ImmutableSortedMap<String, Counter> getCounters() {
+      final ImmutableSortedMap.Builder<String, Counter> builder =
+          ImmutableSortedMap.naturalOrder();
+      for (Counter counter : counters.values()) {
+        builder.put(counter.name, counter);
+      }
+      return builder.build();
+    }
+
+    /** Resets all counters. */
+    public void clear() {
+      counters.clear();
+      stack.clear();
+      counterStack.clear();
+    }
+
+    @Override public String toString() {
+      final StringBuilder b = new StringBuilder();
+      for (Counter counter : getCounters().values()) {
+        b.append(counter).append('\n');
+      }
+      return b.toString();
+    }
+  }
+
+  /** Hits, misses and time for one kind of metadata. */
+  public static class Counter {
+    public final String name;
+    /** Number of requests satisfied from the cache. */
+    public long hits;
+    /** Number of requests that had to be computed. */
+    public long misses;
+    /** Time spent computing, in nanoseconds, including nested requests. */
+    public long nanos;
+    /** Time spent computing, in nanoseconds, excluding nested requests. */
+    public long selfNanos;
+
+    Counter(String name) {
+      this.name = name;
+    }
+
+    @Override public String toString() {
+      return name + ": hits=" + hits + ", misses=" + misses
+          + ", millis=" + nanos / 1000000L
+          + ", selfMillis=" + selfNanos / 1000000L;
+    }
+  }
+}
+
+// End RelMetadataCache.java
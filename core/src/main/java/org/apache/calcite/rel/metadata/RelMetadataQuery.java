@@ -36,7 +36,6 @@
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -78,7 +77,7 @@
  */
 public class RelMetadataQuery {
   /** Set of active metadata queries, and cache of previous results. */
-  public final Map<List, Object> map = new HashMap<>();
+  public final Map<List, Object> map = new RelMetadataCache();
 
   public final JaninoRelMetadataProvider metadataProvider;
 
@@ -196,6 +195,15 @@ private RelMetadataQuery(boolean dummy) {
     this.uniqueKeysHandler = initialHandler(BuiltInMetadata.UniqueKeys.Handler.class);
   }
 
+  /** Returns the cache of previous results.
+   *
+   * <p>A planner that keeps this query for a whole planning session can call
+   * {@link RelMetadataCache#invalidate(RelNode)} to discard the metadata of a
+   * relational expression whose inputs have changed. */
+  public RelMetadataCache getCache() {
+    return (RelMetadataCache) map;
+  }
+
   /** Re-generates the handler for a given kind of metadata, adding support for
    * {@code class_} if it is not already present. */
   protected <M extends Metadata, H extends MetadataHandler<M>> H
@@ -0,0 +1,564 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.rules;
+
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.prepare.CalcitePrepareImpl;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.core.RelFactories;
+import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexPermuteInputsShuttle;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.rex.RexVisitor;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.tools.RelBuilderFactory;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
+import org.apache.calcite.util.mapping.Mappings;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Planner rule that finds an optimal ordering for join operators using
+ * dynamic programming, falling back to a greedy algorithm for large join
+ * graphs.
+ *
+ * <p>It is triggered by the pattern {@link MultiJoin}, and like
+ * {@link MultiJoinOptimizeBushyRule} produces bushy joins. It only handles
+ * inner joins; a {@code MultiJoin} that contains outer joins is left for
+ * {@link LoptOptimizeJoinRule}.
+ *
+ * <p>The cost of a join tree is the sum of the number of rows produced by
+ * each of its joins. The number of rows produced by joining a set of factors
+ * does not depend upon the order in which they are joined: it is the product
+ * of the factors' row counts (from {@link RelMetadataQuery#getRowCount}) and
+ * the selectivities of the join conditions among them. The selectivity of an
+ * equi-join condition {@code a = b} is {@code 1 / max(ndv(a), ndv(b))}, where
+ * {@code ndv} comes from {@link RelMetadataQuery#getDistinctRowCount}; other
+ * conditions use {@link RelMdUtil#guessSelectivity(RexNode)}.
+ *
+ * <p>If the join graph has no more than {@code dpFactorLimit} factors, the
+ * rule enumerates every pair of connected sub-graphs and their connected
+ * complements, per the "DPccp" algorithm in Moerkotte and Neumann's
+ * <a href="http://www.vldb.org/conf/2006/p930-moerkotte.pdf">Analysis of Two
+ * Existing and One New Dynamic Programming Algorithm for the Generation of
+ * Optimal Bushy Join Trees without Cross Products</a> (VLDB, 2006). It
+ * considers each connected sub-graph only once, so a chain or snowflake is
+ * much cheaper to enumerate than a clique of the same size. If there are more
+ * factors, or if enumeration takes longer than {@code timeBoundMillis}, the
+ * rule instead repeatedly joins the pair of sub-trees whose join has the
+ * fewest rows.
+ *
+ * <p>If the join graph is not connected, the rule orders each connected
+ * component, then joins the components using cartesian products, smallest
+ * first.
+ *
+ * <p>Join conditions that touch 1 factor, or 3 or more factors, are applied
+ * at the first join that contains all of the factors they reference. For the
+ * purposes of enumeration, a condition that references 3 or more factors
+ * connects each pair of those factors.
+ */
+public class MultiJoinOptimizeDpRule extends RelOptRule {
+  public static final MultiJoinOptimizeDpRule INSTANCE =
+      new MultiJoinOptimizeDpRule(RelFactories.LOGICAL_BUILDER, 12, 1000L);
+
+  private final PrintWriter pw = CalcitePrepareImpl.DEBUG
+      ? Util.printWriter(System.out)
+      : null;
+
+  /** Maximum number of factors in a connected component for which the rule
+   * uses dynamic programming. */
+  private final int dpFactorLimit;
+
+  /** Maximum time, in milliseconds, that the rule spends on dynamic
+   * programming before falling back to the greedy algorithm. */
+  private final long timeBoundMillis;
+
+  /** Creates a MultiJoinOptimizeDpRule.
+   *
+   * @param relBuilderFactory Builder for relational expressions
+   * @param dpFactorLimit Maximum number of factors in a connected component
+   *                      for which to use dynamic programming
+   * @param timeBoundMillis Maximum time, in milliseconds, to spend on
+   *                        dynamic programming
+   */
+  public MultiJoinOptimizeDpRule(RelBuilderFactory relBuilderFactory,
+      int dpFactorLimit, long timeBoundMillis) {
+    super(operand(MultiJoin.class, any()), relBuilderFactory, null);
+    Preconditions.checkArgument(dpFactorLimit < Long.SIZE);
+    this.dpFactorLimit = dpFactorLimit;
+    this.timeBoundMillis = timeBoundMillis;
+  }
+
+  @Override public void onMatch(RelOptRuleCall call) {
+    final MultiJoin multiJoinRel = call.rel(0);
+    if (multiJoinRel.isFullOuterJoin()) {
+      return;
+    }
+    for (JoinRelType joinType : multiJoinRel.getJoinTypes()) {
+      if (joinType != JoinRelType.INNER) {
+        return;
+      }
+    }
+    final LoptMultiJoin multiJoin = new LoptMultiJoin(multiJoinRel);
+    final int n = multiJoin.getNumJoinFactors();
+    if (n >= Long.SIZE) {
+      // Too many factors to represent a set of them as a long.
+      return;
+    }
+    final RexBuilder rexBuilder = multiJoinRel.getCluster().getRexBuilder();
+    final RelBuilder relBuilder = call.builder();
+    final RelMetadataQuery mq = call.getMetadataQuery();
+
+    // Conditions that reference no factors, and the post-join filter, are
+    // applied after all factors have been joined.
+    final List<RexNode> topConditions = Lists.newArrayList();
+    final List<LoptMultiJoin.Edge> edges = Lists.newArrayList();
+    for (RexNode node : multiJoin.getJoinFilters()) {
+      final LoptMultiJoin.Edge edge = multiJoin.createEdge(node);
+      if (edge.factors.isEmpty()) {
+        topConditions.add(node);
+      } else {
+        edges.add(edge);
+      }
+    }
+    if (multiJoinRel.getPostJoinFilter() != null) {
+      topConditions.add(multiJoinRel.getPostJoinFilter());
+    }
+
+    final JoinGraph graph = new JoinGraph(n, edges.size());
+    for (int i = 0; i < n; i++) {
+      graph.rowCounts[i] = mq.getRowCount(multiJoin.getJoinFactor(i));
+    }
+    for (int i = 0; i < edges.size(); i++) {
+      final LoptMultiJoin.Edge edge = edges.get(i);
+      final long factors = toLong(edge.factors);
+      graph.edgeFactors[i] = factors;
+      graph.edgeSelectivities[i] = selectivity(multiJoin, mq, edge);
+      for (int factor : edge.factors) {
+        graph.neighbors[factor] |= factors & ~(1L << factor);
+      }
+    }
+
+    final long deadline =
+        System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBoundMillis);
+    final List<Plan> plans = new ArrayList<>();
+    for (long component : graph.components()) {
+      Plan plan = null;
+      if (Long.bitCount(component) <= dpFactorLimit) {
+        plan = graph.dp(component, deadline);
+      }
+      if (plan == null) {
+        plan = graph.greedy(graph.leaves(component));
+      }
+      plans.add(plan);
+    }
+    final Plan best = graph.greedy(plans);
+    if (pw != null) {
+      pw.println("best plan: " + best);
+      pw.flush();
+    }
+
+    final Pair<RelNode, Mappings.TargetMapping> top =
+        toRel(best, multiJoin, edges, relBuilder, rexBuilder);
+    relBuilder.push(top.left)
+        .project(relBuilder.fields(top.right));
+    if (!topConditions.isEmpty()) {
+      relBuilder.filter(topConditions);
+    }
+    call.transformTo(relBuilder.build());
+  }
+
+  /** Converts a plan into a tree of joins, returning the tree and a mapping
+   * from the fields of the {@code MultiJoin} to the fields of the tree. */
+  private Pair<RelNode, Mappings.TargetMapping> toRel(Plan plan,
+      LoptMultiJoin multiJoin, List<LoptMultiJoin.Edge> edges,
+      RelBuilder relBuilder, RexBuilder rexBuilder) {
+    if (plan.isLeaf()) {
+      final RelNode rel = multiJoin.getJoinFactor(plan.factor);
+      final Mappings.TargetMapping mapping =
+          Mappings.offsetSource(
+              Mappings.createIdentity(rel.getRowType().getFieldCount()),
+              multiJoin.getJoinStart(plan.factor),
+              multiJoin.getNumTotalFields());
+      return Pair.of(rel, mapping);
+    }
+    final Pair<RelNode, Mappings.TargetMapping> leftPair =
+        toRel(plan.left, multiJoin, edges, relBuilder, rexBuilder);
+    final Pair<RelNode, Mappings.TargetMapping> rightPair =
+        toRel(plan.right, multiJoin, edges, relBuilder, rexBuilder);
+    final RelNode left = leftPair.left;
+    final RelNode right = rightPair.left;
+    final Mappings.TargetMapping mapping =
+        Mappings.merge(leftPair.right,
+            Mappings.offsetTarget(rightPair.right,
+                left.getRowType().getFieldCount()));
+
+    // Apply the conditions whose factors are all in this join, and that were
+    // not applied by a join below.
+    final List<RexNode> conditions = Lists.newArrayList();
+    for (LoptMultiJoin.Edge edge : edges) {
+      final long factors = toLong(edge.factors);
+      if (contains(plan.factors, factors)
+          && !(!plan.left.isLeaf() && contains(plan.left.factors, factors))
+          && !(!plan.right.isLeaf() && contains(plan.right.factors, factors))) {
+        conditions.add(edge.condition);
+      }
+    }
+    final RexVisitor<RexNode> shuttle =
+        new RexPermuteInputsShuttle(mapping, left, right);
+    final RexNode condition =
+        RexUtil.composeConjunction(rexBuilder, conditions, false);
+    final RelNode join = relBuilder.push(left)
+        .push(right)
+        .join(JoinRelType.INNER, condition.accept(shuttle))
+        .build();
+    return Pair.of(join, mapping);
+  }
+
+  /** Estimates the selectivity of a join condition. */
+  private static double selectivity(LoptMultiJoin multiJoin,
+      RelMetadataQuery mq, LoptMultiJoin.Edge edge) {
+    if (edge.factors.cardinality() == 2
+        && edge.condition.isA(SqlKind.EQUALS)) {
+      final List<RexNode> operands = ((RexCall) edge.condition).getOperands();
+      if (operands.get(0) instanceof RexInputRef
+          && operands.get(1) instanceof RexInputRef) {
+        final Double ndv0 =
+            distinctRowCount(multiJoin, mq, (RexInputRef) operands.get(0));
+        final Double ndv1 =
+            distinctRowCount(multiJoin, mq, (RexInputRef) operands.get(1));
+        if (ndv0 != null || ndv1 != null) {
+          final double ndv = Math.max(Util.first(ndv0, 1D),
+              Util.first(ndv1, 1D));
+          return 1D / Math.max(ndv, 1D);
+        }
+      }
+    }
+    return RelMdUtil.guessSelectivity(edge.condition);
+  }
+
+  /** Returns the number of distinct values of a field of a {@code MultiJoin},
+   * or null if not known. */
+  private static Double distinctRowCount(LoptMultiJoin multiJoin,
+      RelMetadataQuery mq, RexInputRef ref) {
+    final int factor = multiJoin.findRef(ref.getIndex());
+    final int column = ref.getIndex() - multiJoin.getJoinStart(factor);
+    return mq.getDistinctRowCount(multiJoin.getJoinFactor(factor),
+        ImmutableBitSet.of(column), null);
+  }
+
+  private static long toLong(ImmutableBitSet bitSet) {
+    long x = 0L;
+    for (int i : bitSet) {
+      x |= 1L << i;
+    }
+    return x;
+  }
+
+  /** Returns whether set {@code x} contains every member of set {@code y}. */
+  private static boolean contains(long x, long y) {
+    return (y & ~x) == 0L;
+  }
+
+  /** Returns the set of factors whose ordinal is less than or equal to
+   * {@code i}. */
+  private static long upTo(int i) {
+    return (1L << (i + 1)) - 1L;
+  }
+
+  /** Join tree, or a single factor. */
+  static class Plan {
+    /** Set of factors, as a bit mask. */
+    final long factors;
+    /** Ordinal of the factor if this is a leaf, otherwise -1. */
+    final int factor;
+    /** Larger input of a join, or null if this is a leaf. */
+    final Plan left;
+    /** Smaller input of a join, or null if this is a leaf. In the enumerable
+     * implementation of hash join, the right input is the one held in
+     * memory. */
+    final Plan right;
+    /** Estimated number of rows. */
+    final double rowCount;
+    /** Sum of the estimated number of rows of each join in the tree. */
+    final double cost;
+
+    private Plan(long factors, int factor, Plan left, Plan right,
+        double rowCount, double cost) {
+      this.factors = factors;
+      this.factor = factor;
+      this.left = left;
+      this.right = right;
+      this.rowCount = rowCount;
+      this.cost = cost;
+    }
+
+    static Plan leaf(int factor, double rowCount) {
+      return new Plan(1L << factor, factor, null, null, rowCount, 0D);
+    }
+
+    static Plan join(Plan p0, Plan p1, double rowCount) {
+      final double cost = p0.cost + p1.cost + rowCount;
+      return p0.rowCount >= p1.rowCount
+          ? new Plan(p0.factors | p1.factors, -1, p0, p1, rowCount, cost)
+          : new Plan(p0.factors | p1.factors, -1, p1, p0, rowCount, cost);
+    }
+
+    boolean isLeaf() {
+      return left == null;
+    }
+
+    @Override public String toString() {
+      return isLeaf()
+          ? Integer.toString(factor)
+          : "(" + left + " " + right + ", rows: " + Util.human(rowCount)
+              + ", cost: " + Util.human(cost) + ")";
+    }
+  }
+
+  /** Graph whose vertices are join factors and whose edges are join
+   * conditions. Sets of factors are represented as bit masks. */
+  static class JoinGraph {
+    final int n;
+    final double[] rowCounts;
+    final long[] neighbors;
+    final long[] edgeFactors;
+    final double[] edgeSelectivities;
+
+    // Working state of dynamic programming.
+    private long deadline;
+    private boolean timedOut;
+    private int pairCount;
+    private long[] pairs = new long[64];
+
+    JoinGraph(int n, int edgeCount) {
+      this.n = n;
+      this.rowCounts = new double[n];
+      this.neighbors = new long[n];
+      this.edgeFactors = new long[edgeCount];
+      this.edgeSelectivities = new double[edgeCount];
+    }
+
+    /** Returns the estimated number of rows produced by joining a set of
+     * factors. */
+    double rowCount(long factors) {
+      double rowCount = 1D;
+      for (long s = factors; s != 0L; s &= s - 1L) {
+        rowCount *= rowCounts[Long.numberOfTrailingZeros(s)];
+      }
+      for (int i = 0; i < edgeFactors.length; i++) {
+        if (contains(factors, edgeFactors[i])) {
+          rowCount *= edgeSelectivities[i];
+        }
+      }
+      return Math.max(rowCount, 1D);
+    }
+
+    /** Returns the factors that are not in a set but are adjacent to a member
+     * of it. */
+    long neighbors(long factors) {
+      long x = 0L;
+      for (long s = factors; s != 0L; s &= s - 1L) {
+        x |= neighbors[Long.numberOfTrailingZeros(s)];
+      }
+      return x & ~factors;
+    }
+
+    /** Returns the connected components of the graph. */
+    List<Long> components() {
+      final List<Long> components = new ArrayList<>();
+      long remaining = upTo(n - 1);
+      while (remaining != 0L) {
+        long component = Long.lowestOneBit(remaining);
+        for (;;) {
+          final long next = component | neighbors(component);
+          if (next == component) {
+            break;
+          }
+          component = next;
+        }
+        components.add(component);
+        remaining &= ~component;
+      }
+      return components;
+    }
+
+    List<Plan> leaves(long factors) {
+      final List<Plan> plans = new ArrayList<>();
+      for (long s = factors; s != 0L; s &= s - 1L) {
+        final int factor = Long.numberOfTrailingZeros(s);
+        plans.add(Plan.leaf(factor, rowCounts[factor]));
+      }
+      return plans;
+    }
+
+    /** Joins plans by repeatedly joining the pair whose result has the fewest
+     * rows, preferring pairs that are connected by a join condition. */
+    Plan greedy(List<Plan> plans) {
+      final List<Plan> list = new ArrayList<>(plans);
+      while (list.size() > 1) {
+        int best0 = -1;
+        int best1 = -1;
+        boolean bestConnected = false;
+        double bestRowCount = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < list.size(); i++) {
+          final Plan p0 = list.get(i);
+          final long neighbors0 = neighbors(p0.factors);
+          for (int j = i + 1; j < list.size(); j++) {
+            final Plan p1 = list.get(j);
+            final boolean connected = (neighbors0 & p1.factors) != 0L;
+            if (bestConnected && !connected) {
+              continue;
+            }
+            final double rowCount = rowCount(p0.factors | p1.factors);
+            if (connected && !bestConnected || rowCount < bestRowCount) {
+              best0 = i;
+              best1 = j;
+              bestConnected = connected;
+              bestRowCount = rowCount;
+            }
+          }
+        }
+        final Plan p1 = list.remove(best1);
+        final Plan p0 = list.remove(best0);
+        list.add(Plan.join(p0, p1, bestRowCount));
+      }
+      return list.get(0);
+    }
+
+    /** Finds the optimal plan for a connected set of factors, or returns null
+     * if the deadline passes first. */
+    Plan dp(long component, long deadline) {
+      this.deadline = deadline;
+      this.timedOut = false;
+      this.pairCount = 0;
+
+      // Enumerate the pairs of connected sub-graphs. Then sort them by the
+      // number of factors that they join, so that the best plan for each
+      // input is known before we consider joining it.
+      for (long s = component; s != 0L;) {
+        final int i = 63 - Long.numberOfLeadingZeros(s);
+        s &= ~(1L << i);
+        emitCsg(1L << i);
+        enumerateCsgRec(1L << i, upTo(i));
+        if (timedOut) {
+          return null;
+        }
+      }
+      final int[] starts = new int[n + 2];
+      for (int i = 0; i < pairCount; i++) {
+        ++starts[Long.bitCount(pairs[i * 2] | pairs[i * 2 + 1]) + 1];
+      }
+      for (int i = 1; i < starts.length; i++) {
+        starts[i] += starts[i - 1];
+      }
+      final int[] order = new int[pairCount];
+      for (int i = 0; i < pairCount; i++) {
+        order[starts[Long.bitCount(pairs[i * 2] | pairs[i * 2 + 1])]++] = i;
+      }
+
+      final Map<Long, Plan> best = new HashMap<>();
+      for (Plan leaf : leaves(component)) {
+        best.put(leaf.factors, leaf);
+      }
+      for (int i : order) {
+        final Plan p0 = best.get(pairs[i * 2]);
+        final Plan p1 = best.get(pairs[i * 2 + 1]);
+        final long factors = p0.factors | p1.factors;
+        final Plan previous = best.get(factors);
+        final double rowCount =
+            previous == null ? rowCount(factors) : previous.rowCount;
+        final Plan plan = Plan.join(p0, p1, rowCount);
+        if (previous == null || plan.cost < previous.cost) {
+          best.put(factors, plan);
+        }
+      }
+      pairs = new long[64];
+      return best.get(component);
+    }
+
+    private void enumerateCsgRec(long s, long x) {
+      final long neighbors = neighbors(s) & ~x;
+      for (long sub = neighbors; sub != 0L; sub = (sub - 1L) & neighbors) {
+        emitCsg(s | sub);
+      }
+      for (long sub = neighbors; sub != 0L; sub = (sub - 1L) & neighbors) {
+        if (timedOut) {
+          return;
+        }
+        enumerateCsgRec(s | sub, x | neighbors);
+      }
+    }
+
+    private void emitCsg(long s1) {
+      final long x = s1 | upTo(Long.numberOfTrailingZeros(s1));
+      final long neighbors = neighbors(s1) & ~x;
+      for (long s = neighbors; s != 0L;) {
+        final int i = 63 - Long.numberOfLeadingZeros(s);
+        s &= ~(1L << i);
+        emitPair(s1, 1L << i);
+        enumerateCmpRec(s1, 1L << i, x | (upTo(i) & neighbors));
+      }
+    }
+
+    private void enumerateCmpRec(long s1, long s2, long x) {
+      final long neighbors = neighbors(s2) & ~x;
+      for (long sub = neighbors; sub != 0L; sub = (sub - 1L) & neighbors) {
+        emitPair(s1, s2 | sub);
+      }
+      for (long sub = neighbors; sub != 0L; sub = (sub - 1L) & neighbors) {
+        if (timedOut) {
+          return;
+        }
+        enumerateCmpRec(s1, s2 | sub, x | neighbors);
+      }
+    }
+
+    private void emitPair(long s1, long s2) {
+      if (pairCount * 2 == pairs.length) {
+        pairs = Arrays.copyOf(pairs, pairs.length * 2);
+      }
+      if ((pairCount & 1023) == 0 && System.nanoTime() > deadline) {
+        timedOut = true;
+      }
+      pairs[pairCount * 2] = s1;
+      pairs[pairCount * 2 + 1] = s2;
+      ++pairCount;
+    }
+  }
+}
+
+// End MultiJoinOptimizeDpRule.java
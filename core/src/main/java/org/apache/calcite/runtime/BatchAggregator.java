@@ -0,0 +1,503 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.tree.Primitive;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash aggregation over batches of rows stored column-wise.
+ *
+ * <p>For each batch, it first assigns each live row to a group, then updates
+ * each aggregate function in a loop over the column that is its argument.
+ * There are specialized loops for {@code int[]}, {@code long[]} and
+ * {@code double[]} columns, which accumulate without boxing.
+ *
+ * <p>The aggregate functions are {@code COUNT}, {@code SUM}, {@code $SUM0},
+ * {@code MIN} and {@code MAX}, none of them {@code DISTINCT}.
+ *
+ * @see org.apache.calcite.adapter.enumerable.VectorAggregate
+ */
+public class BatchAggregator {
+  private final int[] groupKeys;
+  private final Accumulator[] accumulators;
+  private final int[] args;
+  private final Class[] resultClasses;
+  private final Map<Object, Integer> groups = new HashMap<>();
+  private final List<Object> keys = new ArrayList<>();
+
+  private BatchAggregator(int[] groupKeys, String[] functions, int[] args,
+      Class[] resultClasses) {
+    this.groupKeys = groupKeys;
+    this.args = args;
+    this.resultClasses = resultClasses;
+    this.accumulators = new Accumulator[functions.length];
+    for (int j = 0; j < functions.length; j++) {
+      accumulators[j] =
+          accumulator(functions[j], args[j] < 0,
+              resultClasses[groupKeys.length + j]);
+    }
+  }
+
+  /** Aggregates a sequence of batches.
+   *
+   * @param input Input batches
+   * @param groupKeys Ordinals of the input columns to group by
+   * @param functions Name of each aggregate function: "COUNT", "SUM",
+   *                  "SUM0", "MIN" or "MAX"
+   * @param args Ordinal of the input column that is the argument to each
+   *             aggregate function, or -1 for {@code COUNT(*)}
+   * @param resultClasses Java class of each output column, first the group
+   *                      keys, then the aggregate functions; primitive if the
+   *                      column is NOT NULL
+   * @param batchSize Maximum number of rows in each output batch
+   * @return Output batches; each column is an array whose component type is
+   * the result class if it is primitive, otherwise {@code Object}
+   */
+  public static Enumerable<ColumnBatch> aggregate(
+      final Enumerable<ColumnBatch> input, final int[] groupKeys,
+      final String[] functions, final int[] args, final Class[] resultClasses,
+      final int batchSize) {
+    return new AbstractEnumerable<ColumnBatch>() {
+      public Enumerator<ColumnBatch> enumerator() {
+        final BatchAggregator aggregator =
+            new BatchAggregator(groupKeys, functions, args, resultClasses);
+        try (Enumerator<ColumnBatch> batches = input.enumerator()) {
+          while (batches.moveNext()) {
+            aggregator.add(batches.current());
+          }
+        }
+        return Linq4j.enumerator(aggregator.result(batchSize));
+      }
+    };
+  }
+
+  private static Accumulator accumulator(String function, boolean star,
+      Class resultClass) {
+    switch (function) {
+    case "COUNT":
+      return star ? new CountStarAccumulator() : new CountAccumulator();
+    case "SUM":
+    case "SUM0":
+      final boolean zero = function.equals("SUM0");
+      final Class box = Primitive.box(resultClass);
+      if (box == BigDecimal.class) {
+        return new DecimalSumAccumulator(zero);
+      } else if (box == Double.class || box == Float.class) {
+        return new DoubleSumAccumulator(zero, resultClass);
+      } else {
+        return new LongSumAccumulator(zero, resultClass);
+      }
+    case "MIN":
+      return new MinMaxAccumulator(-1, resultClass);
+    case "MAX":
+      return new MinMaxAccumulator(1, resultClass);
+    default:
+      throw new IllegalArgumentException("unknown function " + function);
+    }
+  }
+
+  /** Adds a batch to the groups. */
+  private void add(ColumnBatch batch) {
+    final int count = batch.count;
+    final int[] selection = batch.selection;
+    final int[] groupIds = new int[count];
+    for (int k = 0; k < count; k++) {
+      final int i = selection == null ? k : selection[k];
+      final Object key = key(batch.columns, i);
+      Integer g = groups.get(key);
+      if (g == null) {
+        g = keys.size();
+        groups.put(key, g);
+        keys.add(key);
+      }
+      groupIds[k] = g;
+    }
+    for (int j = 0; j < accumulators.length; j++) {
+      final Accumulator accumulator = accumulators[j];
+      accumulator.ensureCapacity(keys.size());
+      accumulator.add(args[j] < 0 ? null : batch.columns[args[j]], selection,
+          count, groupIds);
+    }
+  }
+
+  private Object key(Object[] columns, int i) {
+    switch (groupKeys.length) {
+    case 0:
+      return Collections.emptyList();
+    case 1:
+      return ColumnBatch.get(columns[groupKeys[0]], i);
+    default:
+      final Object[] values = new Object[groupKeys.length];
+      for (int c = 0; c < values.length; c++) {
+        values[c] = ColumnBatch.get(columns[groupKeys[c]], i);
+      }
+      return Arrays.asList(values);
+    }
+  }
+
+  /** Returns the groups as batches of up to {@code batchSize} rows. */
+  private List<ColumnBatch> result(int batchSize) {
+    if (groupKeys.length == 0 && keys.isEmpty()) {
+      // Aggregate without GROUP BY returns one row even if the input is
+      // empty
+      keys.add(Collections.emptyList());
+      for (Accumulator accumulator : accumulators) {
+        accumulator.ensureCapacity(1);
+      }
+    }
+    final List<ColumnBatch> batches = new ArrayList<>();
+    for (int start = 0; start < keys.size(); start += batchSize) {
+      final int n = Math.min(batchSize, keys.size() - start);
+      final Object[] columns = new Object[resultClasses.length];
+      for (int c = 0; c < columns.length; c++) {
+        columns[c] = ColumnBatch.allocate(resultClasses[c], n);
+      }
+      for (int r = 0; r < n; r++) {
+        final int g = start + r;
+        final Object key = keys.get(g);
+        for (int c = 0; c < groupKeys.length; c++) {
+          Array.set(columns[c], r,
+              groupKeys.length == 1 ? key : ((List) key).get(c));
+        }
+        for (int j = 0; j < accumulators.length; j++) {
+          Array.set(columns[groupKeys.length + j], r,
+              accumulators[j].result(g));
+        }
+      }
+      batches.add(new ColumnBatch(columns, null, n));
+    }
+    return batches;
+  }
+
+  /** Converts a long to a given class. */
+  private static Object convertLong(long v, Class resultClass) {
+    final Class box = Primitive.box(resultClass);
+    if (box == Integer.class) {
+      return (int) v;
+    } else if (box == Short.class) {
+      return (short) v;
+    } else if (box == Byte.class) {
+      return (byte) v;
+    } else if (box == BigDecimal.class) {
+      return BigDecimal.valueOf(v);
+    } else if (box == Double.class) {
+      return (double) v;
+    } else if (box == Float.class) {
+      return (float) v;
+    }
+    return v;
+  }
+
+  /** Converts a double to a given class. */
+  private static Object convertDouble(double v, Class resultClass) {
+    return Primitive.box(resultClass) == Float.class ? (float) v : v;
+  }
+
+  /** State of one aggregate function for every group. */
+  private abstract static class Accumulator {
+    private int capacity;
+
+    /** Makes room for at least {@code groupCount} groups. */
+    final void ensureCapacity(int groupCount) {
+      if (groupCount > capacity) {
+        capacity = Math.max(groupCount, capacity * 2);
+        grow(capacity);
+      }
+    }
+
+    /** Grows the arrays of per-group state to a given length. */
+    abstract void grow(int capacity);
+
+    /** Adds the live rows of a column; row {@code k} belongs to group
+     * {@code groupIds[k]}. The column is null for {@code COUNT(*)}. */
+    abstract void add(Object column, int[] selection, int count,
+        int[] groupIds);
+
+    /** Returns the result for a group. */
+    abstract Object result(int g);
+  }
+
+  /** Accumulator for {@code COUNT(*)}. */
+  private static class CountStarAccumulator extends Accumulator {
+    long[] counts = new long[0];
+
+    void grow(int capacity) {
+      counts = Arrays.copyOf(counts, capacity);
+    }
+
+    void add(Object column, int[] selection, int count, int[] groupIds) {
+      for (int k = 0; k < count; k++) {
+        ++counts[groupIds[k]];
+      }
+    }
+
+    Object result(int g) {
+      return counts[g];
+    }
+  }
+
+  /** Accumulator for {@code COUNT(x)}. Only an {@code Object[]} column can
+   * contain nulls. */
+  private static class CountAccumulator extends CountStarAccumulator {
+    @Override void add(Object column, int[] selection, int count,
+        int[] groupIds) {
+      if (!(column instanceof Object[])) {
+        super.add(column, selection, count, groupIds);
+        return;
+      }
+      final Object[] values = (Object[]) column;
+      for (int k = 0; k < count; k++) {
+        final int i = selection == null ? k : selection[k];
+        if (values[i] != null) {
+          ++counts[groupIds[k]];
+        }
+      }
+    }
+  }
+
+  /** Base class for accumulators that remember which groups have seen a
+   * non-null value. */
+  private abstract static class NullableAccumulator extends Accumulator {
+    boolean[] seen = new boolean[0];
+
+    void grow(int capacity) {
+      seen = Arrays.copyOf(seen, capacity);
+    }
+  }
+
+  /** Accumulator for {@code SUM} and {@code $SUM0} of an integer type. */
+  private static class LongSumAccumulator extends NullableAccumulator {
+    private final boolean zero;
+    private final Class resultClass;
+    long[] sums = new long[0];
+
+    LongSumAccumulator(boolean zero, Class resultClass) {
+      this.zero = zero;
+      this.resultClass = resultClass;
+    }
+
+    @Override void grow(int capacity) {
+      super.grow(capacity);
+      sums = Arrays.copyOf(sums, capacity);
+    }
+
+    void add(Object column, int[] selection, int count, int[] groupIds) {
+      if (column instanceof int[]) {
+        final int[] values = (int[]) column;
+        for (int k = 0; k < count; k++) {
+          final int i = selection == null ? k : selection[k];
+          sums[groupIds[k]] += values[i];
+          seen[groupIds[k]] = true;
+        }
+      } else if (column instanceof long[]) {
+        final long[] values = (long[]) column;
+        for (int k = 0; k < count; k++) {
+          final int i = selection == null ? k : selection[k];
+          sums[groupIds[k]] += values[i];
+          seen[groupIds[k]] = true;
+        }
+      } else {
+        for (int k = 0; k < count; k++) {
+          final int i = selection == null ? k : selection[k];
+          final Object v = ColumnBatch.get(column, i);
+          if (v != null) {
+            sums[groupIds[k]] += ((Number) v).longValue();
+            seen[groupIds[k]] = true;
+          }
+        }
+      }
+    }
+
+    Object result(int g) {
+      return seen[g] || zero ? convertLong(sums[g], resultClass) : null;
+    }
+  }
+
+  /** Accumulator for {@code SUM} and {@code $SUM0} of a floating-point
+   * type. */
+  private static class DoubleSumAccumulator extends NullableAccumulator {
+    private final boolean zero;
+    private final Class resultClass;
+    double[] sums = new double[0];
+
+    DoubleSumAccumulator(boolean zero, Class resultClass) {
+      this.zero = zero;
+      this.resultClass = resultClass;
+    }
+
+    @Override void grow(int capacity) {
+      super.grow(capacity);
+      sums = Arrays.copyOf(sums, capacity);
+    }
+
+    void add(Object column, int[] selection, int count, int[] groupIds) {
+      if (column instanceof double[]) {
+        final double[] values = (double[]) column;
+        for (int k = 0; k < count; k++) {
+          final int i = selection == null ? k : selection[k];
+          sums[groupIds[k]] += values[i];
+          seen[groupIds[k]] = true;
+        }
+      } else {
+        for (int k = 0; k < count; k++) {
+          final int i = selection == null ? k : selection[k];
+          final Object v = ColumnBatch.get(column, i);
+          if (v != null) {
+            sums[groupIds[k]] += ((Number) v).doubleValue();
+            seen[groupIds[k]] = true;
+          }
+        }
+      }
+    }
+
+    Object result(int g) {
+      return seen[g] || zero ? convertDouble(sums[g], resultClass) : null;
+    }
+  }
+
+  /** Accumulator for {@code SUM} and {@code $SUM0} of a {@code DECIMAL}
+   * type. */
+  private static class DecimalSumAccumulator extends NullableAccumulator {
+    private final boolean zero;
+    BigDecimal[] sums = new BigDecimal[0];
+
+    DecimalSumAccumulator(boolean zero) {
+      this.zero = zero;
+    }
+
+    @Override void grow(int capacity) {
+      super.grow(capacity);
+      final int length = sums.length;
+      sums = Arrays.copyOf(sums, capacity);
+      Arrays.fill(sums, length, capacity, BigDecimal.ZERO);
+    }
+
+    void add(Object column, int[] selection, int count, int[] groupIds) {
+      for (int k = 0; k < count; k++) {
+        final int i = selection == null ? k : selection[k];
+        final Object v = ColumnBatch.get(column, i);
+        if (v != null) {
+          final int g = groupIds[k];
+          sums[g] = sums[g].add(v instanceof BigDecimal
+              ? (BigDecimal) v
+              : new BigDecimal(v.toString()));
+          seen[g] = true;
+        }
+      }
+    }
+
+    Object result(int g) {
+      return seen[g] || zero ? sums[g] : null;
+    }
+  }
+
+  /** Accumulator for {@code MIN} and {@code MAX}. */
+  private static class MinMaxAccumulator extends NullableAccumulator {
+    /** -1 for {@code MIN}, 1 for {@code MAX}. */
+    private final int direction;
+    private final Class resultClass;
+    long[] longs = new long[0];
+    double[] doubles = new double[0];
+    Comparable[] values = new Comparable[0];
+
+    MinMaxAccumulator(int direction, Class resultClass) {
+      this.direction = direction;
+      this.resultClass = resultClass;
+    }
+
+    @Override void grow(int capacity) {
+      super.grow(capacity);
+      longs = Arrays.copyOf(longs, capacity);
+      doubles = Arrays.copyOf(doubles, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    void add(Object column, int[] selection, int count, int[] groupIds) {
+      if (column instanceof int[]) {
+        final int[] ints = (int[]) column;
+        for (int k = 0; k < count; k++) {
+          final int i = selection == null ? k : selection[k];
+          addLong(groupIds[k], ints[i]);
+        }
+      } else if (column instanceof long[]) {
+        final long[] longValues = (long[]) column;
+        for (int k = 0; k < count; k++) {
+          final int i = selection == null ? k : selection[k];
+          addLong(groupIds[k], longValues[i]);
+        }
+      } else if (column instanceof double[]) {
+        final double[] doubleValues = (double[]) column;
+        for (int k = 0; k < count; k++) {
+          final int i = selection == null ? k : selection[k];
+          final int g = groupIds[k];
+          final double v = doubleValues[i];
+          if (!seen[g] || Double.compare(v, doubles[g]) * direction > 0) {
+            doubles[g] = v;
+            seen[g] = true;
+          }
+        }
+      } else {
+        for (int k = 0; k < count; k++) {
+          final int i = selection == null ? k : selection[k];
+          final Comparable v = (Comparable) ColumnBatch.get(column, i);
+          if (v != null) {
+            final int g = groupIds[k];
+            //noinspection unchecked
+            if (values[g] == null || v.compareTo(values[g]) * direction > 0) {
+              values[g] = v;
+            }
+          }
+        }
+      }
+    }
+
+    private void addLong(int g, long v) {
+      if (!seen[g] || Long.compare(v, longs[g]) * direction > 0) {
+        longs[g] = v;
+        seen[g] = true;
+      }
+    }
+
+    Object result(int g) {
+      if (values[g] != null) {
+        return values[g];
+      }
+      if (!seen[g]) {
+        return null;
+      }
+      final Class box = Primitive.box(resultClass);
+      return box == Double.class || box == Float.class
+          ? convertDouble(doubles[g], resultClass)
+          : convertLong(longs[g], resultClass);
+    }
+  }
+}
+
+// End BatchAggregator.java
@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Inner hash join of two sequences of batches of rows stored column-wise.
+ *
+ * <p>The right input is the build side. It is read into one dense array per
+ * column, and its rows are chained by key in a hash table. Each batch of the
+ * left input is then probed against the hash table, producing two vectors of
+ * positions, one into the left batch and one into the build side. Each output
+ * column is gathered from its input column in a single loop over one of those
+ * vectors.
+ *
+ * <p>Rows whose key contains a null do not match any row.
+ *
+ * @see org.apache.calcite.adapter.enumerable.VectorHashJoin
+ */
+public class BatchHashJoin {
+  private BatchHashJoin() {}
+
+  /** Joins two sequences of batches.
+   *
+   * @param left Left (probe) input
+   * @param right Right (build) input
+   * @param leftKeys Ordinals of the key columns of the left input
+   * @param rightKeys Ordinals of the key columns of the right input
+   * @param rightColumnClasses Component class of each column of the right
+   *                           input
+   * @param batchSize Maximum number of rows in each output batch
+   * @return Output batches; the columns of the left input followed by the
+   * columns of the right input
+   */
+  public static Enumerable<ColumnBatch> join(
+      final Enumerable<ColumnBatch> left,
+      final Enumerable<ColumnBatch> right, final int[] leftKeys,
+      final int[] rightKeys, final Class[] rightColumnClasses,
+      final int batchSize) {
+    return new AbstractEnumerable<ColumnBatch>() {
+      public Enumerator<ColumnBatch> enumerator() {
+        final BuildSide buildSide =
+            new BuildSide(right, rightKeys, rightColumnClasses);
+        return new ProbeEnumerator(left.enumerator(), leftKeys, buildSide,
+            batchSize);
+      }
+    };
+  }
+
+  /** Returns the key of row {@code i} of a batch, or null if any of its
+   * values is null. */
+  private static Object key(Object[] columns, int[] keys, int i) {
+    if (keys.length == 1) {
+      return ColumnBatch.get(columns[keys[0]], i);
+    }
+    final Object[] values = new Object[keys.length];
+    for (int c = 0; c < keys.length; c++) {
+      values[c] = ColumnBatch.get(columns[keys[c]], i);
+      if (values[c] == null) {
+        return null;
+      }
+    }
+    return Arrays.asList(values);
+  }
+
+  /** Returns a new column with the values at given positions of a column. */
+  private static Object gather(Object column, int[] positions, int start, int n) {
+    if (column instanceof int[]) {
+      final int[] values = (int[]) column;
+      final int[] result = new int[n];
+      for (int r = 0; r < n; r++) {
+        result[r] = values[positions[start + r]];
+      }
+      return result;
+    } else if (column instanceof long[]) {
+      final long[] values = (long[]) column;
+      final long[] result = new long[n];
+      for (int r = 0; r < n; r++) {
+        result[r] = values[positions[start + r]];
+      }
+      return result;
+    } else if (column instanceof double[]) {
+      final double[] values = (double[]) column;
+      final double[] result = new double[n];
+      for (int r = 0; r < n; r++) {
+        result[r] = values[positions[start + r]];
+      }
+      return result;
+    } else if (column instanceof Object[]) {
+      final Object[] values = (Object[]) column;
+      final Object[] result = new Object[n];
+      for (int r = 0; r < n; r++) {
+        result[r] = values[positions[start + r]];
+      }
+      return result;
+    } else {
+      final Object result =
+          Array.newInstance(column.getClass().getComponentType(), n);
+      for (int r = 0; r < n; r++) {
+        Array.set(result, r, Array.get(column, positions[start + r]));
+      }
+      return result;
+    }
+  }
+
+  /** The right input of a join, read into memory, with a hash table on its
+   * key. */
+  private static class BuildSide {
+    /** One dense array per column. */
+    final Object[] columns;
+    /** For each key, the first row with that key. */
+    final Map<Object, Integer> heads = new HashMap<>();
+    /** For each row, the next row with the same key, or -1. */
+    final int[] next;
+
+    BuildSide(Enumerable<ColumnBatch> input, int[] keys,
+        Class[] columnClasses) {
+      final List<ColumnBatch> batches = new ArrayList<>();
+      int rowCount = 0;
+      try (Enumerator<ColumnBatch> enumerator = input.enumerator()) {
+        while (enumerator.moveNext()) {
+          final ColumnBatch batch = enumerator.current();
+          batches.add(batch);
+          rowCount += batch.count;
+        }
+      }
+      columns = new Object[columnClasses.length];
+      for (int c = 0; c < columns.length; c++) {
+        columns[c] = ColumnBatch.allocate(columnClasses[c], rowCount);
+      }
+      int row = 0;
+      for (ColumnBatch batch : batches) {
+        for (int c = 0; c < columns.length; c++) {
+          if (batch.selection == null) {
+            System.arraycopy(batch.columns[c], 0, columns[c], row,
+                batch.count);
+          } else {
+            final Object values =
+                gather(batch.columns[c], batch.selection, 0, batch.count);
+            System.arraycopy(values, 0, columns[c], row, batch.count);
+          }
+        }
+        row += batch.count;
+      }
+      next = new int[rowCount];
+      for (int r = rowCount - 1; r >= 0; r--) {
+        final Object key = key(columns, keys, r);
+        if (key == null) {
+          next[r] = -1;
+          continue;
+        }
+        final Integer head = heads.put(key, r);
+        next[r] = head == null ? -1 : head;
+      }
+    }
+  }
+
+  /** Enumerator that probes each batch of the left input against the build
+   * side. */
+  private static class ProbeEnumerator implements Enumerator<ColumnBatch> {
+    private final Enumerator<ColumnBatch> left;
+    private final int[] leftKeys;
+    private final BuildSide buildSide;
+    private final int batchSize;
+    private final Deque<ColumnBatch> pending = new ArrayDeque<>();
+    private int[] leftPositions = new int[16];
+    private int[] rightPositions = new int[16];
+    private ColumnBatch current;
+
+    ProbeEnumerator(Enumerator<ColumnBatch> left, int[] leftKeys,
+        BuildSide buildSide, int batchSize) {
+      this.left = left;
+      this.leftKeys = leftKeys;
+      this.buildSide = buildSide;
+      this.batchSize = batchSize;
+    }
+
+    public ColumnBatch current() {
+      if (current == null) {
+        throw new NoSuchElementException();
+      }
+      return current;
+    }
+
+    public boolean moveNext() {
+      while (pending.isEmpty()) {
+        if (!left.moveNext()) {
+          current = null;
+          return false;
+        }
+        probe(left.current());
+      }
+      current = pending.remove();
+      return true;
+    }
+
+    /** Finds the matches of the live rows of a batch, and adds them to
+     * {@link #pending} as batches of up to {@link #batchSize} rows. */
+    private void probe(ColumnBatch batch) {
+      int n = 0;
+      for (int k = 0; k < batch.count; k++) {
+        final int i = batch.selection == null ? k : batch.selection[k];
+        final Object key = key(batch.columns, leftKeys, i);
+        if (key == null) {
+          continue;
+        }
+        final Integer head = buildSide.heads.get(key);
+        if (head == null) {
+          continue;
+        }
+        for (int r = head; r >= 0; r = buildSide.next[r]) {
+          if (n == leftPositions.length) {
+            leftPositions = Arrays.copyOf(leftPositions, n * 2);
+            rightPositions = Arrays.copyOf(rightPositions, n * 2);
+          }
+          leftPositions[n] = i;
+          rightPositions[n] = r;
+          ++n;
+        }
+      }
+      final int leftCount = batch.columns.length;
+      for (int start = 0; start < n; start += batchSize) {
+        final int count = Math.min(batchSize, n - start);
+        final Object[] columns =
+            new Object[leftCount + buildSide.columns.length];
+        for (int c = 0; c < leftCount; c++) {
+          columns[c] = gather(batch.columns[c], leftPositions, start, count);
+        }
+        for (int c = 0; c < buildSide.columns.length; c++) {
+          columns[leftCount + c] =
+              gather(buildSide.columns[c], rightPositions, start, count);
+        }
+        pending.add(new ColumnBatch(columns, null, count));
+      }
+    }
+
+    public void reset() {
+      left.reset();
+      pending.clear();
+      current = null;
+    }
+
+    public void close() {
+      left.close();
+    }
+  }
+}
+
+// End BatchHashJoin.java
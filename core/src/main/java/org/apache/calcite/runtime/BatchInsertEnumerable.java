@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.avatica.util.DateTimeUtils;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.sql.DataSource;
+
+/**
+ * Inserts rows into a table in a JDBC data source, using batches of
+ * prepared statements, and returns the number of rows inserted.
+ *
+ * <p>The rows are inserted when the enumerable is enumerated. Each row is
+ * an {@code Object[]} whose values are in Calcite's internal representation;
+ * DATE, TIME and TIMESTAMP values are converted to the corresponding
+ * {@code java.sql} types.
+ *
+ * <p>If a multi-row statement is supplied, rows are inserted
+ * {@link BatchOptions#rowsPerStatement} at a time, and any rows left over at
+ * the end are inserted using the single-row statement.
+ */
+public class BatchInsertEnumerable extends AbstractEnumerable<Long> {
+  private final DataSource dataSource;
+  private final String sql;
+  private final String multiRowSql;
+  private final int[] types;
+  private final Enumerable<Object[]> rows;
+  private final BatchOptions batchOptions;
+
+  private BatchInsertEnumerable(DataSource dataSource, String sql,
+      String multiRowSql, int[] types, Enumerable<Object[]> rows,
+      BatchOptions batchOptions) {
+    this.dataSource = dataSource;
+    this.sql = sql;
+    this.multiRowSql = multiRowSql;
+    this.types = types;
+    this.rows = rows;
+    this.batchOptions = batchOptions;
+  }
+
+  /** Creates a BatchInsertEnumerable.
+   *
+   * @param dataSource Data source
+   * @param sql INSERT statement with one row of dynamic parameters
+   * @param multiRowSql INSERT statement with
+   *     {@link BatchOptions#rowsPerStatement} rows of dynamic parameters,
+   *     or null
+   * @param types JDBC type of each column ({@link java.sql.Types})
+   * @param rows Rows to insert
+   * @param batchOptions Batch size and commit interval
+   */
+  public static Enumerable<Long> of(DataSource dataSource, String sql,
+      String multiRowSql, int[] types, Enumerable<Object[]> rows,
+      BatchOptions batchOptions) {
+    return new BatchInsertEnumerable(dataSource, sql, multiRowSql, types,
+        rows, batchOptions);
+  }
+
+  public Enumerator<Long> enumerator() {
+    return Linq4j.singletonEnumerator(insert());
+  }
+
+  private long insert() {
+    final int rowsPerStatement =
+        multiRowSql == null ? 1 : batchOptions.rowsPerStatement;
+    final Calendar calendar =
+        Calendar.getInstance(DateTimeUtils.UTC_ZONE, Locale.ROOT);
+    Connection connection = null;
+    boolean autoCommit = true;
+    String currentSql = multiRowSql == null ? sql : multiRowSql;
+    try {
+      connection = dataSource.getConnection();
+      autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      final List<Object[]> pending = new ArrayList<>(rowsPerStatement);
+      long count = 0;
+      long uncommitted = 0;
+      int batched = 0;
+      try (PreparedStatement statement =
+               connection.prepareStatement(currentSql)) {
+        try (Enumerator<Object[]> enumerator = rows.enumerator()) {
+          while (enumerator.moveNext()) {
+            pending.add(enumerator.current());
+            if (pending.size() < rowsPerStatement) {
+              continue;
+            }
+            bind(statement, pending, calendar);
+            statement.addBatch();
+            count += pending.size();
+            uncommitted += pending.size();
+            pending.clear();
+            if (++batched >= batchOptions.batchSize) {
+              statement.executeBatch();
+              batched = 0;
+            }
+            if (batchOptions.commitInterval > 0
+                && uncommitted >= batchOptions.commitInterval) {
+              if (batched > 0) {
+                statement.executeBatch();
+                batched = 0;
+              }
+              connection.commit();
+              uncommitted = 0;
+            }
+          }
+        }
+        if (batched > 0) {
+          statement.executeBatch();
+        }
+      }
+      if (!pending.isEmpty()) {
+        // Fewer rows remain than fit in a multi-row statement.
+        currentSql = sql;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+          for (Object[] row : pending) {
+            bind(statement, Collections.singletonList(row), calendar);
+            statement.addBatch();
+          }
+          statement.executeBatch();
+          count += pending.size();
+        }
+      }
+      connection.commit();
+      return count;
+    } catch (SQLException e) {
+      rollback(connection);
+      throw new RuntimeException("while executing SQL [" + currentSql + "]",
+          e);
+    } catch (RuntimeException | Error e) {
+      rollback(connection);
+      throw e;
+    } finally {
+      if (connection != null) {
+        try {
+          connection.setAutoCommit(autoCommit);
+          connection.close();
+        } catch (SQLException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  private static void rollback(Connection connection) {
+    if (connection != null) {
+      try {
+        connection.rollback();
+      } catch (SQLException e) {
+        // ignore; report the original error
+      }
+    }
+  }
+
+  /** Assigns the values of several rows to the parameters of a
+   * statement. */
+  private void bind(PreparedStatement statement, List<Object[]> rows,
+      Calendar calendar) throws SQLException {
+    int i = 0;
+    for (Object[] row : rows) {
+      for (int c = 0; c < types.length; c++) {
+        setParameter(statement, ++i, types[c], row[c], calendar);
+      }
+    }
+  }
+
+  /** Assigns a value, in Calcite's internal representation, to a
+   * parameter. */
+  private static void setParameter(PreparedStatement statement, int i,
+      int type, Object value, Calendar calendar) throws SQLException {
+    if (value == null) {
+      statement.setNull(i, type);
+      return;
+    }
+    switch (type) {
+    case Types.DATE:
+      if (value instanceof Integer) {
+        statement.setDate(i,
+            new java.sql.Date((Integer) value * DateTimeUtils.MILLIS_PER_DAY),
+            calendar);
+        return;
+      }
+      break;
+    case Types.TIME:
+      if (value instanceof Integer) {
+        statement.setTime(i, new java.sql.Time((Integer) value), calendar);
+        return;
+      }
+      break;
+    case Types.TIMESTAMP:
+      if (value instanceof Long) {
+        statement.setTimestamp(i, new java.sql.Timestamp((Long) value),
+            calendar);
+        return;
+      }
+      break;
+    }
+    statement.setObject(i, value);
+  }
+
+  /** Options that control how a {@link BatchInsertEnumerable} writes
+   * rows. */
+  public static class BatchOptions {
+    /** Default options: 1,000 statements per batch, commit once at the end,
+     * one row per statement. */
+    public static final BatchOptions DEFAULT = new BatchOptions(1000, 0, 1);
+
+    /** Number of statements to send to the database in each call to
+     * {@link PreparedStatement#executeBatch()}. */
+    public final int batchSize;
+
+    /** Number of rows after which to commit, or 0 to commit once, after all
+     * rows have been inserted. */
+    public final int commitInterval;
+
+    /** Number of rows in the VALUES clause of each INSERT statement. Applies
+     * only if the SQL dialect supports multi-row VALUES. */
+    public final int rowsPerStatement;
+
+    public BatchOptions(int batchSize, int commitInterval,
+        int rowsPerStatement) {
+      this.batchSize = Math.max(batchSize, 1);
+      this.commitInterval = commitInterval;
+      this.rowsPerStatement = Math.max(rowsPerStatement, 1);
+    }
+  }
+}
+
+// End BatchInsertEnumerable.java
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+
+import java.lang.reflect.Array;
+import java.util.NoSuchElementException;
+
+/**
+ * Batch of rows stored column-wise; the unit of data that flows between
+ * relational expressions in
+ * {@link org.apache.calcite.adapter.enumerable.VectorConvention}.
+ *
+ * <p>Each column is an array: a primitive array such as {@code int[]} for a
+ * NOT NULL column of primitive type, and an {@code Object[]} otherwise.
+ *
+ * <p>If {@link #selection} is null, the live rows are positions
+ * {@code 0 .. count - 1}; otherwise they are positions
+ * {@code selection[0] .. selection[count - 1]}. A filter narrows a batch by
+ * replacing its selection vector, without copying any column.
+ */
+public class ColumnBatch {
+  /** One array per column. */
+  public final Object[] columns;
+
+  /** Positions of the live rows, or null if positions
+   * {@code 0 .. count - 1} are all live. */
+  public final int[] selection;
+
+  /** Number of live rows. */
+  public final int count;
+
+  /** Creates a ColumnBatch. */
+  public ColumnBatch(Object[] columns, int[] selection, int count) {
+    this.columns = columns;
+    this.selection = selection;
+    this.count = count;
+  }
+
+  /** Creates an array to hold {@code size} values of a column whose
+   * values are of class {@code columnClass}. */
+  public static Object allocate(Class columnClass, int size) {
+    return Array.newInstance(
+        columnClass.isPrimitive() ? columnClass : Object.class, size);
+  }
+
+  /** Returns the value at position {@code i} of a column. */
+  public static Object get(Object column, int i) {
+    if (column instanceof Object[]) {
+      return ((Object[]) column)[i];
+    } else if (column instanceof int[]) {
+      return ((int[]) column)[i];
+    } else if (column instanceof long[]) {
+      return ((long[]) column)[i];
+    } else if (column instanceof double[]) {
+      return ((double[]) column)[i];
+    } else {
+      return Array.get(column, i);
+    }
+  }
+
+  /** Converts a sequence of batches to a sequence of rows, each an
+   * {@code Object[]} with one element per column. */
+  public static Enumerable<Object[]> toRows(
+      final Enumerable<ColumnBatch> batches) {
+    return new AbstractEnumerable<Object[]>() {
+      public Enumerator<Object[]> enumerator() {
+        return new RowEnumerator(batches.enumerator());
+      }
+    };
+  }
+
+  /** Converts a sequence of rows, each an {@code Object[]}, to a sequence of
+   * batches of up to {@code batchSize} rows. */
+  public static Enumerable<ColumnBatch> toBatches(
+      final Enumerable<Object[]> rows, final Class[] columnClasses,
+      final int batchSize) {
+    return new AbstractEnumerable<ColumnBatch>() {
+      public Enumerator<ColumnBatch> enumerator() {
+        return new BatchEnumerator(rows.enumerator(), columnClasses,
+            batchSize);
+      }
+    };
+  }
+
+  /** Enumerator that flattens batches into rows. */
+  private static class RowEnumerator implements Enumerator<Object[]> {
+    private final Enumerator<ColumnBatch> batches;
+    private ColumnBatch batch;
+    private int k;
+    private Object[] current;
+
+    RowEnumerator(Enumerator<ColumnBatch> batches) {
+      this.batches = batches;
+    }
+
+    public Object[] current() {
+      if (current == null) {
+        throw new NoSuchElementException();
+      }
+      return current;
+    }
+
+    public boolean moveNext() {
+      while (batch == null || ++k >= batch.count) {
+        if (!batches.moveNext()) {
+          batch = null;
+          current = null;
+          return false;
+        }
+        batch = batches.current();
+        k = -1;
+      }
+      final int i = batch.selection == null ? k : batch.selection[k];
+      final Object[] row = new Object[batch.columns.length];
+      for (int c = 0; c < row.length; c++) {
+        row[c] = get(batch.columns[c], i);
+      }
+      current = row;
+      return true;
+    }
+
+    public void reset() {
+      batches.reset();
+      batch = null;
+      current = null;
+    }
+
+    public void close() {
+      batches.close();
+    }
+  }
+
+  /** Enumerator that packs rows into batches. */
+  private static class BatchEnumerator implements Enumerator<ColumnBatch> {
+    private final Enumerator<Object[]> rows;
+    private final Class[] columnClasses;
+    private final int batchSize;
+    private ColumnBatch current;
+
+    BatchEnumerator(Enumerator<Object[]> rows, Class[] columnClasses,
+        int batchSize) {
+      this.rows = rows;
+      this.columnClasses = columnClasses;
+      this.batchSize = batchSize;
+    }
+
+    public ColumnBatch current() {
+      if (current == null) {
+        throw new NoSuchElementException();
+      }
+      return current;
+    }
+
+    public boolean moveNext() {
+      final Object[] columns = new Object[columnClasses.length];
+      for (int c = 0; c < columns.length; c++) {
+        columns[c] = allocate(columnClasses[c], batchSize);
+      }
+      int n = 0;
+      while (n < batchSize && rows.moveNext()) {
+        final Object[] row = rows.current();
+        for (int c = 0; c < columns.length; c++) {
+          Array.set(columns[c], n, row[c]);
+        }
+        ++n;
+      }
+      if (n == 0) {
+        current = null;
+        return false;
+      }
+      current = new ColumnBatch(columns, null, n);
+      return true;
+    }
+
+    public void reset() {
+      rows.reset();
+      current = null;
+    }
+
+    public void close() {
+      rows.close();
+    }
+  }
+}
+
+// End ColumnBatch.java
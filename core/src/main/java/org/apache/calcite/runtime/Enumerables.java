@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.runtime;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.interpreter.Row;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.function.Function1;
@@ -70,6 +71,26 @@ public Enumerable<Row> get() {
     };
   }
 
+  /** Returns the maximum number of rows that a blocking operator may hold in
+   * memory before it spills to disk, or 0 if it should never spill.
+   *
+   * @see DataContext.Variable#SPILL_THRESHOLD */
+  public static int spillThreshold(DataContext root) {
+    final Integer threshold =
+        (Integer) DataContext.Variable.SPILL_THRESHOLD.get(root);
+    return threshold == null ? 0 : threshold;
+  }
+
+  /** Returns the number of partitions into which an exchange should split
+   * its input, or 1 if it should not split it.
+   *
+   * @see DataContext.Variable#PARALLELISM */
+  public static int parallelism(DataContext root) {
+    final Integer parallelism =
+        (Integer) DataContext.Variable.PARALLELISM.get(root);
+    return parallelism == null ? 1 : parallelism;
+  }
+
 }
 
 // End Enumerables.java
@@ -67,6 +67,10 @@ public enum Hook {
   /** Called with the created planner. */
   PLANNER,
 
+  /** Called by the Volcano planner when it has finished optimizing, with a
+   * {@link org.apache.calcite.plan.volcano.VolcanoPlannerStatistics}. */
+  PLANNER_STATISTICS,
+
   /** Called after de-correlation and field trimming, but before
    * optimization. */
   TRIMMED,
@@ -83,6 +87,15 @@ public enum Hook {
   /** Called when materialization is created. */
   CREATE_MATERIALIZATION,
 
+  /** Called when a {@link org.apache.calcite.adapter.jdbc.JdbcSchema} starts
+   * to read its list of tables from its data source, with the schema. If the
+   * list is being refreshed, this is called in a background thread. */
+  JDBC_METADATA_LOAD,
+
+  /** Called when a {@link org.apache.calcite.adapter.jdbc.JdbcSchema} has
+   * written its metadata file, with the file. */
+  JDBC_METADATA_SAVE,
+
   /** Called with a query that has been generated to send to a back-end system.
    * The query might be a SQL string (for the JDBC adapter), a list of Mongo
    * pipeline expressions (for the MongoDB adapter), et cetera. */
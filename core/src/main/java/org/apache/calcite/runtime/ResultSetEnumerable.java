@@ -16,10 +16,12 @@
  */
 package org.apache.calcite.runtime;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.ParallelEnumerables;
 import org.apache.calcite.linq4j.function.Function0;
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.tree.Primitive;
@@ -28,6 +30,7 @@
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -47,6 +50,8 @@
   private final DataSource dataSource;
   private final String sql;
   private final Function1<ResultSet, Function0<T>> rowBuilderFactory;
+  private final PreparedStatementEnricher preparedStatementEnricher;
+  private final FetchOptions fetchOptions;
   private static final Logger LOGGER = LoggerFactory.getLogger(
       ResultSetEnumerable.class);
 
@@ -102,10 +107,14 @@ public Object[] apply() {
   private ResultSetEnumerable(
       DataSource dataSource,
       String sql,
-      Function1<ResultSet, Function0<T>> rowBuilderFactory) {
+      Function1<ResultSet, Function0<T>> rowBuilderFactory,
+      PreparedStatementEnricher preparedStatementEnricher,
+      FetchOptions fetchOptions) {
     this.dataSource = dataSource;
     this.sql = sql;
     this.rowBuilderFactory = rowBuilderFactory;
+    this.preparedStatementEnricher = preparedStatementEnricher;
+    this.fetchOptions = fetchOptions;
   }
 
   /** Creates an ResultSetEnumerable. */
@@ -126,25 +135,136 @@ public static <T> Enumerable<T> of(
       DataSource dataSource,
       String sql,
       Function1<ResultSet, Function0<T>> rowBuilderFactory) {
-    return new ResultSetEnumerable<T>(dataSource, sql, rowBuilderFactory);
+    return new ResultSetEnumerable<T>(dataSource, sql, rowBuilderFactory,
+        null, FetchOptions.DEFAULT);
+  }
+
+  /** Executes a SQL query that has dynamic parameters, binding their values
+   * to a {@link PreparedStatement} before execution, and returns the results
+   * as an enumerator. */
+  public static <T> Enumerable<T> of(
+      DataSource dataSource,
+      String sql,
+      Function1<ResultSet, Function0<T>> rowBuilderFactory,
+      PreparedStatementEnricher preparedStatementEnricher) {
+    return of(dataSource, sql, rowBuilderFactory, preparedStatementEnricher,
+        FetchOptions.DEFAULT);
+  }
+
+  /** Executes a SQL query, binding the values of its dynamic parameters if
+   * {@code preparedStatementEnricher} is not null, and returns the results as
+   * an enumerator; {@code fetchOptions} controls how rows are fetched. */
+  public static <T> Enumerable<T> of(
+      DataSource dataSource,
+      String sql,
+      Function1<ResultSet, Function0<T>> rowBuilderFactory,
+      PreparedStatementEnricher preparedStatementEnricher,
+      FetchOptions fetchOptions) {
+    return new ResultSetEnumerable<T>(dataSource, sql, rowBuilderFactory,
+        preparedStatementEnricher, fetchOptions);
+  }
+
+  /** Creates a {@link PreparedStatementEnricher} that binds the values of
+   * dynamic parameters, read from a data context, to the parameters of a
+   * prepared statement.
+   *
+   * <p>Element {@code i} of {@code indexes} is the ordinal of the dynamic
+   * parameter, in the original query, that supplies parameter {@code i + 1}
+   * of the prepared statement. */
+  public static PreparedStatementEnricher createEnricher(
+      final Integer[] indexes, final DataContext context) {
+    return new PreparedStatementEnricher() {
+      public void enrich(PreparedStatement statement) throws SQLException {
+        for (int i = 0; i < indexes.length; i++) {
+          final int index = indexes[i];
+          setDynamicParam(statement, i + 1, context.get("?" + index));
+        }
+      }
+    };
+  }
+
+  /** Assigns a value to a parameter of a prepared statement. */
+  private static void setDynamicParam(PreparedStatement statement, int i,
+      Object value) throws SQLException {
+    if (value == null) {
+      int type;
+      try {
+        type = statement.getParameterMetaData().getParameterType(i);
+      } catch (SQLException e) {
+        type = Types.NULL;
+      }
+      statement.setNull(i, type);
+    } else if (value instanceof java.sql.Timestamp) {
+      statement.setTimestamp(i, (java.sql.Timestamp) value);
+    } else if (value instanceof java.sql.Time) {
+      statement.setTime(i, (java.sql.Time) value);
+    } else if (value instanceof java.sql.Date) {
+      statement.setDate(i, (java.sql.Date) value);
+    } else if (value instanceof String) {
+      statement.setString(i, (String) value);
+    } else if (value instanceof Integer) {
+      statement.setInt(i, (Integer) value);
+    } else if (value instanceof Long) {
+      statement.setLong(i, (Long) value);
+    } else if (value instanceof Double) {
+      statement.setDouble(i, (Double) value);
+    } else {
+      statement.setObject(i, value);
+    }
   }
 
   public Enumerator<T> enumerator() {
+    if (fetchOptions.prefetchRows > 0) {
+      // Execute the query, and read its rows, on a producer thread.
+      return ParallelEnumerables.prefetch(
+          new AbstractEnumerable<T>() {
+            public Enumerator<T> enumerator() {
+              return execute();
+            }
+          },
+          fetchOptions.prefetchRows).enumerator();
+    }
+    return execute();
+  }
+
+  private Enumerator<T> execute() {
     Connection connection = null;
     Statement statement = null;
+    boolean resetAutoCommit = false;
     try {
       connection = dataSource.getConnection();
-      statement = connection.createStatement();
-      try {
-        statement.setQueryTimeout(10);
-      } catch (SQLFeatureNotSupportedException e) {
-        LOGGER.debug("Failed to set query timeout.");
+      if (fetchOptions.streaming && connection.getAutoCommit()) {
+        // Some drivers, such as PostgreSQL's, only use a cursor, rather than
+        // reading the whole result into memory, inside a transaction.
+        connection.setAutoCommit(false);
+        resetAutoCommit = true;
+      }
+      final boolean hasResultSet;
+      if (preparedStatementEnricher == null) {
+        statement = fetchOptions.streaming
+            ? connection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY)
+            : connection.createStatement();
+        setTimeoutIfPossible(statement);
+        setFetchSize(statement);
+        hasResultSet = statement.execute(sql);
+      } else {
+        final PreparedStatement preparedStatement = fetchOptions.streaming
+            ? connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY)
+            : connection.prepareStatement(sql);
+        statement = preparedStatement;
+        setTimeoutIfPossible(statement);
+        setFetchSize(statement);
+        preparedStatementEnricher.enrich(preparedStatement);
+        hasResultSet = preparedStatement.execute();
       }
-      if (statement.execute(sql)) {
+      if (hasResultSet) {
         final ResultSet resultSet = statement.getResultSet();
         statement = null;
         connection = null;
-        return new ResultSetEnumerator<T>(resultSet, rowBuilderFactory);
+        return new ResultSetEnumerator<T>(resultSet, rowBuilderFactory,
+            resetAutoCommit);
       } else {
         Integer updateCount = statement.getUpdateCount();
         return Linq4j.singletonEnumerator((T) updateCount);
@@ -161,6 +281,9 @@ public Enumerator<T> enumerator() {
       }
       if (connection != null) {
         try {
+          if (resetAutoCommit) {
+            connection.setAutoCommit(true);
+          }
           connection.close();
         } catch (SQLException e) {
           // ignore
@@ -169,19 +292,37 @@ public Enumerator<T> enumerator() {
     }
   }
 
+  private static void setTimeoutIfPossible(Statement statement)
+      throws SQLException {
+    try {
+      statement.setQueryTimeout(10);
+    } catch (SQLFeatureNotSupportedException e) {
+      LOGGER.debug("Failed to set query timeout.");
+    }
+  }
+
+  private void setFetchSize(Statement statement) throws SQLException {
+    if (fetchOptions.fetchSize != 0) {
+      statement.setFetchSize(fetchOptions.fetchSize);
+    }
+  }
+
   /** Implementation of {@link Enumerator} that reads from a
    * {@link ResultSet}.
    *
    * @param <T> element type */
   private static class ResultSetEnumerator<T> implements Enumerator<T> {
     private final Function0<T> rowBuilder;
+    private final boolean resetAutoCommit;
     private ResultSet resultSet;
 
     ResultSetEnumerator(
         ResultSet resultSet,
-        Function1<ResultSet, Function0<T>> rowBuilderFactory) {
+        Function1<ResultSet, Function0<T>> rowBuilderFactory,
+        boolean resetAutoCommit) {
       this.resultSet = resultSet;
       this.rowBuilder = rowBuilderFactory.apply(resultSet);
+      this.resetAutoCommit = resetAutoCommit;
     }
 
     public T current() {
@@ -215,6 +356,9 @@ public void close() {
             final Connection connection = statement.getConnection();
             statement.close();
             if (connection != null) {
+              if (resetAutoCommit) {
+                connection.setAutoCommit(true);
+              }
               connection.close();
             }
           }
@@ -266,6 +410,41 @@ public Object[] apply() {
       }
     };
   }
+
+  /** Options that control how a {@link ResultSetEnumerable} fetches rows
+   * from the JDBC driver. */
+  public static class FetchOptions {
+    /** Options that leave everything to the driver. */
+    public static final FetchOptions DEFAULT = new FetchOptions(0, false, 0);
+
+    /** Number of rows to fetch in each round trip to the database
+     * ({@link Statement#setFetchSize}), or 0 to use the driver's default.
+     * Some drivers accept a special value; for example, MySQL's driver
+     * streams rows one at a time if the fetch size is
+     * {@link Integer#MIN_VALUE}. */
+    public final int fetchSize;
+
+    /** Whether to stream rows through a forward-only, read-only cursor.
+     * The statement is executed with auto-commit off, which some drivers
+     * require to use a server-side cursor. */
+    public final boolean streaming;
+
+    /** Maximum number of rows to read ahead of the consumer, on a
+     * background thread, or 0 to read rows on the consumer's thread. */
+    public final int prefetchRows;
+
+    public FetchOptions(int fetchSize, boolean streaming, int prefetchRows) {
+      this.fetchSize = fetchSize;
+      this.streaming = streaming;
+      this.prefetchRows = prefetchRows;
+    }
+  }
+
+  /** Consumer for decorating a {@link PreparedStatement}, that is, setting
+   * its parameters. */
+  public interface PreparedStatementEnricher {
+    void enrich(PreparedStatement statement) throws SQLException;
+  }
 }
 
 // End ResultSetEnumerable.java
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.runtime.ColumnBatch;
+
+/**
+ * Table that can be scanned a batch of rows at a time, each batch holding
+ * one array per column.
+ *
+ * @see org.apache.calcite.adapter.enumerable.VectorConvention
+ */
+public interface BatchScannableTable extends ScannableTable {
+  /** Returns an enumerator over the rows in this Table, in batches of up to
+   * {@code batchSize} rows.
+   *
+   * <p>Column {@code c} of each batch is an array whose component type is
+   * {@code columnClasses[c]} if that is a primitive class, otherwise
+   * {@code Object}. */
+  Enumerable<ColumnBatch> scanBatches(DataContext root, Class[] columnClasses,
+      int batchSize);
+}
+
+// End BatchScannableTable.java
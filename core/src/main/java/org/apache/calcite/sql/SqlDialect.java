@@ -618,6 +618,15 @@ public boolean supportsAliasedValues() {
     return true;
   }
 
+  /**
+   * Returns whether the dialect supports an INSERT statement whose VALUES
+   * clause has several rows, for instance
+   * {@code INSERT INTO t (a, b) VALUES (1, 2), (3, 4)}.
+   */
+  public boolean supportsMultiRowInsert() {
+    return true;
+  }
+
   /**
    * A few utility functions copied from org.apache.calcite.util.Util. We have
    * copied them because we wish to keep SqlDialect's dependencies to a
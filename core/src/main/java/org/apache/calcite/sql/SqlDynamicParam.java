@@ -17,6 +17,7 @@
 package org.apache.calcite.sql;
 
 import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.sql.pretty.SqlPrettyWriter;
 import org.apache.calcite.sql.util.SqlVisitor;
 import org.apache.calcite.sql.validate.SqlMonotonicity;
 import org.apache.calcite.sql.validate.SqlValidator;
@@ -61,8 +62,12 @@ public void unparse(
       SqlWriter writer,
       int leftPrec,
       int rightPrec) {
-    writer.print("?");
-    writer.setNeedWhitespace(false);
+    if (writer instanceof SqlPrettyWriter) {
+      ((SqlPrettyWriter) writer).dynamicParam(index);
+    } else {
+      writer.print("?");
+      writer.setNeedWhitespace(true);
+    }
   }
 
   public void validate(SqlValidator validator, SqlValidatorScope scope) {
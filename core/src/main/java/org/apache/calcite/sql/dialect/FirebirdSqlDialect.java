@@ -30,6 +30,10 @@ public class FirebirdSqlDialect extends SqlDialect {
   public FirebirdSqlDialect(Context context) {
     super(context);
   }
+
+  @Override public boolean supportsMultiRowInsert() {
+    return false;
+  }
 }
 
 // End FirebirdSqlDialect.java
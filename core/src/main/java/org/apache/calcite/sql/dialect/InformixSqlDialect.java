@@ -30,6 +30,10 @@ public class InformixSqlDialect extends SqlDialect {
   public InformixSqlDialect(Context context) {
     super(context);
   }
+
+  @Override public boolean supportsMultiRowInsert() {
+    return false;
+  }
 }
 
 // End InformixSqlDialect.java
@@ -30,6 +30,10 @@ public class InterbaseSqlDialect extends SqlDialect {
   public InterbaseSqlDialect(Context context) {
     super(context);
   }
+
+  @Override public boolean supportsMultiRowInsert() {
+    return false;
+  }
 }
 
 // End InterbaseSqlDialect.java
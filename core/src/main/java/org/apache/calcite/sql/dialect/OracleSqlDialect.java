@@ -52,6 +52,10 @@ public OracleSqlDialect(Context context) {
     return false;
   }
 
+  @Override public boolean supportsMultiRowInsert() {
+    return false;
+  }
+
   @Override public void unparseCall(SqlWriter writer, SqlCall call,
       int leftPrec, int rightPrec) {
     if (call.getOperator() == SqlStdOperatorTable.SUBSTRING) {
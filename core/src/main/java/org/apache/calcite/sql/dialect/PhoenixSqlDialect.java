@@ -32,6 +32,10 @@ public PhoenixSqlDialect(Context context) {
     super(context);
   }
 
+  @Override public boolean supportsMultiRowInsert() {
+    return false;
+  }
+
   @Override public boolean supportsCharSet() {
     return false;
   }
@@ -30,6 +30,10 @@ public class SybaseSqlDialect extends SqlDialect {
   public SybaseSqlDialect(Context context) {
     super(context);
   }
+
+  @Override public boolean supportsMultiRowInsert() {
+    return false;
+  }
 }
 
 // End SybaseSqlDialect.java
@@ -21,13 +21,13 @@
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.SqlWriter;
 import org.apache.calcite.sql.dialect.AnsiSqlDialect;
-import org.apache.calcite.sql.util.SqlBuilder;
 import org.apache.calcite.sql.util.SqlString;
 import org.apache.calcite.util.Unsafe;
 import org.apache.calcite.util.Util;
 import org.apache.calcite.util.trace.CalciteLogger;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 
 import org.slf4j.LoggerFactory;
 
@@ -36,9 +36,11 @@
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
@@ -141,6 +143,7 @@ public class SqlPrettyWriter implements SqlWriter {
   private final StringWriter sw = new StringWriter();
   protected final PrintWriter pw;
   private final Deque<FrameImpl> listStack = new ArrayDeque<>();
+  private final List<Integer> dynamicParameters = new ArrayList<>();
   protected FrameImpl frame;
   private boolean needWhitespace;
   protected String nextWhitespace;
@@ -279,6 +282,7 @@ public void resetSettings() {
   public void reset() {
     pw.flush();
     Unsafe.clear(sw);
+    dynamicParameters.clear();
     setNeedWhitespace(false);
     nextWhitespace = " ";
   }
@@ -810,7 +814,8 @@ public String toString() {
   }
 
   public SqlString toSqlString() {
-    return new SqlBuilder(dialect, toString()).toSqlString();
+    return new SqlString(dialect, toString(),
+        ImmutableList.copyOf(dynamicParameters));
   }
 
   public SqlDialect getDialect() {
@@ -880,6 +885,17 @@ protected boolean tooLong(String s) {
     return result;
   }
 
+  /**
+   * Prints a dynamic parameter (e.g. {@code ?} for default JDBC), and records
+   * its index so that {@link #toSqlString()} can report which parameter each
+   * placeholder refers to.
+   */
+  public void dynamicParam(int index) {
+    dynamicParameters.add(index);
+    print("?");
+    setNeedWhitespace(true);
+  }
+
   public void print(String s) {
     if (s.equals("(")) {
       throw new RuntimeException("Use 'startList'");
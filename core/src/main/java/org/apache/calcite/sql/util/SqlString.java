@@ -18,6 +18,8 @@
 
 import org.apache.calcite.sql.SqlDialect;
 
+import com.google.common.collect.ImmutableList;
+
 /**
  * String that represents a kocher SQL statement, expression, or fragment.
  *
@@ -30,6 +32,7 @@
 public class SqlString {
   private final String s;
   private SqlDialect dialect;
+  private final ImmutableList<Integer> dynamicParameters;
 
   /**
    * Creates a SqlString.
@@ -37,10 +40,25 @@ public class SqlString {
    * @param s Contents of string
    */
   public SqlString(SqlDialect dialect, String s) {
+    this(dialect, s, ImmutableList.<Integer>of());
+  }
+
+  /**
+   * Creates a SqlString that contains dynamic parameters.
+   *
+   * @param s Contents of string
+   * @param dynamicParameters Index of the dynamic parameter that each
+   *                          {@code ?} placeholder refers to, in order of
+   *                          occurrence
+   */
+  public SqlString(SqlDialect dialect, String s,
+      ImmutableList<Integer> dynamicParameters) {
     this.dialect = dialect;
     this.s = s;
+    this.dynamicParameters = dynamicParameters;
     assert s != null;
     assert dialect != null;
+    assert dynamicParameters != null;
   }
 
   @Override public int hashCode() {
@@ -80,6 +98,14 @@ public String getSql() {
   public SqlDialect getDialect() {
     return dialect;
   }
+
+  /**
+   * Returns the indexes of the dynamic parameters, one for each {@code ?}
+   * placeholder in the string, in order of occurrence.
+   */
+  public ImmutableList<Integer> getDynamicParameters() {
+    return dynamicParameters;
+  }
 }
 
 // End SqlString.java
@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.tools;
 
+import org.apache.calcite.adapter.enumerable.EnumerableParallelizer;
 import org.apache.calcite.adapter.enumerable.EnumerableRules;
 import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.interpreter.NoneToBindableConverterRule;
@@ -24,6 +25,7 @@
 import org.apache.calcite.plan.RelOptMaterialization;
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.plan.hep.HepMatchOrder;
@@ -33,6 +35,7 @@
 import org.apache.calcite.prepare.CalcitePrepareImpl;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Calc;
+import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.core.RelFactories;
 import org.apache.calcite.rel.metadata.ChainedRelMetadataProvider;
 import org.apache.calcite.rel.metadata.DefaultRelMetadataProvider;
@@ -52,7 +55,9 @@
 import org.apache.calcite.rel.rules.JoinPushThroughJoinRule;
 import org.apache.calcite.rel.rules.JoinToMultiJoinRule;
 import org.apache.calcite.rel.rules.LoptOptimizeJoinRule;
+import org.apache.calcite.rel.rules.MultiJoin;
 import org.apache.calcite.rel.rules.MultiJoinOptimizeBushyRule;
+import org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule;
 import org.apache.calcite.rel.rules.ProjectCalcMergeRule;
 import org.apache.calcite.rel.rules.ProjectMergeRule;
 import org.apache.calcite.rel.rules.ProjectToCalcRule;
@@ -121,6 +126,9 @@ public Program apply(RuleSet ruleSet) {
           EnumerableRules.ENUMERABLE_AGGREGATE_RULE,
           EnumerableRules.ENUMERABLE_SORT_RULE,
           EnumerableRules.ENUMERABLE_LIMIT_RULE,
+          EnumerableRules.ENUMERABLE_LIMIT_SORT_RULE,
+          EnumerableRules.ENUMERABLE_EXCHANGE_RULE,
+          EnumerableRules.ENUMERABLE_SORT_EXCHANGE_RULE,
           EnumerableRules.ENUMERABLE_UNION_RULE,
           EnumerableRules.ENUMERABLE_INTERSECT_RULE,
           EnumerableRules.ENUMERABLE_MINUS_RULE,
@@ -223,6 +231,41 @@ public RelNode run(RelOptPlanner planner, RelNode rel,
   public static Program heuristicJoinOrder(
       final Iterable<? extends RelOptRule> rules,
       final boolean bushy, final int minJoinCount) {
+    return multiJoinOrder(rules, minJoinCount,
+        bushy
+            ? MultiJoinOptimizeBushyRule.INSTANCE
+            : LoptOptimizeJoinRule.INSTANCE);
+  }
+
+  /** Creates a program that orders joins using dynamic programming
+   * (via {@link org.apache.calcite.rel.rules.JoinToMultiJoinRule},
+   * {@link org.apache.calcite.rel.rules.MultiJoin} and
+   * {@link org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule})
+   * if there are {@code minJoinCount} or more joins.
+   *
+   * <p>A connected join graph of up to {@code dpFactorLimit} relations is
+   * ordered optimally, unless enumeration takes longer than
+   * {@code timeBoundMillis}; larger graphs are ordered greedily. A
+   * {@code MultiJoin} that contains outer joins is ordered by
+   * {@link org.apache.calcite.rel.rules.LoptOptimizeJoinRule}; one that
+   * contains only inner joins is ordered only by the dynamic programming
+   * rule.
+   */
+  public static Program dpJoinOrder(
+      final Iterable<? extends RelOptRule> rules, final int minJoinCount,
+      int dpFactorLimit, long timeBoundMillis) {
+    return multiJoinOrder(rules, minJoinCount,
+        new MultiJoinOptimizeDpRule(RelFactories.LOGICAL_BUILDER,
+            dpFactorLimit, timeBoundMillis),
+        OuterJoinOptimizeRule.INSTANCE);
+  }
+
+  /** Creates a program that gathers joins into a
+   * {@link org.apache.calcite.rel.rules.MultiJoin} and orders them using
+   * the given rules, if there are {@code minJoinCount} or more joins. */
+  private static Program multiJoinOrder(
+      final Iterable<? extends RelOptRule> rules, final int minJoinCount,
+      final RelOptRule... multiJoinRules) {
     return new Program() {
       public RelNode run(RelOptPlanner planner, RelNode rel,
           RelTraitSet requiredOutputTraits,
@@ -242,8 +285,8 @@ public RelNode run(RelOptPlanner planner, RelNode rel,
           final Program program1 =
               of(hep, false, DefaultRelMetadataProvider.INSTANCE);
 
-          // Create a program that contains a rule to expand a MultiJoin
-          // into heuristically ordered joins.
+          // Create a program that contains rules to expand a MultiJoin
+          // into ordered joins.
           // We use the rule set passed in, but remove JoinCommuteRule and
           // JoinPushThroughJoinRule, because they cause exhaustive search.
           final List<RelOptRule> list = Lists.newArrayList(rules);
@@ -252,9 +295,7 @@ public RelNode run(RelOptPlanner planner, RelNode rel,
                   JoinAssociateRule.INSTANCE,
                   JoinPushThroughJoinRule.LEFT,
                   JoinPushThroughJoinRule.RIGHT));
-          list.add(bushy
-              ? MultiJoinOptimizeBushyRule.INSTANCE
-              : LoptOptimizeJoinRule.INSTANCE);
+          list.addAll(Arrays.asList(multiJoinRules));
           final Program program2 = ofRules(list);
 
           program = sequence(program1, program2);
@@ -336,7 +377,9 @@ public RelNode run(RelOptPlanner planner, RelNode rel,
 
         // Second planner pass to do physical "tweaks". This the first time that
         // EnumerableCalcRel is introduced.
-        calc(metadataProvider));
+        calc(metadataProvider),
+
+        new ParallelizeProgram());
   }
 
   /** Program backed by a {@link RuleSet}. */
@@ -412,6 +455,50 @@ public RelNode run(RelOptPlanner planner, RelNode rel,
     }
   }
 
+  /** Program that, if the {@code parallelism} connection property is greater
+   * than 1, rewrites a plan so that parts of it execute in parallel.
+   *
+   * @see EnumerableParallelizer */
+  private static class ParallelizeProgram implements Program {
+    public RelNode run(RelOptPlanner planner, RelNode rel,
+        RelTraitSet requiredOutputTraits,
+        List<RelOptMaterialization> materializations,
+        List<RelOptLattice> lattices) {
+      final CalciteConnectionConfig config =
+          planner.getContext().unwrap(CalciteConnectionConfig.class);
+      if (config != null && config.parallelism() > 1) {
+        return EnumerableParallelizer.parallelize(rel, config.parallelism(),
+            config.morselSize());
+      }
+      return rel;
+    }
+  }
+
+  /** Variant of {@link LoptOptimizeJoinRule} that only orders a
+   * {@link MultiJoin} that contains outer joins; inner joins are left to
+   * {@link MultiJoinOptimizeDpRule}. */
+  private static class OuterJoinOptimizeRule extends LoptOptimizeJoinRule {
+    static final OuterJoinOptimizeRule INSTANCE =
+        new OuterJoinOptimizeRule();
+
+    OuterJoinOptimizeRule() {
+      super(RelFactories.LOGICAL_BUILDER);
+    }
+
+    @Override public boolean matches(RelOptRuleCall call) {
+      final MultiJoin multiJoin = call.rel(0);
+      if (multiJoin.isFullOuterJoin()) {
+        return true;
+      }
+      for (JoinRelType joinType : multiJoin.getJoinTypes()) {
+        if (joinType != JoinRelType.INNER) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
   /** Program that trims fields. */
   private static class TrimFieldsProgram implements Program {
     public RelNode run(RelOptPlanner planner, RelNode rel,
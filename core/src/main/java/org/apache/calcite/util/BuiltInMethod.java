@@ -22,6 +22,7 @@
 import org.apache.calcite.avatica.util.DateTimeUtils;
 import org.apache.calcite.avatica.util.TimeUnitRange;
 import org.apache.calcite.interpreter.Context;
+import org.apache.calcite.interpreter.ProgramScalar;
 import org.apache.calcite.interpreter.Row;
 import org.apache.calcite.interpreter.Scalar;
 import org.apache.calcite.linq4j.AbstractEnumerable;
@@ -30,14 +31,18 @@
 import org.apache.calcite.linq4j.EnumerableDefaults;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.ExtendedEnumerable;
+import org.apache.calcite.linq4j.HashAggregator;
 import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.ParallelEnumerables;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.Queryable;
+import org.apache.calcite.linq4j.SpillingEnumerables;
 import org.apache.calcite.linq4j.function.EqualityComparer;
 import org.apache.calcite.linq4j.function.Function0;
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.function.Functions;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.function.Predicate1;
 import org.apache.calcite.linq4j.function.Predicate2;
 import org.apache.calcite.linq4j.tree.FunctionExpression;
@@ -69,8 +74,12 @@
 import org.apache.calcite.rel.metadata.Metadata;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.runtime.ArrayBindable;
+import org.apache.calcite.runtime.BatchAggregator;
+import org.apache.calcite.runtime.BatchHashJoin;
+import org.apache.calcite.runtime.BatchInsertEnumerable;
 import org.apache.calcite.runtime.BinarySearch;
 import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.runtime.ColumnBatch;
 import org.apache.calcite.runtime.Enumerables;
 import org.apache.calcite.runtime.FlatLists;
 import org.apache.calcite.runtime.RandomFunction;
@@ -79,6 +88,7 @@
 import org.apache.calcite.runtime.SqlFunctions;
 import org.apache.calcite.runtime.SqlFunctions.FlatProductInputType;
 import org.apache.calcite.runtime.Utilities;
+import org.apache.calcite.schema.BatchScannableTable;
 import org.apache.calcite.schema.FilterableTable;
 import org.apache.calcite.schema.ModifiableTable;
 import org.apache.calcite.schema.ProjectableFilterableTable;
@@ -137,12 +147,29 @@ public enum BuiltInMethod {
   DATA_CONTEXT_GET(DataContext.class, "get", String.class),
   DATA_CONTEXT_GET_ROOT_SCHEMA(DataContext.class, "getRootSchema"),
   JDBC_SCHEMA_DATA_SOURCE(JdbcSchema.class, "getDataSource"),
+  JDBC_SCHEMA_FETCH_OPTIONS(JdbcSchema.class, "getFetchOptions"),
+  JDBC_SCHEMA_BATCH_OPTIONS(JdbcSchema.class, "getBatchOptions"),
   ROW_VALUE(Row.class, "getObject", int.class),
   ROW_AS_COPY(Row.class, "asCopy", Object[].class),
   RESULT_SET_ENUMERABLE_OF(ResultSetEnumerable.class, "of", DataSource.class,
       String.class, Function1.class),
+  RESULT_SET_ENUMERABLE_OF_PREPARED(ResultSetEnumerable.class, "of",
+      DataSource.class, String.class, Function1.class,
+      ResultSetEnumerable.PreparedStatementEnricher.class,
+      ResultSetEnumerable.FetchOptions.class),
+  CREATE_ENRICHER(ResultSetEnumerable.class, "createEnricher",
+      Integer[].class, DataContext.class),
+  BATCH_INSERT_ENUMERABLE_OF(BatchInsertEnumerable.class, "of",
+      DataSource.class, String.class, String.class, int[].class,
+      Enumerable.class, BatchInsertEnumerable.BatchOptions.class),
   JOIN(ExtendedEnumerable.class, "join", Enumerable.class, Function1.class,
       Function1.class, Function2.class),
+  JOIN_SPILLING(SpillingEnumerables.class, "join", Enumerable.class,
+      Enumerable.class, Function1.class, Function1.class, Function2.class,
+      EqualityComparer.class, boolean.class, boolean.class, int.class),
+  LONG_KEY_JOIN(EnumerableDefaults.class, "longKeyJoin", Enumerable.class,
+      Enumerable.class, LongFunction1.class, LongFunction1.class,
+      Function2.class, boolean.class, boolean.class),
   MERGE_JOIN(EnumerableDefaults.class, "mergeJoin", Enumerable.class,
       Enumerable.class, Function1.class, Function1.class, Function2.class,
       boolean.class, boolean.class),
@@ -164,6 +191,26 @@ public enum BuiltInMethod {
   GROUP_BY(ExtendedEnumerable.class, "groupBy", Function1.class),
   GROUP_BY2(ExtendedEnumerable.class, "groupBy", Function1.class,
       Function0.class, Function2.class, Function2.class),
+  GROUP_BY_SPILLING(SpillingEnumerables.class, "groupBy", Enumerable.class,
+      Function1.class, Function0.class, Function2.class, Function2.class,
+      EqualityComparer.class, int.class),
+  HASH_AGGREGATOR_AGGREGATE(HashAggregator.class, "aggregate",
+      Enumerable.class, Function1.class),
+  GATHER(ParallelEnumerables.class, "gather", Enumerable.class,
+      Function1.class, int.class, int.class),
+  EXCHANGE(ParallelEnumerables.class, "exchange", Enumerable.class,
+      ParallelEnumerables.Partitioner.class, int.class),
+  EXCHANGE_PIPELINE(ParallelEnumerables.class, "exchange", Enumerable.class,
+      ParallelEnumerables.Partitioner.class, int.class, Function1.class),
+  SORT_EXCHANGE(ParallelEnumerables.class, "sortExchange", Enumerable.class,
+      ParallelEnumerables.Partitioner.class, int.class, Function1.class,
+      Comparator.class, boolean.class),
+  HASH_PARTITIONER(ParallelEnumerables.class, "hashPartitioner",
+      Function1.class, int.class),
+  RANGE_PARTITIONER(ParallelEnumerables.class, "rangePartitioner",
+      Function1.class, Comparator.class, int.class),
+  ROUND_ROBIN_PARTITIONER(ParallelEnumerables.class, "roundRobinPartitioner",
+      int.class),
   GROUP_BY_MULTIPLE(EnumerableDefaults.class, "groupByMultiple",
       Enumerable.class, List.class, Function0.class, Function2.class,
       Function2.class),
@@ -171,6 +218,13 @@ public enum BuiltInMethod {
       Function2.class, Function1.class),
   ORDER_BY(ExtendedEnumerable.class, "orderBy", Function1.class,
       Comparator.class),
+  ORDER_BY_WITH_FETCH_AND_OFFSET(EnumerableDefaults.class, "orderBy",
+      Enumerable.class, Function1.class, Comparator.class, int.class,
+      int.class),
+  ORDER_BY_SPILLING(SpillingEnumerables.class, "orderBy", Enumerable.class,
+      Function1.class, Comparator.class, int.class),
+  SPILL_THRESHOLD(Enumerables.class, "spillThreshold", DataContext.class),
+  PARALLELISM(Enumerables.class, "parallelism", DataContext.class),
   UNION(ExtendedEnumerable.class, "union", Enumerable.class),
   CONCAT(ExtendedEnumerable.class, "concat", Enumerable.class),
   INTERSECT(ExtendedEnumerable.class, "intersect", Enumerable.class),
@@ -291,6 +345,18 @@ public enum BuiltInMethod {
   MODIFIABLE_TABLE_GET_MODIFIABLE_COLLECTION(ModifiableTable.class,
       "getModifiableCollection"),
   SCANNABLE_TABLE_SCAN(ScannableTable.class, "scan", DataContext.class),
+  BATCH_SCANNABLE_TABLE_SCAN(BatchScannableTable.class, "scanBatches",
+      DataContext.class, Class[].class, int.class),
+  COLUMN_BATCH_TO_ROWS(ColumnBatch.class, "toRows", Enumerable.class),
+  COLUMN_BATCH_TO_BATCHES(ColumnBatch.class, "toBatches", Enumerable.class,
+      Class[].class, int.class),
+  BATCH_AGGREGATE(BatchAggregator.class, "aggregate", Enumerable.class,
+      int[].class, String[].class, int[].class, Class[].class, int.class),
+  BATCH_HASH_JOIN(BatchHashJoin.class, "join", Enumerable.class,
+      Enumerable.class, int[].class, int[].class, Class[].class, int.class),
+  COLUMN_BATCH_COLUMNS(ColumnBatch.class, "columns", true),
+  COLUMN_BATCH_SELECTION(ColumnBatch.class, "selection", true),
+  COLUMN_BATCH_COUNT(ColumnBatch.class, "count", true),
   STRING_TO_BOOLEAN(SqlFunctions.class, "toBoolean", String.class),
   INTERNAL_TO_DATE(SqlFunctions.class, "internalToDate", int.class),
   INTERNAL_TO_TIME(SqlFunctions.class, "internalToTime", int.class),
@@ -412,6 +478,8 @@ public enum BuiltInMethod {
       SqlExplainLevel.class),
   SCALAR_EXECUTE1(Scalar.class, "execute", Context.class),
   SCALAR_EXECUTE2(Scalar.class, "execute", Context.class, Object[].class),
+  PROGRAM_SCALAR_EXECUTE(ProgramScalar.class, "execute", Context.class,
+      Object[].class),
   CONTEXT_VALUES(Context.class, "values", true),
   CONTEXT_ROOT(Context.class, "root", true),
   DATA_CONTEXT_GET_QUERY_PROVIDER(DataContext.class, "getQueryProvider"),
@@ -18,18 +18,33 @@
 
 import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
 import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeImpl;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
 
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -315,6 +330,409 @@ public class ArrayTableTest {
         "Column(representation=ObjectArray(ordinal=2), value=[Bill, Sebastian, Theodore, Eric])");
   }
 
+  /** As {@link #testLoadSorted2()} but stores values off-heap. Column #0
+   * must be permuted after it has been written to a direct buffer. */
+  @Test public void testLoadOffHeap() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("deptno", typeFactory.createType(int.class))
+            .add("salary", typeFactory.createType(long.class))
+            .add("empid", typeFactory.createType(int.class))
+            .add("commission", typeFactory.createType(double.class))
+            .build();
+    final Enumerable<Object[]> enumerable =
+        Linq4j.asEnumerable(
+            Arrays.asList(
+                new Object[]{10, 1000000000000L, 100, 1.5D},
+                new Object[]{20, -5L, 200, 2.5D},
+                new Object[]{30, 70000L, 150, -3.5D},
+                new Object[]{10, -5L, 160, 0D}));
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<Object[]>(typeFactory, enumerable,
+            RelDataTypeImpl.proto(rowType), null, true);
+    assertEquals(2, loader.sortField);
+    checkColumn(
+        loader.representationValues.get(0),
+        ArrayTable.RepresentationType.DIRECT_BIT_SLICED_PRIMITIVE_ARRAY,
+        "Column(representation=DirectBitSlicedPrimitiveArray(ordinal=0, bitCount=5, primitive=INT, signed=false), value=[10, 30, 10, 20, 0, 0, 0, 0, 0, 0, 0, 0])");
+    checkColumn(
+        loader.representationValues.get(1),
+        ArrayTable.RepresentationType.DIRECT_PRIMITIVE_ARRAY,
+        "Column(representation=DirectPrimitiveArray(ordinal=1, primitive=LONG, p=LONG), value=[1000000000000, 70000, -5, -5])");
+    checkColumn(
+        loader.representationValues.get(2),
+        ArrayTable.RepresentationType.DIRECT_BIT_SLICED_PRIMITIVE_ARRAY,
+        "Column(representation=DirectBitSlicedPrimitiveArray(ordinal=2, bitCount=8, primitive=INT, signed=false), value=[100, 150, 160, 200, 0, 0, 0, 0])");
+    checkColumn(
+        loader.representationValues.get(3),
+        ArrayTable.RepresentationType.DIRECT_PRIMITIVE_ARRAY,
+        "Column(representation=DirectPrimitiveArray(ordinal=3, primitive=DOUBLE, p=DOUBLE), value=[1.5, -3.5, 0.0, 2.5])");
+    final ArrayTable.Column column = loader.representationValues.get(1);
+    assertEquals(-5,
+        column.representation.getInt(column.dataSet, 3));
+
+    final ArrayTable.Content content =
+        new ArrayTable.Content(loader.representationValues, loader.size(),
+            ImmutableList.of(RelCollations.of(loader.sortField)));
+
+    // Closing the table while a scan is in progress does not affect the
+    // scan; the off-heap memory is only released once nothing uses it.
+    final ArrayTable table =
+        new ArrayTable(Object[].class, RelDataTypeImpl.proto(rowType),
+            new ArrayTable.ContentSupplier(Suppliers.ofInstance(content)));
+    final Enumerator<Object[]> enumerator = table.scan(null).enumerator();
+    assertTrue(enumerator.moveNext());
+    table.close();
+    final List<Object[]> list = toList(enumerator);
+    assertEquals(3, list.size());
+    assertEquals("[30, 70000, 150, -3.5]", Arrays.toString(list.get(0)));
+    assertEquals("[20, -5, 200, 2.5]", Arrays.toString(list.get(2)));
+  }
+
+  /** Tests that contents written to a snapshot file and read back have the
+   * same values, using on-heap and off-heap representations. */
+  @Test public void testSnapshot() throws IOException {
+    checkSnapshot(false);
+    checkSnapshot(true);
+  }
+
+  private void checkSnapshot(boolean offHeap) throws IOException {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("empid", typeFactory.createType(int.class))
+            .add("salary", typeFactory.createType(long.class))
+            .add("rate", typeFactory.createType(double.class))
+            .add("name", typeFactory.createType(String.class))
+            .add("deptno", typeFactory.createType(Integer.class))
+            .add("flag", typeFactory.createType(boolean.class))
+            .add("grade", typeFactory.createType(int.class))
+            .build();
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 3000; i++) {
+      rows.add(
+          new Object[]{3000 - i, i * 1000000000L, i / 4D, "name " + i,
+              i % 5 == 0 ? null : i % 3, i % 2 == 0, 7});
+    }
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<Object[]>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null, offHeap);
+    final ArrayTable.Content content =
+        new ArrayTable.Content(loader.representationValues, loader.size(),
+            ImmutableList.of(RelCollations.of(loader.sortField)));
+    assertEquals(ArrayTable.RepresentationType.OBJECT_DICTIONARY,
+        loader.representationValues.get(4).representation.getType());
+    assertEquals(ArrayTable.RepresentationType.CONSTANT,
+        loader.representationValues.get(6).representation.getType());
+
+    final File file = File.createTempFile("snapshot", ".snapshot");
+    try {
+      final String fingerprint = ArrayTableSnapshot.fingerprint(rowType);
+      ArrayTableSnapshot.write(content, fingerprint, file);
+      final ArrayTable.Content content2 =
+          ArrayTableSnapshot.read(file, fingerprint);
+      assertEquals(content.size, content2.size);
+      assertEquals(content.collations, content2.collations);
+      for (int i = 0; i < content.columns.size(); i++) {
+        assertEquals(content.columns.get(i).cardinality,
+            content2.columns.get(i).cardinality);
+      }
+      final Enumerator<Object[]> e1 = content.arrayEnumerator();
+      final Enumerator<Object[]> e2 = content2.arrayEnumerator();
+      while (e1.moveNext()) {
+        assertTrue(e2.moveNext());
+        assertEquals(Arrays.toString(e1.current()),
+            Arrays.toString(e2.current()));
+      }
+      assertFalse(e2.moveNext());
+
+      // A snapshot written for a different row type is stale
+      final RelDataType rowType2 =
+          typeFactory.builder()
+              .addAll(rowType.getFieldList())
+              .add("extra", typeFactory.createType(int.class))
+              .build();
+      assertNull(
+          ArrayTableSnapshot.read(file,
+              ArrayTableSnapshot.fingerprint(rowType2)));
+    } finally {
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+
+  /** Tests that a loader given existing contents and an append key adds
+   * only the source rows whose key is greater than any existing key, reading
+   * the source in several chunks. */
+  @Test public void testAppend() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("id", typeFactory.createType(int.class))
+            .add("name", typeFactory.createType(String.class))
+            .add("deptno", typeFactory.createType(Integer.class))
+            .build();
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      rows.add(new Object[]{i, "name " + i % 100, i % 7 == 0 ? null : i % 3});
+    }
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<Object[]>(typeFactory,
+            Linq4j.asEnumerable(rows.subList(0, 10000)),
+            RelDataTypeImpl.proto(rowType), null, false);
+    final ArrayTable.Content base =
+        new ArrayTable.Content(loader.representationValues, loader.size(),
+            ImmutableList.of(RelCollations.of(loader.sortField)));
+    assertEquals(10000, base.size);
+
+    // The source has all rows; the first 10,000 are already loaded.
+    final ColumnLoader<Object[]> loader2 =
+        new ColumnLoader<Object[]>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null, false, base, 0);
+    assertEquals(20000, loader2.size());
+    assertEquals(0, loader2.sortField);
+    final ArrayTable.Content content =
+        new ArrayTable.Content(loader2.representationValues, loader2.size(),
+            ImmutableList.of(RelCollations.of(loader2.sortField)));
+    final Enumerator<Object[]> e = content.arrayEnumerator();
+    for (Object[] row : rows) {
+      assertTrue(e.moveNext());
+      assertEquals(Arrays.toString(row), Arrays.toString(e.current()));
+    }
+    assertFalse(e.moveNext());
+
+    // The "id" column needs more bits for the new keys, so was encoded
+    // again. The dictionaries of "name" and "deptno" already held the new
+    // values, so those columns were extended, keeping their dictionaries.
+    assertEquals(20000, content.columns.get(0).cardinality);
+    for (int i : new int[] {1, 2}) {
+      assertEquals(ArrayTable.RepresentationType.OBJECT_DICTIONARY,
+          content.columns.get(i).representation.getType());
+      assertSame(ArrayTable.toPair(base.columns.get(i).dataSet).right,
+          ArrayTable.toPair(content.columns.get(i).dataSet).right);
+      assertEquals(base.columns.get(i).cardinality,
+          content.columns.get(i).cardinality);
+    }
+  }
+
+  /** Tests that if the rows that a loader appends would break the order of
+   * the column on which the table is sorted, the loader encodes the whole
+   * table again, sorted. */
+  @Test public void testAppendUnsorted() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("id", typeFactory.createType(int.class))
+            .add("seq", typeFactory.createType(int.class))
+            .build();
+    // Values of "id" are a permutation of 0 .. 199; "seq" is ascending
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      rows.add(new Object[]{i * 7 % 200, i});
+    }
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<Object[]>(typeFactory,
+            Linq4j.asEnumerable(rows.subList(0, 100)),
+            RelDataTypeImpl.proto(rowType), null, false);
+    assertEquals(0, loader.sortField);
+    final ArrayTable.Content base =
+        new ArrayTable.Content(loader.representationValues, loader.size(),
+            ImmutableList.of(RelCollations.of(loader.sortField)));
+
+    final ColumnLoader<Object[]> loader2 =
+        new ColumnLoader<Object[]>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null, false, base, 1);
+    assertEquals(200, loader2.size());
+    assertEquals(0, loader2.sortField);
+    final ArrayTable.Content content =
+        new ArrayTable.Content(loader2.representationValues, loader2.size(),
+            ImmutableList.of(RelCollations.of(loader2.sortField)));
+    final Enumerator<Object[]> e = content.arrayEnumerator();
+    for (int i = 0; i < 200; i++) {
+      assertTrue(e.moveNext());
+      assertEquals(i, e.current()[0]);
+      assertEquals(i, (Integer) e.current()[1] * 7 % 200);
+    }
+    assertFalse(e.moveNext());
+  }
+
+  /** Tests that a loader appends rows whose key equals the greatest key of
+   * the existing rows, except those that are equal to existing rows. */
+  @Test public void testAppendRepeatedKey() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("seq", typeFactory.createType(int.class))
+            .add("name", typeFactory.createType(String.class))
+            .build();
+    final List<Object[]> rows = new ArrayList<>();
+    rows.add(new Object[]{1, "a"});
+    rows.add(new Object[]{2, "b"});
+    rows.add(new Object[]{2, "c"});
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<Object[]>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null, false);
+    final ArrayTable.Content base =
+        new ArrayTable.Content(loader.representationValues, loader.size(),
+            ImmutableList.<RelCollation>of());
+
+    // Rows added to the source; one is identical to an existing row.
+    rows.add(new Object[]{2, "c"});
+    rows.add(new Object[]{2, "d"});
+    rows.add(new Object[]{3, "e"});
+    final ColumnLoader<Object[]> loader2 =
+        new ColumnLoader<Object[]>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null, false, base, 0);
+    assertEquals(6, loader2.size());
+    final ArrayTable.Content content =
+        new ArrayTable.Content(loader2.representationValues, loader2.size(),
+            ImmutableList.<RelCollation>of());
+    final Enumerator<Object[]> e = content.arrayEnumerator();
+    for (Object[] row : rows) {
+      assertTrue(e.moveNext());
+      assertEquals(Arrays.toString(row), Arrays.toString(e.current()));
+    }
+    assertFalse(e.moveNext());
+
+    // Loading again from the same source appends nothing.
+    final ColumnLoader<Object[]> loader3 =
+        new ColumnLoader<Object[]>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null, false, content, 0);
+    assertEquals(6, loader3.size());
+  }
+
+  /** Tests that a scan with predicates narrows the range on the sort column,
+   * skips blocks using zone maps, and projects columns. */
+  @Test public void testFilterEnumerator() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RelDataType rowType =
+        typeFactory.builder()
+            .add("empid", typeFactory.createType(int.class))
+            .add("deptno", typeFactory.createType(int.class))
+            .add("name", typeFactory.createType(String.class))
+            .build();
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      rows.add(new Object[]{i, i / 1000, "n" + i % 7});
+    }
+    final ColumnLoader<Object[]> loader =
+        new ColumnLoader<Object[]>(typeFactory, Linq4j.asEnumerable(rows),
+            RelDataTypeImpl.proto(rowType), null);
+    assertEquals(0, loader.sortField);
+    final ArrayTable.Content content =
+        new ArrayTable.Content(loader.representationValues, loader.size(),
+            ImmutableList.of(RelCollations.of(loader.sortField)));
+
+    final RexBuilder rexBuilder = new RexBuilder(typeFactory);
+    final RexNode empid = rexBuilder.makeInputRef(rowType, 0);
+    final RexNode deptno = rexBuilder.makeInputRef(rowType, 1);
+
+    // 1500 <= empid < 1510, projecting name and empid
+    final ArrayTable.ColumnPredicate ge =
+        ArrayTable.ColumnPredicate.of(
+            rexBuilder.makeCall(SqlStdOperatorTable.LESS_THAN_OR_EQUAL,
+                rexBuilder.makeExactLiteral(BigDecimal.valueOf(1500)), empid));
+    assertEquals("$0 GREATER_THAN_OR_EQUAL 1500", ge.toString());
+    final ArrayTable.ColumnPredicate lt =
+        ArrayTable.ColumnPredicate.of(
+            rexBuilder.makeCall(SqlStdOperatorTable.LESS_THAN, empid,
+                rexBuilder.makeExactLiteral(BigDecimal.valueOf(1510))));
+    assertTrue(content.accepts(ge));
+    assertTrue(content.accepts(lt));
+    final Enumerator<Object[]> enumerator =
+        content.filterEnumerator(Arrays.asList(ge, lt), new int[] {2, 0});
+    final List<Object[]> list = toList(enumerator);
+    assertEquals(10, list.size());
+    assertEquals("[n2, 1500]", Arrays.toString(list.get(0)));
+    assertEquals("[n4, 1509]", Arrays.toString(list.get(9)));
+
+    // deptno = 3; all rows are in blocks 2 and 3
+    final ArrayTable.ColumnPredicate eq =
+        ArrayTable.ColumnPredicate.of(
+            rexBuilder.makeCall(SqlStdOperatorTable.EQUALS, deptno,
+                rexBuilder.makeExactLiteral(BigDecimal.valueOf(3))));
+    final List<Object[]> list2 =
+        toList(content.filterEnumerator(Arrays.asList(eq), null));
+    assertEquals(1000, list2.size());
+    assertEquals("[3000, 3, n4]", Arrays.toString(list2.get(0)));
+
+    // A string literal cannot be compared with an int column
+    final ArrayTable.ColumnPredicate bad =
+        ArrayTable.ColumnPredicate.of(
+            rexBuilder.makeCall(SqlStdOperatorTable.EQUALS, deptno,
+                rexBuilder.makeLiteral("x")));
+    assertFalse(content.accepts(bad));
+
+    // Not a simple comparison
+    assertNull(
+        ArrayTable.ColumnPredicate.of(
+            rexBuilder.makeCall(SqlStdOperatorTable.EQUALS, deptno, empid)));
+  }
+
+  /** Tests that a scan binary-searches a sorted column that contains nulls,
+   * whether nulls sort first or last, and that nulls do not match. */
+  @Test public void testFilterEnumeratorSortedNulls() {
+    final JavaTypeFactoryImpl typeFactory =
+        new JavaTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RexBuilder rexBuilder = new RexBuilder(typeFactory);
+    final RexNode x =
+        rexBuilder.makeInputRef(typeFactory.createJavaType(Integer.class), 0);
+    final ArrayTable.ColumnPredicate ge =
+        ArrayTable.ColumnPredicate.of(
+            rexBuilder.makeCall(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL, x,
+                rexBuilder.makeExactLiteral(BigDecimal.valueOf(95))));
+    final ArrayTable.ColumnPredicate lt =
+        ArrayTable.ColumnPredicate.of(
+            rexBuilder.makeCall(SqlStdOperatorTable.LESS_THAN, x,
+                rexBuilder.makeExactLiteral(BigDecimal.valueOf(3))));
+    for (boolean nullsFirst : new boolean[] {true, false}) {
+      final ColumnLoader.ValueSet valueSet =
+          new ColumnLoader.ValueSet(Integer.class);
+      for (int i = 0; i < 5; i++) {
+        if (nullsFirst) {
+          valueSet.add(null);
+        }
+      }
+      for (int i = 0; i < 100; i++) {
+        valueSet.add(i);
+      }
+      for (int i = 0; i < 5; i++) {
+        if (!nullsFirst) {
+          valueSet.add(null);
+        }
+      }
+      final ArrayTable.Content content =
+          new ArrayTable.Content(ImmutableList.of(valueSet.freeze(0, null)),
+              105, ImmutableList.of(RelCollations.of(0)));
+      assertTrue(content.accepts(ge));
+      assertTrue(content.accepts(lt));
+      final List<Object[]> list =
+          toList(content.filterEnumerator(Arrays.asList(ge), null));
+      assertEquals(5, list.size());
+      assertEquals("[95]", Arrays.toString(list.get(0)));
+      assertEquals("[99]", Arrays.toString(list.get(4)));
+      final List<Object[]> list2 =
+          toList(content.filterEnumerator(Arrays.asList(lt), null));
+      assertEquals(3, list2.size());
+      assertEquals("[0]", Arrays.toString(list2.get(0)));
+    }
+  }
+
+  private static List<Object[]> toList(Enumerator<Object[]> enumerator) {
+    final List<Object[]> list = new ArrayList<>();
+    while (enumerator.moveNext()) {
+      list.add(enumerator.current());
+    }
+    return list;
+  }
+
   /** As {@link #testLoadSorted()} but column #1 is the unique column, not
    * column #0. The algorithm needs to go back and permute the values of
    * column #0 after it discovers that column #1 is unique and sorts by it. */
@@ -165,6 +165,50 @@ public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
     }
   }
 
+  /** Relational expression with zero inputs, convention PHYS, a given row
+   * count, and a cost equal to its row count. */
+  static class CountLeafRel extends TestLeafRel {
+    final double rowCount;
+
+    CountLeafRel(RelOptCluster cluster, String label, double rowCount) {
+      super(cluster, cluster.traitSetOf(PHYS_CALLING_CONVENTION), label);
+      this.rowCount = rowCount;
+    }
+
+    @Override public double estimateRowCount(RelMetadataQuery mq) {
+      return rowCount;
+    }
+
+    @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+        RelMetadataQuery mq) {
+      return planner.getCostFactory().makeCost(rowCount, 0, 0);
+    }
+
+    @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+      assert traitSet.comprises(PHYS_CALLING_CONVENTION);
+      assert inputs.isEmpty();
+      return this;
+    }
+  }
+
+  /** Relational expression with one input, convention PHYS, and a cost
+   * equal to its row count. */
+  static class CountSingleRel extends TestSingleRel {
+    CountSingleRel(RelOptCluster cluster, RelNode input) {
+      super(cluster, cluster.traitSetOf(PHYS_CALLING_CONVENTION), input);
+    }
+
+    @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+        RelMetadataQuery mq) {
+      return planner.getCostFactory().makeCost(mq.getRowCount(this), 0, 0);
+    }
+
+    public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+      assert traitSet.comprises(PHYS_CALLING_CONVENTION);
+      return new CountSingleRel(getCluster(), sole(inputs));
+    }
+  }
+
   /** Planner rule that converts {@link NoneLeafRel} to PHYS convention. */
   static class PhysLeafRule extends RelOptRule {
     PhysLeafRule() {
@@ -29,9 +29,12 @@
 import org.apache.calcite.rel.convert.ConverterImpl;
 import org.apache.calcite.rel.convert.ConverterRule;
 import org.apache.calcite.rel.logical.LogicalProject;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.rules.ProjectRemoveRule;
 import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.runtime.Hook;
 
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 
 import org.junit.Ignore;
@@ -42,6 +45,8 @@
 import java.util.Collections;
 import java.util.List;
 
+import static org.apache.calcite.plan.volcano.PlannerTests.CountLeafRel;
+import static org.apache.calcite.plan.volcano.PlannerTests.CountSingleRel;
 import static org.apache.calcite.plan.volcano.PlannerTests.GoodSingleRule;
 import static org.apache.calcite.plan.volcano.PlannerTests.NoneLeafRel;
 import static org.apache.calcite.plan.volcano.PlannerTests.NoneSingleRel;
@@ -53,6 +58,7 @@
 import static org.apache.calcite.plan.volcano.PlannerTests.newCluster;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
@@ -120,6 +126,109 @@ public VolcanoPlannerTest() {
     assertTrue(result instanceof PhysSingleRel);
   }
 
+  /**
+   * Tests that the planner stops when it has used up its rule-call budget,
+   * but not before it has found an implementable plan, and that it reports
+   * statistics.
+   */
+  @Test public void testRuleCallBudget() {
+    VolcanoPlanner planner = new VolcanoPlanner();
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+
+    planner.addRule(new PhysLeafRule());
+    planner.addRule(new GoodSingleRule());
+    planner.setRuleCallBudget(1);
+
+    RelOptCluster cluster = newCluster(planner);
+    NoneLeafRel leafRel =
+        new NoneLeafRel(
+            cluster,
+            "a");
+    NoneSingleRel singleRel =
+        new NoneSingleRel(
+            cluster,
+            leafRel);
+    RelNode convertedRel =
+        planner.changeTraits(
+            singleRel,
+            cluster.traitSetOf(PHYS_CALLING_CONVENTION));
+    planner.setRoot(convertedRel);
+    final List<VolcanoPlannerStatistics> list = new ArrayList<>();
+    final RelNode result;
+    try (Hook.Closeable ignore = Hook.PLANNER_STATISTICS.addThread(
+        new Function<VolcanoPlannerStatistics, Void>() {
+          public Void apply(VolcanoPlannerStatistics statistics) {
+            list.add(statistics);
+            return null;
+          }
+        })) {
+      result = planner.chooseDelegate().findBestExp();
+    }
+    assertTrue(result instanceof PhysSingleRel);
+
+    // Two rule calls were needed to find a plan, despite the budget.
+    assertThat(list.size(), is(1));
+    final VolcanoPlannerStatistics statistics = list.get(0);
+    assertSame(statistics, planner.getStatistics());
+    assertThat(statistics.ruleCallCount, is(2));
+    assertThat(statistics.budgetExhausted, is(true));
+    assertThat(statistics.ruleCallCountByPhase.get(VolcanoPlannerPhase.OPTIMIZE),
+        is(2));
+  }
+
+  /**
+   * Tests that metadata cached on a relational expression is recomputed when
+   * a set two levels below it gets a new best expression.
+   */
+  @Test public void testMetadataInvalidatedByNewBest() {
+    VolcanoPlanner planner = new VolcanoPlanner();
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+
+    RelOptCluster cluster = newCluster(planner);
+    CountLeafRel leafRel = new CountLeafRel(cluster, "a", 100d);
+    planner.setRoot(
+        new CountSingleRel(cluster, new CountSingleRel(cluster, leafRel)));
+    checkRootMetadata(planner, 100d);
+
+    // A leaf that is cheaper, and has fewer rows, becomes the best of the
+    // leaf's set.
+    planner.ensureRegistered(new CountLeafRel(cluster, "b", 10d), leafRel);
+    checkRootMetadata(planner, 10d);
+  }
+
+  /**
+   * Tests that metadata cached on a relational expression is recomputed when
+   * a set two levels below it is merged with another set.
+   */
+  @Test public void testMetadataInvalidatedByMerge() {
+    VolcanoPlanner planner = new VolcanoPlanner();
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+
+    RelOptCluster cluster = newCluster(planner);
+    CountLeafRel leafRel = new CountLeafRel(cluster, "a", 100d);
+    planner.setRoot(
+        new CountSingleRel(cluster, new CountSingleRel(cluster, leafRel)));
+    CountLeafRel leafRel2 = new CountLeafRel(cluster, "b", 10d);
+    planner.ensureRegistered(leafRel2, null);
+    checkRootMetadata(planner, 100d);
+
+    // Merge the leaf's set with a set whose best has fewer rows.
+    planner.ensureRegistered(leafRel2, leafRel);
+    checkRootMetadata(planner, 10d);
+  }
+
+  /** Checks the row count and cumulative cost of the best expression of the
+   * root, both of which are equal to the row count of the best leaf. Reads
+   * each twice, so that the second read comes from the metadata cache. */
+  private void checkRootMetadata(VolcanoPlanner planner, double rowCount) {
+    final RelNode rel = ((RelSubset) planner.getRoot()).getBest();
+    final RelMetadataQuery mq = rel.getCluster().getMetadataQuery();
+    for (int i = 0; i < 2; i++) {
+      assertThat(mq.getRowCount(rel), is(rowCount));
+      assertThat(mq.getCumulativeCost(rel).getRows(), is(rowCount));
+    }
+  }
+
   /**
    * Tests a rule that is fired once per subset (whereas most rules are fired
    * once per rel in a set or rel in a subset)
@@ -18,7 +18,11 @@
 
 import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.interpreter.FilterNode;
+import org.apache.calcite.interpreter.FusedScanNode;
 import org.apache.calcite.interpreter.Interpreter;
+import org.apache.calcite.interpreter.Node;
+import org.apache.calcite.interpreter.ProjectNode;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.schema.SchemaPlus;
@@ -39,6 +43,7 @@
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -48,6 +53,7 @@ public class InterpreterTest {
   private SchemaPlus rootSchema;
   private Planner planner;
   private MyDataContext dataContext;
+  private boolean fuse;
 
   /** Implementation of {@link DataContext} for executing queries without a
    * connection. */
@@ -71,6 +77,9 @@ public QueryProvider getQueryProvider() {
     }
 
     public Object get(String name) {
+      if (name.equals(Variable.FUSE_INTERPRETER.camelName)) {
+        return fuse;
+      }
       return null;
     }
   }
@@ -90,6 +99,7 @@ public Object get(String name) {
     rootSchema = null;
     planner = null;
     dataContext = null;
+    fuse = false;
   }
 
   /** Tests executing a simple plan using an interpreter. */
@@ -176,6 +186,35 @@ private static void assertRows(Interpreter interpreter,
         "[6, George]");
   }
 
+  /** Tests executing filters and projects over a
+   * {@link org.apache.calcite.schema.ScannableTable} using an interpreter,
+   * with and without fusing them into a single compiled class. */
+  @Test public void testInterpretFusedScannableTable() throws Exception {
+    rootSchema.add("beatles", new ScannableTableTest.BeatlesTable());
+    final String sql = "select upper(\"j\"), \"i\" + 1\n"
+        + "from (select * from \"beatles\" where \"i\" < 6)\n"
+        + "where \"j\" <> 'Paul'";
+    SqlNode parse = planner.parse(sql);
+    SqlNode validate = planner.validate(parse);
+    RelNode convert = planner.rel(validate).rel;
+
+    for (boolean b : new boolean[] {false, true}) {
+      fuse = b;
+      final Interpreter interpreter = new Interpreter(dataContext, convert);
+      int fusedCount = 0;
+      for (Node node : interpreter.nodes()) {
+        if (node instanceof FusedScanNode) {
+          ++fusedCount;
+        } else if (b) {
+          assertThat(node instanceof FilterNode, is(false));
+          assertThat(node instanceof ProjectNode, is(false));
+        }
+      }
+      assertThat(fusedCount, is(b ? 1 : 0));
+      assertRowsUnordered(interpreter, "[JOHN, 5]", "[RINGO, 6]");
+    }
+  }
+
   @Test public void testAggregate() throws Exception {
     rootSchema.add("beatles", new ScannableTableTest.BeatlesTable());
     SqlNode parse =
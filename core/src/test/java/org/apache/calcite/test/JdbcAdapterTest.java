@@ -16,28 +16,44 @@
  */
 package org.apache.calcite.test;
 
+import org.apache.calcite.adapter.jdbc.JdbcBatchInsert;
+import org.apache.calcite.adapter.jdbc.JdbcSchema;
 import org.apache.calcite.config.Lex;
 import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.test.CalciteAssert.AssertThat;
 import org.apache.calcite.test.CalciteAssert.DatabaseInstance;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Function;
 
 import org.hsqldb.jdbcDriver;
 
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItems;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 
@@ -770,6 +786,51 @@ public Void apply(CalciteConnection connection) {
     });
   }
 
+  /** Tests an INSERT into a JDBC table whose rows come from a different
+   * schema; the rows are sent in batches by {@link JdbcBatchInsert}. With
+   * 4 source rows and 3 rows per statement, there is one multi-row
+   * statement and one left-over single-row statement. */
+  @Test public void testBatchInsertFromOtherSchema() throws Exception {
+    final String model = "{\n"
+        + "  version: '1.0',\n"
+        + "  defaultSchema: 'foodmart',\n"
+        + "   schemas: [\n"
+        + JdbcTest.FOODMART_SCHEMA.replace("jdbcSchema: ",
+            "jdbcBatchSize: 1,\n"
+            + "       jdbcRowsPerInsert: 3,\n"
+            + "       jdbcSchema: ")
+        + ",\n"
+        + JdbcTest.HR_SCHEMA
+        + "   ]\n"
+        + "}";
+    final AssertThat that = CalciteAssert.model(model)
+        .enable(CalciteAssert.DB == DatabaseInstance.HSQLDB);
+    that.doWithConnection(new Function<CalciteConnection, Void>() {
+      public Void apply(CalciteConnection connection) {
+        try (LockWrapper ignore = exclusiveCleanDb(connection)) {
+          final String sql = "INSERT INTO \"foodmart\".\"expense_fact\"(\n"
+              + " \"store_id\", \"account_id\", \"exp_date\", \"time_id\","
+              + " \"category_id\", \"currency_id\", \"amount\")\n"
+              + "SELECT 666, \"empid\", TIMESTAMP '1997-01-01 00:00:00',"
+              + " 666, '666', 666, 666\n"
+              + "FROM \"hr\".\"emps\"";
+          final String explain = "PLAN=JdbcBatchInsert(table=[[foodmart, "
+              + "expense_fact]], operation=[INSERT], flattened=[false])\n"
+              + "  EnumerableCalc(";
+          that.query(sql)
+              .explainContains(explain)
+              .updates(4);
+          that.query("SELECT count(*) AS c FROM \"foodmart\".\"expense_fact\"\n"
+              + "WHERE \"store_id\" = 666")
+              .returns("C=5\n");
+          return null;
+        } catch (SQLException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+  }
+
   @Test public void testTableModifyUpdate() throws Exception {
     final AssertThat that = CalciteAssert
         .model(JdbcTest.FOODMART_MODEL)
@@ -827,6 +888,209 @@ public Void apply(CalciteConnection connection) {
     });
   }
 
+  /** Tests that a query with dynamic parameters is sent to the JDBC data
+   * source with "?" placeholders, and that the parameter values are bound
+   * each time the statement is executed. */
+  @Test public void testDynamicParameters() throws Exception {
+    final String sql = "select \"ENAME\" from \"SCOTT\".\"EMP\"\n"
+        + "where \"DEPTNO\" = ? and \"SAL\" > ?";
+    final List<String> sqls = new ArrayList<>();
+    final Function<String, Void> sqlConsumer =
+        new Function<String, Void>() {
+          public Void apply(String sql) {
+            sqls.add(sql);
+            return null;
+          }
+        };
+    CalciteAssert.model(JdbcTest.SCOTT_MODEL)
+        .enable(CalciteAssert.DB == DatabaseInstance.HSQLDB)
+        .doWithConnection(
+            new Function<CalciteConnection, Void>() {
+              public Void apply(CalciteConnection connection) {
+                try (Hook.Closeable hook = Hook.QUERY_PLAN.addThread(sqlConsumer);
+                     PreparedStatement statement =
+                         connection.prepareStatement(sql)) {
+                  statement.setInt(1, 10);
+                  statement.setInt(2, 2000);
+                  assertThat(CalciteAssert.toString(statement.executeQuery()),
+                      is("ENAME=CLARK\nENAME=KING\n"));
+                  statement.setInt(1, 20);
+                  statement.setInt(2, 2975);
+                  assertThat(CalciteAssert.toString(statement.executeQuery()),
+                      is("ENAME=SCOTT\nENAME=FORD\n"));
+                  assertThat(sqls.size(), is(1));
+                  assertThat(sqls.get(0),
+                      is("SELECT \"ENAME\"\n"
+                          + "FROM \"SCOTT\".\"EMP\"\n"
+                          + "WHERE \"DEPTNO\" = ? AND \"SAL\" > ?"));
+                  return null;
+                } catch (SQLException e) {
+                  throw new RuntimeException(e);
+                }
+              }
+            });
+  }
+
+  /** Tests a JDBC schema that sets a fetch size, reads through a
+   * forward-only cursor, and reads rows ahead on a background thread. */
+  @Test public void testFetchOptions() {
+    final String model =
+        JdbcTest.SCOTT_MODEL.replace("jdbcSchema: ",
+            "jdbcFetchSize: 3,\n"
+                + "jdbcStreaming: true,\n"
+                + "jdbcPrefetchRows: 2,\n"
+                + "jdbcSchema: ");
+    CalciteAssert.model(model)
+        .query("select \"ENAME\" from \"SCOTT\".\"EMP\"\n"
+            + "where \"DEPTNO\" = 10")
+        .returnsUnordered("ENAME=CLARK", "ENAME=KING", "ENAME=MILLER");
+    CalciteAssert.model(model)
+        .query("select * from \"SCOTT\".\"EMP\"")
+        .returnsCount(14);
+  }
+
+  /** Tests that a JDBC schema writes its tables, and the columns of the
+   * tables it has used, to a metadata file, and that a later schema reads
+   * its tables from that file rather than from the database. */
+  @Test public void testMetadataFile() throws Exception {
+    final File file = File.createTempFile("jdbc-metadata", ".json");
+    try {
+      assertThat(file.delete(), is(true));
+      final String model =
+          JdbcTest.SCOTT_MODEL.replace("jdbcSchema: ",
+              "jdbcMetadataTtl: 3600000,\n"
+                  + "jdbcMetadataFile: '"
+                  + file.getAbsolutePath().replace('\\', '/') + "',\n"
+                  + "jdbcSchema: ");
+
+      // The file is written in the background, possibly several times. Wait
+      // until a write contains the columns of DEPT.
+      final ObjectMapper mapper = new ObjectMapper();
+      final CountDownLatch saved = new CountDownLatch(1);
+      final Function<File, Void> saveHandler =
+          new Function<File, Void>() {
+            public Void apply(File savedFile) {
+              if (savedFile.equals(file)) {
+                try {
+                  final Map dept =
+                      tables(mapper.readValue(file, Map.class)).get("DEPT");
+                  if (dept != null && dept.get("columns") != null) {
+                    saved.countDown();
+                  }
+                } catch (IOException e) {
+                  throw new RuntimeException(e);
+                }
+              }
+              return null;
+            }
+          };
+      try (Hook.Closeable ignore = Hook.JDBC_METADATA_SAVE.add(saveHandler)) {
+        CalciteAssert.model(model)
+            .query("select \"DNAME\" from \"SCOTT\".\"DEPT\" where \"DEPTNO\" = 10")
+            .returns("DNAME=ACCOUNTING\n");
+        assertThat(saved.await(10, TimeUnit.SECONDS), is(true));
+      }
+      final Map<String, Map> tables =
+          tables(mapper.readValue(file, Map.class));
+      assertThat(tables, notNullValue());
+      assertThat(tables.keySet(), hasItems("DEPT", "EMP", "SALGRADE"));
+      assertThat(((List) tables.get("DEPT").get("columns")).size(), is(3));
+      assertThat(tables.get("EMP").get("columns"), nullValue());
+
+      // Remove EMP from the file. A new schema that reads the file does not
+      // see EMP, which proves that it did not read the database.
+      final Map<String, Object> root = mapper.readValue(file, Map.class);
+      final List<Object> tableList = new ArrayList<>();
+      for (Object table : (List) root.get("tables")) {
+        if (!"EMP".equals(((Map) table).get("name"))) {
+          tableList.add(table);
+        }
+      }
+      root.put("tables", tableList);
+      mapper.writeValue(file, root);
+      CalciteAssert.model(model)
+          .query("select \"DNAME\" from \"SCOTT\".\"DEPT\" where \"DEPTNO\" = 20")
+          .returns("DNAME=RESEARCH\n");
+      CalciteAssert.model(model)
+          .query("select count(*) from \"SCOTT\".\"EMP\"")
+          .throws_("Object 'EMP' not found within 'SCOTT'");
+    } finally {
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+
+  /** Tests that while a JDBC schema whose metadata has expired re-reads its
+   * list of tables in the background, readers are not blocked, and see the
+   * previous list. */
+  @Test(timeout = 60000) public void testMetadataRefreshDoesNotBlock()
+      throws Exception {
+    final String model =
+        JdbcTest.SCOTT_MODEL.replace("jdbcSchema: ",
+            "jdbcMetadataTtl: 1,\n"
+                + "jdbcSchema: ");
+    CalciteAssert.model(model)
+        .doWithConnection(
+            new Function<CalciteConnection, Void>() {
+              public Void apply(CalciteConnection connection) {
+                try {
+                  checkRefreshDoesNotBlock(
+                      connection.getRootSchema().getSubSchema("SCOTT")
+                          .unwrap(JdbcSchema.class));
+                  return null;
+                } catch (InterruptedException e) {
+                  throw new RuntimeException(e);
+                }
+              }
+            });
+  }
+
+  private void checkRefreshDoesNotBlock(final JdbcSchema schema)
+      throws InterruptedException {
+    // The first read is in this thread; it is not a refresh.
+    assertThat(schema.getTable("DEPT"), notNullValue());
+
+    final CountDownLatch refreshStarted = new CountDownLatch(1);
+    final CountDownLatch refreshReleased = new CountDownLatch(1);
+    final Function<JdbcSchema, Void> loadHandler =
+        new Function<JdbcSchema, Void>() {
+          public Void apply(JdbcSchema loadingSchema) {
+            if (loadingSchema == schema) {
+              refreshStarted.countDown();
+              try {
+                refreshReleased.await();
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+            }
+            return null;
+          }
+        };
+    try (Hook.Closeable ignore = Hook.JDBC_METADATA_LOAD.add(loadHandler)) {
+      // Let the list of tables expire (the time-to-live is 1 millisecond),
+      // then read; that starts a refresh, which blocks in the hook.
+      Thread.sleep(10);
+      assertThat(schema.getTable("EMP"), notNullValue());
+      assertThat(refreshStarted.await(10, TimeUnit.SECONDS), is(true));
+
+      // While the refresh is blocked, readers still get the previous list.
+      assertThat(schema.getTable("DEPT"), notNullValue());
+      assertThat(schema.getTableNames(), hasItems("DEPT", "EMP", "SALGRADE"));
+    } finally {
+      refreshReleased.countDown();
+    }
+  }
+
+  /** Converts the list of tables in a metadata file to a map, keyed by
+   * table name. */
+  private static Map<String, Map> tables(Map root) {
+    final Map<String, Map> map = new HashMap<>();
+    for (Object table : (List) root.get("tables")) {
+      map.put((String) ((Map) table).get("name"), (Map) table);
+    }
+    return map;
+  }
+
   /** Test case for
    * <a href="https://issues.apache.org/jira/browse/CALCITE-1572">[CALCITE-1572]
    * JdbcSchema throws exception when detecting nullable columns</a>. */
@@ -17,6 +17,7 @@
 package org.apache.calcite.test;
 
 import org.apache.calcite.adapter.clone.CloneSchema;
+import org.apache.calcite.adapter.enumerable.EnumerableInterpretable;
 import org.apache.calcite.adapter.generate.RangeTable;
 import org.apache.calcite.adapter.java.AbstractQueryableTable;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
@@ -29,6 +30,7 @@
 import org.apache.calcite.avatica.HandlerImpl;
 import org.apache.calcite.avatica.Meta;
 import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.config.Lex;
 import org.apache.calcite.config.NullCollation;
 import org.apache.calcite.jdbc.CalciteConnection;
@@ -41,6 +43,7 @@
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.Queryable;
+import org.apache.calcite.linq4j.SpillingEnumerables;
 import org.apache.calcite.linq4j.function.Function0;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelOptPlanner;
@@ -48,8 +51,13 @@
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.prepare.CalcitePrepareImpl;
 import org.apache.calcite.prepare.Prepare;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelDistributions;
+import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.TableModify;
+import org.apache.calcite.rel.logical.LogicalExchange;
+import org.apache.calcite.rel.logical.LogicalSortExchange;
 import org.apache.calcite.rel.logical.LogicalTableModify;
 import org.apache.calcite.rel.rules.IntersectToDistinctRule;
 import org.apache.calcite.rel.type.RelDataType;
@@ -82,12 +90,14 @@
 import org.apache.calcite.sql.SqlSelect;
 import org.apache.calcite.sql.SqlSpecialOperator;
 import org.apache.calcite.sql.advise.SqlAdvisorGetHintsFunction;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.sql.parser.SqlAbstractParserImpl;
 import org.apache.calcite.sql.parser.SqlParser;
 import org.apache.calcite.sql.parser.SqlParserImplFactory;
 import org.apache.calcite.sql.parser.SqlParserPos;
 import org.apache.calcite.sql.parser.SqlParserUtil;
 import org.apache.calcite.sql.parser.impl.SqlParserImpl;
+import org.apache.calcite.tools.RelBuilder;
 import org.apache.calcite.util.Bug;
 import org.apache.calcite.util.JsonBuilder;
 import org.apache.calcite.util.Pair;
@@ -96,6 +106,7 @@
 import org.apache.calcite.util.Util;
 
 import com.google.common.base.Function;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
@@ -109,6 +120,7 @@
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Reader;
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.sql.Array;
 import java.sql.Connection;
@@ -1039,6 +1051,61 @@ public Object apply(CalciteConnection c) {
             + "the_year=1998; C=365; M=April\n");
   }
 
+  /** Tests that if {@link CalciteConnectionProperty#VECTORIZE} is set,
+   * scans, filters, projects, aggregates and joins on cloned tables are
+   * executed a batch at a time. */
+  @Test public void testVectorize() {
+    final CalciteAssert.AssertThat with = CalciteAssert.that()
+        .with(CalciteAssert.Config.FOODMART_CLONE)
+        .with(CalciteConnectionProperty.VECTORIZE.camelName(), true);
+    final String sql = "select \"the_year\", \"the_month\",\n"
+        + "  \"day_of_month\" * 2 as d2\n"
+        + "from \"foodmart2\".\"time_by_day\"\n"
+        + "where \"day_of_month\" > 30 and \"the_month\" = 'March'";
+    with.query(sql)
+        .explainContains("VectorToEnumerableConverter\n"
+            + "  VectorCalc(")
+        .explainContains("VectorTableScan(table=[[foodmart2, time_by_day]])")
+        .returnsUnordered("the_year=1997; the_month=March; D2=62",
+            "the_year=1998; the_month=March; D2=62");
+
+    // Filter only, producing a selection vector, then hash aggregate
+    final String sql2 = "select \"the_year\", count(*) as c\n"
+        + "from \"foodmart2\".\"time_by_day\"\n"
+        + "where \"day_of_month\" > 30\n"
+        + "group by \"the_year\"";
+    with.query(sql2)
+        .explainContains("VectorToEnumerableConverter\n"
+            + "  VectorAggregate(group=[{0}], C=[COUNT()])")
+        .returnsUnordered("the_year=1997; C=7",
+            "the_year=1998; C=7");
+
+    // Hash join, then hash aggregate
+    final String sql3 = "select t.\"quarter\", sum(s.\"unit_sales\") as m,\n"
+        + "  min(t.\"the_month\") as mm\n"
+        + "from \"foodmart2\".\"sales_fact_1997\" as s\n"
+        + "join \"foodmart2\".\"time_by_day\" as t\n"
+        + "  on s.\"time_id\" = t.\"time_id\"\n"
+        + "where t.\"the_year\" = 1997\n"
+        + "group by t.\"quarter\"";
+    with.query(sql3)
+        .explainContains("VectorAggregate(")
+        .explainContains("VectorHashJoin(condition=")
+        .returnsUnordered("quarter=Q1; M=66291.0000; MM=February",
+            "quarter=Q2; M=62610.0000; MM=April",
+            "quarter=Q3; M=65848.0000; MM=August",
+            "quarter=Q4; M=72024.0000; MM=December");
+
+    // Aggregate without GROUP BY returns one row
+    final String sql4 = "select count(*) as c\n"
+        + "from \"foodmart2\".\"sales_fact_1997\" as s\n"
+        + "join \"foodmart2\".\"time_by_day\" as t\n"
+        + "  on s.\"time_id\" = t.\"time_id\"";
+    with.query(sql4)
+        .explainContains("VectorHashJoin(condition=")
+        .returns("C=86837\n");
+  }
+
   @Ignore("The test returns expected results. Not sure why it is disabled")
   @Test public void testCloneGroupBy2() {
     CalciteAssert.that()
@@ -3009,6 +3076,296 @@ public Void apply(ResultSet resultSet) {
             + "store_id=4; grocery_sqft=16844\n");
   }
 
+  /** Tests that sort, aggregate and join give the same results when the
+   * {@link CalciteConnectionProperty#SPILL_THRESHOLD} is small enough that
+   * they write rows to temporary files, and that they do write files. */
+  @Test public void testSpillThreshold() {
+    final CalciteAssert.AssertThat with = CalciteAssert.hr()
+        .with(CalciteConnectionProperty.SPILL_THRESHOLD.camelName(), 1);
+    final long spillCount0 = SpillingEnumerables.spillFileCount();
+    with.query("select e.\"name\", d.\"name\" as \"dname\"\n"
+        + "from \"hr\".\"emps\" as e\n"
+        + "join \"hr\".\"depts\" as d on e.\"deptno\" = d.\"deptno\"\n"
+        + "order by e.\"name\" desc")
+        .returnsOrdered("name=Theodore; dname=Sales",
+            "name=Sebastian; dname=Sales",
+            "name=Bill; dname=Sales");
+    final long spillCount1 = SpillingEnumerables.spillFileCount();
+    assertThat(spillCount1 > spillCount0, is(true));
+    with.query("select \"deptno\", count(*) as c, sum(\"empid\") as s\n"
+        + "from \"hr\".\"emps\"\n"
+        + "group by \"deptno\"")
+        .returnsUnordered("deptno=10; C=3; S=360",
+            "deptno=20; C=1; S=200");
+    assertThat(SpillingEnumerables.spillFileCount() > spillCount1, is(true));
+  }
+
+  /** Tests that an aggregate whose accumulators are all primitive uses
+   * {@link org.apache.calcite.linq4j.HashAggregator}, including with
+   * nullable arguments and a nullable key. */
+  @Test public void testHashAggregator() {
+    CalciteAssert.hr()
+        .query("select \"deptno\", count(\"commission\") as c,\n"
+            + " sum(\"commission\") as s, min(\"commission\") as mi,\n"
+            + " max(\"salary\") as ma\n"
+            + "from \"hr\".\"emps\"\n"
+            + "group by \"deptno\"")
+        .planContains("new org.apache.calcite.linq4j.HashAggregator(){")
+        .returnsUnordered("deptno=10; C=2; S=1250; MI=250; MA=11500.0",
+            "deptno=20; C=1; S=500; MI=500; MA=8000.0");
+    CalciteAssert.hr()
+        .query("select \"commission\", count(*) as c\n"
+            + "from \"hr\".\"emps\"\n"
+            + "group by \"commission\"")
+        .returnsUnordered("commission=1000; C=1",
+            "commission=500; C=1",
+            "commission=null; C=1",
+            "commission=250; C=1");
+  }
+
+  /** Tests that if {@link CalciteConnectionProperty#PARALLELISM} is set,
+   * pipelines over a table scan, and aggregates on top of them, execute in
+   * parallel, and give the same results as serial execution. */
+  @Test public void testParallelism() {
+    final CalciteAssert.AssertThat with = CalciteAssert.hr()
+        .with(CalciteConnectionProperty.PARALLELISM.camelName(), 4)
+        .with(CalciteConnectionProperty.MORSEL_SIZE.camelName(), 1);
+    final String sql = "select \"empid\", \"name\" from \"hr\".\"emps\"\n"
+        + "where \"salary\" > 7500";
+    with.query(sql)
+        .explainContains(""
+            + "EnumerableGather(parallelism=[4], morselSize=[1])\n"
+            + "  EnumerableCalc(expr#0..4=[{inputs}], expr#5=[7500], "
+            + "expr#6=[>($t3, $t5)], empid=[$t0], name=[$t2], "
+            + "$condition=[$t6])\n"
+            + "    EnumerableTableScan(table=[[hr, emps]])")
+        .returns("empid=100; name=Bill\n"
+            + "empid=200; name=Eric\n"
+            + "empid=110; name=Theodore\n");
+    final String sql2 = "select \"deptno\", count(*) as c,\n"
+        + " sum(\"commission\") as s, min(\"salary\") as mi,\n"
+        + " max(\"name\") as ma\n"
+        + "from \"hr\".\"emps\"\n"
+        + "where \"empid\" > 100\n"
+        + "group by \"deptno\"";
+    with.query(sql2)
+        .explainContains(""
+            + "EnumerableAggregate(group=[{0}], C=[$SUM0($1)], S=[SUM($2)], "
+            + "MI=[MIN($3)], MA=[MAX($4)])\n"
+            + "  EnumerableGather(parallelism=[4], morselSize=[1])\n"
+            + "    EnumerableAggregate(group=[{1}], C=[COUNT()], S=[SUM($4)], "
+            + "MI=[MIN($3)], MA=[MAX($2)])\n")
+        .returnsUnordered("deptno=10; C=2; S=250; MI=7000.0; MA=Theodore",
+            "deptno=20; C=1; S=500; MI=8000.0; MA=Eric");
+    final String sql3 = "select count(*) as c, sum(\"commission\") as s\n"
+        + "from \"hr\".\"emps\"\n"
+        + "where \"empid\" > 1000";
+    with.query(sql3)
+        .explainContains("EnumerableGather")
+        .returns("C=0; S=null\n");
+
+    // The "emps" table has no statistics, so its row count is unknown. The
+    // pipeline runs in parallel even with the default morsel size.
+    CalciteAssert.hr()
+        .with(CalciteConnectionProperty.PARALLELISM.camelName(), 4)
+        .query(sql)
+        .explainContains("EnumerableGather(parallelism=[4], "
+            + "morselSize=[16384])")
+        .returns("empid=100; name=Bill\n"
+            + "empid=200; name=Eric\n"
+            + "empid=110; name=Theodore\n");
+  }
+
+  /** Tests {@link org.apache.calcite.adapter.enumerable.EnumerableExchange}
+   * and {@link org.apache.calcite.adapter.enumerable.EnumerableSortExchange},
+   * which repartition rows across worker threads. */
+  @Test public void testExchange() {
+    final CalciteAssert.AssertThat with = CalciteAssert.hr()
+        .with(CalciteConnectionProperty.PARALLELISM.camelName(), 4);
+    final Function<RelBuilder, RelNode> sortExchange =
+        new Function<RelBuilder, RelNode>() {
+          public RelNode apply(RelBuilder b) {
+            final RelNode input = b.scan("hr", "emps")
+                .project(b.field("deptno"), b.field("empid"))
+                .build();
+            final RelNode rel =
+                LogicalSortExchange.create(input,
+                    RelDistributions.range(ImmutableList.of(0)),
+                    RelCollations.of(new RelFieldCollation(0),
+                        new RelFieldCollation(1)));
+            return b.push(rel)
+                .filter(
+                    b.call(SqlStdOperatorTable.GREATER_THAN, b.field("empid"),
+                        b.literal(0)))
+                .build();
+          }
+        };
+    with.query("?")
+        .withRel(sortExchange)
+        .planContains("ParallelEnumerables.sortExchange(")
+        .returns("deptno=10; empid=100\n"
+            + "deptno=10; empid=110\n"
+            + "deptno=10; empid=150\n"
+            + "deptno=20; empid=200\n");
+
+    final Function<RelBuilder, RelNode> exchange =
+        new Function<RelBuilder, RelNode>() {
+          public RelNode apply(RelBuilder b) {
+            final RelNode rel =
+                LogicalExchange.create(b.scan("hr", "emps").build(),
+                    RelDistributions.hash(ImmutableList.of(1)));
+            return b.push(rel)
+                .aggregate(b.groupKey("deptno"), b.countStar("C"))
+                .build();
+          }
+        };
+    // The partial aggregate runs in each worker of the exchange, and the final
+    // aggregate combines the results
+    with.query("?")
+        .withRel(exchange)
+        .explainContains("EnumerableAggregate(group=[{0}], C=[$SUM0($1)])\n"
+            + "  EnumerableGather(parallelism=[4], morselSize=[16384])\n"
+            + "    EnumerableAggregate(group=[{1}], C=[COUNT()])\n"
+            + "      EnumerableExchange(distribution=[hash[1]])\n")
+        .planContains("ParallelEnumerables.exchange(")
+        .returnsUnordered("deptno=10; C=3",
+            "deptno=20; C=1");
+
+    // An exchange with nothing to do in its workers is removed
+    final Function<RelBuilder, RelNode> bareExchange =
+        new Function<RelBuilder, RelNode>() {
+          public RelNode apply(RelBuilder b) {
+            return LogicalExchange.create(b.scan("hr", "emps").build(),
+                RelDistributions.hash(ImmutableList.of(1)));
+          }
+        };
+    with.query("?")
+        .withRel(bareExchange)
+        .explainContains("PLAN=EnumerableTableScan(table=[[hr, emps]])\n")
+        .returnsCount(4);
+  }
+
+  /** Tests that statements whose generated code is the same re-use a compiled
+   * class if {@link CalciteConnectionProperty#BINDABLE_CACHE} is set. */
+  @Test public void testBindableCache() {
+    final CalciteAssert.AssertThat with = CalciteAssert.hr()
+        .with(CalciteConnectionProperty.BINDABLE_CACHE.camelName(),
+            "maximumSize=10,expireAfterAccess=1h");
+    final String sql = "select \"name\" from \"hr\".\"emps\"\n"
+        + "where \"deptno\" = 20";
+    final CacheStats stats0 = EnumerableInterpretable.getBindableCacheStats();
+    with.query(sql).returns("name=Eric\n");
+    final CacheStats stats1 = EnumerableInterpretable.getBindableCacheStats();
+    with.query(sql).returns("name=Eric\n");
+    final CacheStats stats2 = EnumerableInterpretable.getBindableCacheStats();
+    assertThat(stats1.requestCount() - stats0.requestCount(), is(1L));
+    assertThat(stats2.hitCount() - stats1.hitCount(), is(1L));
+    assertThat(stats2.missCount() - stats1.missCount(), is(0L));
+
+    // Without the property, the cache is not used
+    CalciteAssert.hr().query(sql).returns("name=Eric\n");
+    assertThat(EnumerableInterpretable.getBindableCacheStats().requestCount(),
+        is(stats2.requestCount()));
+  }
+
+  /** Tests that a connection re-uses the plan of a statement it has already
+   * prepared if {@link CalciteConnectionProperty#PLAN_CACHE} is set, and
+   * prepares again after its schema changes. */
+  @Test public void testPlanCache() throws Exception {
+    final int[] parseCount = {0};
+    try (Hook.Closeable hook = Hook.PARSE_TREE.addThread(
+        new Function<Object[], Object>() {
+          public Void apply(Object[] args) {
+            ++parseCount[0];
+            return null;
+          }
+        })) {
+      CalciteAssert.hr()
+          .with(CalciteConnectionProperty.PLAN_CACHE.camelName(),
+              "maximumSize=10")
+          .doWithConnection(
+              new Function<CalciteConnection, Object>() {
+                public Object apply(CalciteConnection c) {
+                  try {
+                    final String sql = "select \"name\"\n"
+                        + "from \"hr\".\"emps\"\n"
+                        + "where \"deptno\" = ?";
+                    final PreparedStatement ps1 = c.prepareStatement(sql);
+                    assertThat(parseCount[0], is(1));
+                    final PreparedStatement ps2 = c.prepareStatement(sql);
+                    assertThat(parseCount[0], is(1));
+
+                    // Statements that share a plan can be executed at the
+                    // same time with different parameters
+                    ps1.setInt(1, 20);
+                    ps2.setInt(1, 10);
+                    final ResultSet r1 = ps1.executeQuery();
+                    final ResultSet r2 = ps2.executeQuery();
+                    assertThat(r2.next(), is(true));
+                    assertThat(r1.next(), is(true));
+                    assertThat(r1.getString(1), is("Eric"));
+                    assertThat(r2.getString(1), is("Bill"));
+                    assertThat(r1.next(), is(false));
+                    r1.close();
+                    r2.close();
+
+                    // After the schema changes, the plan is not re-used
+                    c.getRootSchema().add("s", new AbstractSchema());
+                    c.prepareStatement(sql).close();
+                    assertThat(parseCount[0], is(2));
+                    c.prepareStatement(sql).close();
+                    assertThat(parseCount[0], is(2));
+                    ps1.close();
+                    ps2.close();
+                    return null;
+                  } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                  }
+                }
+              });
+    }
+  }
+
+  /** Tests that a connection does not cache a plan if its schema changes
+   * while the statement is being prepared. */
+  @Test public void testPlanCacheSchemaChangeWhilePreparing()
+      throws Exception {
+    CalciteAssert.hr()
+        .with(CalciteConnectionProperty.PLAN_CACHE.camelName(),
+            "maximumSize=10")
+        .doWithConnection(
+            new Function<CalciteConnection, Object>() {
+              public Object apply(final CalciteConnection c) {
+                final int[] parseCount = {0};
+                try (Hook.Closeable hook = Hook.PARSE_TREE.addThread(
+                    new Function<Object[], Object>() {
+                      public Void apply(Object[] args) {
+                        if (parseCount[0]++ == 0) {
+                          // Change the schema after the connection has read
+                          // its mod count
+                          c.getRootSchema().add("s", new AbstractSchema());
+                        }
+                        return null;
+                      }
+                    })) {
+                  final String sql = "select \"name\" from \"hr\".\"emps\"";
+                  c.prepareStatement(sql).close();
+                  assertThat(parseCount[0], is(1));
+
+                  // The first plan was not cached, so the statement is
+                  // prepared again; the second plan is cached
+                  c.prepareStatement(sql).close();
+                  assertThat(parseCount[0], is(2));
+                  c.prepareStatement(sql).close();
+                  assertThat(parseCount[0], is(2));
+                  return null;
+                } catch (SQLException e) {
+                  throw new RuntimeException(e);
+                }
+              }
+            });
+  }
+
   /** Tests ORDER BY ... OFFSET ... FETCH. */
   @Test public void testOrderByOffsetFetch() {
     CalciteAssert.that()
@@ -6526,6 +6883,202 @@ public Void apply(ResultSet input) {
             });
   }
 
+  /** Returns a model with a CloneSchema of the SCOTT schema. */
+  private static String scottCloneModel(String extraOperands) {
+    return "{\n"
+        + "  version: '1.0',\n"
+        + "  defaultSchema: 'SCOTT_CLONE',\n"
+        + "  schemas: [ {\n"
+        + "    name: 'SCOTT_CLONE',\n"
+        + "    type: 'custom',\n"
+        + "    factory: 'org.apache.calcite.adapter.clone.CloneSchema$Factory',\n"
+        + "    operand: {\n"
+        + "      jdbcDriver: '" + JdbcTest.SCOTT.driver + "',\n"
+        + "      jdbcUser: '" + JdbcTest.SCOTT.username + "',\n"
+        + "      jdbcPassword: '" + JdbcTest.SCOTT.password + "',\n"
+        + "      jdbcUrl: '" + JdbcTest.SCOTT.url + "',\n"
+        + "      jdbcSchema: 'SCOTT',\n"
+        + extraOperands
+        + "   } } ]\n"
+        + "}";
+  }
+
+  /** Tests a CloneSchema whose tables apply filters and projects while
+   * scanning. */
+  @Test public void testFilterableCloneSchema() {
+    final CalciteAssert.AssertThat with =
+        CalciteAssert.model(scottCloneModel("      filterable: true\n"));
+    with.query("select \"EMPNO\", \"ENAME\" from \"EMP\"\n"
+        + "where \"EMPNO\" > 7800 and \"DEPTNO\" = 20")
+        .explainContains("BindableTableScan(table=[[SCOTT_CLONE, EMP]], "
+            + "filters=[[AND(>($0, 7800), =(CAST($7):INTEGER, 20))]], "
+            + "projects=[[0, 1]])")
+        .returnsUnordered("EMPNO=7876; ENAME=ADAMS",
+            "EMPNO=7902; ENAME=FORD");
+    // Project that references the same column twice
+    with.query("select \"EMPNO\", \"EMPNO\" as e2 from \"EMP\"\n"
+        + "where \"EMPNO\" < 7500")
+        .returnsUnordered("EMPNO=7369; E2=7369",
+            "EMPNO=7499; E2=7499");
+  }
+
+  /** Tests a CloneSchema whose tables store their data off-heap, and
+   * reload it after it has been released. */
+  @Test public void testOffHeapCloneSchema() throws Exception {
+    final String sql = "select \"DEPTNO\", count(*) as c,\n"
+        + " min(\"EMPNO\") as m\n"
+        + "from \"EMP\"\n"
+        + "group by \"DEPTNO\"";
+    final CalciteAssert.AssertThat with =
+        CalciteAssert.model(scottCloneModel("      offHeap: true\n"));
+    with.query(sql)
+        .returnsUnordered("DEPTNO=10; C=3; M=7782",
+            "DEPTNO=20; C=5; M=7369",
+            "DEPTNO=30; C=6; M=7499");
+    with.doWithConnection(
+        new Function<CalciteConnection, Void>() {
+          public Void apply(CalciteConnection c) {
+            try {
+              final String expected = "DEPTNO=10; C=3; M=7782\n"
+                  + "DEPTNO=20; C=5; M=7369\n"
+                  + "DEPTNO=30; C=6; M=7499\n";
+              final Statement statement = c.createStatement();
+              ResultSet resultSet =
+                  statement.executeQuery(sql + " order by 1");
+              assertThat(CalciteAssert.toString(resultSet), is(expected));
+              final CloneSchema schema =
+                  c.getRootSchema().getSubSchema("SCOTT_CLONE")
+                      .unwrap(CloneSchema.class);
+              schema.close();
+              resultSet = statement.executeQuery(sql + " order by 1");
+              assertThat(CalciteAssert.toString(resultSet), is(expected));
+              statement.close();
+              return null;
+            } catch (SQLException e) {
+              throw new RuntimeException(e);
+            }
+          }
+        });
+  }
+
+  /** Tests a CloneSchema that writes snapshots of its tables, and reads
+   * them in a later connection. */
+  @Test public void testSnapshotCloneSchema() throws IOException {
+    final File dir = File.createTempFile("snapshot", "");
+    assertThat(dir.delete(), is(true));
+    assertThat(dir.mkdir(), is(true));
+    final File file = new File(dir, "EMP.snapshot");
+    try {
+      final String model = scottCloneModel("      snapshotDirectory: '"
+          + dir.getAbsolutePath().replace("\\", "/") + "'\n");
+      final String sql = "select \"DEPTNO\", count(*) as c,\n"
+          + " min(\"ENAME\") as m\n"
+          + "from \"EMP\"\n"
+          + "group by \"DEPTNO\"";
+      assertThat(file.exists(), is(false));
+      CalciteAssert.model(model)
+          .query(sql)
+          .returnsUnordered("DEPTNO=10; C=3; M=CLARK",
+              "DEPTNO=20; C=5; M=ADAMS",
+              "DEPTNO=30; C=6; M=ALLEN");
+      assertThat(file.exists(), is(true));
+      final long lastModified = file.lastModified();
+      CalciteAssert.model(model)
+          .query(sql)
+          .returnsUnordered("DEPTNO=10; C=3; M=CLARK",
+              "DEPTNO=20; C=5; M=ADAMS",
+              "DEPTNO=30; C=6; M=ALLEN");
+      assertThat(file.lastModified(), is(lastModified));
+    } finally {
+      final File[] files = dir.listFiles();
+      if (files != null) {
+        for (File f : files) {
+          //noinspection ResultOfMethodCallIgnored
+          f.delete();
+        }
+      }
+      //noinspection ResultOfMethodCallIgnored
+      dir.delete();
+    }
+  }
+
+  /** Tests that {@link CloneSchema#refresh()} appends to a table that has
+   * an append key, set by the {@code appendKeys} operand, the rows that have
+   * been added to its source since it was loaded. */
+  @Test public void testAppendCloneSchema() throws Exception {
+    final String url = "jdbc:hsqldb:mem:appendClone";
+    final Connection baseConnection = DriverManager.getConnection(url);
+    final Statement baseStatement = baseConnection.createStatement();
+    baseStatement.execute("CREATE TABLE T (ID INTEGER, NAME VARCHAR(10))");
+    baseStatement.execute("INSERT INTO T VALUES (1, 'a'), (2, 'b')");
+    final String model = "{\n"
+        + "  version: '1.0',\n"
+        + "  defaultSchema: 'CLONE',\n"
+        + "  schemas: [ {\n"
+        + "    name: 'CLONE',\n"
+        + "    type: 'custom',\n"
+        + "    factory: 'org.apache.calcite.adapter.clone.CloneSchema$Factory',\n"
+        + "    operand: {\n"
+        + "      jdbcDriver: '" + jdbcDriver.class.getName() + "',\n"
+        + "      jdbcUrl: '" + url + "',\n"
+        + "      jdbcSchema: 'PUBLIC',\n"
+        + "      appendKeys: { T: 'ID' }\n"
+        + "   } } ]\n"
+        + "}";
+    try {
+      CalciteAssert.model(model)
+          .doWithConnection(
+              new Function<CalciteConnection, Void>() {
+                public Void apply(CalciteConnection c) {
+                  try {
+                    final String sql = "select count(*) as c, max(id) as m,\n"
+                        + " max(name) as n from t";
+                    final Statement statement = c.createStatement();
+                    assertThat(
+                        CalciteAssert.toString(statement.executeQuery(sql)),
+                        is("C=2; M=2; N=b\n"));
+
+                    // New rows are not visible until the schema is
+                    // refreshed. A new row may have the same key as the
+                    // last loaded row.
+                    baseStatement.execute(
+                        "INSERT INTO T VALUES (2, 'x'), (3, 'c'), (4, 'd')");
+                    assertThat(
+                        CalciteAssert.toString(statement.executeQuery(sql)),
+                        is("C=2; M=2; N=b\n"));
+                    final CloneSchema schema =
+                        c.getRootSchema().getSubSchema("CLONE")
+                            .unwrap(CloneSchema.class);
+                    schema.refresh();
+                    assertThat(
+                        CalciteAssert.toString(statement.executeQuery(sql)),
+                        is("C=5; M=4; N=x\n"));
+
+                    // Refreshing again does not append rows twice, but
+                    // appends a new row identical to an existing row.
+                    schema.refresh();
+                    assertThat(
+                        CalciteAssert.toString(statement.executeQuery(sql)),
+                        is("C=5; M=4; N=x\n"));
+                    baseStatement.execute("INSERT INTO T VALUES (4, 'd')");
+                    schema.refresh();
+                    assertThat(
+                        CalciteAssert.toString(statement.executeQuery(sql)),
+                        is("C=6; M=4; N=x\n"));
+                    statement.close();
+                    return null;
+                  } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                  }
+                }
+              });
+    } finally {
+      baseStatement.execute("DROP TABLE T");
+      baseStatement.close();
+      baseConnection.close();
+    }
+  }
+
   /** Test case for
    * <a href="https://issues.apache.org/jira/browse/CALCITE-1097">[CALCITE-1097]
    * Exception when executing query with too many aggregation columns</a>. */
@@ -6615,7 +7168,8 @@ public TranslatableTable view(String s) {
     }
   }
 
-  public static class Employee {
+  /** Employee. Serializable, so that operators can spill rows to disk. */
+  public static class Employee implements Serializable {
     public final int empid;
     public final int deptno;
     public final String name;
@@ -6643,7 +7197,8 @@ public Employee(int empid, int deptno, String name, float salary,
     }
   }
 
-  public static class Department {
+  /** Department. Serializable, so that operators can spill rows to disk. */
+  public static class Department implements Serializable {
     public final int deptno;
     public final String name;
 
@@ -6671,7 +7226,8 @@ public Department(int deptno, String name, List<Employee> employees,
     }
   }
 
-  public static class Location {
+  /** Location. */
+  public static class Location implements Serializable {
     public final int x;
     public final int y;
 
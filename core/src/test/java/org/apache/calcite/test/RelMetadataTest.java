@@ -66,6 +66,7 @@
 import org.apache.calcite.rel.metadata.RelColumnOrigin;
 import org.apache.calcite.rel.metadata.RelMdCollation;
 import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rel.metadata.RelMetadataCache;
 import org.apache.calcite.rel.metadata.RelMetadataProvider;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.type.RelDataType;
@@ -1014,6 +1015,40 @@ public RelOptCluster apply(RelOptCluster cluster) {
     assertThat(buf.size(), equalTo(7));
   }
 
+  /** Unit test for {@link RelMetadataCache}: discarding the metadata of one
+   * relational expression, and counting hits and misses. */
+  @Test public void testMetadataCacheInvalidate() {
+    final RelNode rel = convertSql("select * from emp where deptno = 10");
+    final RelNode filter = rel.getInput(0);
+    assertThat(filter, instanceOf(LogicalFilter.class));
+    final RelMetadataQuery mq = RelMetadataQuery.instance();
+    final RelMetadataCache.Statistics statistics =
+        new RelMetadataCache.Statistics();
+    mq.getCache().setStatistics(statistics);
+
+    // First request computes the row count of project, filter and scan.
+    final Double rowCount = mq.getRowCount(rel);
+    final RelMetadataCache.Counter counter =
+        statistics.getCounters().get("RowCount.getRowCount");
+    assertThat(counter.misses, is(3L));
+    assertThat(counter.hits, is(0L));
+    assertThat(counter.nanos >= counter.selfNanos, is(true));
+
+    // Second request is satisfied from the cache.
+    assertThat(mq.getRowCount(rel), is(rowCount));
+    assertThat(counter.misses, is(3L));
+    assertThat(counter.hits, is(1L));
+
+    // After discarding the filter's metadata, the project's remains.
+    assertThat(mq.getCache().invalidate(filter), is(true));
+    assertThat(mq.getCache().invalidate(filter), is(false));
+    assertThat(mq.getRowCount(rel), is(rowCount));
+    assertThat(counter.hits, is(2L));
+    assertThat(mq.getRowCount(filter), is(rowCount));
+    assertThat(counter.misses, is(4L));
+    assertThat(counter.hits, is(3L));
+  }
+
   /** Unit test for
    * {@link org.apache.calcite.rel.metadata.RelMdCollation#project}
    * and other helper functions for deducing collations. */
@@ -686,6 +686,10 @@ public void onMatch(RelOptRuleCall call) {
   }
 
   private void checkJoinNWay(int n) throws Exception {
+    checkJoinNWay(n, Programs.heuristicJoinOrder(Programs.RULE_SET, false, 6));
+  }
+
+  private void checkJoinNWay(int n, Program program) throws Exception {
     final StringBuilder buf = new StringBuilder();
     buf.append("select *");
     for (int i = 0; i < n; i++) {
@@ -697,8 +701,7 @@ private void checkJoinNWay(int n) throws Exception {
           .append(i).append(".\"deptno\" = d")
           .append(i - 1).append(".\"deptno\"");
     }
-    Planner planner = getPlanner(null,
-        Programs.heuristicJoinOrder(Programs.RULE_SET, false, 6));
+    Planner planner = getPlanner(null, program);
     SqlNode parse = planner.parse(buf.toString());
 
     SqlNode validate = planner.validate(parse);
@@ -893,9 +896,75 @@ private void checkHeuristic(String sql, String expected) throws Exception {
             + "        EnumerableTableScan(table=[[foodmart2, sales_fact_1997]])\n");
   }
 
+  /** Plans a 5-table join query on the FoodMart schema using dynamic
+   * programming. The plan is bushy: product and product_class are joined to
+   * each other, then to the join of sales, store and customer. */
+  @Test public void testDpJoinOrder() throws Exception {
+    checkJoinOrder(Programs.dpJoinOrder(Programs.RULE_SET, 2, 12, 1000L),
+        "select *\n"
+            + "from \"sales_fact_1997\" as s\n"
+            + "  join \"customer\" as c using (\"customer_id\")\n"
+            + "  join \"product\" as p using (\"product_id\")\n"
+            + "  join \"product_class\" as pc using (\"product_class_id\")\n"
+            + "  join \"store\" as st using (\"store_id\")\n"
+            + "where c.\"city\" = 'San Francisco'\n"
+            + "and p.\"brand_name\" = 'Washington'",
+        "    EnumerableJoin(condition=[=($0, $62)], joinType=[inner])\n"
+            + "      EnumerableJoin(condition=[=($2, $32)], joinType=[inner])\n"
+            + "        EnumerableJoin(condition=[=($4, $8)], joinType=[inner])\n"
+            + "          EnumerableTableScan(table=[[foodmart2, sales_fact_1997]])\n"
+            + "          EnumerableTableScan(table=[[foodmart2, store]])\n"
+            + "        EnumerableFilter(condition=[=($9, 'San Francisco')])\n"
+            + "          EnumerableTableScan(table=[[foodmart2, customer]])\n"
+            + "      EnumerableJoin(condition=[=($0, $15)], joinType=[inner])\n"
+            + "        EnumerableFilter(condition=[=($2, 'Washington')])\n"
+            + "          EnumerableTableScan(table=[[foodmart2, product]])\n"
+            + "        EnumerableTableScan(table=[[foodmart2, product_class]])\n");
+  }
+
+  /** Plans a query with an outer join using the dynamic programming
+   * program. {@link org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule}
+   * only orders inner joins, so the program hands the {@code MultiJoin} to
+   * {@link org.apache.calcite.rel.rules.LoptOptimizeJoinRule}. */
+  @Test public void testDpJoinOrderOuterJoin() throws Exception {
+    checkJoinOrder(Programs.dpJoinOrder(Programs.RULE_SET, 2, 12, 1000L),
+        "select *\n"
+            + "from \"sales_fact_1997\" as s\n"
+            + "  join \"product\" as p using (\"product_id\")\n"
+            + "  left join \"customer\" as c using (\"customer_id\")\n"
+            + "where p.\"brand_name\" = 'Washington'",
+        "joinType=[left]");
+  }
+
+  /** Plans a 20-way join using the dynamic programming rule. The join graph
+   * is too large for dynamic programming, so the rule orders it greedily.
+   * The program does not give inner joins to
+   * {@link org.apache.calcite.rel.rules.LoptOptimizeJoinRule}, so the plan
+   * can only have come from
+   * {@link org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule}. */
+  @Test public void testDpJoinOrderGreedy() throws Exception {
+    checkJoinNWay(20, Programs.dpJoinOrder(Programs.RULE_SET, 2, 12, 1000L));
+  }
+
+  /** Plans a 10-way join using the dynamic programming rule with a time bound
+   * of zero, so the rule gives up on dynamic programming and orders joins
+   * greedily. As in {@link #testDpJoinOrderGreedy()}, only that rule can
+   * have produced the plan. */
+  @Test public void testDpJoinOrderTimeBound() throws Exception {
+    checkJoinNWay(10, Programs.dpJoinOrder(Programs.RULE_SET, 2, 12, 0L));
+  }
+
   /** Checks that a query returns a particular plan, using a planner with
    * MultiJoinOptimizeBushyRule enabled. */
   private void checkBushy(String sql, String expected) throws Exception {
+    checkJoinOrder(Programs.heuristicJoinOrder(Programs.RULE_SET, true, 2),
+        sql, expected);
+  }
+
+  /** Checks that a query returns a particular plan, using a planner with
+   * a given join-ordering program. */
+  private void checkJoinOrder(Program program, String sql, String expected)
+      throws Exception {
     final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
     final FrameworkConfig config = Frameworks.newConfigBuilder()
         .parserConfig(SqlParser.Config.DEFAULT)
@@ -903,7 +972,7 @@ private void checkBushy(String sql, String expected) throws Exception {
             CalciteAssert.addSchema(rootSchema,
                 CalciteAssert.SchemaSpec.CLONE_FOODMART))
         .traitDefs((List<RelTraitDef>) null)
-        .programs(Programs.heuristicJoinOrder(Programs.RULE_SET, true, 2))
+        .programs(program)
         .build();
     Planner planner = Frameworks.getPlanner(config);
     SqlNode parse = planner.parse(sql);
@@ -21,9 +21,13 @@
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.rel.type.RelProtoDataType;
+import org.apache.calcite.runtime.ColumnBatch;
+import org.apache.calcite.schema.BatchScannableTable;
 import org.apache.calcite.schema.ScannableTable;
 import org.apache.calcite.util.Source;
 
+import java.lang.reflect.Array;
+import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -31,9 +35,13 @@
  *
  * <p>It implements the {@link ScannableTable} interface, so Calcite gets
  * data by calling the {@link #scan(DataContext)} method.
+ *
+ * <p>It also implements {@link BatchScannableTable}, so that in vectorized
+ * plans it can read values straight into column arrays, without creating an
+ * array per row.
  */
 public class CsvScannableTable extends CsvTable
-    implements ScannableTable {
+    implements BatchScannableTable {
   /** Creates a CsvScannableTable. */
   CsvScannableTable(Source source, RelProtoDataType protoRowType) {
     super(source, protoRowType);
@@ -53,6 +61,85 @@ public Enumerator<Object[]> enumerator() {
       }
     };
   }
+
+  public Enumerable<ColumnBatch> scanBatches(DataContext root,
+      final Class[] columnClasses, final int batchSize) {
+    final AtomicBoolean cancelFlag = DataContext.Variable.CANCEL_FLAG.get(root);
+    return new AbstractEnumerable<ColumnBatch>() {
+      public Enumerator<ColumnBatch> enumerator() {
+        return new BatchEnumerator(
+            new CsvEnumerator<>(source, cancelFlag, false, null,
+                new CsvEnumerator.RowConverter<String[]>() {
+                  String[] convertRow(String[] strings) {
+                    return strings;
+                  }
+                }),
+            new CsvEnumerator.ArrayRowConverter(fieldTypes,
+                CsvEnumerator.identityList(fieldTypes.size())),
+            columnClasses, batchSize);
+      }
+    };
+  }
+
+  /** Enumerator that converts the fields of up to {@code batchSize} lines of
+   * a CSV file into a {@link ColumnBatch}. */
+  private class BatchEnumerator implements Enumerator<ColumnBatch> {
+    private final CsvEnumerator<String[]> lines;
+    private final CsvEnumerator.RowConverter<Object[]> converter;
+    private final Class[] columnClasses;
+    private final int batchSize;
+    private ColumnBatch current;
+
+    BatchEnumerator(CsvEnumerator<String[]> lines,
+        CsvEnumerator.RowConverter<Object[]> converter, Class[] columnClasses,
+        int batchSize) {
+      this.lines = lines;
+      this.converter = converter;
+      this.columnClasses = columnClasses;
+      this.batchSize = batchSize;
+    }
+
+    public ColumnBatch current() {
+      if (current == null) {
+        throw new NoSuchElementException();
+      }
+      return current;
+    }
+
+    public boolean moveNext() {
+      final Object[] columns = new Object[columnClasses.length];
+      for (int c = 0; c < columns.length; c++) {
+        columns[c] = ColumnBatch.allocate(columnClasses[c], batchSize);
+      }
+      int n = 0;
+      while (n < batchSize && lines.moveNext()) {
+        final String[] strings = lines.current();
+        for (int c = 0; c < columns.length; c++) {
+          final Object value = converter.convert(fieldTypes.get(c), strings[c]);
+          if (columns[c] instanceof Object[]) {
+            ((Object[]) columns[c])[n] = value;
+          } else {
+            Array.set(columns[c], n, value);
+          }
+        }
+        ++n;
+      }
+      if (n == 0) {
+        current = null;
+        return false;
+      }
+      current = new ColumnBatch(columns, null, n);
+      return true;
+    }
+
+    public void reset() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+      lines.close();
+    }
+  }
 }
 
 // End CsvScannableTable.java
@@ -707,6 +707,40 @@ private String range(int first, int count) {
     }
   }
 
+  /** Tests that if the "vectorize" connection property is set, a scannable
+   * CSV table is read a batch of rows at a time and aggregated by a
+   * vectorized aggregate. */
+  @Test public void testVectorize() throws SQLException {
+    final Properties properties = new Properties();
+    properties.setProperty("caseSensitive", "true");
+    properties.setProperty("vectorize", "true");
+    try (final Connection connection =
+        DriverManager.getConnection("jdbc:calcite:", properties)) {
+      final CalciteConnection calciteConnection = connection.unwrap(
+          CalciteConnection.class);
+
+      final Schema schema =
+          CsvSchemaFactory.INSTANCE
+              .create(calciteConnection.getRootSchema(), null,
+                  ImmutableMap.<String, Object>of("directory",
+                      resourcePath("sales"), "flavor", "scannable"));
+      calciteConnection.getRootSchema().add("TEST", schema);
+      final String sql = "select count(*) as c, sum(\"DEPTNO\") as s\n"
+          + "from \"TEST\".\"DEPTS\"";
+      final Statement statement = connection.createStatement();
+      final ResultSet plan = statement.executeQuery("explain plan for " + sql);
+      assertThat(plan.next(), is(true));
+      final String planString = plan.getString(1);
+      assertThat(planString.contains("VectorAggregate("), is(true));
+      assertThat(planString.contains("VectorTableScan("), is(true));
+      plan.close();
+
+      final ResultSet resultSet = statement.executeQuery(sql);
+      expect("C=3; S=60").apply(resultSet);
+      statement.close();
+    }
+  }
+
   @Test(timeout = 10000) public void testCsvStream() throws Exception {
     final File file = File.createTempFile("stream", "csv");
     final String model = "{\n"
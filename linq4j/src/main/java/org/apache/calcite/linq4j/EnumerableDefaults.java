@@ -34,6 +34,7 @@
 import org.apache.calcite.linq4j.function.Predicate1;
 import org.apache.calcite.linq4j.function.Predicate2;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -57,7 +58,6 @@
 import java.util.Objects;
 import java.util.RandomAccess;
 import java.util.Set;
-import java.util.TreeMap;
 
 import static org.apache.calcite.linq4j.Linq4j.CollectionEnumerable;
 import static org.apache.calcite.linq4j.Linq4j.ListEnumerable;
@@ -68,6 +68,17 @@
  */
 public abstract class EnumerableDefaults {
 
+  /** Initial capacity of the buffer used by
+   * {@link #orderBy(Enumerable, Function1, Comparator)}. */
+  private static final int INITIAL_SORT_CAPACITY = 16;
+
+  /** Largest number of slots in the hash table of
+   * {@link #longKeyJoin}. */
+  static final int MAX_LONG_HASH_CAPACITY = 1 << 30;
+
+  /** Ranges shorter than this are sorted using insertion sort. */
+  private static final int INSERTION_SORT_THRESHOLD = 7;
+
   /**
    * Applies an accumulator function over a sequence.
    */
@@ -1172,6 +1183,141 @@ public void close() {
     };
   }
 
+  /**
+   * Correlates the elements of two sequences based on matching keys of type
+   * {@code long}.
+   *
+   * <p>Gives the same rows as
+   * {@link #join(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean)}
+   * but, because keys are primitive and never null, builds a hash table of
+   * {@code long} keys and row ordinals in flat arrays rather than a
+   * {@link Lookup} of boxed keys and lists. Rows of {@code inner} that match
+   * no row of {@code outer} (if {@code generateNullsOnLeft}) come last, in
+   * the order they occur in {@code inner}.
+   *
+   * <p>If {@code inner} has so many distinct keys that they do not fit into
+   * the largest hash table, uses the boxed join instead.
+   */
+  public static <TSource, TInner, TResult> Enumerable<TResult> longKeyJoin(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final LongFunction1<TSource> outerKeySelector,
+      final LongFunction1<TInner> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final boolean generateNullsOnLeft, final boolean generateNullsOnRight) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final LongHashIndex index = new LongHashIndex();
+        try (Enumerator<TInner> inners = inner.enumerator()) {
+          while (inners.moveNext()) {
+            final TInner o = inners.current();
+            index.add(innerKeySelector.apply(o), o);
+          }
+        }
+        if (!index.build()) {
+          return join_(outer, Linq4j.asEnumerable(index.<TInner>rows()),
+              boxed(outerKeySelector), boxed(innerKeySelector),
+              resultSelector, null, generateNullsOnLeft, generateNullsOnRight)
+              .enumerator();
+        }
+
+        return new Enumerator<TResult>() {
+          final Enumerator<TSource> outers = outer.enumerator();
+          final boolean[] matched =
+              generateNullsOnLeft ? new boolean[index.size] : null;
+          TSource outerRow;
+          TInner innerRow;
+          /** Ordinal of the next inner row that matches the current outer
+           * row, or -1. */
+          int next = -1;
+          /** Ordinal of the current unmatched inner row, or -1; used after
+           * outer is exhausted. */
+          int unmatched = -1;
+          boolean outersDone;
+
+          public TResult current() {
+            return resultSelector.apply(outerRow, innerRow);
+          }
+
+          public boolean moveNext() {
+            if (outersDone) {
+              if (matched != null) {
+                while (++unmatched < index.size) {
+                  if (!matched[unmatched]) {
+                    innerRow = index.<TInner>row(unmatched);
+                    return true;
+                  }
+                }
+              }
+              return false;
+            }
+            for (;;) {
+              if (next >= 0) {
+                innerRow = index.row(next);
+                if (matched != null) {
+                  matched[next] = true;
+                }
+                next = index.next(next);
+                return true;
+              }
+              if (!outers.moveNext()) {
+                outersDone = true;
+                outerRow = null;
+                return moveNext();
+              }
+              outerRow = outers.current();
+              next = outerRow == null
+                  ? -1
+                  : index.first(outerKeySelector.apply(outerRow));
+              if (next < 0 && generateNullsOnRight) {
+                innerRow = null;
+                return true;
+              }
+            }
+          }
+
+          public void reset() {
+            outers.reset();
+            outerRow = null;
+            innerRow = null;
+            next = -1;
+            unmatched = -1;
+            outersDone = false;
+            if (matched != null) {
+              Arrays.fill(matched, false);
+            }
+          }
+
+          public void close() {
+            outers.close();
+          }
+        };
+      }
+    };
+  }
+
+  /** Converts a function that returns a {@code long} into a function that
+   * returns a {@link Long}. */
+  private static <T> Function1<T, Long> boxed(final LongFunction1<T> f) {
+    return new Function1<T, Long>() {
+      public Long apply(T a0) {
+        return f.apply(a0);
+      }
+    };
+  }
+
+  /** Returns the number of slots in the hash table of {@link #longKeyJoin}
+   * for a given number of rows.
+   *
+   * <p>It is a power of 2 that gives a load factor of at most 0.5, except
+   * that it is never more than {@link #MAX_LONG_HASH_CAPACITY}; beyond
+   * 2<sup>29</sup> rows the load factor is higher and probe sequences are
+   * longer. */
+  @VisibleForTesting
+  public static int longHashCapacity(int size) {
+    final long capacity = Long.highestOneBit(Math.max(size, 1)) << 2;
+    return (int) Math.min(capacity, MAX_LONG_HASH_CAPACITY);
+  }
+
   /**
    * Returns elements of {@code outer} for which there is a member of
    * {@code inner} with a matching key. A specified
@@ -1829,13 +1975,166 @@ public static <TSource, TKey extends Comparable> Enumerable<TSource> orderBy(
   public static <TSource, TKey> Enumerable<TSource> orderBy(
       Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
       Comparator<TKey> comparator) {
-    // NOTE: TreeMap allows null comparator. But the caller of this method
-    // must supply a comparator if the key does not extend Comparable.
-    // Otherwise there will be a ClassCastException while retrieving.
-    final Map<TKey, List<TSource>> map = new TreeMap<>(comparator);
-    LookupImpl<TKey, TSource> lookup = toLookup_(map, source, keySelector,
-        Functions.<TSource>identitySelector());
-    return lookup.valuesEnumerable();
+    // NOTE: The caller of this method must supply a comparator if the key
+    // does not extend Comparable. Otherwise there will be a
+    // ClassCastException while sorting.
+    //noinspection unchecked
+    final Comparator<Object> c = comparator == null
+        ? (Comparator) Extensions.comparableComparator()
+        : (Comparator) comparator;
+
+    // Buffer rows into an array, and sort it in place. Unlike a
+    // TreeMap<TKey, List<TSource>>, this does not allocate a tree node and a
+    // list per distinct key. The sort is stable, so rows with equal keys are
+    // returned in the order they were read.
+    Object[] values = new Object[INITIAL_SORT_CAPACITY];
+    if (keySelector == Functions.<TSource>identitySelector()) {
+      int size = 0;
+      try (Enumerator<TSource> os = source.enumerator()) {
+        while (os.moveNext()) {
+          if (size == values.length) {
+            values = Arrays.copyOf(values, grow(size));
+          }
+          values[size++] = os.current();
+        }
+      }
+      Arrays.sort(values, 0, size, c);
+      return sortedEnumerable(values, size);
+    }
+
+    // Compute each key once, and sort keys and rows as parallel arrays.
+    Object[] keys = new Object[INITIAL_SORT_CAPACITY];
+    int size = 0;
+    try (Enumerator<TSource> os = source.enumerator()) {
+      while (os.moveNext()) {
+        if (size == values.length) {
+          final int newCapacity = grow(size);
+          values = Arrays.copyOf(values, newCapacity);
+          keys = Arrays.copyOf(keys, newCapacity);
+        }
+        final TSource o = os.current();
+        values[size] = o;
+        keys[size] = keySelector.apply(o);
+        ++size;
+      }
+    }
+    sort(keys, values, size, c);
+    return sortedEnumerable(values, size);
+  }
+
+  /**
+   * Sorts the elements of a sequence in ascending order by using a specified
+   * comparer, skips the first {@code offset} elements and returns at most
+   * {@code fetch} elements.
+   *
+   * <p>Equivalent to
+   * {@code orderBy(source, keySelector, comparator).skip(offset).take(fetch)},
+   * but retains only {@code offset + fetch} elements, in a bounded heap, and
+   * therefore requires O(n log (offset + fetch)) time.
+   */
+  public static <TSource, TKey> Enumerable<TSource> orderBy(
+      Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
+      Comparator<TKey> comparator, int offset, int fetch) {
+    if (fetch <= 0) {
+      return Linq4j.emptyEnumerable();
+    }
+    //noinspection unchecked
+    final Comparator<Object> c = comparator == null
+        ? (Comparator) Extensions.comparableComparator()
+        : (Comparator) comparator;
+    final long limit = (long) Math.max(offset, 0) + fetch;
+    final BoundedHeap heap =
+        new BoundedHeap(c, (int) Math.min(limit, Integer.MAX_VALUE));
+    try (Enumerator<TSource> os = source.enumerator()) {
+      long ordinal = 0;
+      while (os.moveNext()) {
+        final TSource o = os.current();
+        heap.add(keySelector.apply(o), o, ordinal++);
+      }
+    }
+    //noinspection unchecked
+    final List<TSource> list = (List<TSource>) heap.sortedValues(offset);
+    return Linq4j.asEnumerable(list);
+  }
+
+  /** Returns the new capacity of a sort buffer that is full. */
+  static int grow(int size) {
+    final int newCapacity = size + (size >> 1) + 1;
+    if (newCapacity < 0) {
+      throw new OutOfMemoryError("sort buffer too large");
+    }
+    return newCapacity;
+  }
+
+  /** Returns an enumerable over the first {@code size} elements of a sorted
+   * buffer. */
+  static <TSource> Enumerable<TSource> sortedEnumerable(
+      Object[] values, int size) {
+    //noinspection unchecked
+    final List<TSource> list =
+        (List<TSource>) Arrays.asList(values).subList(0, size);
+    return Linq4j.asEnumerable(list);
+  }
+
+  /**
+   * Sorts the first {@code size} elements of an array of keys, and moves the
+   * elements of an array of values in the same way.
+   *
+   * <p>The sort is a stable merge sort, and calls the comparator
+   * O(n log n) times; the values are never examined.
+   */
+  static void sort(Object[] keys, Object[] values, int size,
+      Comparator<Object> comparator) {
+    final Object[] keys2 = Arrays.copyOf(keys, size);
+    final Object[] values2 = Arrays.copyOf(values, size);
+    mergeSort(keys2, values2, keys, values, 0, size, comparator);
+  }
+
+  /** Sorts {@code [lo, hi)} of {@code srcKeys} into {@code destKeys}.
+   * On entry, both source and destination contain the same elements. */
+  private static void mergeSort(Object[] srcKeys, Object[] srcValues,
+      Object[] destKeys, Object[] destValues, int lo, int hi,
+      Comparator<Object> comparator) {
+    final int length = hi - lo;
+    if (length < INSERTION_SORT_THRESHOLD) {
+      for (int i = lo + 1; i < hi; i++) {
+        for (int j = i; j > lo
+            && comparator.compare(destKeys[j - 1], destKeys[j]) > 0; j--) {
+          swap(destKeys, j, j - 1);
+          swap(destValues, j, j - 1);
+        }
+      }
+      return;
+    }
+
+    // Sort each half of dest into src, then merge back into dest.
+    final int mid = (lo + hi) >>> 1;
+    mergeSort(destKeys, destValues, srcKeys, srcValues, lo, mid, comparator);
+    mergeSort(destKeys, destValues, srcKeys, srcValues, mid, hi, comparator);
+
+    // If the halves are already in order, just copy.
+    if (comparator.compare(srcKeys[mid - 1], srcKeys[mid]) <= 0) {
+      System.arraycopy(srcKeys, lo, destKeys, lo, length);
+      System.arraycopy(srcValues, lo, destValues, lo, length);
+      return;
+    }
+
+    for (int i = lo, p = lo, q = mid; i < hi; i++) {
+      if (q >= hi
+          || p < mid && comparator.compare(srcKeys[p], srcKeys[q]) <= 0) {
+        destKeys[i] = srcKeys[p];
+        destValues[i] = srcValues[p++];
+      } else {
+        destKeys[i] = srcKeys[q];
+        destValues[i] = srcValues[q++];
+      }
+    }
+  }
+
+  private static void swap(Object[] a, int i, int j) {
+    final Object t = a[i];
+    a[i] = a[j];
+    a[j] = t;
   }
 
   /**
@@ -3085,6 +3384,210 @@ public void close() {
     }
   }
 
+  /** Max-heap that retains the {@code capacity} smallest elements added to
+   * it, used to compute the top N elements of a sequence.
+   *
+   * <p>Elements with equal keys are ordered by the ordinal at which they were
+   * added, so the result is the same as a stable sort followed by a limit. */
+  private static class BoundedHeap {
+    private final Comparator<Object> comparator;
+    private final int capacity;
+    private Object[] keys;
+    private Object[] values;
+    private long[] ordinals;
+    private int size;
+
+    BoundedHeap(Comparator<Object> comparator, int capacity) {
+      assert capacity > 0;
+      this.comparator = comparator;
+      this.capacity = capacity;
+      final int initialCapacity = Math.min(capacity, INITIAL_SORT_CAPACITY);
+      this.keys = new Object[initialCapacity];
+      this.values = new Object[initialCapacity];
+      this.ordinals = new long[initialCapacity];
+    }
+
+    void add(Object key, Object value, long ordinal) {
+      if (size < capacity) {
+        if (size == keys.length) {
+          final int newCapacity = (int) Math.min(capacity, grow(size));
+          keys = Arrays.copyOf(keys, newCapacity);
+          values = Arrays.copyOf(values, newCapacity);
+          ordinals = Arrays.copyOf(ordinals, newCapacity);
+        }
+        keys[size] = key;
+        values[size] = value;
+        ordinals[size] = ordinal;
+        siftUp(size++);
+      } else if (comparator.compare(key, keys[0]) < 0) {
+        // The new element was added after every element in the heap, so it
+        // replaces the largest only if its key is strictly smaller.
+        keys[0] = key;
+        values[0] = value;
+        ordinals[0] = ordinal;
+        siftDown(0, size);
+      }
+    }
+
+    /** Sorts the contents of the heap in ascending order and returns the
+     * values, skipping the first {@code offset}. The heap is no longer valid
+     * afterwards. */
+    List<Object> sortedValues(int offset) {
+      for (int n = size - 1; n > 0; n--) {
+        swap(0, n);
+        siftDown(0, n);
+      }
+      if (offset >= size) {
+        return Collections.emptyList();
+      }
+      return Arrays.asList(values).subList(Math.max(offset, 0), size);
+    }
+
+    private int compare(int i, int j) {
+      final int c = comparator.compare(keys[i], keys[j]);
+      return c != 0 ? c : Long.compare(ordinals[i], ordinals[j]);
+    }
+
+    private void siftUp(int i) {
+      while (i > 0) {
+        final int parent = (i - 1) >>> 1;
+        if (compare(i, parent) <= 0) {
+          break;
+        }
+        swap(i, parent);
+        i = parent;
+      }
+    }
+
+    private void siftDown(int i, int n) {
+      for (;;) {
+        int child = 2 * i + 1;
+        if (child >= n) {
+          break;
+        }
+        if (child + 1 < n && compare(child + 1, child) > 0) {
+          ++child;
+        }
+        if (compare(child, i) <= 0) {
+          break;
+        }
+        swap(i, child);
+        i = child;
+      }
+    }
+
+    private void swap(int i, int j) {
+      EnumerableDefaults.swap(keys, i, j);
+      EnumerableDefaults.swap(values, i, j);
+      final long t = ordinals[i];
+      ordinals[i] = ordinals[j];
+      ordinals[j] = t;
+    }
+  }
+
+  /** Hash table from {@code long} keys to the ordinals of the rows that have
+   * that key, for {@link #longKeyJoin}.
+   *
+   * <p>Rows and their keys are held in arrays. After {@link #build()}, an
+   * open-addressing table maps each distinct key to the ordinal of the first
+   * row with that key, and the rows with the same key are chained, in the
+   * order they were added, by the {@code next} array. There is no object per
+   * row or per key. */
+  private static class LongHashIndex {
+    private Object[] rows = new Object[INITIAL_SORT_CAPACITY];
+    private long[] keys = new long[INITIAL_SORT_CAPACITY];
+    private int size;
+    /** For each slot, 1 + the ordinal of the first row, or 0 if empty. */
+    private int[] table;
+    /** For each row, 1 + the ordinal of the next row with the same key, or 0
+     * if it is the last. */
+    private int[] next;
+    private int mask;
+
+    void add(long key, Object row) {
+      if (size == rows.length) {
+        final int newCapacity = grow(size);
+        rows = Arrays.copyOf(rows, newCapacity);
+        keys = Arrays.copyOf(keys, newCapacity);
+      }
+      keys[size] = key;
+      rows[size] = row;
+      ++size;
+    }
+
+    /** Builds the hash table; returns false if there are too many distinct
+     * keys to fit. */
+    boolean build() {
+      final int capacity = longHashCapacity(size);
+      table = new int[capacity];
+      mask = capacity - 1;
+      next = new int[size];
+      // Leave at least one slot empty, so that probe sequences end.
+      int free = capacity - 1;
+      // Add rows in reverse, so that each chain is in the order rows were
+      // added.
+      for (int i = size - 1; i >= 0; i--) {
+        final long key = keys[i];
+        int slot = hash(key) & mask;
+        for (;;) {
+          final int head = table[slot];
+          if (head == 0) {
+            break;
+          }
+          if (keys[head - 1] == key) {
+            next[i] = head;
+            break;
+          }
+          slot = (slot + 1) & mask;
+        }
+        if (table[slot] == 0 && --free < 0) {
+          table = null;
+          next = null;
+          return false;
+        }
+        table[slot] = i + 1;
+      }
+      return true;
+    }
+
+    /** Returns the ordinal of the first row with a given key, or -1. */
+    int first(long key) {
+      int slot = hash(key) & mask;
+      for (;;) {
+        final int head = table[slot];
+        if (head == 0) {
+          return -1;
+        }
+        if (keys[head - 1] == key) {
+          return head - 1;
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+
+    /** Returns the ordinal of the next row with the same key as a given row,
+     * or -1. */
+    int next(int ordinal) {
+      return next[ordinal] - 1;
+    }
+
+    <T> T row(int ordinal) {
+      //noinspection unchecked
+      return (T) rows[ordinal];
+    }
+
+    /** Returns the rows, in the order they were added. */
+    <T> List<T> rows() {
+      //noinspection unchecked
+      return (List<T>) (List) Arrays.asList(rows).subList(0, size);
+    }
+
+    private static int hash(long key) {
+      final long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32));
+    }
+  }
+
   /** Value wrapped with a comparer.
    *
    * @param <T> element type */
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.Function1;
+
+import java.util.Arrays;
+
+/**
+ * Hash aggregation whose accumulators are stored in parallel arrays.
+ *
+ * <p>Each distinct key is assigned a slot, numbered from 0 in the order in
+ * which keys are first seen. A sub-class (usually generated code) holds one
+ * array per accumulator field, typically an array of a primitive type, and
+ * implements {@link #reset}, {@link #add} and {@link #result} by reading and
+ * writing element {@code slot} of those arrays. Unlike
+ * {@link EnumerableDefaults#groupBy}, there is no accumulator object per
+ * group, and nothing is allocated per input row other than what the key
+ * selector allocates.
+ *
+ * <p>Keys are stored in an array, and found via an open-addressing hash table
+ * of slot numbers. When the number of groups reaches the capacity of the
+ * arrays, the capacity is doubled and {@link #grow} is called.
+ *
+ * @param <TSource> Input row type
+ * @param <TKey> Key type
+ * @param <TResult> Result row type
+ */
+public abstract class HashAggregator<TSource, TKey, TResult> {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private Object[] keys;
+  private int[] hashes;
+  /** Hash table; each entry is 0 if empty, otherwise a slot number plus 1.
+   * Its length is a power of 2, and at least twice the number of keys. */
+  private int[] table;
+  private int size;
+
+  protected HashAggregator() {
+  }
+
+  /** Resizes every accumulator array to {@code capacity}, retaining the
+   * contents of existing slots. Called with the initial capacity before the
+   * first slot is assigned, then each time the arrays are full. */
+  protected abstract void grow(int capacity);
+
+  /** Initializes the accumulators of a newly assigned slot. */
+  protected abstract void reset(int slot);
+
+  /** Adds a row to the accumulators of a slot. */
+  protected abstract void add(int slot, TSource row);
+
+  /** Creates a result row from a key and the accumulators of its slot. */
+  protected abstract TResult result(TKey key, int slot);
+
+  /** Groups the rows of {@code source} by key, and returns one result per
+   * key.
+   *
+   * <p>Like {@link EnumerableDefaults#groupBy}, reads all input rows before
+   * returning. Results are returned in the order in which their keys were
+   * first seen. */
+  public Enumerable<TResult> aggregate(Enumerable<TSource> source,
+      Function1<TSource, TKey> keySelector) {
+    init();
+    try (Enumerator<TSource> os = source.enumerator()) {
+      while (os.moveNext()) {
+        final TSource o = os.current();
+        add(slot(keySelector.apply(o)), o);
+      }
+    }
+    final int resultCount = size;
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        return new Enumerator<TResult>() {
+          int i = -1;
+
+          public TResult current() {
+            //noinspection unchecked
+            return result((TKey) keys[i], i);
+          }
+
+          public boolean moveNext() {
+            return ++i < resultCount;
+          }
+
+          public void reset() {
+            i = -1;
+          }
+
+          public void close() {
+          }
+        };
+      }
+    };
+  }
+
+  private void init() {
+    keys = new Object[INITIAL_CAPACITY];
+    hashes = new int[INITIAL_CAPACITY];
+    table = new int[INITIAL_CAPACITY * 2];
+    size = 0;
+    grow(INITIAL_CAPACITY);
+  }
+
+  /** Returns the slot of a key, assigning and resetting a new slot if the
+   * key has not been seen before. */
+  private int slot(TKey key) {
+    final int hash = hash(key);
+    final int mask = table.length - 1;
+    int i = hash & mask;
+    for (;;) {
+      final int entry = table[i];
+      if (entry == 0) {
+        break;
+      }
+      final int slot = entry - 1;
+      if (hashes[slot] == hash && equal(keys[slot], key)) {
+        return slot;
+      }
+      i = (i + 1) & mask;
+    }
+    final int slot = size++;
+    if (slot == keys.length) {
+      final int capacity = keys.length * 2;
+      keys = Arrays.copyOf(keys, capacity);
+      hashes = Arrays.copyOf(hashes, capacity);
+      grow(capacity);
+    }
+    keys[slot] = key;
+    hashes[slot] = hash;
+    if (size * 2 > table.length) {
+      rehash();
+    } else {
+      table[i] = slot + 1;
+    }
+    reset(slot);
+    return slot;
+  }
+
+  /** Doubles the size of the hash table, and re-inserts every slot. */
+  private void rehash() {
+    table = new int[table.length * 2];
+    final int mask = table.length - 1;
+    for (int slot = 0; slot < size; slot++) {
+      int i = hashes[slot] & mask;
+      while (table[i] != 0) {
+        i = (i + 1) & mask;
+      }
+      table[i] = slot + 1;
+    }
+  }
+
+  private static int hash(Object key) {
+    if (key == null) {
+      return 0;
+    }
+    // Spread the bits, because low bits select the hash table entry
+    final int h = key.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean equal(Object key0, Object key1) {
+    return key0 == null ? key1 == null : key0.equals(key1);
+  }
+}
+
+// End HashAggregator.java
@@ -0,0 +1,1081 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Functions;
+import org.apache.calcite.linq4j.function.IntegerFunction1;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Operators that execute part of a query on several threads.
+ *
+ * <p>{@link #gather} implements morsel-driven parallelism. It reads its
+ * source in batches of rows ("morsels"), applies a pipeline of operators to
+ * each morsel in a task on a shared {@link ForkJoinPool}, and returns the
+ * output of the tasks in the order that the morsels were read.
+ *
+ * <p>{@link #exchange} and {@link #sortExchange} repartition rows. A producer
+ * thread reads the source and routes each row, through a bounded queue, to
+ * the worker thread of its partition. Each worker applies a pipeline of
+ * operators to the rows of its partition, so that the partitions are
+ * processed in parallel.
+ */
+public class ParallelEnumerables {
+  /** Pool shared by all queries. Its threads are daemon threads. */
+  private static final ExecutorService POOL =
+      new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+  /** Pool for the threads of exchanges. The producer and workers of an
+   * exchange block on each other's queues, so they must all be running at
+   * the same time; they cannot share the fixed-size {@link #POOL}. */
+  private static final ExecutorService EXCHANGE_POOL =
+      Executors.newCachedThreadPool(
+          new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+              final Thread thread =
+                  new Thread(r, "calcite-exchange-" + count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+
+  /** Number of rows per partition that a range partitioner samples in order
+   * to choose the boundaries between partitions. */
+  private static final int RANGE_SAMPLE_SIZE = 128;
+
+  /** Marks the end of the rows in an exchange queue. */
+  private static final Object END = new Object();
+
+  /** Stands for a null row in an exchange queue, which cannot hold nulls. */
+  private static final Object NULL_ROW = new Object();
+
+  private ParallelEnumerables() {}
+
+  /**
+   * Applies a pipeline to batches of rows of a sequence, in parallel, and
+   * concatenates the results.
+   *
+   * <p>The calling thread reads {@code source}, and splits it into morsels
+   * of {@code morselSize} rows. At most {@code parallelism} morsels are in
+   * flight at a time, so memory use is bounded. Each morsel is processed by
+   * {@code pipeline} in a task; the pipeline may be called on several
+   * threads at once, so it must not have mutable state.
+   *
+   * <p>Results are returned in the order of the morsels they came from, so if
+   * the pipeline preserves the order of its input, the result is the same as
+   * {@code pipeline.apply(source)}. If {@code pipeline} contains an
+   * aggregation, it computes one partial aggregate per morsel; the caller
+   * must combine them.
+   *
+   * <p>If a task throws, the exception is re-thrown to the consumer.
+   *
+   * @param source Source rows
+   * @param pipeline Function to apply to each morsel
+   * @param parallelism Maximum number of morsels processed at a time
+   * @param morselSize Number of rows per morsel
+   *
+   * @param <TSource> Source row type
+   * @param <TResult> Result row type
+   */
+  public static <TSource, TResult> Enumerable<TResult> gather(
+      final Enumerable<TSource> source,
+      final Function1<Enumerable<TSource>, Enumerable<TResult>> pipeline,
+      final int parallelism, final int morselSize) {
+    if (parallelism <= 1) {
+      return pipeline.apply(source);
+    }
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        return new GatherEnumerator<>(source.enumerator(), pipeline,
+            parallelism, Math.max(morselSize, 1));
+      }
+    };
+  }
+
+  /** Enumerator that reads morsels, processes them in parallel, and returns
+   * their results in order.
+   *
+   * @param <TSource> Source row type
+   * @param <TResult> Result row type */
+  private static class GatherEnumerator<TSource, TResult>
+      implements Enumerator<TResult> {
+    private final Enumerator<TSource> source;
+    private final Function1<Enumerable<TSource>, Enumerable<TResult>> pipeline;
+    private final int parallelism;
+    private final int morselSize;
+    private final Deque<Future<List<TResult>>> tasks = new ArrayDeque<>();
+    /** Set when the tasks in flight are abandoned, so that those that have
+     * not started do nothing. Each generation of tasks has its own flag. */
+    private AtomicBoolean abandoned = new AtomicBoolean();
+    private Iterator<TResult> results = Collections.emptyIterator();
+    private boolean sourceDone;
+    private TResult current;
+
+    GatherEnumerator(Enumerator<TSource> source,
+        Function1<Enumerable<TSource>, Enumerable<TResult>> pipeline,
+        int parallelism, int morselSize) {
+      this.source = source;
+      this.pipeline = pipeline;
+      this.parallelism = parallelism;
+      this.morselSize = morselSize;
+    }
+
+    public TResult current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      for (;;) {
+        if (results.hasNext()) {
+          current = results.next();
+          return true;
+        }
+        submit();
+        final Future<List<TResult>> task = tasks.poll();
+        if (task == null) {
+          current = null;
+          return false;
+        }
+        results = getResult(task).iterator();
+      }
+    }
+
+    /** Reads morsels from the source and submits them, until there are
+     * {@link #parallelism} tasks in flight or the source is exhausted. */
+    private void submit() {
+      while (!sourceDone && tasks.size() < parallelism) {
+        final List<TSource> morsel = new ArrayList<>(morselSize);
+        while (morsel.size() < morselSize) {
+          if (!source.moveNext()) {
+            sourceDone = true;
+            break;
+          }
+          morsel.add(source.current());
+        }
+        if (morsel.isEmpty()) {
+          break;
+        }
+        final AtomicBoolean abandoned = this.abandoned;
+        tasks.add(
+            POOL.submit(
+                new Callable<List<TResult>>() {
+                  public List<TResult> call() {
+                    if (abandoned.get()) {
+                      return Collections.emptyList();
+                    }
+                    return pipeline.apply(Linq4j.asEnumerable(morsel))
+                        .toList();
+                  }
+                }));
+      }
+    }
+
+    public void reset() {
+      abandon();
+      source.reset();
+      sourceDone = false;
+      results = Collections.emptyIterator();
+      current = null;
+    }
+
+    public void close() {
+      abandon();
+      source.close();
+    }
+
+    /** Abandons the tasks in flight. Tasks that are running are allowed to
+     * finish, but their results are ignored. */
+    private void abandon() {
+      abandoned.set(true);
+      abandoned = new AtomicBoolean();
+      tasks.clear();
+    }
+  }
+
+  /** Returns the result of a task, waiting if necessary. If the task threw,
+   * re-throws its exception. */
+  private static <T> T getResult(Future<T> task) {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      // ForkJoinTask re-creates an exception thrown in another thread, so
+      // that its stack includes the waiting thread, and makes the original
+      // its cause. Re-throw the original.
+      if (cause.getCause() != null
+          && cause.getCause().getClass() == cause.getClass()) {
+        cause = cause.getCause();
+      }
+      throw rethrow(cause);
+    }
+  }
+
+  private static RuntimeException rethrow(Throwable e) {
+    if (e instanceof RuntimeException) {
+      throw (RuntimeException) e;
+    }
+    if (e instanceof Error) {
+      throw (Error) e;
+    }
+    throw new RuntimeException(e);
+  }
+
+  /**
+   * Returns a partitioner that assigns each row to a partition based on the
+   * hash code of its key.
+   *
+   * @param keySelector Function that computes the key of a row
+   * @param partitionCount Number of partitions
+   *
+   * @param <TSource> Row type
+   * @param <TKey> Key type
+   */
+  public static <TSource, TKey> Partitioner<TSource> hashPartitioner(
+      final Function1<TSource, TKey> keySelector, final int partitionCount) {
+    return new Partitioner<TSource>() {
+      public int partitionCount() {
+        return partitionCount;
+      }
+
+      public int sampleSize() {
+        return 0;
+      }
+
+      public IntegerFunction1<TSource> bind(List<TSource> sample) {
+        return new IntegerFunction1<TSource>() {
+          public int apply(TSource row) {
+            final TKey key = keySelector.apply(row);
+            if (key == null) {
+              return 0;
+            }
+            final int h = key.hashCode();
+            return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % partitionCount;
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Returns a partitioner that assigns each row to a partition based on
+   * which range its key falls into.
+   *
+   * <p>The boundaries of the ranges are chosen, for each execution, by
+   * sampling the first rows of the input. Keys in partition <i>i</i> are less
+   * than or equal to keys in partition <i>i + 1</i>, according to
+   * {@code comparator}, and all rows with equal keys are in the same
+   * partition.
+   *
+   * @param keySelector Function that computes the key of a row
+   * @param comparator Comparator of keys, or null if keys are
+   *                   {@link Comparable}
+   * @param partitionCount Number of partitions
+   *
+   * @param <TSource> Row type
+   * @param <TKey> Key type
+   */
+  public static <TSource, TKey> Partitioner<TSource> rangePartitioner(
+      final Function1<TSource, TKey> keySelector,
+      final Comparator<TKey> comparator, final int partitionCount) {
+    //noinspection unchecked
+    final Comparator<TKey> c = comparator == null
+        ? (Comparator) Extensions.comparableComparator()
+        : comparator;
+    return new Partitioner<TSource>() {
+      public int partitionCount() {
+        return partitionCount;
+      }
+
+      public int sampleSize() {
+        return partitionCount * RANGE_SAMPLE_SIZE;
+      }
+
+      public IntegerFunction1<TSource> bind(List<TSource> sample) {
+        final List<TKey> keys = new ArrayList<>(sample.size());
+        for (TSource row : sample) {
+          keys.add(keySelector.apply(row));
+        }
+        Collections.sort(keys, c);
+        final List<TKey> boundaries = new ArrayList<>();
+        if (!keys.isEmpty()) {
+          for (int i = 1; i < partitionCount; i++) {
+            boundaries.add(keys.get(i * keys.size() / partitionCount));
+          }
+        }
+        return new IntegerFunction1<TSource>() {
+          public int apply(TSource row) {
+            // Returns the number of boundaries less than or equal to the key.
+            final TKey key = keySelector.apply(row);
+            int lo = 0;
+            int hi = boundaries.size();
+            while (lo < hi) {
+              final int mid = (lo + hi) >>> 1;
+              if (c.compare(boundaries.get(mid), key) <= 0) {
+                lo = mid + 1;
+              } else {
+                hi = mid;
+              }
+            }
+            return lo;
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Returns a partitioner that assigns rows to partitions in turn.
+   *
+   * @param partitionCount Number of partitions
+   *
+   * @param <TSource> Row type
+   */
+  public static <TSource> Partitioner<TSource> roundRobinPartitioner(
+      final int partitionCount) {
+    return new Partitioner<TSource>() {
+      public int partitionCount() {
+        return partitionCount;
+      }
+
+      public int sampleSize() {
+        return 0;
+      }
+
+      public IntegerFunction1<TSource> bind(List<TSource> sample) {
+        return new IntegerFunction1<TSource>() {
+          int next;
+
+          public int apply(TSource row) {
+            final int partition = next;
+            next = (next + 1) % partitionCount;
+            return partition;
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Repartitions a sequence.
+   *
+   * <p>Equivalent to {@link #exchange(Enumerable, Partitioner, int, Function1)}
+   * with a pipeline that returns its input.
+   *
+   * @param source Source rows
+   * @param partitioner Assigns rows to partitions
+   * @param queueCapacity Maximum number of rows in each queue
+   *
+   * @param <TSource> Row type
+   */
+  public static <TSource> Enumerable<TSource> exchange(
+      final Enumerable<TSource> source,
+      final Partitioner<TSource> partitioner, final int queueCapacity) {
+    return exchange(source, partitioner, queueCapacity,
+        Functions.<Enumerable<TSource>>identitySelector());
+  }
+
+  /**
+   * Repartitions a sequence, and applies a pipeline to each partition in
+   * parallel.
+   *
+   * <p>A producer thread reads {@code source} and routes each row to the
+   * queue of its partition. A worker thread for each partition applies
+   * {@code pipeline} to the rows of its partition, and forwards the results
+   * to the consumer. Each queue holds at most {@code queueCapacity} rows, so
+   * a slow consumer blocks the producer rather than exhausting memory.
+   *
+   * <p>The pipeline is called once per partition, possibly on several
+   * threads at once, so it must not have mutable state; and it must
+   * enumerate its input once, to the end. If {@code pipeline} contains an aggregation, it
+   * computes one partial aggregate per partition; unless the partitions are
+   * by the grouping key, the caller must combine them.
+   *
+   * <p>The result contains the rows from all partitions, in no particular
+   * order. If the partitioner has only one partition, returns
+   * {@code pipeline.apply(source)}. If the producer or a pipeline throws,
+   * the exception is re-thrown to the consumer.
+   *
+   * @param source Source rows
+   * @param partitioner Assigns rows to partitions
+   * @param queueCapacity Maximum number of rows in each queue
+   * @param pipeline Function to apply to each partition
+   *
+   * @param <TSource> Source row type
+   * @param <TResult> Result row type
+   */
+  public static <TSource, TResult> Enumerable<TResult> exchange(
+      final Enumerable<TSource> source,
+      final Partitioner<TSource> partitioner, final int queueCapacity,
+      final Function1<Enumerable<TSource>, Enumerable<TResult>> pipeline) {
+    if (partitioner.partitionCount() <= 1) {
+      return pipeline.apply(source);
+    }
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        return new ExchangeEnumerator<>(source, partitioner,
+            Math.max(queueCapacity, 1), pipeline);
+      }
+    };
+  }
+
+  /**
+   * Repartitions a sequence, and sorts each partition.
+   *
+   * <p>Rows are routed to partitions as in {@link #exchange}. Each worker
+   * thread sorts the rows of its partition, so the partitions are sorted in
+   * parallel. The result is sorted by {@code keySelector} and
+   * {@code comparator}: if {@code ordered}, the sorted partitions are
+   * concatenated; otherwise they are merged.
+   *
+   * <p>{@code ordered} may be true only if the partitions are themselves in
+   * sort order; for example, if {@code partitioner} is a
+   * {@link #rangePartitioner} whose key and comparator are a prefix of the
+   * sort key.
+   *
+   * @param source Source rows
+   * @param partitioner Assigns rows to partitions
+   * @param queueCapacity Maximum number of rows in each queue
+   * @param keySelector Function that computes the sort key of a row
+   * @param comparator Comparator of sort keys, or null if keys are
+   *                   {@link Comparable}
+   * @param ordered Whether partition <i>i</i> sorts before partition
+   *                <i>i + 1</i>
+   *
+   * @param <TSource> Row type
+   * @param <TKey> Sort key type
+   */
+  public static <TSource, TKey> Enumerable<TSource> sortExchange(
+      final Enumerable<TSource> source,
+      final Partitioner<TSource> partitioner, final int queueCapacity,
+      final Function1<TSource, TKey> keySelector,
+      final Comparator<TKey> comparator, final boolean ordered) {
+    if (partitioner.partitionCount() <= 1) {
+      return EnumerableDefaults.orderBy(source, keySelector, comparator);
+    }
+    return new AbstractEnumerable<TSource>() {
+      public Enumerator<TSource> enumerator() {
+        return new SortExchangeEnumerator<>(source, partitioner,
+            Math.max(queueCapacity, 1), keySelector, comparator, ordered);
+      }
+    };
+  }
+
+  /**
+   * Reads a sequence ahead of its consumer.
+   *
+   * <p>A producer thread reads {@code source} into a queue of at most
+   * {@code queueCapacity} rows, and the consumer takes rows from the queue.
+   * The producer therefore works, for example waiting for the next block of
+   * rows from a remote database, while the consumer processes the previous
+   * rows. If the consumer closes the enumerator early, the producer stops
+   * and closes its enumerator of {@code source}.
+   *
+   * <p>The result contains the same rows as {@code source}, in the same
+   * order. If {@code queueCapacity} is less than 1, returns {@code source}.
+   *
+   * @param source Source rows
+   * @param queueCapacity Maximum number of rows read ahead
+   *
+   * @param <TSource> Row type
+   */
+  public static <TSource> Enumerable<TSource> prefetch(
+      final Enumerable<TSource> source, final int queueCapacity) {
+    if (queueCapacity < 1) {
+      return source;
+    }
+    return new AbstractEnumerable<TSource>() {
+      public Enumerator<TSource> enumerator() {
+        return new PrefetchEnumerator<>(source, queueCapacity);
+      }
+    };
+  }
+
+  /** Assigns the rows of an exchange to partitions.
+   *
+   * @param <T> Row type */
+  public interface Partitioner<T> {
+    /** Returns the number of partitions. */
+    int partitionCount();
+
+    /** Returns the number of rows, from the start of the input, that
+     * {@link #bind} needs to see before it can assign rows to partitions. */
+    int sampleSize();
+
+    /** Returns a function that assigns each row to a partition between 0 and
+     * {@link #partitionCount()} - 1. It is called once per execution of an
+     * exchange, with the first {@link #sampleSize()} rows of the input, and
+     * the function it returns is only used by the producer thread. */
+    IntegerFunction1<T> bind(List<T> sample);
+  }
+
+  /** Marks that the producer of an exchange failed. */
+  private static class Failure {
+    final Throwable e;
+
+    Failure(Throwable e) {
+      this.e = e;
+    }
+  }
+
+  /** One execution of an exchange. Starts a thread that reads the source and
+   * routes each row to the queue of its partition, followed by {@link #END};
+   * or, if reading fails, a {@link Failure}.
+   *
+   * @param <T> Row type */
+  private static class Exchange<T> implements Runnable {
+    private final Enumerable<T> source;
+    private final Partitioner<T> partitioner;
+    final List<BlockingQueue<Object>> queues = new ArrayList<>();
+    /** Set when the consumer is no longer interested in the result, so that
+     * the producer and workers stop. */
+    final AtomicBoolean closed = new AtomicBoolean();
+
+    Exchange(Enumerable<T> source, Partitioner<T> partitioner,
+        int queueCapacity) {
+      this.source = source;
+      this.partitioner = partitioner;
+      for (int i = 0; i < partitioner.partitionCount(); i++) {
+        queues.add(new ArrayBlockingQueue<>(queueCapacity));
+      }
+      EXCHANGE_POOL.execute(this);
+    }
+
+    public void run() {
+      try (Enumerator<T> enumerator = source.enumerator()) {
+        final List<T> sample = new ArrayList<>();
+        while (sample.size() < partitioner.sampleSize()
+            && enumerator.moveNext()) {
+          sample.add(enumerator.current());
+        }
+        final IntegerFunction1<T> function = partitioner.bind(sample);
+        for (T row : sample) {
+          if (!put(queues.get(function.apply(row)), mask(row))) {
+            return;
+          }
+        }
+        while (enumerator.moveNext()) {
+          final T row = enumerator.current();
+          if (!put(queues.get(function.apply(row)), mask(row))) {
+            return;
+          }
+        }
+        putAll(END);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (Throwable e) {
+        try {
+          putAll(new Failure(e));
+        } catch (InterruptedException e2) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    private void putAll(Object o) throws InterruptedException {
+      for (BlockingQueue<Object> queue : queues) {
+        if (!put(queue, o)) {
+          return;
+        }
+      }
+    }
+
+    /** Adds an element to a queue, waiting for space if necessary. Returns
+     * false if the exchange is closed while waiting. */
+    boolean put(BlockingQueue<Object> queue, Object o)
+        throws InterruptedException {
+      while (!queue.offer(o, 100, TimeUnit.MILLISECONDS)) {
+        if (closed.get()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Removes an element from a queue, waiting if necessary. Returns null if
+     * the exchange is closed while waiting. */
+    Object take(BlockingQueue<Object> queue) throws InterruptedException {
+      for (;;) {
+        final Object o = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (o != null) {
+          return o;
+        }
+        if (closed.get()) {
+          return null;
+        }
+      }
+    }
+  }
+
+  private static Object mask(Object row) {
+    return row == null ? NULL_ROW : row;
+  }
+
+  private static <T> T unmask(Object o) {
+    //noinspection unchecked
+    return o == NULL_ROW ? null : (T) o;
+  }
+
+  /** Enumerator that repartitions its source, applies a pipeline to each
+   * partition, and returns rows from all partitions as they arrive.
+   *
+   * @param <T> Source row type
+   * @param <R> Result row type */
+  private static class ExchangeEnumerator<T, R> implements Enumerator<R> {
+    private final Enumerable<T> source;
+    private final Partitioner<T> partitioner;
+    private final int queueCapacity;
+    private final Function1<Enumerable<T>, Enumerable<R>> pipeline;
+    private Exchange<T> exchange;
+    private BlockingQueue<Object> output;
+    private int remaining;
+    private R current;
+
+    ExchangeEnumerator(Enumerable<T> source, Partitioner<T> partitioner,
+        int queueCapacity, Function1<Enumerable<T>, Enumerable<R>> pipeline) {
+      this.source = source;
+      this.partitioner = partitioner;
+      this.queueCapacity = queueCapacity;
+      this.pipeline = pipeline;
+    }
+
+    public R current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      if (exchange == null) {
+        start();
+      }
+      try {
+        while (remaining > 0) {
+          final Object o = output.take();
+          if (o == END) {
+            --remaining;
+          } else if (o instanceof Failure) {
+            remaining = 0;
+            throw rethrow(((Failure) o).e);
+          } else {
+            current = unmask(o);
+            return true;
+          }
+        }
+        current = null;
+        return false;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+
+    private void start() {
+      final Exchange<T> exchange =
+          new Exchange<>(source, partitioner, queueCapacity);
+      final BlockingQueue<Object> output =
+          new ArrayBlockingQueue<>(queueCapacity);
+      for (final BlockingQueue<Object> queue : exchange.queues) {
+        EXCHANGE_POOL.execute(
+            new Runnable() {
+              public void run() {
+                try {
+                  Object end = END;
+                  final Enumerable<T> partition =
+                      new AbstractEnumerable<T>() {
+                        public Enumerator<T> enumerator() {
+                          return new PartitionEnumerator<>(exchange, queue);
+                        }
+                      };
+                  try (Enumerator<R> results =
+                           pipeline.apply(partition).enumerator()) {
+                    while (results.moveNext()) {
+                      if (!exchange.put(output, mask(results.current()))) {
+                        return;
+                      }
+                    }
+                  } catch (Throwable e) {
+                    end = new Failure(e);
+                  }
+                  exchange.put(output, end);
+                  if (end != END) {
+                    // The query has failed; stop the producer and the other
+                    // workers
+                    exchange.closed.set(true);
+                  }
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              }
+            });
+      }
+      this.exchange = exchange;
+      this.output = output;
+      this.remaining = exchange.queues.size();
+    }
+
+    public void reset() {
+      close();
+      current = null;
+    }
+
+    public void close() {
+      if (exchange != null) {
+        exchange.closed.set(true);
+        exchange = null;
+      }
+    }
+  }
+
+  /** Enumerator over the rows of one partition of an exchange, which a
+   * worker thread reads from the partition's queue. Ends when the producer
+   * has finished, or if the exchange is closed; throws if the producer
+   * failed.
+   *
+   * @param <T> Row type */
+  private static class PartitionEnumerator<T> implements Enumerator<T> {
+    private final Exchange<T> exchange;
+    private final BlockingQueue<Object> queue;
+    private boolean done;
+    private T current;
+
+    PartitionEnumerator(Exchange<T> exchange, BlockingQueue<Object> queue) {
+      this.exchange = exchange;
+      this.queue = queue;
+    }
+
+    public T current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      if (!done) {
+        final Object o;
+        try {
+          o = exchange.take(queue);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException(e);
+        }
+        if (o instanceof Failure) {
+          done = true;
+          throw rethrow(((Failure) o).e);
+        } else if (o != null && o != END) {
+          current = unmask(o);
+          return true;
+        }
+        done = true;
+      }
+      current = null;
+      return false;
+    }
+
+    public void reset() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+    }
+  }
+
+  /** Enumerator that reads its source ahead, on another thread. It is an
+   * exchange with one partition, whose queue the consumer reads directly.
+   *
+   * @param <T> Row type */
+  private static class PrefetchEnumerator<T> implements Enumerator<T> {
+    private final Enumerable<T> source;
+    private final int queueCapacity;
+    private Exchange<T> exchange;
+    private boolean done;
+    private T current;
+
+    PrefetchEnumerator(Enumerable<T> source, int queueCapacity) {
+      this.source = source;
+      this.queueCapacity = queueCapacity;
+    }
+
+    public T current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      if (done) {
+        return false;
+      }
+      if (exchange == null) {
+        exchange = new Exchange<>(source,
+            ParallelEnumerables.<T>roundRobinPartitioner(1), queueCapacity);
+      }
+      try {
+        final Object o = exchange.queues.get(0).take();
+        if (o == END) {
+          done = true;
+          current = null;
+          return false;
+        } else if (o instanceof Failure) {
+          done = true;
+          throw rethrow(((Failure) o).e);
+        }
+        current = unmask(o);
+        return true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+
+    public void reset() {
+      close();
+      done = false;
+      current = null;
+    }
+
+    public void close() {
+      if (exchange != null) {
+        exchange.closed.set(true);
+        exchange = null;
+      }
+    }
+  }
+
+  /** Enumerator that repartitions its source, sorts each partition in
+   * parallel, and returns the rows in sorted order.
+   *
+   * @param <T> Row type
+   * @param <K> Sort key type */
+  private static class SortExchangeEnumerator<T, K> implements Enumerator<T> {
+    private final Enumerable<T> source;
+    private final Partitioner<T> partitioner;
+    private final int queueCapacity;
+    private final Function1<T, K> keySelector;
+    private final Comparator<K> comparator;
+    private final boolean ordered;
+    private Exchange<T> exchange;
+    private Iterator<T> rows;
+    private T current;
+
+    SortExchangeEnumerator(Enumerable<T> source, Partitioner<T> partitioner,
+        int queueCapacity, Function1<T, K> keySelector,
+        Comparator<K> comparator, boolean ordered) {
+      this.source = source;
+      this.partitioner = partitioner;
+      this.queueCapacity = queueCapacity;
+      this.keySelector = keySelector;
+      this.comparator = comparator;
+      this.ordered = ordered;
+    }
+
+    public T current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      if (exchange == null) {
+        start();
+      }
+      if (rows.hasNext()) {
+        current = rows.next();
+        return true;
+      }
+      current = null;
+      return false;
+    }
+
+    private void start() {
+      final Exchange<T> exchange =
+          new Exchange<>(source, partitioner, queueCapacity);
+      final List<Future<List<T>>> tasks = new ArrayList<>();
+      for (final BlockingQueue<Object> queue : exchange.queues) {
+        tasks.add(
+            EXCHANGE_POOL.submit(
+                new Callable<List<T>>() {
+                  public List<T> call() throws InterruptedException {
+                    final List<T> list = new ArrayList<>();
+                    for (;;) {
+                      final Object o = exchange.take(queue);
+                      if (o == null) {
+                        return Collections.emptyList();
+                      } else if (o == END) {
+                        return EnumerableDefaults.orderBy(
+                            Linq4j.asEnumerable(list), keySelector,
+                            comparator).toList();
+                      } else if (o instanceof Failure) {
+                        throw rethrow(((Failure) o).e);
+                      }
+                      list.add(ParallelEnumerables.<T>unmask(o));
+                    }
+                  }
+                }));
+      }
+      this.exchange = exchange;
+      if (ordered) {
+        this.rows = new ConcatIterator<>(tasks);
+      } else {
+        final List<List<T>> partitions = new ArrayList<>();
+        for (Future<List<T>> task : tasks) {
+          partitions.add(getResult(task));
+        }
+        this.rows = new MergeIterator<>(partitions, keySelector, comparator);
+      }
+    }
+
+    public void reset() {
+      close();
+      current = null;
+    }
+
+    public void close() {
+      if (exchange != null) {
+        exchange.closed.set(true);
+        exchange = null;
+      }
+    }
+  }
+
+  /** Iterator over the results of several tasks, in order. Waits for each
+   * task only when it reaches it, so that it can return the first partitions
+   * while later ones are still being sorted.
+   *
+   * @param <T> Row type */
+  private static class ConcatIterator<T> implements Iterator<T> {
+    private final Iterator<Future<List<T>>> tasks;
+    private Iterator<T> rows = Collections.emptyIterator();
+
+    ConcatIterator(List<Future<List<T>>> tasks) {
+      this.tasks = tasks.iterator();
+    }
+
+    public boolean hasNext() {
+      while (!rows.hasNext()) {
+        if (!tasks.hasNext()) {
+          return false;
+        }
+        rows = getResult(tasks.next()).iterator();
+      }
+      return true;
+    }
+
+    public T next() {
+      hasNext();
+      return rows.next();
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /** Iterator that merges several sorted lists. Among rows with equal keys,
+   * returns those from earlier lists first.
+   *
+   * @param <T> Row type
+   * @param <K> Sort key type */
+  private static class MergeIterator<T, K> implements Iterator<T> {
+    private final PriorityQueue<Cursor<T, K>> queue;
+    private final Function1<T, K> keySelector;
+
+    MergeIterator(List<List<T>> lists, Function1<T, K> keySelector,
+        Comparator<K> comparator) {
+      //noinspection unchecked
+      final Comparator<K> c = comparator == null
+          ? (Comparator) Extensions.comparableComparator()
+          : comparator;
+      this.keySelector = keySelector;
+      this.queue = new PriorityQueue<>(Math.max(lists.size(), 1),
+          new Comparator<Cursor<T, K>>() {
+            public int compare(Cursor<T, K> o1, Cursor<T, K> o2) {
+              final int x = c.compare(o1.key, o2.key);
+              return x != 0 ? x : Integer.compare(o1.ordinal, o2.ordinal);
+            }
+          });
+      for (int i = 0; i < lists.size(); i++) {
+        final Iterator<T> iterator = lists.get(i).iterator();
+        if (iterator.hasNext()) {
+          queue.add(new Cursor<>(i, iterator, keySelector));
+        }
+      }
+    }
+
+    public boolean hasNext() {
+      return !queue.isEmpty();
+    }
+
+    public T next() {
+      final Cursor<T, K> cursor = queue.remove();
+      final T row = cursor.row;
+      if (cursor.advance(keySelector)) {
+        queue.add(cursor);
+      }
+      return row;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /** Position in one of the lists being merged by a {@link MergeIterator}.
+   *
+   * @param <T> Row type
+   * @param <K> Sort key type */
+  private static class Cursor<T, K> {
+    final int ordinal;
+    final Iterator<T> iterator;
+    T row;
+    K key;
+
+    Cursor(int ordinal, Iterator<T> iterator, Function1<T, K> keySelector) {
+      this.ordinal = ordinal;
+      this.iterator = iterator;
+      advance(keySelector);
+    }
+
+    boolean advance(Function1<T, K> keySelector) {
+      if (!iterator.hasNext()) {
+        return false;
+      }
+      row = iterator.next();
+      key = keySelector.apply(row);
+      return true;
+    }
+  }
+}
+
+// End ParallelEnumerables.java
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Temporary file to which a blocking operator writes rows that do not fit in
+ * memory.
+ *
+ * <p>Rows are written using Java serialization. After {@link #finish()} has
+ * been called, the contents can be read any number of times, via
+ * {@link #asEnumerable()}.
+ *
+ * <p>The operator that creates a file must call {@link #delete()} when it no
+ * longer needs it, typically when its enumerator is closed. If it does not,
+ * the file is deleted when this object is garbage-collected.
+ *
+ * @see SpillingEnumerables
+ */
+class SpillFile {
+  /** Number of rows after which the output stream is reset, so that it does
+   * not retain a reference to every row it has written. */
+  private static final int RESET_INTERVAL = 1024;
+
+  /** Number of spill files created since the JVM started. */
+  private static final AtomicLong CREATED_COUNT = new AtomicLong();
+
+  private final File file;
+  private ObjectOutputStream out;
+  private int count;
+
+  SpillFile() {
+    try {
+      file = File.createTempFile("calcite-spill", ".tmp");
+      CREATED_COUNT.incrementAndGet();
+      out = new ObjectOutputStream(
+          new BufferedOutputStream(new FileOutputStream(file)));
+    } catch (IOException e) {
+      throw new RuntimeException("while creating spill file", e);
+    }
+  }
+
+  /** Returns the number of spill files created since the JVM started. */
+  static long createdCount() {
+    return CREATED_COUNT.get();
+  }
+
+  /** Returns the number of rows written. */
+  int count() {
+    return count;
+  }
+
+  /** Writes a row.
+   *
+   * @throws NotSerializableException if the row cannot be serialized; the
+   * file is then in an undefined state, and should be deleted */
+  void write(Object row) throws NotSerializableException {
+    assert out != null : "already finished";
+    try {
+      out.writeObject(row);
+      if (++count % RESET_INTERVAL == 0) {
+        out.reset();
+      }
+    } catch (NotSerializableException e) {
+      throw e;
+    } catch (IOException e) {
+      throw new RuntimeException("while writing spill file " + file, e);
+    }
+  }
+
+  /** Finishes writing; after this, the file can be read. */
+  void finish() {
+    try {
+      out.close();
+      out = null;
+    } catch (IOException e) {
+      throw new RuntimeException("while writing spill file " + file, e);
+    }
+  }
+
+  /** Returns the contents of this file. */
+  <T> Enumerable<T> asEnumerable() {
+    assert out == null : "not finished";
+    return new AbstractEnumerable<T>() {
+      public Enumerator<T> enumerator() {
+        return new SpillEnumerator<>();
+      }
+    };
+  }
+
+  /** Deletes this file. */
+  void delete() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        // ignore
+      }
+      out = null;
+    }
+    //noinspection ResultOfMethodCallIgnored
+    file.delete();
+  }
+
+  @Override protected void finalize() throws Throwable {
+    delete();
+    super.finalize();
+  }
+
+  /** Enumerator that reads the rows of a spill file.
+   *
+   * @param <T> element type */
+  private class SpillEnumerator<T> implements Enumerator<T> {
+    private ObjectInputStream in;
+    private int i;
+    private T current;
+
+    public T current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      if (i >= count) {
+        close();
+        return false;
+      }
+      try {
+        if (in == null) {
+          in = new ObjectInputStream(
+              new BufferedInputStream(new FileInputStream(file)));
+        }
+        //noinspection unchecked
+        current = (T) in.readObject();
+        ++i;
+        return true;
+      } catch (IOException | ClassNotFoundException e) {
+        throw new RuntimeException("while reading spill file " + file, e);
+      }
+    }
+
+    public void reset() {
+      close();
+      i = 0;
+      current = null;
+    }
+
+    public void close() {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          // ignore
+        }
+        in = null;
+      }
+    }
+  }
+}
+
+// End SpillFile.java
@@ -0,0 +1,679 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+
+import java.io.NotSerializableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Implementations of blocking operators that spill to temporary files if
+ * their input does not fit in memory.
+ *
+ * <p>Each method has a {@code maxRowsInMemory} argument. If it is zero or
+ * negative, the method is equivalent to the corresponding method in
+ * {@link EnumerableDefaults}. Otherwise:
+ *
+ * <ul>
+ *   <li>{@link #orderBy} is an external merge sort; it writes sorted runs of
+ *   at most {@code maxRowsInMemory} rows, and merges them;</li>
+ *   <li>{@link #groupBy} is a hybrid hash aggregation; once it holds
+ *   {@code maxRowsInMemory} groups, it writes rows that belong to new groups
+ *   to hash partitions, and aggregates each partition afterwards;</li>
+ *   <li>{@link #join} is a grace hash join; if the inner (build) input has
+ *   more than {@code maxRowsInMemory} rows, it hash-partitions both inputs,
+ *   and joins each pair of partitions.</li>
+ * </ul>
+ *
+ * <p>Rows are written using Java serialization. If a row is not
+ * serializable, the operator stops trying to spill, and continues in memory.
+ *
+ * <p>Each operator reads its input when an enumerator is created, and deletes
+ * the files it has written when that enumerator is closed.
+ */
+public class SpillingEnumerables {
+  /** Number of partitions into which hash-based operators split their
+   * input when they spill. */
+  private static final int PARTITION_COUNT = 16;
+
+  /** Maximum depth of recursive partitioning. Beyond this depth, operators
+   * assume that the keys cannot be partitioned any further, and work in
+   * memory. */
+  private static final int MAX_LEVEL = 4;
+
+  private SpillingEnumerables() {}
+
+  /** Returns the number of temporary files that operators have written since
+   * the JVM started. Useful for testing whether an operator spilled. */
+  public static long spillFileCount() {
+    return SpillFile.createdCount();
+  }
+
+  /**
+   * Sorts the elements of a sequence in ascending order by using a specified
+   * comparer, spilling sorted runs to disk if there are more than
+   * {@code maxRowsInMemory} elements.
+   *
+   * <p>The sort is stable.
+   *
+   * @see EnumerableDefaults#orderBy(Enumerable, Function1, Comparator)
+   */
+  public static <TSource, TKey> Enumerable<TSource> orderBy(
+      final Enumerable<TSource> source,
+      final Function1<TSource, TKey> keySelector,
+      Comparator<TKey> comparator, final int maxRowsInMemory) {
+    if (maxRowsInMemory <= 0) {
+      return EnumerableDefaults.orderBy(source, keySelector, comparator);
+    }
+    //noinspection unchecked
+    final Comparator<Object> c = comparator == null
+        ? (Comparator) Extensions.comparableComparator()
+        : (Comparator) comparator;
+    return new AbstractEnumerable<TSource>() {
+      public Enumerator<TSource> enumerator() {
+        final List<SpillFile> runs = new ArrayList<>();
+        try {
+          return orderBy_(source, keySelector, c, maxRowsInMemory, runs);
+        } catch (RuntimeException | Error e) {
+          delete(runs);
+          throw e;
+        }
+      }
+    };
+  }
+
+  /** Sorts a sequence, writing sorted runs to {@code runs} if it does not
+   * fit in memory, and returns an enumerator over the sorted rows that
+   * deletes the runs when it is closed. */
+  private static <TSource, TKey> Enumerator<TSource> orderBy_(
+      Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
+      Comparator<Object> c, int maxRowsInMemory, List<SpillFile> runs) {
+    boolean spill = true;
+    int capacity = Math.min(maxRowsInMemory, 16);
+    Object[] values = new Object[capacity];
+    Object[] keys = new Object[capacity];
+    int size = 0;
+    try (Enumerator<TSource> os = source.enumerator()) {
+      while (os.moveNext()) {
+        if (size == values.length) {
+          if (spill && size >= maxRowsInMemory) {
+            EnumerableDefaults.sort(keys, values, size, c);
+            final SpillFile run = writeRun(values, size, runs.isEmpty());
+            if (run == null) {
+              spill = false;
+            } else {
+              runs.add(run);
+              Arrays.fill(values, null);
+              Arrays.fill(keys, null);
+              size = 0;
+            }
+          }
+          if (size == values.length) {
+            capacity = EnumerableDefaults.grow(size);
+            if (spill) {
+              capacity = Math.min(capacity, maxRowsInMemory);
+            }
+            values = Arrays.copyOf(values, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+          }
+        }
+        final TSource o = os.current();
+        values[size] = o;
+        keys[size] = keySelector.apply(o);
+        ++size;
+      }
+    }
+    EnumerableDefaults.sort(keys, values, size, c);
+    if (runs.isEmpty()) {
+      return EnumerableDefaults.<TSource>sortedEnumerable(values, size)
+          .enumerator();
+    }
+    if (size > 0) {
+      runs.add(writeRun(values, size, false));
+    }
+    return new MergeEnumerator<>(runs, keySelector, c);
+  }
+
+  /** Writes a sorted run to a spill file.
+   *
+   * <p>If a row is not serializable, deletes the file and returns null if
+   * this is the first run, otherwise throws. */
+  private static SpillFile writeRun(Object[] values, int size,
+      boolean first) {
+    final SpillFile run = new SpillFile();
+    try {
+      for (int i = 0; i < size; i++) {
+        run.write(values[i]);
+      }
+    } catch (NotSerializableException e) {
+      run.delete();
+      if (first) {
+        return null;
+      }
+      throw new RuntimeException("cannot spill row", e);
+    }
+    run.finish();
+    return run;
+  }
+
+  /**
+   * Groups the elements of a sequence according to a specified key selector
+   * function, initializing an accumulator for each group and adding to it
+   * each time an element with the same key is seen, and spilling to disk if
+   * there are more than {@code maxRowsInMemory} groups.
+   *
+   * <p>If {@code comparer} is not null, it is used to compare and hash keys.
+   *
+   * @see EnumerableDefaults#groupBy(Enumerable, Function1, Function0, Function2, Function2, EqualityComparer)
+   */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> groupBy(
+      Enumerable<TSource> enumerable, Function1<TSource, TKey> keySelector,
+      Function0<TAccumulate> accumulatorInitializer,
+      Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      Function2<TKey, TAccumulate, TResult> resultSelector,
+      EqualityComparer<TKey> comparer, int maxRowsInMemory) {
+    if (maxRowsInMemory <= 0) {
+      return comparer == null
+          ? EnumerableDefaults.groupBy(enumerable, keySelector,
+              accumulatorInitializer, accumulatorAdder, resultSelector)
+          : EnumerableDefaults.groupBy(enumerable, keySelector,
+              accumulatorInitializer, accumulatorAdder, resultSelector,
+              comparer);
+    }
+    return groupBy_(enumerable, keySelector, accumulatorInitializer,
+        accumulatorAdder, resultSelector, comparer, maxRowsInMemory, 0);
+  }
+
+  private static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> groupBy_(
+      Enumerable<TSource> enumerable,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final int maxRowsInMemory,
+      final int level) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        return groupByEnumerator(enumerable, keySelector,
+            accumulatorInitializer, accumulatorAdder, resultSelector, comparer,
+            maxRowsInMemory, level);
+      }
+    };
+  }
+
+  /** Aggregates a sequence, writing rows of groups that do not fit in memory
+   * to partitions, and returns an enumerator over the results that deletes
+   * the partitions when it is closed. */
+  private static <TSource, TKey, TAccumulate, TResult> Enumerator<TResult> groupByEnumerator(
+      Enumerable<TSource> enumerable,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final int maxRowsInMemory,
+      final int level) {
+    final Map<Object, TAccumulate> map = new HashMap<>();
+    SpillFile[] partitions = null;
+    boolean spill = level < MAX_LEVEL;
+    try (Enumerator<TSource> os = enumerable.enumerator()) {
+      while (os.moveNext()) {
+        final TSource o = os.current();
+        final TKey key = keySelector.apply(o);
+        final Object mapKey = wrap(key, comparer);
+        TAccumulate accumulator = map.get(mapKey);
+        if (accumulator == null) {
+          if (spill && partitions == null && map.size() >= maxRowsInMemory) {
+            partitions = createPartitions();
+          }
+          if (partitions != null) {
+            // Rows whose group is not in memory go to a partition.
+            try {
+              partitions[partition(hash(key, comparer), level)].write(o);
+              continue;
+            } catch (NotSerializableException e) {
+              if (!allEmpty(partitions)) {
+                throw new RuntimeException("cannot spill row", e);
+              }
+              delete(partitions);
+              partitions = null;
+              spill = false;
+            }
+          }
+          accumulator = accumulatorInitializer.apply();
+          accumulator = accumulatorAdder.apply(accumulator, o);
+          map.put(mapKey, accumulator);
+        } else {
+          TAccumulate accumulator0 = accumulator;
+          accumulator = accumulatorAdder.apply(accumulator, o);
+          if (accumulator != accumulator0) {
+            map.put(mapKey, accumulator);
+          }
+        }
+      }
+    } catch (RuntimeException | Error e) {
+      if (partitions != null) {
+        delete(partitions);
+      }
+      throw e;
+    }
+    final List<TResult> results = new ArrayList<>(map.size());
+    for (Map.Entry<Object, TAccumulate> entry : map.entrySet()) {
+      results.add(
+          resultSelector.apply(unwrap(entry.getKey(), comparer),
+              entry.getValue()));
+    }
+    if (partitions == null) {
+      return Linq4j.enumerator(results);
+    }
+    map.clear();
+    final List<Enumerable<TResult>> list = new ArrayList<>();
+    list.add(Linq4j.asEnumerable(results));
+    for (final SpillFile partition : partitions) {
+      partition.finish();
+      if (partition.count() == 0) {
+        continue;
+      }
+      list.add(
+          groupBy_(partition.<TSource>asEnumerable(), keySelector,
+              accumulatorInitializer, accumulatorAdder, resultSelector,
+              comparer, maxRowsInMemory, level + 1));
+    }
+    final SpillFile[] partitions0 = partitions;
+    return new DelegatingEnumerator<TResult>(concat(list).enumerator()) {
+      @Override public void close() {
+        super.close();
+        delete(partitions0);
+      }
+    };
+  }
+
+  /**
+   * Correlates the elements of two sequences based on matching keys,
+   * partitioning both inputs to disk if the inner input has more than
+   * {@code maxRowsInMemory} rows.
+   *
+   * <p>If {@code comparer} is not null, it is used to compare and hash keys.
+   *
+   * @see EnumerableDefaults#join(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean)
+   */
+  public static <TSource, TInner, TKey, TResult> Enumerable<TResult> join(
+      Enumerable<TSource> outer, Enumerable<TInner> inner,
+      Function1<TSource, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      Function2<TSource, TInner, TResult> resultSelector,
+      EqualityComparer<TKey> comparer, boolean generateNullsOnLeft,
+      boolean generateNullsOnRight, int maxRowsInMemory) {
+    if (maxRowsInMemory <= 0) {
+      return EnumerableDefaults.join(outer, inner, outerKeySelector,
+          innerKeySelector, resultSelector, comparer, generateNullsOnLeft,
+          generateNullsOnRight);
+    }
+    return join_(outer, inner, outerKeySelector, innerKeySelector,
+        resultSelector, comparer, generateNullsOnLeft, generateNullsOnRight,
+        maxRowsInMemory, 0);
+  }
+
+  private static <TSource, TInner, TKey, TResult> Enumerable<TResult> join_(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final Function1<TSource, TKey> outerKeySelector,
+      final Function1<TInner, TKey> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final boolean generateNullsOnLeft,
+      final boolean generateNullsOnRight, final int maxRowsInMemory,
+      final int level) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        // Read the inner input. If it fits in memory, do a regular hash join.
+        final List<TInner> buffer = new ArrayList<>();
+        SpillFile[] innerPartitions = null;
+        boolean spill = level < MAX_LEVEL;
+        int innerCount = 0;
+        try (Enumerator<TInner> is = inner.enumerator()) {
+          while (is.moveNext()) {
+            final TInner o = is.current();
+            ++innerCount;
+            if (innerPartitions != null) {
+              write(innerPartitions,
+                  hash(innerKeySelector.apply(o), comparer), level, o);
+              continue;
+            }
+            buffer.add(o);
+            if (spill && buffer.size() > maxRowsInMemory) {
+              innerPartitions =
+                  partition(buffer, innerKeySelector, comparer, level);
+              if (innerPartitions == null) {
+                spill = false;
+              } else {
+                buffer.clear();
+              }
+            }
+          }
+        }
+        if (innerPartitions == null) {
+          return EnumerableDefaults.join(outer, Linq4j.asEnumerable(buffer),
+              outerKeySelector, innerKeySelector, resultSelector, comparer,
+              generateNullsOnLeft, generateNullsOnRight).enumerator();
+        }
+
+        // Partition the outer input in the same way. Rows whose key is null
+        // never match, but are needed if generateNullsOnRight.
+        final SpillFile[] outerPartitions = createPartitions();
+        try (Enumerator<TSource> os = outer.enumerator()) {
+          while (os.moveNext()) {
+            final TSource o = os.current();
+            final TKey key = o == null ? null : outerKeySelector.apply(o);
+            write(outerPartitions, hash(key, comparer), level, o);
+          }
+        }
+
+        // Join each pair of partitions. Pairs are independent, because
+        // matching keys have the same hash code.
+        final List<Enumerable<TResult>> list = new ArrayList<>();
+        for (int i = 0; i < PARTITION_COUNT; i++) {
+          innerPartitions[i].finish();
+          outerPartitions[i].finish();
+          if ((outerPartitions[i].count() == 0 && !generateNullsOnLeft)
+              || (innerPartitions[i].count() == 0 && !generateNullsOnRight)) {
+            continue;
+          }
+          // If every row went to the same partition (say because every key
+          // is the same), partitioning it again will not help.
+          final int nextLevel = innerPartitions[i].count() == innerCount
+              ? MAX_LEVEL
+              : level + 1;
+          list.add(
+              join_(outerPartitions[i].<TSource>asEnumerable(),
+                  innerPartitions[i].<TInner>asEnumerable(), outerKeySelector,
+                  innerKeySelector, resultSelector, comparer,
+                  generateNullsOnLeft, generateNullsOnRight, maxRowsInMemory,
+                  nextLevel));
+        }
+        final SpillFile[] innerPartitions0 = innerPartitions;
+        return new DelegatingEnumerator<TResult>(
+            SpillingEnumerables.concat(list).enumerator()) {
+          @Override public void close() {
+            super.close();
+            delete(innerPartitions0);
+            delete(outerPartitions);
+          }
+        };
+      }
+    };
+  }
+
+  /** Writes a list of rows to new partitions. Returns null, having deleted
+   * the partitions, if a row is not serializable. */
+  private static <T, TKey> SpillFile[] partition(List<T> rows,
+      Function1<T, TKey> keySelector, EqualityComparer<TKey> comparer,
+      int level) {
+    final SpillFile[] partitions = createPartitions();
+    try {
+      for (T row : rows) {
+        partitions[partition(hash(keySelector.apply(row), comparer), level)]
+            .write(row);
+      }
+    } catch (NotSerializableException e) {
+      delete(partitions);
+      return null;
+    }
+    return partitions;
+  }
+
+  private static void write(SpillFile[] partitions, int hash, int level,
+      Object row) {
+    try {
+      partitions[partition(hash, level)].write(row);
+    } catch (NotSerializableException e) {
+      throw new RuntimeException("cannot spill row", e);
+    }
+  }
+
+  private static SpillFile[] createPartitions() {
+    final SpillFile[] partitions = new SpillFile[PARTITION_COUNT];
+    for (int i = 0; i < partitions.length; i++) {
+      partitions[i] = new SpillFile();
+    }
+    return partitions;
+  }
+
+  private static boolean allEmpty(SpillFile[] partitions) {
+    for (SpillFile partition : partitions) {
+      if (partition.count() > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void delete(SpillFile[] partitions) {
+    for (SpillFile partition : partitions) {
+      partition.delete();
+    }
+  }
+
+  private static void delete(List<SpillFile> runs) {
+    for (SpillFile run : runs) {
+      run.delete();
+    }
+  }
+
+  private static <TKey> int hash(TKey key, EqualityComparer<TKey> comparer) {
+    if (key == null) {
+      return 0;
+    }
+    return comparer == null ? key.hashCode() : comparer.hashCode(key);
+  }
+
+  /** Returns the partition for a hash code. Each level of recursion mixes
+   * the hash code differently, so that a partition that is too large can be
+   * split further. */
+  private static int partition(int hash, int level) {
+    int h = hash ^ (level * 0x9E3779B9);
+    h *= 0x85EBCA6B;
+    h ^= h >>> 16;
+    return (h & Integer.MAX_VALUE) % PARTITION_COUNT;
+  }
+
+  /** Wraps a key so that it uses a comparer's notion of equality. */
+  private static <TKey> Object wrap(TKey key,
+      EqualityComparer<TKey> comparer) {
+    return comparer == null ? key : new ComparerKey<>(key, comparer);
+  }
+
+  private static <TKey> TKey unwrap(Object key,
+      EqualityComparer<TKey> comparer) {
+    //noinspection unchecked
+    return comparer == null ? (TKey) key : ((ComparerKey<TKey>) key).key;
+  }
+
+  /** Returns an enumerable that returns the elements of each enumerable in
+   * turn. Unlike {@link Linq4j#concat(List)}, it can be enumerated more than
+   * once. */
+  private static <E> Enumerable<E> concat(
+      final List<Enumerable<E>> enumerables) {
+    return new AbstractEnumerable<E>() {
+      public Enumerator<E> enumerator() {
+        return new Enumerator<E>() {
+          int i = -1;
+          Enumerator<E> current = Linq4j.emptyEnumerator();
+
+          public E current() {
+            return current.current();
+          }
+
+          public boolean moveNext() {
+            for (;;) {
+              if (current.moveNext()) {
+                return true;
+              }
+              current.close();
+              if (++i >= enumerables.size()) {
+                current = Linq4j.emptyEnumerator();
+                return false;
+              }
+              current = enumerables.get(i).enumerator();
+            }
+          }
+
+          public void reset() {
+            close();
+            i = -1;
+          }
+
+          public void close() {
+            current.close();
+            current = Linq4j.emptyEnumerator();
+          }
+        };
+      }
+    };
+  }
+
+  /** Key that uses an {@link EqualityComparer}.
+   *
+   * @param <TKey> key type */
+  private static class ComparerKey<TKey> {
+    final TKey key;
+    final EqualityComparer<TKey> comparer;
+
+    ComparerKey(TKey key, EqualityComparer<TKey> comparer) {
+      this.key = key;
+      this.comparer = comparer;
+    }
+
+    @Override public int hashCode() {
+      return key == null ? 0 : comparer.hashCode(key);
+    }
+
+    @Override public boolean equals(Object obj) {
+      //noinspection unchecked
+      return obj == this
+          || obj instanceof ComparerKey
+          && comparer.equal(key, ((ComparerKey<TKey>) obj).key);
+    }
+  }
+
+  /** Enumerator that merges sorted runs, and deletes them when it is
+   * closed.
+   *
+   * <p>Rows with equal keys are returned in the order of their runs, which
+   * is the order in which they were read, so the merge is stable.
+   *
+   * @param <TSource> element type
+   * @param <TKey> key type */
+  private static class MergeEnumerator<TSource, TKey>
+      implements Enumerator<TSource> {
+    private final List<SpillFile> runs;
+    private final Function1<TSource, TKey> keySelector;
+    private final PriorityQueue<Cursor<TSource>> queue;
+    private final List<Enumerator<TSource>> enumerators = new ArrayList<>();
+    private Cursor<TSource> current;
+    private boolean started;
+
+    MergeEnumerator(List<SpillFile> runs,
+        Function1<TSource, TKey> keySelector,
+        final Comparator<Object> comparator) {
+      this.runs = runs;
+      this.keySelector = keySelector;
+      this.queue = new PriorityQueue<>(runs.size(),
+          new Comparator<Cursor<TSource>>() {
+            public int compare(Cursor<TSource> o1, Cursor<TSource> o2) {
+              final int c = comparator.compare(o1.key, o2.key);
+              return c != 0 ? c : Integer.compare(o1.ordinal, o2.ordinal);
+            }
+          });
+    }
+
+    public TSource current() {
+      return current.value;
+    }
+
+    public boolean moveNext() {
+      if (!started) {
+        started = true;
+        for (int i = 0; i < runs.size(); i++) {
+          final Enumerator<TSource> enumerator =
+              runs.get(i).<TSource>asEnumerable().enumerator();
+          enumerators.add(enumerator);
+          final Cursor<TSource> cursor = new Cursor<>(i, enumerator);
+          if (cursor.advance(keySelector)) {
+            queue.add(cursor);
+          }
+        }
+      } else if (current != null && current.advance(keySelector)) {
+        queue.add(current);
+      }
+      current = queue.poll();
+      return current != null;
+    }
+
+    public void reset() {
+      closeRuns();
+      started = false;
+    }
+
+    public void close() {
+      closeRuns();
+      delete(runs);
+    }
+
+    private void closeRuns() {
+      for (Enumerator<TSource> enumerator : enumerators) {
+        enumerator.close();
+      }
+      enumerators.clear();
+      queue.clear();
+      current = null;
+    }
+  }
+
+  /** Position in a sorted run.
+   *
+   * @param <TSource> element type */
+  private static class Cursor<TSource> {
+    final int ordinal;
+    final Enumerator<TSource> enumerator;
+    Object key;
+    TSource value;
+
+    Cursor(int ordinal, Enumerator<TSource> enumerator) {
+      this.ordinal = ordinal;
+      this.enumerator = enumerator;
+    }
+
+    <TKey> boolean advance(Function1<TSource, TKey> keySelector) {
+      if (!enumerator.moveNext()) {
+        return false;
+      }
+      value = enumerator.current();
+      key = keySelector.apply(value);
+      return true;
+    }
+  }
+}
+
+// End SpillingEnumerables.java
@@ -17,21 +17,26 @@
 package org.apache.calcite.linq4j.test;
 
 import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.DelegatingEnumerator;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.EnumerableDefaults;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.ExtendedEnumerable;
 import org.apache.calcite.linq4j.Grouping;
+import org.apache.calcite.linq4j.HashAggregator;
 import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.linq4j.Lookup;
+import org.apache.calcite.linq4j.ParallelEnumerables;
 import org.apache.calcite.linq4j.Queryable;
 import org.apache.calcite.linq4j.QueryableDefaults;
+import org.apache.calcite.linq4j.SpillingEnumerables;
 import org.apache.calcite.linq4j.function.EqualityComparer;
 import org.apache.calcite.linq4j.function.Function0;
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.function.Functions;
 import org.apache.calcite.linq4j.function.IntegerFunction1;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.function.Predicate1;
 import org.apache.calcite.linq4j.function.Predicate2;
 import org.apache.calcite.linq4j.tree.ConstantExpression;
@@ -50,13 +55,18 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.CoreMatchers.endsWith;
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -440,6 +450,543 @@ public String apply(Integer v1, Enumerable<String> v2) {
             .toList().toString());
   }
 
+  /** Tests that {@link EnumerableDefaults#orderBy} is stable: elements with
+   * equal keys are returned in the order they were read. */
+  @Test public void testOrderByStable() {
+    assertEquals(
+        "[Fred, Eric, Janet, Bill]",
+        Linq4j.asEnumerable(emps)
+            .orderBy(EMP_DEPTNO_SELECTOR)
+            .select(EMP_NAME_SELECTOR)
+            .toList()
+            .toString());
+    assertEquals(
+        "[Bill, Fred, Eric, Janet]",
+        Linq4j.asEnumerable(emps)
+            .orderByDescending(EMP_DEPTNO_SELECTOR)
+            .select(EMP_NAME_SELECTOR)
+            .toList()
+            .toString());
+
+    // Enough elements to use merge sort rather than insertion sort.
+    final List<Integer> list = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      list.add((i * 7919) % 1000);
+    }
+    final List<Integer> sorted = new ArrayList<>(list);
+    Collections.sort(sorted);
+    assertEquals(sorted,
+        Linq4j.asEnumerable(list)
+            .orderBy(
+                new Function1<Integer, Integer>() {
+                  public Integer apply(Integer a0) {
+                    return a0;
+                  }
+                })
+            .toList());
+  }
+
+  /** Tests the top-N version of {@link EnumerableDefaults#orderBy}, which
+   * retains only {@code offset + fetch} elements in a bounded heap. */
+  @Test public void testOrderByOffsetFetch() {
+    final Function1<Integer, Integer> identity = Functions.identitySelector();
+    final List<Integer> list = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      list.add((i * 7919) % 1000);
+    }
+
+    // Larger elements are evicted from the heap as smaller ones arrive
+    assertEquals("[0, 1, 2, 3, 4]",
+        EnumerableDefaults.orderBy(Linq4j.asEnumerable(list), identity,
+            null, 0, 5).toList().toString());
+    assertEquals("[999, 998, 997]",
+        EnumerableDefaults.orderBy(Linq4j.asEnumerable(list), identity,
+            Collections.<Integer>reverseOrder(), 0, 3).toList().toString());
+
+    // Same result as a full sort followed by skip and take
+    for (int[] offsetFetch
+        : new int[][] {{0, 1}, {10, 20}, {990, 5}, {995, 10}, {0, 2000}}) {
+      final int offset = offsetFetch[0];
+      final int fetch = offsetFetch[1];
+      assertEquals(
+          Linq4j.asEnumerable(list).orderBy(identity).skip(offset)
+              .take(fetch).toList(),
+          EnumerableDefaults.orderBy(Linq4j.asEnumerable(list), identity,
+              null, offset, fetch).toList());
+    }
+  }
+
+  /** Tests that the top-N version of {@link EnumerableDefaults#orderBy} is
+   * stable: among elements with equal keys, those read first are kept and
+   * returned first. */
+  @Test public void testOrderByOffsetFetchStable() {
+    final Enumerable<Employee> source = Linq4j.asEnumerable(emps);
+    assertEquals("[Fred, Eric]",
+        EnumerableDefaults.orderBy(source, EMP_DEPTNO_SELECTOR, null, 0, 2)
+            .select(EMP_NAME_SELECTOR).toList().toString());
+    assertEquals("[Eric, Janet]",
+        EnumerableDefaults.orderBy(source, EMP_DEPTNO_SELECTOR, null, 1, 2)
+            .select(EMP_NAME_SELECTOR).toList().toString());
+    assertEquals("[Fred, Eric, Janet]",
+        EnumerableDefaults.orderBy(source, EMP_DEPTNO_SELECTOR, null, 0, 3)
+            .select(EMP_NAME_SELECTOR).toList().toString());
+  }
+
+  /** Tests the top-N version of {@link EnumerableDefaults#orderBy} when the
+   * offset is not less than the number of elements, or fetch is zero. */
+  @Test public void testOrderByOffsetFetchEmpty() {
+    final Enumerable<Employee> source = Linq4j.asEnumerable(emps);
+    assertEquals("[Bill]",
+        EnumerableDefaults.orderBy(source, EMP_DEPTNO_SELECTOR, null, 3, 5)
+            .select(EMP_NAME_SELECTOR).toList().toString());
+    assertEquals(0,
+        EnumerableDefaults.orderBy(source, EMP_DEPTNO_SELECTOR, null, 4, 2)
+            .count());
+    assertEquals(0,
+        EnumerableDefaults.orderBy(source, EMP_DEPTNO_SELECTOR, null, 10, 2)
+            .count());
+    assertEquals(0,
+        EnumerableDefaults.orderBy(source, EMP_DEPTNO_SELECTOR, null, 0, 0)
+            .count());
+  }
+
+  /** Tests that {@link SpillingEnumerables} gives the same results as the
+   * in-memory implementations when the number of rows exceeds the threshold. */
+  @Test public void testSpilling() {
+    final List<Integer> list = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      list.add((i * 7919) % 1000);
+    }
+    final Function1<Integer, Integer> identity = Functions.identitySelector();
+    final Function1<Integer, Integer> mod10 =
+        new Function1<Integer, Integer>() {
+          public Integer apply(Integer a0) {
+            return a0 % 10;
+          }
+        };
+
+    // Sort in runs of 100 rows, then merge the runs.
+    final Enumerable<Integer> sorted =
+        SpillingEnumerables.orderBy(Linq4j.asEnumerable(list), mod10,
+            Functions.<Integer>nullsComparator(false, true), 100);
+    final long spillCount0 = SpillingEnumerables.spillFileCount();
+    assertEquals(
+        Linq4j.asEnumerable(list)
+            .orderByDescending(mod10)
+            .toList(),
+        sorted.toList());
+    assertTrue(SpillingEnumerables.spillFileCount() >= spillCount0 + 10);
+    // The result can be enumerated more than once
+    assertEquals(1000, sorted.count());
+
+    // Aggregate 1000 groups, at most 100 held in memory at a time
+    final Enumerable<String> grouped =
+        SpillingEnumerables.groupBy(Linq4j.asEnumerable(list), identity,
+            new Function0<Integer>() {
+              public Integer apply() {
+                return 0;
+              }
+            },
+            new Function2<Integer, Integer, Integer>() {
+              public Integer apply(Integer v0, Integer v1) {
+                return v0 + 1;
+              }
+            },
+            new Function2<Integer, Integer, String>() {
+              public String apply(Integer v0, Integer v1) {
+                return v0 + ":" + v1;
+              }
+            },
+            null, 100);
+    final long spillCount1 = SpillingEnumerables.spillFileCount();
+    final TreeSet<String> groups = new TreeSet<>(grouped.toList());
+    assertTrue(SpillingEnumerables.spillFileCount() > spillCount1);
+    assertEquals(1000, groups.size());
+    assertThat(groups.first(), equalTo("0:1"));
+
+    // Join on a key with 10 distinct values, so that partitions cannot be
+    // split further. Each of the 1000 outer rows matches 100 inner rows.
+    final Function2<Integer, Integer, String> concat =
+        new Function2<Integer, Integer, String>() {
+          public String apply(Integer v0, Integer v1) {
+            return v0 + "-" + v1;
+          }
+        };
+    final Enumerable<String> joined =
+        SpillingEnumerables.join(Linq4j.asEnumerable(list),
+            Linq4j.asEnumerable(list), mod10, mod10, concat, null, false,
+            false, 50);
+    final List<String> expected =
+        EnumerableDefaults.join(Linq4j.asEnumerable(list),
+            Linq4j.asEnumerable(list), mod10, mod10, concat, null, false,
+            false).toList();
+    assertEquals(100000, expected.size());
+    assertEquals(new TreeSet<>(expected), new TreeSet<>(joined.toList()));
+    assertEquals(expected.size(), joined.count());
+
+    // Rows that cannot be serialized are held in memory
+    final Enumerable<Object> objects =
+        SpillingEnumerables.orderBy(
+            Linq4j.asEnumerable(list).select(
+                new Function1<Integer, Object>() {
+                  public Object apply(Integer a0) {
+                    return new Object();
+                  }
+                }),
+            Functions.<Object, Integer>constant(1), null, 10);
+    assertEquals(1000, objects.count());
+  }
+
+  /** Tests {@link ParallelEnumerables#gather}: results are in the same order
+   * as serial execution, and an exception in a task reaches the consumer. */
+  @Test public void testGather() {
+    final List<Integer> list = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      list.add(i);
+    }
+    final Function1<Enumerable<Integer>, Enumerable<Integer>> pipeline =
+        new Function1<Enumerable<Integer>, Enumerable<Integer>>() {
+          public Enumerable<Integer> apply(Enumerable<Integer> morsel) {
+            return morsel
+                .where(
+                    new Predicate1<Integer>() {
+                      public boolean apply(Integer v) {
+                        return v % 3 != 0;
+                      }
+                    })
+                .select(
+                    new Function1<Integer, Integer>() {
+                      public Integer apply(Integer v) {
+                        return v * 2;
+                      }
+                    });
+          }
+        };
+    final List<Integer> expected =
+        pipeline.apply(Linq4j.asEnumerable(list)).toList();
+    for (int morselSize : new int[] {1, 7, 1000, 5000}) {
+      final Enumerable<Integer> gather =
+          ParallelEnumerables.gather(Linq4j.asEnumerable(list), pipeline, 4,
+              morselSize);
+      assertEquals(expected, gather.toList());
+      assertEquals(expected.size(), gather.count());
+    }
+
+    final Function1<Enumerable<Integer>, Enumerable<Integer>> failing =
+        new Function1<Enumerable<Integer>, Enumerable<Integer>>() {
+          public Enumerable<Integer> apply(Enumerable<Integer> morsel) {
+            if (morsel.contains(500)) {
+              throw new IllegalStateException("bad morsel");
+            }
+            return morsel;
+          }
+        };
+    try {
+      final List<Integer> result =
+          ParallelEnumerables.gather(Linq4j.asEnumerable(list), failing, 4, 10)
+              .toList();
+      fail("expected error, got " + result.size() + " rows");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage(), equalTo("bad morsel"));
+    }
+  }
+
+  /** Tests {@link ParallelEnumerables#exchange} and
+   * {@link ParallelEnumerables#sortExchange} with each kind of partitioner,
+   * and that an exception thrown while reading the source reaches the
+   * consumer. */
+  @Test public void testExchange() {
+    final List<Integer> list = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      list.add((i * 7919) % 1000);
+    }
+    final List<Integer> sorted = new ArrayList<>(list);
+    Collections.sort(sorted);
+    final Function1<Integer, Integer> identity = Functions.identitySelector();
+    final List<ParallelEnumerables.Partitioner<Integer>> partitioners =
+        ImmutableList.of(
+            ParallelEnumerables.hashPartitioner(identity, 4),
+            ParallelEnumerables.rangePartitioner(identity, null, 4),
+            ParallelEnumerables.<Integer>roundRobinPartitioner(4));
+    for (ParallelEnumerables.Partitioner<Integer> partitioner : partitioners) {
+      final List<Integer> result =
+          ParallelEnumerables.exchange(Linq4j.asEnumerable(list), partitioner,
+              10).toList();
+      Collections.sort(result);
+      assertEquals(sorted, result);
+      assertEquals(sorted,
+          ParallelEnumerables.sortExchange(Linq4j.asEnumerable(list),
+              partitioner, 10, identity, null, false).toList());
+    }
+    assertEquals(sorted,
+        ParallelEnumerables.sortExchange(Linq4j.asEnumerable(list),
+            ParallelEnumerables.rangePartitioner(identity, null, 4), 10,
+            identity, null, true).toList());
+
+    // Close the exchange before the producer has finished
+    final Enumerator<Integer> enumerator =
+        ParallelEnumerables.exchange(Linq4j.asEnumerable(list),
+            ParallelEnumerables.hashPartitioner(identity, 4), 1).enumerator();
+    assertTrue(enumerator.moveNext());
+    enumerator.close();
+
+    final Enumerable<Integer> failing = Linq4j.asEnumerable(list)
+        .select(
+            new Function1<Integer, Integer>() {
+              public Integer apply(Integer v) {
+                if (v == 500) {
+                  throw new IllegalStateException("bad row");
+                }
+                return v;
+              }
+            });
+    try {
+      final List<Integer> result =
+          ParallelEnumerables.exchange(failing,
+              ParallelEnumerables.hashPartitioner(identity, 4), 10).toList();
+      fail("expected error, got " + result.size() + " rows");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage(), equalTo("bad row"));
+    }
+    try {
+      final List<Integer> result =
+          ParallelEnumerables.sortExchange(failing,
+              ParallelEnumerables.<Integer>roundRobinPartitioner(4), 10,
+              identity, null, true).toList();
+      fail("expected error, got " + result.size() + " rows");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage(), equalTo("bad row"));
+    }
+  }
+
+  /** Tests that {@link ParallelEnumerables#exchange} applies its pipeline to
+   * each partition on a different worker thread, and that the partitions are
+   * processed at the same time. */
+  @Test public void testExchangePipeline() {
+    final List<Integer> list = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      list.add(i);
+    }
+    final Set<Thread> threads =
+        Collections.synchronizedSet(new HashSet<Thread>());
+    final CountDownLatch latch = new CountDownLatch(4);
+    final Function1<Enumerable<Integer>, Enumerable<List<Integer>>> pipeline =
+        new Function1<Enumerable<Integer>, Enumerable<List<Integer>>>() {
+          public Enumerable<List<Integer>> apply(Enumerable<Integer> rows) {
+            threads.add(Thread.currentThread());
+            // Each pipeline waits until all 4 have started. If they ran
+            // one after another, the first would time out.
+            latch.countDown();
+            try {
+              if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("not parallel");
+              }
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+            return Linq4j.singletonEnumerable(rows.toList());
+          }
+        };
+    final List<List<Integer>> partitions =
+        ParallelEnumerables.exchange(Linq4j.asEnumerable(list),
+            ParallelEnumerables.<Integer>roundRobinPartitioner(4), 10,
+            pipeline).toList();
+    assertThat(partitions.size(), is(4));
+    assertThat(threads.size(), is(4));
+    assertFalse(threads.contains(Thread.currentThread()));
+    final List<Integer> all = new ArrayList<>();
+    for (List<Integer> partition : partitions) {
+      assertThat(partition.size(), is(250));
+      all.addAll(partition);
+    }
+    Collections.sort(all);
+    assertEquals(list, all);
+
+    // An exception in a pipeline reaches the consumer
+    final Function1<Enumerable<Integer>, Enumerable<Integer>> failing =
+        new Function1<Enumerable<Integer>, Enumerable<Integer>>() {
+          public Enumerable<Integer> apply(Enumerable<Integer> rows) {
+            if (rows.contains(500)) {
+              throw new IllegalStateException("bad partition");
+            }
+            return Linq4j.emptyEnumerable();
+          }
+        };
+    try {
+      final List<Integer> result =
+          ParallelEnumerables.exchange(Linq4j.asEnumerable(list),
+              ParallelEnumerables.<Integer>roundRobinPartitioner(4), 10,
+              failing).toList();
+      fail("expected error, got " + result.size() + " rows");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage(), equalTo("bad partition"));
+    }
+  }
+
+  /** Tests {@link ParallelEnumerables#prefetch}: rows, including nulls, come
+   * back in order, the source is closed if the consumer stops early, and an
+   * exception thrown while reading the source reaches the consumer. */
+  @Test public void testPrefetch() {
+    final List<Integer> list = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      list.add(i % 10 == 0 ? null : i);
+    }
+    assertEquals(list,
+        ParallelEnumerables.prefetch(Linq4j.asEnumerable(list), 7).toList());
+
+    final AtomicBoolean closed = new AtomicBoolean();
+    final Enumerable<Integer> source =
+        new AbstractEnumerable<Integer>() {
+          public Enumerator<Integer> enumerator() {
+            return new DelegatingEnumerator<Integer>(
+                Linq4j.enumerator(list)) {
+              @Override public void close() {
+                closed.set(true);
+                super.close();
+              }
+            };
+          }
+        };
+    final Enumerator<Integer> enumerator =
+        ParallelEnumerables.prefetch(source, 1).enumerator();
+    assertTrue(enumerator.moveNext());
+    assertNull(enumerator.current());
+    enumerator.close();
+    final long deadline = System.currentTimeMillis() + 10000;
+    while (!closed.get() && System.currentTimeMillis() < deadline) {
+      Thread.yield();
+    }
+    assertTrue(closed.get());
+
+    final Enumerable<Integer> failing = Linq4j.asEnumerable(list)
+        .select(
+            new Function1<Integer, Integer>() {
+              public Integer apply(Integer v) {
+                if (v != null && v == 501) {
+                  throw new IllegalStateException("bad row");
+                }
+                return v;
+              }
+            });
+    try {
+      final List<Integer> result =
+          ParallelEnumerables.prefetch(failing, 10).toList();
+      fail("expected error, got " + result.size() + " rows");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage(), equalTo("bad row"));
+    }
+  }
+
+  /** Tests {@link HashAggregator}, with enough keys that its arrays and hash
+   * table grow several times, and a null key. */
+  @Test public void testHashAggregator() {
+    final List<Integer> list = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      list.add(i % 7 == 0 ? null : (i * 31) % 1000);
+    }
+    final List<Object[]> rows =
+        new HashAggregator<Integer, Integer, Object[]>() {
+          long[] counts = new long[0];
+          int[] maxes = new int[0];
+
+          protected void grow(int capacity) {
+            counts = Arrays.copyOf(counts, capacity);
+            maxes = Arrays.copyOf(maxes, capacity);
+          }
+
+          protected void reset(int slot) {
+            maxes[slot] = Integer.MIN_VALUE;
+          }
+
+          protected void add(int slot, Integer row) {
+            counts[slot]++;
+            maxes[slot] = Math.max(maxes[slot], row == null ? -1 : row);
+          }
+
+          protected Object[] result(Integer key, int slot) {
+            return new Object[] {key, counts[slot], maxes[slot]};
+          }
+        }.aggregate(Linq4j.asEnumerable(list),
+            Functions.<Integer>identitySelector()).toList();
+    assertEquals(1001, rows.size());
+
+    // Keys are returned in the order that they are first seen
+    assertEquals("[null, 1429, -1]", Arrays.toString(rows.get(0)));
+    assertEquals("[31, 8, 31]", Arrays.toString(rows.get(1)));
+    long total = 0;
+    final Map<Object, Long> counts = new HashMap<>();
+    for (Object[] row : rows) {
+      assertNull(counts.put(row[0], (Long) row[1]));
+      total += (Long) row[1];
+    }
+    assertEquals(10000L, total);
+    assertEquals(1429L, (long) counts.get(null));
+  }
+
+  /** Tests {@link EnumerableDefaults#longKeyJoin}, and that it gives the same
+   * results as {@link EnumerableDefaults#join} for each type of join. */
+  @Test public void testLongKeyJoin() {
+    final List<Integer> outer = new ArrayList<>();
+    final List<Integer> inner = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      outer.add(i % 30);
+      inner.add((i * 7) % 50 + 20);
+    }
+    final Function1<Integer, Integer> key = Functions.identitySelector();
+    final LongFunction1<Integer> longKey =
+        new LongFunction1<Integer>() {
+          public long apply(Integer a0) {
+            return a0;
+          }
+        };
+    final Function2<Integer, Integer, String> concat =
+        new Function2<Integer, Integer, String>() {
+          public String apply(Integer v0, Integer v1) {
+            return v0 + "-" + v1;
+          }
+        };
+    for (boolean nullsOnLeft : new boolean[] {false, true}) {
+      for (boolean nullsOnRight : new boolean[] {false, true}) {
+        final List<String> expected =
+            EnumerableDefaults.join(Linq4j.asEnumerable(outer),
+                Linq4j.asEnumerable(inner), key, key, concat, null,
+                nullsOnLeft, nullsOnRight).toList();
+        final Enumerable<String> actual =
+            EnumerableDefaults.longKeyJoin(Linq4j.asEnumerable(outer),
+                Linq4j.asEnumerable(inner), longKey, longKey, concat,
+                nullsOnLeft, nullsOnRight);
+        // Same rows, in the same order, except that unmatched inner rows may
+        // be in a different order
+        assertEquals(new TreeSet<>(expected).toString(),
+            new TreeSet<>(actual.toList()).toString());
+        assertEquals(expected.size(), actual.count());
+        if (!nullsOnLeft) {
+          assertEquals(expected, actual.toList());
+        }
+      }
+    }
+    assertEquals("[1-1, 1-1, 2-null]",
+        EnumerableDefaults.longKeyJoin(Linq4j.asEnumerable(Arrays.asList(1, 2)),
+            Linq4j.asEnumerable(Arrays.asList(1, 3, 1)), longKey, longKey,
+            concat, false, true).toList().toString());
+  }
+
+  /** Tests {@link EnumerableDefaults#longHashCapacity}, in particular that
+   * it does not overflow for large inputs. */
+  @Test public void testLongHashCapacity() {
+    assertEquals(4, EnumerableDefaults.longHashCapacity(0));
+    assertEquals(4, EnumerableDefaults.longHashCapacity(1));
+    assertEquals(8, EnumerableDefaults.longHashCapacity(2));
+    assertEquals(8, EnumerableDefaults.longHashCapacity(3));
+    assertEquals(1 << 29, EnumerableDefaults.longHashCapacity((1 << 28) - 1));
+    assertEquals(1 << 30, EnumerableDefaults.longHashCapacity(1 << 28));
+    assertEquals(1 << 30, EnumerableDefaults.longHashCapacity((1 << 29) - 1));
+    assertEquals(1 << 30, EnumerableDefaults.longHashCapacity(1 << 29));
+    assertEquals(1 << 30, EnumerableDefaults.longHashCapacity(1 << 30));
+    assertEquals(1 << 30,
+        EnumerableDefaults.longHashCapacity(Integer.MAX_VALUE));
+  }
+
   @Test public void testContains() {
     Employee e = emps[1];
     Employee employeeClone = new Employee(e.empno, e.name, e.deptno);
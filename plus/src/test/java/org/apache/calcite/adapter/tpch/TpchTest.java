@@ -68,7 +68,7 @@ private static String schema(String name, String scaleFactor) {
       + "   ]\n"
       + "}";
 
-  static final List<String> QUERIES = ImmutableList.of(
+  public static final List<String> QUERIES = ImmutableList.of(
       // 01
       "select\n"
           + "  l_returnflag,\n"
@@ -0,0 +1,411 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.adapter.clone.CloneSchema;
+import org.apache.calcite.adapter.enumerable.EnumerableRules;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeImpl;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.sql.type.SqlTypeName;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the execution of queries by enumerable operators: filter and
+ * project, hash join, merge join, aggregate, windowed aggregate, sort, and
+ * sort with limit.
+ *
+ * <p>Data is generated in memory at a scale given by the {@code rowCount}
+ * parameter, the number of rows in the {@code sales} table (there are
+ * {@code rowCount / 100} products), and read either directly from Java
+ * objects via {@link ReflectiveSchema} ({@code schema=reflective}) or from
+ * {@link org.apache.calcite.adapter.clone.ArrayTable}s built by
+ * {@link CloneSchema#createCloneTable} ({@code schema=array}).
+ *
+ * <p>The planner only uses a merge join if both inputs are already sorted on
+ * the join key, and only the array tables declare their sort order, so the
+ * merge join query is a separate benchmark, {@link #mergeJoin}, that always
+ * uses {@code schema=array}; the other queries are run by {@link #execute}.
+ *
+ * <p>Each query is prepared once, during setup, which also checks that the
+ * plan uses the operator being measured; each invocation executes the query
+ * and reads every row. The score is operations (executions) per second;
+ * {@link #main} also reports sales rows per second and bytes allocated per
+ * sales row, the latter from the GC profiler.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx2g")
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Threads(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EnumerableOperatorBenchmark {
+
+  /** Connection to a schema of generated data, and a query prepared on
+   * it. */
+  public abstract static class QueryState {
+    @Param({ "10000", "1000000" })
+    int rowCount;
+
+    Connection connection;
+    PreparedStatement statement;
+
+    void setup(String schema, Query q) throws SQLException {
+      final Properties info = new Properties();
+      info.setProperty("lex", "JAVA");
+      connection = DriverManager.getConnection("jdbc:calcite:", info);
+      final CalciteConnection calciteConnection =
+          connection.unwrap(CalciteConnection.class);
+      final SchemaPlus rootSchema = calciteConnection.getRootSchema();
+      final SalesSchema salesSchema = new SalesSchema(rowCount);
+      rootSchema.add("reflective", new ReflectiveSchema(salesSchema));
+      salesSchema.addArrayTables(calciteConnection.getTypeFactory(),
+          rootSchema.add("array", new AbstractSchema()));
+      connection.setSchema(schema);
+
+      // To get the kind of join we want, take away the rule for the other
+      // kind.
+      final RelOptRule excludedRule = q.excludedRule;
+      final Hook.Closeable hook = excludedRule == null
+          ? Hook.Closeable.EMPTY
+          : Hook.PLANNER.add(
+              new Function<RelOptPlanner, Void>() {
+                public Void apply(RelOptPlanner planner) {
+                  planner.removeRule(excludedRule);
+                  return null;
+                }
+              });
+      try {
+        final String plan = explain(q.sql);
+        if (!plan.contains(q.operator)) {
+          throw new IllegalStateException("expected " + q.operator
+              + " in plan:\n" + plan);
+        }
+        statement = connection.prepareStatement(q.sql);
+      } finally {
+        hook.close();
+      }
+    }
+
+    private String explain(String sql) throws SQLException {
+      final Statement s = connection.createStatement();
+      try {
+        final ResultSet resultSet = s.executeQuery("explain plan for " + sql);
+        resultSet.next();
+        return resultSet.getString(1);
+      } finally {
+        s.close();
+      }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+      connection.close();
+    }
+  }
+
+  /** State for the queries that run on both schemas. */
+  @State(Scope.Thread)
+  public static class OperatorState extends QueryState {
+    @Param({ "reflective", "array" })
+    String schema;
+
+    @Param({ "filterProject", "hashJoin", "aggregate", "window", "sort",
+        "limit" })
+    String query;
+
+    @Setup
+    public void setup() throws SQLException {
+      setup(schema, Query.valueOf(query));
+    }
+  }
+
+  /** State for the merge join query. Only the array tables declare the sort
+   * order that a merge join needs, so it does not have a {@code schema}
+   * parameter. */
+  @State(Scope.Thread)
+  public static class MergeJoinState extends QueryState {
+    @Setup
+    public void setup() throws SQLException {
+      setup("array", Query.mergeJoin);
+    }
+  }
+
+  @Benchmark
+  public long execute(OperatorState state) throws SQLException {
+    return execute(state.statement);
+  }
+
+  @Benchmark
+  public long mergeJoin(MergeJoinState state) throws SQLException {
+    return execute(state.statement);
+  }
+
+  /** Executes a query and reads every row; returns the number of non-null
+   * values. */
+  private static long execute(PreparedStatement statement)
+      throws SQLException {
+    final ResultSet resultSet = statement.executeQuery();
+    try {
+      final int columnCount = resultSet.getMetaData().getColumnCount();
+      long n = 0;
+      while (resultSet.next()) {
+        for (int i = 1; i <= columnCount; i++) {
+          if (resultSet.getObject(i) != null) {
+            ++n;
+          }
+        }
+      }
+      return n;
+    } finally {
+      resultSet.close();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    final OptionsBuilder builder = new OptionsBuilder();
+    builder.parent(new CommandLineOptions(args))
+        .include(EnumerableOperatorBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs();
+    report(new Runner(builder.build()).run());
+  }
+
+  /** Prints, for each run, the number of sales rows processed per second and
+   * the number of bytes allocated per sales row. */
+  private static void report(Collection<RunResult> runs) {
+    System.out.println();
+    System.out.println(
+        String.format(Locale.ROOT, "%-14s %-11s %9s %14s %12s", "Query",
+            "Schema", "Rows", "Rows/s", "Bytes/row"));
+    for (RunResult run : runs) {
+      final int rowCount =
+          Integer.parseInt(run.getParams().getParam("rowCount"));
+      double allocPerOp = Double.NaN;
+      for (Map.Entry<String, Result> entry
+          : run.getSecondaryResults().entrySet()) {
+        if (entry.getKey().endsWith("gc.alloc.rate.norm")) {
+          allocPerOp = entry.getValue().getScore();
+        }
+      }
+      // The merge join benchmark has neither a "query" nor a "schema"
+      // parameter
+      final String query = run.getParams().getParam("query");
+      final String schema = run.getParams().getParam("schema");
+      System.out.println(
+          String.format(Locale.ROOT, "%-14s %-11s %9d %14.0f %12.1f",
+              query == null ? Query.mergeJoin.name() : query,
+              schema == null ? "array" : schema,
+              rowCount,
+              run.getPrimaryResult().getScore() * rowCount,
+              allocPerOp / rowCount));
+    }
+  }
+
+  /** Queries, and the operator that each is meant to exercise. */
+  enum Query {
+    filterProject("EnumerableCalc", null,
+        "select id, amount * 2 + 1 as a, customerId\n"
+            + "from sales\n"
+            + "where amount > 50 and mod(customerId, 7) = 0"),
+    hashJoin("EnumerableJoin", EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE,
+        "select s.id, s.amount, p.name\n"
+            + "from sales as s\n"
+            + "join products as p on s.productId = p.id"),
+    mergeJoin("EnumerableMergeJoin", EnumerableRules.ENUMERABLE_JOIN_RULE,
+        "select s.id, s.amount, p.name\n"
+            + "from sales as s\n"
+            + "join products as p on s.productId = p.id"),
+    aggregate("EnumerableAggregate", null,
+        "select customerId, count(*) as c, sum(amount) as s,\n"
+            + "  min(productId) as m\n"
+            + "from sales\n"
+            + "group by customerId"),
+    window("EnumerableWindow", null,
+        "select id, sum(amount) over (partition by customerId\n"
+            + "    order by id rows 10 preceding) as s\n"
+            + "from sales"),
+    sort("EnumerableSort", null,
+        "select id, amount, customerId\n"
+            + "from sales\n"
+            + "order by amount desc, id"),
+    limit("EnumerableLimit", null,
+        "select id, amount, customerId\n"
+            + "from sales\n"
+            + "order by amount desc, id\n"
+            + "limit 10");
+
+    final String operator;
+    final RelOptRule excludedRule;
+    final String sql;
+
+    Query(String operator, RelOptRule excludedRule, String sql) {
+      this.operator = operator;
+      this.excludedRule = excludedRule;
+      this.sql = sql;
+    }
+  }
+
+  /** Schema with a table of sales and a table of products.
+   *
+   * <p>Sales are sorted by {@code id} and by {@code productId}, and products
+   * by {@code id}. */
+  public static class SalesSchema {
+    public final Sale[] sales;
+    public final Product[] products;
+
+    SalesSchema(int rowCount) {
+      final Random random = new Random(424242);
+      products = new Product[Math.max(rowCount / 100, 10)];
+      for (int i = 0; i < products.length; i++) {
+        products[i] = new Product(i, "product " + i, i % 20);
+      }
+      final int[] productIds = new int[rowCount];
+      for (int i = 0; i < rowCount; i++) {
+        productIds[i] = random.nextInt(products.length);
+      }
+      Arrays.sort(productIds);
+      sales = new Sale[rowCount];
+      for (int i = 0; i < rowCount; i++) {
+        sales[i] = new Sale(i, productIds[i],
+            random.nextInt(Math.max(rowCount / 10, 1)),
+            random.nextInt(10000) / 100D);
+      }
+    }
+
+    /** Adds tables that contain the same data, as
+     * {@link org.apache.calcite.adapter.clone.ArrayTable}s, to a schema.
+     * Sales declare that they are sorted by {@code productId}, and products
+     * by {@code id}. */
+    void addArrayTables(JavaTypeFactory typeFactory, SchemaPlus schema) {
+      final List<Object[]> saleRows = new ArrayList<Object[]>();
+      for (Sale sale : sales) {
+        saleRows.add(
+            new Object[] {sale.id, sale.productId, sale.customerId,
+                sale.amount});
+      }
+      final RelDataType saleType = typeFactory.builder()
+          .add("id", SqlTypeName.INTEGER)
+          .add("productId", SqlTypeName.INTEGER)
+          .add("customerId", SqlTypeName.INTEGER)
+          .add("amount", SqlTypeName.DOUBLE)
+          .build();
+      schema.add("sales",
+          CloneSchema.createCloneTable(typeFactory,
+              RelDataTypeImpl.proto(saleType),
+              ImmutableList.of(RelCollations.of(1)),
+              null, Linq4j.asEnumerable(saleRows)));
+
+      final List<Object[]> productRows = new ArrayList<Object[]>();
+      for (Product product : products) {
+        productRows.add(
+            new Object[] {product.id, product.name, product.category});
+      }
+      final RelDataType productType = typeFactory.builder()
+          .add("id", SqlTypeName.INTEGER)
+          .add("name", SqlTypeName.VARCHAR)
+          .add("category", SqlTypeName.INTEGER)
+          .build();
+      schema.add("products",
+          CloneSchema.createCloneTable(typeFactory,
+              RelDataTypeImpl.proto(productType),
+              ImmutableList.of(RelCollations.of(0)),
+              null, Linq4j.asEnumerable(productRows)));
+    }
+
+    @Override public String toString() {
+      return "SalesSchema";
+    }
+  }
+
+  /** Row in the sales table. */
+  public static class Sale {
+    public final int id;
+    public final int productId;
+    public final int customerId;
+    public final double amount;
+
+    public Sale(int id, int productId, int customerId, double amount) {
+      this.id = id;
+      this.productId = productId;
+      this.customerId = customerId;
+      this.amount = amount;
+    }
+  }
+
+  /** Row in the products table. */
+  public static class Product {
+    public final int id;
+    public final String name;
+    public final int category;
+
+    public Product(int id, String name, int category) {
+      this.id = id;
+      this.name = name;
+      this.category = category;
+    }
+  }
+}
+
+// End EnumerableOperatorBenchmark.java
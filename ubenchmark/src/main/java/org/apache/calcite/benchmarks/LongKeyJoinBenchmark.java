@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.LongFunction1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the hash join on a single integer key that uses a primitive
+ * {@code long} hash table, {@link EnumerableDefaults#longKeyJoin}, against the
+ * general-purpose hash join, {@link EnumerableDefaults#join}, which boxes
+ * each key.
+ *
+ * <p>Each invocation builds a hash table on the inner input and probes it with
+ * each row of the outer input. Run with the GC profiler (as {@link #main}
+ * does, or {@code -prof gc}) to compare allocation per operation.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx1g")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LongKeyJoinBenchmark {
+
+  /** Number of rows in the inner (build) input. */
+  @Param({ "1000", "100000" })
+  int innerRowCount;
+
+  /** Number of rows in the outer (probe) input. */
+  @Param({ "1000000" })
+  int outerRowCount;
+
+  Enumerable<Object[]> outer;
+  Enumerable<Object[]> inner;
+  Function1<Object[], Integer> keySelector;
+  LongFunction1<Object[]> longKeySelector;
+  Function2<Object[], Object[], Object[]> resultSelector;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(424242);
+    final List<Object[]> innerList = new ArrayList<Object[]>(innerRowCount);
+    for (int i = 0; i < innerRowCount; i++) {
+      innerList.add(new Object[] {i, "inner " + i});
+    }
+    final List<Object[]> outerList = new ArrayList<Object[]>(outerRowCount);
+    for (int i = 0; i < outerRowCount; i++) {
+      // About half of outer rows find a match
+      outerList.add(new Object[] {random.nextInt(innerRowCount * 2), i});
+    }
+    inner = Linq4j.asEnumerable(innerList);
+    outer = Linq4j.asEnumerable(outerList);
+    keySelector = new Function1<Object[], Integer>() {
+      public Integer apply(Object[] row) {
+        return (Integer) row[0];
+      }
+    };
+    longKeySelector = new LongFunction1<Object[]>() {
+      public long apply(Object[] row) {
+        return (Integer) row[0];
+      }
+    };
+    resultSelector = new Function2<Object[], Object[], Object[]>() {
+      public Object[] apply(Object[] left, Object[] right) {
+        return new Object[] {left[0], left[1], right[1]};
+      }
+    };
+  }
+
+  @Benchmark
+  public int join() {
+    return consume(
+        EnumerableDefaults.join(outer, inner, keySelector, keySelector,
+            resultSelector, null, false, false));
+  }
+
+  @Benchmark
+  public int longKeyJoin() {
+    return consume(
+        EnumerableDefaults.longKeyJoin(outer, inner, longKeySelector,
+            longKeySelector, resultSelector, false, false));
+  }
+
+  @Benchmark
+  public int leftJoin() {
+    return consume(
+        EnumerableDefaults.join(outer, inner, keySelector, keySelector,
+            resultSelector, null, false, true));
+  }
+
+  @Benchmark
+  public int longKeyLeftJoin() {
+    return consume(
+        EnumerableDefaults.longKeyJoin(outer, inner, longKeySelector,
+            longKeySelector, resultSelector, false, true));
+  }
+
+  private static int consume(Enumerable<Object[]> enumerable) {
+    int n = 0;
+    final Enumerator<Object[]> enumerator = enumerable.enumerator();
+    try {
+      while (enumerator.moveNext()) {
+        n += enumerator.current().length;
+      }
+    } finally {
+      enumerator.close();
+    }
+    return n;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(LongKeyJoinBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+
+}
+
+// End LongKeyJoinBenchmark.java
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Functions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link EnumerableDefaults#orderBy}, which sorts an array,
+ * against the previous implementation, which built a
+ * {@code TreeMap<TKey, List<TSource>>}.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx1g")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrderByBenchmark {
+
+  @Param({ "10000", "1000000" })
+  int rowCount;
+
+  /** Number of distinct keys, as a percentage of the number of rows. */
+  @Param({ "1", "100" })
+  int distinctPercent;
+
+  /** Whether the sort key is the row itself (as when
+   * {@code EnumerableSort} sorts on several columns) or a field. */
+  @Param({ "false", "true" })
+  boolean identity;
+
+  Enumerable<Object[]> rows;
+  Function1<Object[], Object> keySelector;
+  Comparator<Object> comparator;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(424242);
+    final int distinct = Math.max(1, rowCount * distinctPercent / 100);
+    final List<Object[]> list = new ArrayList<Object[]>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      list.add(new Object[] {random.nextInt(distinct), "row " + i});
+    }
+    rows = Linq4j.asEnumerable(list);
+    final Comparator<Integer> fieldComparator = Collections.reverseOrder();
+    if (identity) {
+      //noinspection unchecked
+      keySelector = (Function1) Functions.identitySelector();
+      comparator = new Comparator<Object>() {
+        public int compare(Object o1, Object o2) {
+          return fieldComparator.compare((Integer) ((Object[]) o1)[0],
+              (Integer) ((Object[]) o2)[0]);
+        }
+      };
+    } else {
+      keySelector = new Function1<Object[], Object>() {
+        public Object apply(Object[] row) {
+          return row[0];
+        }
+      };
+      comparator = new Comparator<Object>() {
+        public int compare(Object o1, Object o2) {
+          return fieldComparator.compare((Integer) o1, (Integer) o2);
+        }
+      };
+    }
+  }
+
+  @Benchmark
+  public int arraySort() {
+    return consume(EnumerableDefaults.orderBy(rows, keySelector, comparator));
+  }
+
+  @Benchmark
+  public int treeMapSort() {
+    final Map<Object, List<Object[]>> map =
+        new TreeMap<Object, List<Object[]>>(comparator);
+    final Enumerator<Object[]> enumerator = rows.enumerator();
+    try {
+      while (enumerator.moveNext()) {
+        final Object[] row = enumerator.current();
+        final Object key = keySelector.apply(row);
+        List<Object[]> list = map.get(key);
+        if (list == null) {
+          list = Collections.singletonList(row);
+        } else {
+          if (list.size() == 1) {
+            final Object[] first = list.get(0);
+            list = new ArrayList<Object[]>();
+            list.add(first);
+          }
+          list.add(row);
+        }
+        map.put(key, list);
+      }
+    } finally {
+      enumerator.close();
+    }
+    int n = 0;
+    for (List<Object[]> list : map.values()) {
+      for (Object[] row : list) {
+        n += row.length;
+      }
+    }
+    return n;
+  }
+
+  private static int consume(Enumerable<Object[]> enumerable) {
+    int n = 0;
+    final Enumerator<Object[]> enumerator = enumerable.enumerator();
+    try {
+      while (enumerator.moveNext()) {
+        n += enumerator.current().length;
+      }
+    } finally {
+      enumerator.close();
+    }
+    return n;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(OrderByBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+
+}
+
+// End OrderByBenchmark.java
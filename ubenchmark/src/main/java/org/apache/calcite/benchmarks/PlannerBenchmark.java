@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.adapter.tpcds.TpcdsTest;
+import org.apache.calcite.adapter.tpch.TpchTest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the planning of TPC-H and TPC-DS queries.
+ *
+ * <p>Each invocation parses, validates, converts and optimizes one query by
+ * executing {@code EXPLAIN PLAN FOR} it; the query is not executed, so the
+ * size of the data set does not matter. Most of the time is spent in
+ * {@link org.apache.calcite.plan.volcano.VolcanoPlanner}, and in particular
+ * in its rule queue.
+ *
+ * <p>Queries are identified as "tpch-N" (1 to 22) and "tpcds-N" (1 to 99).
+ * For example, to benchmark TPC-H query 5 and TPC-DS query 27:
+ *
+ * <blockquote>
+ *   <code>java -jar ./target/ubenchmarks.jar PlannerBenchmark
+ *     -p query=tpch-5,tpcds-27</code>
+ * </blockquote>
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx1g")
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PlannerBenchmark {
+
+  @Param({ "tpch-1", "tpch-3", "tpch-5", "tpch-10", "tpch-18", "tpcds-1",
+      "tpcds-17", "tpcds-27" })
+  String query;
+
+  String sql;
+  Connection connection;
+
+  @Setup
+  public void setup() throws SQLException {
+    sql = TpcQueries.sql(query);
+    final String model = query.startsWith("tpcds")
+        ? TpcdsTest.TPCDS_MODEL
+        : TpchTest.TPCH_MODEL;
+    connection = DriverManager.getConnection("jdbc:calcite:model=inline:"
+        + model);
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    connection.close();
+  }
+
+  @Benchmark
+  public String plan() throws SQLException {
+    final Statement statement = connection.createStatement();
+    try {
+      final ResultSet resultSet =
+          statement.executeQuery("explain plan for " + sql);
+      resultSet.next();
+      return resultSet.getString(1);
+    } finally {
+      statement.close();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(PlannerBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+}
+
+// End PlannerBenchmark.java
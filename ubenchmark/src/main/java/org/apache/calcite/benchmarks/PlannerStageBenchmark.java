@@ -0,0 +1,398 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.adapter.enumerable.EnumerableInterpretable;
+import org.apache.calcite.adapter.enumerable.EnumerableRel;
+import org.apache.calcite.adapter.tpcds.TpcdsSchema;
+import org.apache.calcite.adapter.tpch.TpchSchema;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptLattice;
+import org.apache.calcite.plan.RelOptMaterialization;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptSchema;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.prepare.Prepare;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.server.CalciteServerStatement;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.validate.SqlConformanceEnum;
+import org.apache.calcite.sql.validate.SqlValidator;
+import org.apache.calcite.sql.validate.SqlValidatorUtil;
+import org.apache.calcite.sql2rel.RelDecorrelator;
+import org.apache.calcite.sql2rel.SqlToRelConverter;
+import org.apache.calcite.sql2rel.StandardConvertletTable;
+import org.apache.calcite.tools.FrameworkConfig;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.Program;
+import org.apache.calcite.tools.Programs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks each stage of preparing TPC-H and TPC-DS queries: parse,
+ * validate, sql2rel, decorrelate, optimize and codegen.
+ *
+ * <p>Each benchmark method runs one stage; its input is the output of the
+ * previous stages, computed once per trial. Validation modifies the parse
+ * tree, and optimization the state of the planner, so those two stages get a
+ * fresh parse tree or a cleared planner before each invocation. (The time
+ * spent doing that is not measured, but its allocations are included in the
+ * figures of the GC profiler.)
+ *
+ * <p>Queries are identified as in {@link TpcQueries}, for example "tpch-5"
+ * and "tpcds-27"; the default is a few queries of each kind. To run
+ * the suite with the GC profiler:
+ *
+ * <blockquote>
+ *   <code>java -cp ./target/ubenchmarks.jar
+ *     org.apache.calcite.benchmarks.PlannerStageBenchmark
+ *     [--all] [--save FILE] [--baseline FILE [--tolerance 0.1]]
+ *     [JMH options]</code>
+ * </blockquote>
+ *
+ * <p>{@code --all} runs all 22 TPC-H and 99 TPC-DS queries.
+ * {@code --save} writes the score and allocation of each benchmark to a
+ * properties file. {@code --baseline} compares against a file written
+ * earlier by {@code --save}, and flags benchmarks whose time or allocation
+ * per operation grew by more than the tolerance (default 10%).
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx1g")
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PlannerStageBenchmark {
+
+  /** Query, the environment to prepare it in, and the output of each
+   * stage. */
+  @State(Scope.Thread)
+  public static class QueryState {
+    @Param({ "tpch-1", "tpch-3", "tpch-5", "tpch-10", "tpch-18", "tpcds-1",
+        "tpcds-17", "tpcds-27" })
+    String query;
+
+    String sql;
+    RelOptCluster cluster;
+    Prepare.CatalogReader catalogReader;
+    List<RelOptRule> rules;
+
+    SqlNode validated;
+    SqlValidator validator;
+    RelRoot converted;
+    RelRoot decorrelated;
+    EnumerableRel optimized;
+
+    @Setup(Level.Trial)
+    public void setup() throws SqlParseException {
+      sql = TpcQueries.sql(query);
+      final SchemaPlus rootSchema = Frameworks.createRootSchema(false);
+      rootSchema.add("TPCH", new TpchSchema(1D, 1, 1, true));
+      rootSchema.add("TPCDS", new TpcdsSchema(1D, 1, 1));
+      final FrameworkConfig config = Frameworks.newConfigBuilder()
+          .defaultSchema(
+              rootSchema.getSubSchema(
+                  query.startsWith("tpcds") ? "TPCDS" : "TPCH"))
+          .build();
+      Frameworks.withPrepare(
+          new Frameworks.PrepareAction<Void>(config) {
+            public Void apply(RelOptCluster cluster,
+                RelOptSchema relOptSchema, SchemaPlus rootSchema,
+                CalciteServerStatement statement) {
+              QueryState.this.cluster = cluster;
+              QueryState.this.catalogReader =
+                  (Prepare.CatalogReader) relOptSchema;
+              return null;
+            }
+          });
+      rules = cluster.getPlanner().getRules();
+
+      validator = createValidator(this);
+      validated = validator.validate(parseSql(this));
+      converted = toRel(this, validator, validated);
+      decorrelated = decorrelateRoot(converted);
+      optimized = optimizeRoot(this, decorrelated);
+    }
+
+    /** Clears the planner, and re-registers the rules that it started
+     * with. */
+    void resetPlanner() {
+      final RelOptPlanner planner = cluster.getPlanner();
+      planner.clear();
+      for (RelOptRule rule : rules) {
+        planner.addRule(rule);
+      }
+      cluster.invalidateMetadataQuery();
+    }
+  }
+
+  /** Query state that re-parses the query before each invocation. */
+  public static class FreshParseState extends QueryState {
+    SqlNode parsed;
+
+    @Setup(Level.Invocation)
+    public void reparse() throws SqlParseException {
+      parsed = parseSql(this);
+    }
+  }
+
+  /** Query state that clears the planner before each invocation. */
+  public static class FreshPlannerState extends QueryState {
+    @Setup(Level.Invocation)
+    public void clearPlanner() {
+      resetPlanner();
+    }
+  }
+
+  @Benchmark
+  public SqlNode parse(QueryState state) throws SqlParseException {
+    return parseSql(state);
+  }
+
+  @Benchmark
+  public SqlNode validate(FreshParseState state) {
+    return createValidator(state).validate(state.parsed);
+  }
+
+  @Benchmark
+  public RelRoot sql2rel(QueryState state) {
+    return toRel(state, state.validator, state.validated);
+  }
+
+  @Benchmark
+  public RelRoot decorrelate(QueryState state) {
+    return decorrelateRoot(state.converted);
+  }
+
+  @Benchmark
+  public RelNode optimize(FreshPlannerState state) {
+    return optimizeRoot(state, state.decorrelated);
+  }
+
+  @Benchmark
+  public Bindable codegen(QueryState state) {
+    return EnumerableInterpretable.toBindable(
+        new LinkedHashMap<String, Object>(), null, state.optimized,
+        EnumerableRel.Prefer.ARRAY);
+  }
+
+  static SqlNode parseSql(QueryState state) throws SqlParseException {
+    return SqlParser.create(state.sql).parseQuery();
+  }
+
+  static SqlValidator createValidator(QueryState state) {
+    final SqlValidator validator =
+        SqlValidatorUtil.newValidator(SqlStdOperatorTable.instance(),
+            state.catalogReader, state.cluster.getTypeFactory(),
+            SqlConformanceEnum.DEFAULT);
+    validator.setIdentifierExpansion(true);
+    return validator;
+  }
+
+  static RelRoot toRel(QueryState state, SqlValidator validator,
+      SqlNode validated) {
+    final SqlToRelConverter.Config config =
+        SqlToRelConverter.configBuilder()
+            .withTrimUnusedFields(true)
+            .build();
+    final SqlToRelConverter converter =
+        new SqlToRelConverter(null, validator, state.catalogReader,
+            state.cluster, StandardConvertletTable.INSTANCE, config);
+    final RelRoot root = converter.convertQuery(validated, false, true);
+    return root.withRel(converter.flattenTypes(root.rel, true));
+  }
+
+  static RelRoot decorrelateRoot(RelRoot root) {
+    return root.withRel(RelDecorrelator.decorrelateQuery(root.rel));
+  }
+
+  static EnumerableRel optimizeRoot(QueryState state, RelRoot root) {
+    final RelNode rel = root.project();
+    final RelTraitSet desiredTraits = rel.getTraitSet()
+        .replace(EnumerableConvention.INSTANCE)
+        .replace(root.collation)
+        .simplify();
+    final Program program = Programs.standard();
+    return (EnumerableRel) program.run(state.cluster.getPlanner(), rel,
+        desiredTraits, Collections.<RelOptMaterialization>emptyList(),
+        Collections.<RelOptLattice>emptyList());
+  }
+
+  public static void main(String[] args) throws Exception {
+    final List<String> jmhArgs = new ArrayList<String>();
+    File saveFile = null;
+    File baselineFile = null;
+    double tolerance = 0.1D;
+    boolean all = false;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--all")) {
+        all = true;
+      } else if (args[i].equals("--save")) {
+        saveFile = new File(args[++i]);
+      } else if (args[i].equals("--baseline")) {
+        baselineFile = new File(args[++i]);
+      } else if (args[i].equals("--tolerance")) {
+        tolerance = Double.parseDouble(args[++i]);
+      } else {
+        jmhArgs.add(args[i]);
+      }
+    }
+    final OptionsBuilder builder = new OptionsBuilder();
+    builder.parent(new CommandLineOptions(jmhArgs.toArray(new String[0])))
+        .include(PlannerStageBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs();
+    if (all) {
+      final List<String> queries = TpcQueries.all();
+      builder.param("query", queries.toArray(new String[queries.size()]));
+    }
+
+    final Map<String, String> results =
+        summarize(new Runner(builder.build()).run());
+    if (saveFile != null) {
+      save(results, saveFile);
+    }
+    if (baselineFile != null) {
+      compare(load(baselineFile), results, tolerance);
+    }
+  }
+
+  /** Converts results to a map from keys such as "optimize:tpch-5" and
+   * "optimize:tpch-5:alloc" to scores. */
+  private static Map<String, String> summarize(Collection<RunResult> runs) {
+    final Map<String, String> map = new TreeMap<String, String>();
+    for (RunResult run : runs) {
+      final String benchmark = run.getParams().getBenchmark();
+      final String key = benchmark.substring(benchmark.lastIndexOf('.') + 1)
+          + ":" + run.getParams().getParam("query");
+      map.put(key, Double.toString(run.getPrimaryResult().getScore()));
+      for (Map.Entry<String, Result> entry
+          : run.getSecondaryResults().entrySet()) {
+        if (entry.getKey().endsWith("gc.alloc.rate.norm")) {
+          map.put(key + ":alloc",
+              Double.toString(entry.getValue().getScore()));
+        }
+      }
+    }
+    return map;
+  }
+
+  private static void save(Map<String, String> results, File file)
+      throws IOException {
+    final Properties properties = new Properties();
+    properties.putAll(results);
+    final OutputStream out = new FileOutputStream(file);
+    try {
+      properties.store(out, "PlannerStageBenchmark results; "
+          + "time in ms/op, allocation in B/op");
+    } finally {
+      out.close();
+    }
+  }
+
+  private static Map<String, String> load(File file) throws IOException {
+    final Properties properties = new Properties();
+    final InputStream in = new FileInputStream(file);
+    try {
+      properties.load(in);
+    } finally {
+      in.close();
+    }
+    final Map<String, String> map = new TreeMap<String, String>();
+    for (String name : properties.stringPropertyNames()) {
+      map.put(name, properties.getProperty(name));
+    }
+    return map;
+  }
+
+  /** Prints the ratio of each result to its baseline, flagging those that
+   * exceed {@code 1 + tolerance}. */
+  private static void compare(Map<String, String> baseline,
+      Map<String, String> results, double tolerance) {
+    int regressionCount = 0;
+    System.out.println();
+    System.out.println(
+        String.format(Locale.ROOT, "%-32s %14s %14s %7s", "Benchmark",
+            "Baseline", "Current", "Ratio"));
+    for (Map.Entry<String, String> entry : results.entrySet()) {
+      final String base = baseline.get(entry.getKey());
+      if (base == null) {
+        continue;
+      }
+      final double before = Double.parseDouble(base);
+      final double after = Double.parseDouble(entry.getValue());
+      final double ratio = after / before;
+      final boolean regression = ratio > 1D + tolerance;
+      if (regression) {
+        ++regressionCount;
+      }
+      System.out.println(
+          String.format(Locale.ROOT, "%-32s %14.3f %14.3f %7.3f%s",
+              entry.getKey(), before, after, ratio,
+              regression ? "  REGRESSION" : ""));
+    }
+    System.out.println(
+        String.format(Locale.ROOT, "%d regression(s), tolerance %.0f%%",
+            regressionCount, tolerance * 100D));
+  }
+}
+
+// End PlannerStageBenchmark.java
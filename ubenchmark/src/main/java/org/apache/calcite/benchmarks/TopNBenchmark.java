@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the bounded-heap implementation of {@code ORDER BY ... LIMIT},
+ * used by {@code EnumerableLimitSort}, against sorting all rows and then
+ * applying the limit, as an {@code EnumerableLimit} on top of an
+ * {@code EnumerableSort} does.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx1g")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TopNBenchmark {
+
+  @Param({ "100000", "1000000" })
+  int rowCount;
+
+  @Param({ "10", "100", "10000" })
+  int fetch;
+
+  @Param({ "0", "100" })
+  int offset;
+
+  Enumerable<Object[]> rows;
+  Function1<Object[], Long> keySelector;
+  Comparator<Long> comparator;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(424242);
+    final List<Object[]> list = new ArrayList<Object[]>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      list.add(new Object[] {random.nextLong(), "row " + i});
+    }
+    rows = Linq4j.asEnumerable(list);
+    keySelector = new Function1<Object[], Long>() {
+      public Long apply(Object[] row) {
+        return (Long) row[0];
+      }
+    };
+    // Like "ORDER BY ts DESC LIMIT n"
+    comparator = Collections.reverseOrder();
+  }
+
+  @Benchmark
+  public int sortThenLimit() {
+    return consume(
+        EnumerableDefaults.orderBy(rows, keySelector, comparator)
+            .skip(offset)
+            .take(fetch));
+  }
+
+  @Benchmark
+  public int topN() {
+    return consume(
+        EnumerableDefaults.orderBy(rows, keySelector, comparator, offset,
+            fetch));
+  }
+
+  private static int consume(Enumerable<Object[]> enumerable) {
+    int n = 0;
+    final Enumerator<Object[]> enumerator = enumerable.enumerator();
+    try {
+      while (enumerator.moveNext()) {
+        n += enumerator.current().length;
+      }
+    } finally {
+      enumerator.close();
+    }
+    return n;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(TopNBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+
+}
+
+// End TopNBenchmark.java
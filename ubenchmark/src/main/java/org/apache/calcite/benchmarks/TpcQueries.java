@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.adapter.tpch.TpchTest;
+
+import net.hydromatic.tpcds.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * TPC-H and TPC-DS queries for benchmarks.
+ *
+ * <p>A query is identified by a name such as "tpch-5" (TPC-H query 5, of 1
+ * to 22) or "tpcds-27" (TPC-DS query 27, of 1 to 99). TPC-H queries qualify
+ * table names with the "tpch" schema; TPC-DS queries do not qualify them, so
+ * need "tpcds" to be the default schema.
+ */
+class TpcQueries {
+  private TpcQueries() {}
+
+  /** Returns the SQL text of a query. */
+  static String sql(String name) {
+    final String[] parts = name.split("-");
+    if (parts.length == 2) {
+      final int i = Integer.parseInt(parts[1]);
+      if (parts[0].equals("tpch")) {
+        return TpchTest.QUERIES.get(i - 1);
+      } else if (parts[0].equals("tpcds")) {
+        return tpcds(i);
+      }
+    }
+    throw new IllegalArgumentException("unknown query " + name);
+  }
+
+  /** Returns the SQL text of a TPC-DS query, with the same work-arounds for
+   * generator and parser limitations as {@code TpcdsTest}. */
+  private static String tpcds(int i) {
+    String sql = Query.of(i).sql(new Random(0));
+    switch (i) {
+    case 58:
+      // Until TPC-DS generator can handle date(...).
+      sql = sql.replace("'date([YEAR]+\"-01-01\",[YEAR]+\"-07-24\",sales)'",
+          "DATE '1998-08-18'");
+      break;
+    case 72:
+      // Work around CALCITE-304: Support '<DATE> + <INTEGER>'.
+      sql = sql.replace("+ 5", "+ interval '5' day");
+      break;
+    case 95:
+      sql = sql.replace("60 days", "interval '60' day");
+      sql = sql.replace("d_date between '", "d_date between date '");
+      break;
+    }
+    return sql;
+  }
+
+  /** Returns the names of all 22 TPC-H and 99 TPC-DS queries. */
+  static List<String> all() {
+    final List<String> list = new ArrayList<String>();
+    for (int i = 1; i <= 22; i++) {
+      list.add("tpch-" + i);
+    }
+    for (int i = 1; i <= 99; i++) {
+      list.add("tpcds-" + i);
+    }
+    return list;
+  }
+}
+
+// End TpcQueries.java